@@ -48,6 +48,92 @@ public class AvmConfiguration {
      * This is useful for capturing the data from a network for offline analysis.
      */
     public File contractCaptureDirectory;
+    /**
+     * If set to a positive number, the cache of loaded DApps is bounded to approximately this many bytes (estimated as the transformed
+     * bytecode plus the serialized object graph of each DApp), evicting the least-recently-used DApps when full.
+     * If 0, the cache has no maximum size and is instead built on SoftReferences, meaning that eviction is left to the GC.
+     */
+    public long hotCacheMaximumBytes;
+    /**
+     * The number of instances of the same DApp which the cache of loaded DApps can hold (must be positive).  Each instance has its own
+     * class loader and statics so, if this is greater than 1, that many threads can concurrently run calls to the same DApp without
+     * loading it again.
+     */
+    public int hotCacheInstancesPerAddress;
+    /**
+     * If set to a positive number, the cache of re-transformed code is bounded to this many bytes of transformed code, evicting the
+     * least-recently-used code when full.
+     * If 0, the cache has no maximum size and is instead built on SoftReferences, meaning that eviction is left to the GC.
+     */
+    public long transformedCodeCacheMaximumBytes;
+    /**
+     * If set to non-null, re-transformed code is persisted in this directory, keyed by a hash of the original code, so that it
+     * survives a restart and is shared by identical contracts deployed at different addresses.
+     * The stored code is also keyed by a fingerprint of the AVM's own jars, so this can only be set if the AVM is running from jars.
+     */
+    public File transformedCodeStoreDirectory;
+    /**
+     * If set to non-null, the transformed code of the most frequently executed DApps is written to this file on shutdown.  If the file
+     * exists on startup, and was written by this build of the AVM, the jars of those DApps are parsed on a background thread so that
+     * the first blocks after a restart don't pay for this.  The file is keyed by a fingerprint of the AVM's own jars, so this can only be
+     * set if the AVM is running from jars.
+     */
+    public File hotContractFile;
+    /**
+     * If set to true, a call which didn't write anything in the DApp's persisted object graph re-uses the graph it loaded (with the
+     * updated next hash code) instead of serializing it again.  The result, and the energy billed, is identical either way.
+     * Code transformed by an older AVM version doesn't report these writes so it is always serialized:  this is recorded in the manifest of
+     * the transformed code, so such code only benefits once it is re-transformed (and the stored transformed code of new deployments
+     * differs from what an older AVM would have stored).
+     */
+    public boolean enableUnmodifiedGraphReuse;
+    /**
+     * If set to true, a DApp's object graph is loaded lazily when it isn't in the cache:  the statics are populated but each instance
+     * is only populated from the serialized graph when it is first used.  The result, and the energy billed, is identical either way.
+     * This requires enableUnmodifiedGraphReuse, since serializing the graph populates every instance, so only calls which don't write
+     * the graph benefit.  Note that the graph format has no per-instance lengths so every instance is still read once, to find where
+     * it starts:  what is deferred is connecting it to the rest of the graph.  Until every instance has been used, the DApp retains the
+     * serialized graph (the same copy which enableUnmodifiedGraphReuse retains) plus an offset per instance.
+     */
+    public boolean enableLazyGraphLoading;
+    /**
+     * If set to true, transactions are executed speculatively instead of acquiring locks on the addresses they use:  each task records
+     * what it read and is validated when it commits, in order, and is only re-executed if something it read has since been changed.
+     * The DApp data cache isn't used in this mode (code is still cached).
+     */
+    public boolean enableSpeculativeExecution;
+    /**
+     * If set to true, ETH_CALL batches are run as read-only queries:  each transaction runs alone against the given kernel, which is
+     * never written to (so it can be an immutable snapshot shared with other threads, including those processing blocks), without
+     * acquiring any address locks or waiting for the other transactions in its batch.  What it writes is discarded and its object graph
+     * is never stored (nor serialized, unless it was written, since the serialized size is still billed).
+     * The result is the same as running that transaction alone, as a normal ETH_CALL.
+     */
+    public boolean enableReadOnlyQueries;
+    /**
+     * If set to true, deployed (and re-transformed) code is transformed by the fused pipeline:  the per-class passes run back-to-back
+     * without computing the stack map frames of each intermediate class, which are only computed once, when the class is written for the
+     * last time.  The transformed code is identical either way.
+     */
+    public boolean enableFusedTransformation;
+    /**
+     * If set to true, deployed (and re-transformed) code has fewer energy charges injected:  a block which can only be reached by
+     * falling through from a block which always does so is charged up front, with that block, and unreachable blocks aren't charged.
+     * The energy billed, and the point where a transaction runs out of energy, is the same either way.
+     */
+    public boolean enableEnergyChargeFolding;
+    /**
+     * If set to true, what the transactions of a batch read from the kernel (storage, balance, nonce, code, and object graph) is cached
+     * for the rest of that batch, and invalidated as transactions commit, so the kernel is only asked once for each location (see
+     * BlockReadCachingState).  This requires that nothing else writes to the kernel while the batch is running.
+     */
+    public boolean enableBlockReadCache;
+    /**
+     * If set to true, each batch reads through a block read cache (as with enableBlockReadCache) which is warmed, before and while the
+     * transactions run, by a pool of prefetch threads reading the accounts and code each transaction will use and the storage keys which
+     * earlier calls to the same DApp method read (see StoragePrefetcher).  This has the same requirement as enableBlockReadCache.
+     */
+    public boolean enableStoragePrefetch;
 
     public AvmConfiguration() {
         // 4 threads is generally a safe, yet useful, number.
@@ -63,5 +149,30 @@ public class AvmConfiguration {
         this.deploymentDataHistorgramOutput = null;
         // This is a very uncommon use-case so it defaults to off.
         this.contractCaptureDirectory = null;
+        // We default to the GC-managed caches, since we can't know how much heap the embedding application is willing to give us.
+        this.hotCacheMaximumBytes = 0L;
+        // Every additional instance of a DApp retains another copy of its statics, so we only cache 1 per address, by default.
+        this.hotCacheInstancesPerAddress = 1;
+        this.transformedCodeCacheMaximumBytes = 0L;
+        // The persistent store of re-transformed code is an explicit opt-in since it writes to disk.
+        this.transformedCodeStoreDirectory = null;
+        // The same is true of the hot contract file.
+        this.hotContractFile = null;
+        // This is a new optimization so it is opt-in until it has seen more use.
+        this.enableUnmodifiedGraphReuse = false;
+        // Also a new optimization so it is opt-in.
+        this.enableLazyGraphLoading = false;
+        // The address-locking executor is the default.
+        this.enableSpeculativeExecution = false;
+        // ETH_CALL batches are run like any other batch (transactions see, and are ordered after, the earlier ones) unless requested.
+        this.enableReadOnlyQueries = false;
+        // The classic pipeline, which computes the frames after every pass, remains the default until the fused one has seen more use.
+        this.enableFusedTransformation = false;
+        // The metering change is opt-in since it changes the transformed code (though not what it bills).
+        this.enableEnergyChargeFolding = false;
+        // The kernel is consulted directly, by default, since the cache assumes it is the only writer while a batch runs.
+        this.enableBlockReadCache = false;
+        // Prefetching is opt-in since it reads more than the transactions themselves do and uses its own threads.
+        this.enableStoragePrefetch = false;
     }
 }
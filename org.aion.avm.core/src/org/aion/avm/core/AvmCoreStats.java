@@ -16,6 +16,182 @@ public class AvmCoreStats {
         this.threadStats = threadStats;
     }
 
+    /**
+     * @return The number of hot DApp cache hits, summed across all threads.
+     */
+    public int getCodeCacheHits() {
+        int sum = 0;
+        for (AvmThreadStats stat : this.threadStats) {
+            sum += stat.cache_code_hit;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The number of hot DApp cache misses, summed across all threads.
+     */
+    public int getCodeCacheMisses() {
+        int sum = 0;
+        for (AvmThreadStats stat : this.threadStats) {
+            sum += stat.cache_code_miss;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The number of DApps evicted from the hot DApp cache, summed across all threads.
+     */
+    public int getCodeCacheEvictions() {
+        int sum = 0;
+        for (AvmThreadStats stat : this.threadStats) {
+            sum += stat.cache_code_evicted;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The number of transformed code cache hits, summed across all threads.
+     */
+    public int getTransformedCodeCacheHits() {
+        int sum = 0;
+        for (AvmThreadStats stat : this.threadStats) {
+            sum += stat.cache_transformedCode_hit;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The number of transformed code cache misses, summed across all threads.
+     */
+    public int getTransformedCodeCacheMisses() {
+        int sum = 0;
+        for (AvmThreadStats stat : this.threadStats) {
+            sum += stat.cache_transformedCode_miss;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The number of entries evicted from the transformed code cache, summed across all threads.
+     */
+    public int getTransformedCodeCacheEvictions() {
+        int sum = 0;
+        for (AvmThreadStats stat : this.threadStats) {
+            sum += stat.cache_transformedCode_evicted;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The number of parsed DApp jar cache hits, summed across all threads.
+     */
+    public int getParsedJarCacheHits() {
+        int sum = 0;
+        for (AvmThreadStats stat : this.threadStats) {
+            sum += stat.cache_parsedJar_hit;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The number of parsed DApp jar cache misses, summed across all threads.
+     */
+    public int getParsedJarCacheMisses() {
+        int sum = 0;
+        for (AvmThreadStats stat : this.threadStats) {
+            sum += stat.cache_parsedJar_miss;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The number of kernel reads answered by the block read cache, summed across all threads.
+     */
+    public int getBlockReadCacheHits() {
+        int sum = 0;
+        for (AvmThreadStats stat : this.threadStats) {
+            sum += stat.cache_blockRead_hit;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The number of kernel reads which missed the block read cache, summed across all threads.
+     */
+    public int getBlockReadCacheMisses() {
+        int sum = 0;
+        for (AvmThreadStats stat : this.threadStats) {
+            sum += stat.cache_blockRead_miss;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The number of serialized object graphs which were re-used, instead of serialized, summed across all threads.
+     */
+    public int getReusedGraphCount() {
+        int sum = 0;
+        for (AvmThreadStats stat : this.threadStats) {
+            sum += stat.serializedGraph_reused;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The number of object graphs discarded by read-only queries without being serialized, summed across all threads.
+     */
+    public int getDiscardedGraphCount() {
+        int sum = 0;
+        for (AvmThreadStats stat : this.threadStats) {
+            sum += stat.serializedGraph_discarded;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The number of graph serialization buffers allocated, summed across all threads.
+     */
+    public int getSerializationBufferAllocations() {
+        int sum = 0;
+        for (AvmThreadStats stat : this.threadStats) {
+            sum += stat.serializationBuffer_allocated;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The number of times a pooled graph serialization buffer was re-used, summed across all threads.
+     */
+    public int getSerializationBufferReuses() {
+        int sum = 0;
+        for (AvmThreadStats stat : this.threadStats) {
+            sum += stat.serializationBuffer_reused;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The number of speculatively-executed tasks which were validated and committed, summed across all threads.
+     */
+    public int getSpeculativeCommitCount() {
+        int sum = 0;
+        for (AvmThreadStats stat : this.threadStats) {
+            sum += stat.speculative_committed;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The number of speculatively-executed tasks which had to be re-executed due to a conflict, summed across all threads.
+     */
+    public int getSpeculativeConflictCount() {
+        int sum = 0;
+        for (AvmThreadStats stat : this.threadStats) {
+            sum += stat.speculative_conflicts;
+        }
+        return sum;
+    }
+
     public void clear() {
         for (AvmThreadStats stat : this.threadStats) {
             stat.clear();
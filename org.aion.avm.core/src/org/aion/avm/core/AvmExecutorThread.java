@@ -1,10 +1,12 @@
 package org.aion.avm.core;
 
+import org.aion.avm.core.persistence.SerializationBufferPool;
 import org.aion.kernel.*;
 
 import i.IInstrumentation;
 import i.IInstrumentationFactory;
 import i.InstrumentationHelpers;
+import i.InstrumentedThread;
 import i.JvmError;
 import i.RuntimeAssertionError;
 
@@ -14,7 +16,7 @@ import org.aion.parallel.TransactionTask;
 /**
  * The thread specific to the AVM internals.  All smart contract code is executed on one of these threads and each of them is directly owned by AvmImpl.
  */
-public class AvmExecutorThread extends Thread {
+public class AvmExecutorThread extends InstrumentedThread {
     public static AvmExecutorThread currentThread() {
         try {
             return (AvmExecutorThread) Thread.currentThread();
@@ -26,6 +28,8 @@ public class AvmExecutorThread extends Thread {
 
 
     public final AvmThreadStats stats;
+    // The buffers this thread uses to serialize object graphs (re-used across transactions).
+    public final SerializationBufferPool serializationBuffers;
 
     private final IExecutorThreadHandler threadHandler;
     private final IInstrumentationFactory instrumentationFactory;
@@ -38,6 +42,7 @@ public class AvmExecutorThread extends Thread {
     ) {
         super(name);
         this.stats = new AvmThreadStats();
+        this.serializationBuffers = new SerializationBufferPool(this.stats);
         this.threadHandler = threadHandler;
         this.instrumentationFactory = instrumentationFactory;
         this.enableVerboseConcurrentExecutor = enableVerboseConcurrentExecutor;
@@ -7,26 +7,43 @@ import org.aion.types.AionAddress;
 import org.aion.types.Transaction;
 import org.aion.kernel.*;
 
+import java.io.File;
 import java.io.IOException;
-import java.lang.ref.SoftReference;
 import java.math.BigInteger;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 import org.aion.avm.core.persistence.LoadedDApp;
+import org.aion.avm.core.types.ImmortalDappModule;
+import org.aion.avm.core.util.BoundedCache;
 import org.aion.avm.core.util.ByteArrayWrapper;
 import org.aion.avm.core.util.ContractCaptureTool;
+import org.aion.avm.core.util.HotContractTracker;
+import org.aion.avm.core.util.ICache;
 import org.aion.avm.core.util.SoftCache;
+import org.aion.avm.core.util.TransformedCodeStore;
+import i.IInstrumentation;
 import i.IInstrumentationFactory;
 import i.JvmError;
 import i.RuntimeAssertionError;
 import org.aion.parallel.AddressResourceMonitor;
 import org.aion.parallel.TransactionTask;
+import org.objectweb.asm.ClassWriter;
 
 
 public class AvmImpl implements AvmInternal {
+    // The number of DApps written to the hotContractFile, if there is one.
+    private static final int HOT_CONTRACT_COUNT = 64;
+    // The number of addresses whose latest data generation we remember (forgetting one only means its cached data is reloaded).
+    private static final int DATA_GENERATION_ADDRESS_COUNT = 10_000;
+
     private InternalLogger internalLogger;
 
     private final IInstrumentationFactory instrumentationFactory;
@@ -34,12 +51,23 @@ public class AvmImpl implements AvmInternal {
 
     // Long-lived state which is book-ended by the startup/shutdown calls.
     private static AvmImpl currentAvm;  // (only here for testing - makes sure that we properly clean these up between invocations)
-    private SoftCache<ByteArrayWrapper, LoadedDApp> hotCache;
-    private SoftCache<ByteArrayWrapper, byte[]> transformedCodeCache;
+    private ICache<ByteArrayWrapper, LoadedDApp> hotCache;
+    // Only used if the hot cache holds more than one instance per address:  the generation of the data last cached for each address, since
+    // any other instance of that DApp still in (or checked out of) the cache has older data.
+    private Map<ByteArrayWrapper, Long> latestDataGenerations;
+    private final AtomicLong nextDataGeneration = new AtomicLong();
+    private ICache<ByteArrayWrapper, byte[]> transformedCodeCache;
+    // Parsed jars are keyed by a hash of their code, not by address, so they never become invalid and are shared by all the DApps with that code.
+    private ParsedDAppJarCache parsedJarCache;
+    // Only used if we have a hotContractFile.
+    private HotContractTracker hotContractTracker;
+    private Thread hotContractPrewarmThread;
+    // Only used if storage prefetch is enabled.
+    private StoragePrefetcher storagePrefetcher;
     private HandoffMonitor handoff;
-
-    // Short-lived state which is reset for each batch of transaction request.
-    private AddressResourceMonitor resourceMonitor;
+    // The batches which validate and update the hot cache are sent one at a time, under this lock (see run()).
+    private final Object cacheUpdatingBatchLock = new Object();
+    private HandoffMonitor.Batch previousCacheUpdatingBatch;
 
     // Shared references to the stats structure - created when threads are started (since their stats are also held here).
     private AvmCoreStats stats;
@@ -52,8 +80,22 @@ public class AvmImpl implements AvmInternal {
     private final boolean enableVerboseContractErrors;
     private final boolean enableVerboseConcurrentExecutor;
     private final boolean enableBlockchainPrintln;
+    private final boolean enableUnmodifiedGraphReuse;
+    private final boolean enableLazyGraphLoading;
+    private final boolean enableSpeculativeExecution;
+    private final boolean enableReadOnlyQueries;
+    private final boolean enableBlockReadCache;
+    private final boolean enableStoragePrefetch;
+    private final boolean enableFusedTransformation;
+    private final boolean enableEnergyChargeFolding;
+    private final long hotCacheMaximumBytes;
+    private final int hotCacheInstancesPerAddress;
+    private final long transformedCodeCacheMaximumBytes;
     private final HistogramDataCollector histogramDataCollector;
     private final ContractCaptureTool contractCaptureTool;
+    private final TransformedCodeStore transformedCodeStore;
+    private final File hotContractFile;
+    private final byte[] hotContractFileFingerprint;
     
     // We will put an implementation of AvmExecutorThread.IExecutorThreadHandler inside, instead of implementing it, ourselves, to be clear
     // that this implementation is for the threads created internally, only, and not part of our generaly public interface.
@@ -67,10 +109,32 @@ public class AvmImpl implements AvmInternal {
             throw new IllegalArgumentException("Thread count must be a positive integer");
         }
         this.threadCount = configuration.threadCount;
+        // Cache sizes are either 0 (unbounded) or a positive limit.
+        if ((configuration.hotCacheMaximumBytes < 0L) || (configuration.transformedCodeCacheMaximumBytes < 0L)) {
+            throw new IllegalArgumentException("Cache maximum sizes must be non-negative");
+        }
+        this.hotCacheMaximumBytes = configuration.hotCacheMaximumBytes;
+        if (configuration.hotCacheInstancesPerAddress < 1) {
+            throw new IllegalArgumentException("Hot cache instances per address must be a positive integer");
+        }
+        this.hotCacheInstancesPerAddress = configuration.hotCacheInstancesPerAddress;
+        // Without graph reuse, every call which loads a graph lazily would populate all of it when saving it.
+        if (configuration.enableLazyGraphLoading && !configuration.enableUnmodifiedGraphReuse) {
+            throw new IllegalArgumentException("Lazy graph loading requires unmodified graph reuse");
+        }
+        this.transformedCodeCacheMaximumBytes = configuration.transformedCodeCacheMaximumBytes;
         this.preserveDebuggability = configuration.preserveDebuggability;
         this.enableVerboseContractErrors = configuration.enableVerboseContractErrors;
         this.enableVerboseConcurrentExecutor = configuration.enableVerboseConcurrentExecutor;
         this.enableBlockchainPrintln = configuration.enableBlockchainPrintln;
+        this.enableUnmodifiedGraphReuse = configuration.enableUnmodifiedGraphReuse;
+        this.enableLazyGraphLoading = configuration.enableLazyGraphLoading;
+        this.enableSpeculativeExecution = configuration.enableSpeculativeExecution;
+        this.enableReadOnlyQueries = configuration.enableReadOnlyQueries;
+        this.enableBlockReadCache = configuration.enableBlockReadCache;
+        this.enableStoragePrefetch = configuration.enableStoragePrefetch;
+        this.enableFusedTransformation = configuration.enableFusedTransformation;
+        this.enableEnergyChargeFolding = configuration.enableEnergyChargeFolding;
         this.internalLogger = new InternalLogger(System.err);
         this.histogramDataCollector = (null != configuration.deploymentDataHistorgramOutput)
                 ? new HistogramDataCollector(configuration.deploymentDataHistorgramOutput)
@@ -78,10 +142,32 @@ public class AvmImpl implements AvmInternal {
         this.contractCaptureTool = (null != configuration.contractCaptureDirectory)
                 ? new ContractCaptureTool(configuration.contractCaptureDirectory)
                 : null;
+        // The files we persist between starts are only valid for the code which wrote them:  core, rt (the shadow JDK), and ASM (which
+        // writes the classes).
+        byte[] avmFingerprint = ((null != configuration.transformedCodeStoreDirectory) || (null != configuration.hotContractFile))
+                ? BootstrapSnapshot.fingerprintOfJarsContaining(AvmImpl.class, IInstrumentation.class, ClassWriter.class)
+                : null;
+        if (null != configuration.transformedCodeStoreDirectory) {
+            if (null == avmFingerprint) {
+                throw new IllegalArgumentException("Transformed code store requires the AVM to be running from jars");
+            }
+            this.transformedCodeStore = new TransformedCodeStore(configuration.transformedCodeStoreDirectory, avmFingerprint, this.preserveDebuggability, this.enableFusedTransformation, this.enableEnergyChargeFolding, this.enableVerboseContractErrors);
+        } else {
+            this.transformedCodeStore = null;
+        }
+        if ((null != configuration.hotContractFile) && (null == avmFingerprint)) {
+            throw new IllegalArgumentException("Hot contract file requires the AVM to be running from jars");
+        }
+        this.hotContractFile = configuration.hotContractFile;
+        this.hotContractFileFingerprint = avmFingerprint;
         
         this.executorThreadHandler = new AvmExecutorThread.IExecutorThreadHandler() {
             @Override
             public TransactionTask blockingPollForTransaction(AvmWrappedTransactionResult previousResult, TransactionTask previousTask) {
+                // Nothing may still be prefetching for a batch once all of its results are returned so we stop that before writing back.
+                if ((null != previousTask) && (null != previousTask.getStoragePrefetch())) {
+                    previousTask.getStoragePrefetch().taskFinished();
+                }
                 return AvmImpl.this.handoff.blockingPollForTransaction(previousResult, previousTask);
             }
             @Override
@@ -113,14 +199,35 @@ public class AvmImpl implements AvmInternal {
         if (null != this.contractCaptureTool) {
             this.contractCaptureTool.startup();
         }
+        if (null != this.transformedCodeStore) {
+            this.transformedCodeStore.startup();
+        }
         
         RuntimeAssertionError.assertTrue(null == this.hotCache);
         RuntimeAssertionError.assertTrue(null == this.transformedCodeCache);
-        this.hotCache = new SoftCache<>();
-        this.transformedCodeCache = new SoftCache<>();
-
-        RuntimeAssertionError.assertTrue(null == this.resourceMonitor);
-        this.resourceMonitor = new AddressResourceMonitor();
+        RuntimeAssertionError.assertTrue(null == this.parsedJarCache);
+        this.hotCache = (this.hotCacheMaximumBytes > 0L)
+                ? new BoundedCache<>(this.hotCacheMaximumBytes, LoadedDApp::getEstimatedRetainedBytes, this.hotCacheInstancesPerAddress)
+                : new SoftCache<>(this.hotCacheInstancesPerAddress);
+        this.latestDataGenerations = (this.hotCacheInstancesPerAddress > 1)
+                ? Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, Long> eldest) {
+                        return size() > DATA_GENERATION_ADDRESS_COUNT;
+                    }
+                })
+                : null;
+        this.transformedCodeCache = (this.transformedCodeCacheMaximumBytes > 0L)
+                ? new BoundedCache<>(this.transformedCodeCacheMaximumBytes, (code) -> code.length)
+                : new SoftCache<>();
+        this.parsedJarCache = new ParsedDAppJarCache();
+        if (null != this.hotContractFile) {
+            this.hotContractTracker = new HotContractTracker();
+            startHotContractPrewarm();
+        }
+        if (this.enableStoragePrefetch) {
+            this.storagePrefetcher = new StoragePrefetcher(this.threadCount);
+        }
 
         AvmThreadStats[] threadStats = new AvmThreadStats[this.threadCount];
         Set<Thread> executorThreads = new HashSet<>();
@@ -140,6 +247,22 @@ public class AvmImpl implements AvmInternal {
         this.handoff.startExecutorThreads();
     }
 
+    /**
+     * Sends a batch of transactions to the executor threads, returning without waiting for them to run.
+     *
+     * Batches can be sent from several threads, and be in flight at the same time, but the hot cache is only correct if the blocks which
+     * validate it and update its DApp data run in order.  So an ASSUME_MAINCHAIN, SWITCHING_MAINCHAIN, or MINING batch first waits for
+     * the previous batch of any of those types to finish running and only then validates the cache and sends its tasks.  ASSUME_SIDECHAIN,
+     * ASSUME_DEEP_SIDECHAIN, and ETH_CALL batches don't update the cached data (and only read data loaded before their common mainchain
+     * block) so they are sent immediately and may overlap any other batch.
+     *
+     * @param kernel The state the transactions run against.
+     * @param transactions The transactions to run, in order.
+     * @param executionType How the block of these transactions relates to the mainchain.
+     * @param commonMainchainBlockNumber The last block this block has in common with the mainchain.
+     * @return The result of each transaction, as a future.
+     * @throws IllegalStateException If the AVM has failed in the background.
+     */
     public FutureResult[] run(IExternalState kernel, Transaction[] transactions, ExecutionType executionType, long commonMainchainBlockNumber) throws IllegalStateException {
         long currentBlockNum = kernel.getBlockNumber();
 
@@ -157,31 +280,67 @@ public class AvmImpl implements AvmInternal {
             throw new IllegalArgumentException("commonMainchainBlockNumber must be zero for " + executionType);
         }
 
-        // validate cache based on execution type
-        if (executionType == ExecutionType.ASSUME_MAINCHAIN || executionType == ExecutionType.MINING) {
-            validateCodeCache(currentBlockNum);
-        } else if (executionType == ExecutionType.SWITCHING_MAINCHAIN) {
-            // commonMainchainBlockNumber is the last valid block so anything after that should be removed from the cache
-            validateCodeCache(commonMainchainBlockNumber + 1);
-            purgeDataCache();
+        FutureResult[] results = null;
+        if (executionType == ExecutionType.ASSUME_MAINCHAIN || executionType == ExecutionType.SWITCHING_MAINCHAIN || executionType == ExecutionType.MINING) {
+            synchronized (this.cacheUpdatingBatchLock) {
+                // Wait for the previous cache-updating batch so its tasks can't check in DApps (or their data) around this validation.
+                if (null != this.previousCacheUpdatingBatch) {
+                    this.handoff.blockingWaitForCompletion(this.previousCacheUpdatingBatch);
+                }
+
+                // validate cache based on execution type
+                if (executionType == ExecutionType.ASSUME_MAINCHAIN || executionType == ExecutionType.MINING) {
+                    validateCodeCache(currentBlockNum);
+                } else {
+                    // commonMainchainBlockNumber is the last valid block so anything after that should be removed from the cache
+                    validateCodeCache(commonMainchainBlockNumber + 1);
+                    purgeDataCache();
+                }
+                results = sendBatch(kernel, transactions, executionType, commonMainchainBlockNumber);
+                this.previousCacheUpdatingBatch = results[0].getBatch();
+            }
+        } else {
+            results = sendBatch(kernel, transactions, executionType, commonMainchainBlockNumber);
         }
+        return results;
+    }
 
-        cleanupTransformedCodeCache();
+    private FutureResult[] sendBatch(IExternalState kernel, Transaction[] transactions, ExecutionType executionType, long commonMainchainBlockNumber) {
+        cleanupCodeCaches();
 
         if (null != this.backgroundFatalError) {
             throw this.backgroundFatalError;
         }
-        // Clear the states of resources
-        this.resourceMonitor.clear();
+        // Each batch is its own ordering domain (address resources and commit order) so it can be in flight at the same time as others.
+        // ETH_CALL batches can be run as independent read-only queries, which don't need to lock, order, or commit anything.
+        boolean isReadOnly = this.enableReadOnlyQueries && (executionType == ExecutionType.ETH_CALL);
+        AddressResourceMonitor resourceMonitor = new AddressResourceMonitor(this.enableSpeculativeExecution && !isReadOnly, isReadOnly);
+
+        // The tasks read (and commit) through the block read cache, if enabled, which lives as long as the batch.
+        // Storage prefetch needs that cache since that is what it warms.
+        IExternalState taskKernel = (this.enableBlockReadCache || this.enableStoragePrefetch)
+                ? new BlockReadCachingState(kernel)
+                : kernel;
+
+        // The prefetch is closed by the last task of the batch to finish (see executorThreadHandler).
+        StoragePrefetcher.BatchPrefetch storagePrefetch = (null != this.storagePrefetcher)
+                ? this.storagePrefetcher.prefetch(taskKernel, transactions)
+                : null;
 
         // Create tasks for these new transactions and send them off to be asynchronously executed.
         TransactionTask[] tasks = new TransactionTask[transactions.length];
         for (int i = 0; i < transactions.length; i++){
-            tasks[i] = new TransactionTask(kernel, transactions[i], i, transactions[i].senderAddress, executionType, commonMainchainBlockNumber);
+            tasks[i] = new TransactionTask(taskKernel, transactions[i], i, transactions[i].senderAddress, executionType, commonMainchainBlockNumber, resourceMonitor);
+            if (null != storagePrefetch) {
+                tasks[i].attachStoragePrefetch(storagePrefetch);
+            }
         }
 
-        this.stats.batchesConsumed += 1;
-        this.stats.transactionsConsumed += transactions.length;
+        // Batches can be sent from multiple threads.
+        synchronized (this.stats) {
+            this.stats.batchesConsumed += 1;
+            this.stats.transactionsConsumed += transactions.length;
+        }
         return this.handoff.sendTransactionsAsynchronously(tasks);
     }
 
@@ -197,6 +356,11 @@ public class AvmImpl implements AvmInternal {
         Transaction tx = task.getTransaction();
         RuntimeAssertionError.assertTrue(tx != null);
 
+        AddressResourceMonitor resourceMonitor = task.getResourceMonitor();
+
+        // This must happen before we read anything from the kernel (speculative validation depends on it).
+        resourceMonitor.startTask(task);
+
         // value/energyPrice/energyLimit sanity check
         BigInteger value = tx.value;
         if (value.compareTo(BigInteger.ZERO) < 0) {
@@ -223,8 +387,8 @@ public class AvmImpl implements AvmInternal {
 
         AvmWrappedTransactionResult result = null;
 
-        boolean isSenderAcquired = this.resourceMonitor.acquire(sender.toByteArray(), task);
-        boolean isTargetAcquired = this.resourceMonitor.acquire(target.toByteArray(), task);
+        boolean isSenderAcquired = resourceMonitor.acquire(sender.toByteArray(), task);
+        boolean isTargetAcquired = resourceMonitor.acquire(target.toByteArray(), task);
 
         if (isSenderAcquired && isTargetAcquired) {
             // nonce check
@@ -244,7 +408,7 @@ public class AvmImpl implements AvmInternal {
 
         // Task transactional kernel commits are serialized through address resource monitor
         // This should be done for all transaction result cases, including FAILED_ABORT, because one of the addresses might have been acquired
-        if (!this.resourceMonitor.commitKernelForTask(task, result.isRejected())) {
+        if (!resourceMonitor.commitKernelForTask(task, result.isRejected())) {
             // A transaction task can be aborted even after it has finished.
             result = TransactionResultUtil.newAbortedResultWithZeroEnergyUsed();
         }
@@ -252,6 +416,9 @@ public class AvmImpl implements AvmInternal {
         if (!result.isAborted()){
             result = TransactionResultUtil.setExternalState(result, task.getThisTransactionalKernel());
         }
+        if ((null != this.storagePrefetcher) && result.isSuccess()) {
+            this.storagePrefetcher.recordStorageReads(tx, task.getStorageReads());
+        }
 
         return result;
     }
@@ -271,10 +438,22 @@ public class AvmImpl implements AvmInternal {
             errorDuringShutdown = e;
         }
         this.handoff = null;
+        if (null != this.storagePrefetcher) {
+            this.storagePrefetcher.shutdown();
+            this.storagePrefetcher = null;
+        }
+        if (null != this.hotContractTracker) {
+            // The pre-warm is bounded (and normally long finished) so we just wait for it.
+            waitForHotContractPrewarm();
+            this.hotContractTracker.writeMostExecuted(this.hotContractFile, this.hotContractFileFingerprint, HOT_CONTRACT_COUNT);
+            this.hotContractTracker = null;
+        }
         RuntimeAssertionError.assertTrue(this == AvmImpl.currentAvm);
         AvmImpl.currentAvm = null;
         this.hotCache = null;
+        this.latestDataGenerations = null;
         this.transformedCodeCache = null;
+        this.parsedJarCache = null;
         
         // Note that we don't want to hide the background exception, if one happened, but we do want to complete the shutdown, so we do this at the end.
         if (null != errorDuringShutdown) {
@@ -369,8 +548,11 @@ public class AvmImpl implements AvmInternal {
         parentKernel.refundAccount(senderAddress, refund);
 
         // Transfer fees to miner
-        if (task.executionType == ExecutionType.MINING) {
-            if (this.resourceMonitor.acquire(parentKernel.getMinerAddress().toByteArray(), task)) {
+        if (task.isSpeculative()) {
+            // This is applied when the task commits so that tasks don't conflict on the miner's balance.
+            task.setDeferredMinerFee(BigInteger.valueOf(result.energyUsed()).multiply(BigInteger.valueOf(energyPrice)));
+        } else if (task.executionType == ExecutionType.MINING) {
+            if (task.getResourceMonitor().acquire(parentKernel.getMinerAddress().toByteArray(), task)) {
                 parentKernel.adjustBalance(parentKernel.getMinerAddress(), BigInteger.valueOf(result.energyUsed()).multiply(BigInteger.valueOf(energyPrice)));
             } else {
                 result = TransactionResultUtil.newAbortedResultWithZeroEnergyUsed();
@@ -437,7 +619,7 @@ public class AvmImpl implements AvmInternal {
                         }
                     }
                 }
-                result = DAppCreator.create(this.capabilities, thisTransactionKernel, this, task, senderAddress, recipient, effectiveTransactionOrigin, transactionData, transactionHash, energyLimit, energyPrice, transactionValue, result, this.preserveDebuggability, this.enableVerboseContractErrors, this.enableBlockchainPrintln);
+                result = DAppCreator.create(this.capabilities, thisTransactionKernel, this, task, senderAddress, recipient, effectiveTransactionOrigin, transactionData, transactionHash, energyLimit, energyPrice, transactionValue, result, this.preserveDebuggability, this.enableFusedTransformation, this.enableEnergyChargeFolding, this.enableVerboseContractErrors, this.enableBlockchainPrintln);
             } else {
                 result = TransactionResultUtil.setNonRevertedFailureAndEnergyUsed(result, AvmInternalError.FAILED_NON_DEFAULT_ACCOUNT, energyLimit);
             }
@@ -454,7 +636,7 @@ public class AvmImpl implements AvmInternal {
                 // Account for this reentrant code use in stats.
                 AvmExecutorThread.currentThread().stats.cache_code_reentrant += 1;
                 // Call directly and don't interact with DApp cache (we are reentering the state, not the origin of it).
-                result = DAppExecutor.call(this.capabilities, thisTransactionKernel, this, dapp, stateToResume, task, senderAddress, recipient, effectiveTransactionOrigin, transactionData, transactionHash, energyLimit, energyPrice, transactionValue, result, this.enableVerboseContractErrors, true, this.enableBlockchainPrintln);
+                result = DAppExecutor.call(this.capabilities, thisTransactionKernel, this, dapp, stateToResume, task, senderAddress, recipient, effectiveTransactionOrigin, transactionData, transactionHash, energyLimit, energyPrice, transactionValue, result, this.enableVerboseContractErrors, true, this.enableBlockchainPrintln, this.enableUnmodifiedGraphReuse, this.enableLazyGraphLoading);
             } else {
                 long currentBlockNumber = thisTransactionKernel.getBlockNumber();
 
@@ -483,20 +665,27 @@ public class AvmImpl implements AvmInternal {
                     dappInHotCache = this.hotCache.checkout(addressWrapper);
                     if(transformedCode == null){
                         cachedTransformedCode = this.transformedCodeCache.checkout(addressWrapper);
+                        AvmThreadStats stats = AvmExecutorThread.currentThread().stats;
+                        if (null != cachedTransformedCode) {
+                            stats.cache_transformedCode_hit += 1;
+                        } else {
+                            stats.cache_transformedCode_miss += 1;
+                        }
                     }
                 }
 
                 if (task.executionType == ExecutionType.ASSUME_MAINCHAIN || task.executionType == ExecutionType.SWITCHING_MAINCHAIN) {
                     // cache has been validated for these two types before getting here
                     writeToCacheEnabled = true;
-                    readFromDataCacheEnabled = dappInHotCache != null && dappInHotCache.hasValidCachedData(currentBlockNumber);
-                    updateDataCache = true;
+                    // Speculative tasks might not commit so they can't update (or rely on) the cached data.
+                    readFromDataCacheEnabled = !this.enableSpeculativeExecution && dappInHotCache != null && hasLatestCachedData(addressWrapper, dappInHotCache, currentBlockNumber);
+                    updateDataCache = !this.enableSpeculativeExecution;
                 } else if (task.executionType == ExecutionType.ASSUME_SIDECHAIN || task.executionType == ExecutionType.ETH_CALL) {
                     if (dappInHotCache != null) {
                         // Check if the code is valid at this height. The last valid block for code cache is the CommonMainchainBlockNumber
                         if (!dappInHotCache.hasValidCachedCode(task.commonMainchainBlockNumber + 1)) {
                             // if we cannot use the cache, put the dapp back and work with the database
-                            this.hotCache.checkin(addressWrapper, dappInHotCache);
+                            checkinLoadedDApp(addressWrapper, dappInHotCache);
                             writeToCacheEnabled = false;
                             dappInHotCache = null;
                         } else {
@@ -508,7 +697,7 @@ public class AvmImpl implements AvmInternal {
                         // if the dapp could not be found in the cache, do not write to the cache
                         writeToCacheEnabled = false;
                     }
-                    readFromDataCacheEnabled = dappInHotCache != null && dappInHotCache.hasValidCachedData(task.commonMainchainBlockNumber + 1);
+                    readFromDataCacheEnabled = dappInHotCache != null && hasLatestCachedData(addressWrapper, dappInHotCache, task.commonMainchainBlockNumber + 1);
                     updateDataCache = false;
                 } else if (task.executionType == ExecutionType.ASSUME_DEEP_SIDECHAIN) {
                     writeToCacheEnabled = false;
@@ -528,7 +717,7 @@ public class AvmImpl implements AvmInternal {
                     if (code != null) {
                         // if the transformed code was not in the cache, re-transform the code
                         if (cachedTransformedCode == null) {
-                            transformedCode = CodeReTransformer.transformCode(code, thisTransactionKernel.getBlockTimestamp(), this.preserveDebuggability, this.enableVerboseContractErrors);
+                            transformedCode = retransformCode(code, thisTransactionKernel.getBlockTimestamp());
                             if (transformedCode == null) {
                                 // re-transformation failed. This dApp is no longer supported in the new version of AVM.
                                 result = TransactionResultUtil.setNonRevertedFailureAndEnergyUsed(result, AvmInternalError.FAILED_RETRANSFORMATION, energyLimit);
@@ -552,7 +741,7 @@ public class AvmImpl implements AvmInternal {
                             // Write the transformed code back to the cache (regardless of the transaction result), if it was there to begin with.
                             // Mining and eth_call blocks should not change the state of the transformed code cache.
                             if (cachedTransformedCode != null) {
-                                this.transformedCodeCache.checkin(addressWrapper, cachedTransformedCode);
+                                checkinTransformedCode(addressWrapper, cachedTransformedCode);
                             }
                         }
                     }
@@ -563,7 +752,7 @@ public class AvmImpl implements AvmInternal {
                 if (null == dapp) {
                     // If we didn't find it there, just load it.
                     try {
-                        dapp = DAppLoader.loadFromGraph(transformedCode, this.preserveDebuggability);
+                        dapp = DAppLoader.loadFromGraph(transformedCode, this.preserveDebuggability, this.parsedJarCache);
 
                         // If the dapp is freshly loaded, we set the block num
                         if (null != dapp){
@@ -578,13 +767,16 @@ public class AvmImpl implements AvmInternal {
                 if (null != dapp) {
                     // Do the stats accounting on whether we are using the cache (reentrant path handled above).
                     AvmThreadStats stats = AvmExecutorThread.currentThread().stats;
+                    if ((null != this.hotContractTracker) && (null != transformedCode)) {
+                        this.hotContractTracker.recordExecution(recipient, transformedCode);
+                    }
                     if (null != dappInHotCache) {
                         stats.cache_code_hit += 1;
                     } else {
                         stats.cache_code_miss += 1;
                     }
                     // Run the transaction.
-                    result = DAppExecutor.call(this.capabilities, thisTransactionKernel, this, dapp, stateToResume, task, senderAddress, recipient, effectiveTransactionOrigin, transactionData, transactionHash, energyLimit, energyPrice, transactionValue, result, this.enableVerboseContractErrors, readFromDataCacheEnabled, this.enableBlockchainPrintln);
+                    result = DAppExecutor.call(this.capabilities, thisTransactionKernel, this, dapp, stateToResume, task, senderAddress, recipient, effectiveTransactionOrigin, transactionData, transactionHash, energyLimit, energyPrice, transactionValue, result, this.enableVerboseContractErrors, readFromDataCacheEnabled, this.enableBlockchainPrintln, this.enableUnmodifiedGraphReuse, this.enableLazyGraphLoading);
 
                     if (writeToCacheEnabled) {
                         // Update the data cache only if
@@ -592,19 +784,18 @@ public class AvmImpl implements AvmInternal {
                         // the execution type was ASSUME_MAINCHAIN or SWITCHING_MAINCHAIN,
                         // and it was not an internal transaction
                         if (result.isSuccess() && updateDataCache && isExternalTransaction) {
-                            dapp.updateLoadedBlockForSuccessfulTransaction(currentBlockNumber);
-                            this.hotCache.checkin(addressWrapper, dapp);
+                            checkinLoadedDAppWithData(addressWrapper, dapp, currentBlockNumber);
                         } else {
                             // Update the code cache for ASSUME_SIDECHAIN, ETH_CALL, MINING cases, and internal transactions
                             dapp.clearDataState();
-                            this.hotCache.checkin(addressWrapper, dapp);
+                            checkinLoadedDApp(addressWrapper, dapp);
                         }
                     }
                     // Only add the transformed code to the cache if the transaction has failed and thisTransactionKernel.getTransformedCode(recipient) = null.
                     // This means the transformed code was either successfully retrieved from the cache or the consensus code was successfully re-transformed.
                     // This is only done for ASSUME_MAINCHAIN, SWITCHING_MAINCHAIN, and ASSUME_SIDECHAIN
                     if (!result.isSuccess() && writeToTransformedCodeCache) {
-                        this.transformedCodeCache.checkin(addressWrapper, transformedCode);
+                        checkinTransformedCode(addressWrapper, transformedCode);
                     }
                 }
             }
@@ -620,39 +811,133 @@ public class AvmImpl implements AvmInternal {
     }
 
     @Override
-    public AddressResourceMonitor getResourceMonitor() {
+    public AddressResourceMonitor getResourceMonitor(TransactionTask task) {
         if (null != this.backgroundFatalError) {
             throw this.backgroundFatalError;
         }
-        return resourceMonitor;
+        return task.getResourceMonitor();
+    }
+
+    private byte[] retransformCode(byte[] code, long blockTimestamp) {
+        // Consult the persistent store, first, if we have one (this is content-addressed so it is shared by all addresses with this code).
+        byte[] transformedCode = null;
+        if (null != this.transformedCodeStore) {
+            transformedCode = this.transformedCodeStore.load(code, blockTimestamp);
+            AvmThreadStats stats = AvmExecutorThread.currentThread().stats;
+            if (null != transformedCode) {
+                stats.cache_transformedCodeStore_hit += 1;
+            } else {
+                stats.cache_transformedCodeStore_miss += 1;
+            }
+        }
+        if (null == transformedCode) {
+            transformedCode = CodeReTransformer.transformCode(code, blockTimestamp, this.preserveDebuggability, this.enableFusedTransformation, this.enableEnergyChargeFolding, this.enableVerboseContractErrors);
+            // Note that we don't store failures since those are rare and we want to re-attempt them on a new AVM version.
+            if ((null != transformedCode) && (null != this.transformedCodeStore)) {
+                this.transformedCodeStore.store(code, transformedCode);
+            }
+        }
+        return transformedCode;
+    }
+
+    private void checkinLoadedDApp(ByteArrayWrapper addressWrapper, LoadedDApp dapp) {
+        // Speculative tasks, or tasks in different in-flight batches, can use the same address concurrently so someone else may have
+        // already checked in a copy.
+        int evicted = this.hotCache.checkinIfAbsent(addressWrapper, dapp);
+        AvmExecutorThread.currentThread().stats.cache_code_evicted += evicted;
+    }
+
+    private void startHotContractPrewarm() {
+        List<byte[]> hotCode = HotContractTracker.readTransformedCode(this.hotContractFile, this.hotContractFileFingerprint);
+        if (!hotCode.isEmpty()) {
+            // Note that we can only parse the jars:  the hot cache needs the block where a DApp was loaded and the DApp's data, neither of
+            // which we have until the first batch, and the classes are defined per LoadedDApp, so there is nothing else we could share.
+            ParsedDAppJarCache cache = this.parsedJarCache;
+            this.hotContractPrewarmThread = new Thread(() -> {
+                for (byte[] transformedCode : hotCode) {
+                    ByteArrayWrapper key = ParsedDAppJarCache.keyForCode(transformedCode);
+                    if (null == cache.get(key)) {
+                        try {
+                            ImmortalDappModule module = ImmortalDappModule.readFromJar(transformedCode);
+                            if (null != module) {
+                                cache.put(key, ParsedDAppJar.fromImmortalModule(module));
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            // This is only an optimization so we just skip any code we can't parse (it will be loaded normally, when called).
+                        }
+                    }
+                }
+            }, "AVM Hot Contract Prewarm");
+            this.hotContractPrewarmThread.setDaemon(true);
+            this.hotContractPrewarmThread.start();
+        }
+    }
+
+    /**
+     * Waits for the DApps in the hotContractFile to be prepared (returns immediately if there is no such work).
+     * NOTE:  Only called by shutdown and tests.
+     */
+    void waitForHotContractPrewarm() {
+        if (null != this.hotContractPrewarmThread) {
+            try {
+                this.hotContractPrewarmThread.join();
+            } catch (InterruptedException e) {
+                // We don't use interruption.
+                throw RuntimeAssertionError.unexpected(e);
+            }
+            this.hotContractPrewarmThread = null;
+        }
+    }
+
+    private void checkinLoadedDAppWithData(ByteArrayWrapper addressWrapper, LoadedDApp dapp, long currentBlockNumber) {
+        // If the cache can hold other instances of this DApp, their cached data is now stale:  we don't touch them (they may be checked out)
+        // but give this data a new generation, so hasLatestCachedData() only accepts this instance.
+        long generation = 0L;
+        if (null != this.latestDataGenerations) {
+            generation = this.nextDataGeneration.incrementAndGet();
+            this.latestDataGenerations.put(addressWrapper, generation);
+        }
+        dapp.updateLoadedBlockForSuccessfulTransaction(currentBlockNumber, generation);
+        checkinLoadedDApp(addressWrapper, dapp);
+    }
+
+    private boolean hasLatestCachedData(ByteArrayWrapper addressWrapper, LoadedDApp dapp, long blockNum) {
+        boolean isLatest = true;
+        if (null != this.latestDataGenerations) {
+            Long latest = this.latestDataGenerations.get(addressWrapper);
+            isLatest = (null != latest) && (latest == dapp.getDataGeneration());
+        }
+        return isLatest && dapp.hasValidCachedData(blockNum);
+    }
+
+    private void checkinTransformedCode(ByteArrayWrapper addressWrapper, byte[] transformedCode) {
+        // (see checkinLoadedDApp)
+        int evicted = this.transformedCodeCache.checkinIfAbsent(addressWrapper, transformedCode);
+        AvmExecutorThread.currentThread().stats.cache_transformedCode_evicted += evicted;
     }
 
     private void validateCodeCache(long blockNum){
         // getLoadedDataBlockNum will always be either equal or less than getLoadedCodeBlockNum
-        Predicate<SoftReference<LoadedDApp>> condition = (v) -> {
-            LoadedDApp dapp = v.get();
-            // remove the map entry if the soft reference has been cleared and the referent is null, or dapp has been loaded after blockNum
-            return dapp == null || dapp.getLoadedCodeBlockNum() >= blockNum;
+        // (the cache also removes any entries which have been cleared by the GC)
+        Predicate<LoadedDApp> condition = (dapp) -> {
+            // remove the map entry if dapp has been loaded after blockNum
+            return dapp.getLoadedCodeBlockNum() >= blockNum;
         };
         this.hotCache.removeValueIf(condition);
     }
 
     private void purgeDataCache(){
-        Consumer<SoftReference<LoadedDApp>> softReferenceConsumer = (value) -> {
-            LoadedDApp dapp = value.get();
-            if(dapp != null){
-                dapp.clearDataState();
-            }
+        Consumer<LoadedDApp> dappConsumer = (dapp) -> {
+            dapp.clearDataState();
         };
-        this.hotCache.apply(softReferenceConsumer);
+        this.hotCache.apply(dappConsumer);
     }
 
-    private void cleanupTransformedCodeCache() {
-        Predicate<SoftReference<byte[]>> condition = (v) -> {
-            // remove the map entry if the soft reference has been cleared and the referent is null
-            return v.get() == null;
-        };
+    private void cleanupCodeCaches() {
+        // Nothing in these caches is invalid based on its value, but this will remove the map entries which have been cleared by the GC.
+        Predicate<byte[]> condition = (v) -> false;
         this.transformedCodeCache.removeValueIf(condition);
+        this.parsedJarCache.removeCleared();
     }
 
     /**
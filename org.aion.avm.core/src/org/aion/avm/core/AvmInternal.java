@@ -45,9 +45,10 @@ public interface AvmInternal {
     );
 
     /**
-     * Get the address resource monitor using by the current AVM.
+     * Get the address resource monitor used by the batch of the given task.
      *
+     * @param task The current transaction task.
      * @return The address resource monitor.
      */
-    AddressResourceMonitor getResourceMonitor();
+    AddressResourceMonitor getResourceMonitor(TransactionTask task);
 }
\ No newline at end of file
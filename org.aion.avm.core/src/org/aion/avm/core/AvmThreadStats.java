@@ -26,6 +26,10 @@ public class AvmThreadStats {
     public int concurrentResource_waited;
     public int concurrentResource_aborted;
 
+    // The number of speculatively-executed tasks which validated and committed and the number which conflicted (each conflict is re-executed).
+    public int speculative_committed;
+    public int speculative_conflicts;
+
     // We track min/max/avg of serialized graph size, which requires that we store the running total and running count.
     // (note that the graph is limited to 500k but the running total could be large - long should be sufficient since this is just for stats).
     public int serializedGraph_count;
@@ -33,6 +37,15 @@ public class AvmThreadStats {
     public int serializedGraph_max;
     public long serializedGraph_sum;
     public long serializedGraph_avgNanos;
+    // The number of those graphs which were re-used, since nothing in them was written, instead of being serialized.
+    public int serializedGraph_reused;
+    // The number of graphs at the end of read-only queries which were discarded without being serialized (since nothing in them was written).
+    public int serializedGraph_discarded;
+    // The buffers used for serializing graphs (saves and reentrant captures) are pooled per-thread, so we track how often that
+    // pool needed to allocate and how much we copied out of those buffers into the final graphs.
+    public int serializationBuffer_allocated;
+    public int serializationBuffer_reused;
+    public long serializationBuffer_bytesCopied;
 
     // Record our AVM-internal cache usage (note that these are counted for all transactions, not specifically sync or other explicit uses).
     public int cache_code_hit;
@@ -43,6 +56,21 @@ public class AvmThreadStats {
     public int cache_data_miss;
     // (a special-case where we wanted to use the data cache but couldn't due to it being a reentrant call).
     public int cache_data_reentrant;
+    // The number of DApps evicted from the hot cache to make room for the one being checked in (only possible if the cache is bounded).
+    public int cache_code_evicted;
+    // The same hit/miss/eviction accounting for the transformed code cache (only consulted when re-transformed code isn't in the kernel).
+    public int cache_transformedCode_hit;
+    public int cache_transformedCode_miss;
+    public int cache_transformedCode_evicted;
+    // Hits/misses on the persistent store of re-transformed code (only consulted on a transformed code cache miss, if configured).
+    public int cache_transformedCodeStore_hit;
+    public int cache_transformedCodeStore_miss;
+    // Hits/misses on the cache of parsed DApp jars (consulted whenever a DApp is loaded from the code storage, instead of the hot cache).
+    public int cache_parsedJar_hit;
+    public int cache_parsedJar_miss;
+    // Hits/misses on the block-scoped cache of what the transactions of a batch read from the kernel (only used if enabled).
+    public int cache_blockRead_hit;
+    public int cache_blockRead_miss;
 
     /**
      * updates the transformation count, max and average transformation times
@@ -99,16 +127,33 @@ public class AvmThreadStats {
         this.concurrentResource_acquired = 0;
         this.concurrentResource_waited = 0;
         this.concurrentResource_aborted = 0;
+        this.speculative_committed = 0;
+        this.speculative_conflicts = 0;
         this.serializedGraph_count = 0;
         this.serializedGraph_min = Integer.MAX_VALUE;
         this.serializedGraph_max = 0;
         this.serializedGraph_sum = 0L;
         this.serializedGraph_avgNanos = 0L;
+        this.serializedGraph_reused = 0;
+        this.serializedGraph_discarded = 0;
+        this.serializationBuffer_allocated = 0;
+        this.serializationBuffer_reused = 0;
+        this.serializationBuffer_bytesCopied = 0L;
         this.cache_code_hit = 0;
         this.cache_code_miss = 0;
         this.cache_code_reentrant = 0;
         this.cache_data_hit = 0;
         this.cache_data_miss = 0;
         this.cache_data_reentrant = 0;
+        this.cache_code_evicted = 0;
+        this.cache_transformedCode_hit = 0;
+        this.cache_transformedCode_miss = 0;
+        this.cache_transformedCode_evicted = 0;
+        this.cache_transformedCodeStore_hit = 0;
+        this.cache_transformedCodeStore_miss = 0;
+        this.cache_parsedJar_hit = 0;
+        this.cache_parsedJar_miss = 0;
+        this.cache_blockRead_hit = 0;
+        this.cache_blockRead_miss = 0;
     }
 }
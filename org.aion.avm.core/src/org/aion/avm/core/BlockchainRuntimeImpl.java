@@ -213,6 +213,7 @@ public class BlockchainRuntimeImpl implements IBlockchainRuntime {
         require(key.getUnderlying().length == 32, "Key must be 32 bytes");
 
         byte[] data = this.externalState.getStorage(this.transactionDestination, key.getUnderlying());
+        this.task.recordStorageRead(this.transactionDestination, key.getUnderlying());
         return (null != data)
             ? new ByteArray(Arrays.copyOf(data, data.length))
             : null;
@@ -224,7 +225,7 @@ public class BlockchainRuntimeImpl implements IBlockchainRuntime {
 
         // Acquire resource before reading
         // Returned result of acquire is not checked, since an abort exception will be thrown by IInstrumentation during chargeEnergy if the task has been aborted
-        avm.getResourceMonitor().acquire(address.toByteArray(), this.task);
+        avm.getResourceMonitor(this.task).acquire(address.toByteArray(), this.task);
         return new s.java.math.BigInteger(this.externalState.getBalance(new AionAddress(address.toByteArray())));
     }
 
@@ -233,7 +234,7 @@ public class BlockchainRuntimeImpl implements IBlockchainRuntime {
         // This method can be called inside clinit so CREATE is a valid context.
         // Acquire resource before reading
         // Returned result of acquire is not checked, since an abort exception will be thrown by IInstrumentation during chargeEnergy if the task has been aborted
-        avm.getResourceMonitor().acquire(this.transactionDestination.toByteArray(), this.task);
+        avm.getResourceMonitor(this.task).acquire(this.transactionDestination.toByteArray(), this.task);
         return new s.java.math.BigInteger(this.externalState.getBalance(this.transactionDestination));
     }
 
@@ -243,7 +244,7 @@ public class BlockchainRuntimeImpl implements IBlockchainRuntime {
 
         // Acquire resource before reading
         // Returned result of acquire is not checked, since an abort exception will be thrown by IInstrumentation during chargeEnergy if the task has been aborted
-        avm.getResourceMonitor().acquire(address.toByteArray(), this.task);
+        avm.getResourceMonitor(this.task).acquire(address.toByteArray(), this.task);
         byte[] vc = this.externalState.getCode(new AionAddress(address.toByteArray()));
         return vc == null ? 0 : vc.length;
     }
@@ -371,7 +372,7 @@ public class BlockchainRuntimeImpl implements IBlockchainRuntime {
 
         // Acquire beneficiary address, the address of current contract is already locked at this stage.
         // Returned result of acquire is not checked, since an abort exception will be thrown by IInstrumentation during chargeEnergy if the task has been aborted
-        this.avm.getResourceMonitor().acquire(beneficiary.toByteArray(), this.task);
+        this.avm.getResourceMonitor(this.task).acquire(beneficiary.toByteArray(), this.task);
 
         // Value transfer
         java.math.BigInteger balanceToTransfer = this.externalState.getBalance(this.transactionDestination);
@@ -548,7 +549,7 @@ public class BlockchainRuntimeImpl implements IBlockchainRuntime {
         // Acquire the target of the internal transaction
         // Note that we calculate the target, in the case of a create, only to acquire the resource lock and then discard it (will be logically recreated later when required).
         AionAddress destination = (isCreate) ? this.capabilities.generateContractAddress(senderAddress, nonce) : normalCallTarget;
-        boolean isAcquired = avm.getResourceMonitor().acquire(destination.toByteArray(), task);
+        boolean isAcquired = avm.getResourceMonitor(this.task).acquire(destination.toByteArray(), task);
 
         // execute the internal transaction
         AvmWrappedTransactionResult newResult = null;
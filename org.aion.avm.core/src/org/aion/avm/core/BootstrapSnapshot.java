@@ -0,0 +1,197 @@
+package org.aion.avm.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.aion.avm.core.types.ClassInformation;
+import org.aion.avm.core.util.ChecksummedFile;
+
+
+/**
+ * The parts of the NodeEnvironment bootstrap which are expensive to compute but only depend on the AVM's own code:  the generated shadow
+ * JDK, the runtime object sizes, the shadow method descriptors, and the class information the JCL and API class hierarchy is built from.
+ * These can be written to a file and read back on the next start, instead of being computed again (see NodeEnvironment).
+ *
+ * The file is a ChecksummedFile containing a format version, the fingerprint of the code which computed it, and then the data.  A file
+ * which is truncated, corrupted, of another version, or which was written by different code is ignored (and replaced).
+ */
+final class BootstrapSnapshot {
+    private static final int FILE_VERSION = 1;
+    private static final int FINGERPRINT_LENGTH = 32;
+
+    public final Map<String, byte[]> generatedShadowJDK;
+    public final Map<String, Integer> runtimeObjectSizes;
+    public final Map<String, List<String>> shadowMethodDescriptors;
+    public final List<ClassInformation> jclAndApiClassInfos;
+
+    public BootstrapSnapshot(Map<String, byte[]> generatedShadowJDK, Map<String, Integer> runtimeObjectSizes, Map<String, List<String>> shadowMethodDescriptors, List<ClassInformation> jclAndApiClassInfos) {
+        this.generatedShadowJDK = generatedShadowJDK;
+        this.runtimeObjectSizes = runtimeObjectSizes;
+        this.shadowMethodDescriptors = shadowMethodDescriptors;
+        this.jclAndApiClassInfos = jclAndApiClassInfos;
+    }
+
+    /**
+     * Computes the fingerprint of the code which the snapshot is derived from:  the hash of each jar containing one of the given classes.
+     *
+     * @param classes Classes from each of the jars the snapshot depends on.
+     * @return The fingerprint, or null if any of the classes wasn't loaded from a jar (in which case we can't tell when it changes).
+     */
+    public static byte[] fingerprintOfJarsContaining(Class<?>... classes) {
+        byte[] fingerprint = null;
+        try {
+            MessageDigest digest = ChecksummedFile.newDigest();
+            boolean allFromJars = true;
+            for (Class<?> clazz : classes) {
+                CodeSource source = clazz.getProtectionDomain().getCodeSource();
+                File jar = ((null != source) && (null != source.getLocation())) ? new File(source.getLocation().toURI()) : null;
+                if ((null == jar) || !jar.isFile()) {
+                    allFromJars = false;
+                    break;
+                }
+                digest.update(Files.readAllBytes(jar.toPath()));
+            }
+            fingerprint = allFromJars ? digest.digest() : null;
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            // We just won't use a snapshot if we can't identify the code.
+            fingerprint = null;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Reads a snapshot written by write().
+     *
+     * @param file The file to read.
+     * @param fingerprint The fingerprint of the currently running code.
+     * @return The snapshot, or null if the file is missing, invalid, or was written by different code.
+     */
+    public static BootstrapSnapshot readIfValid(File file, byte[] fingerprint) {
+        BootstrapSnapshot snapshot = null;
+        try {
+            byte[] contents = ChecksummedFile.read(file);
+            if (null != contents) {
+                DataInputStream stream = new DataInputStream(new ByteArrayInputStream(contents));
+                if (FILE_VERSION == stream.readInt()) {
+                    byte[] writtenFingerprint = new byte[FINGERPRINT_LENGTH];
+                    stream.readFully(writtenFingerprint);
+                    if (Arrays.equals(fingerprint, writtenFingerprint)) {
+                        snapshot = readSnapshot(stream);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // We treat read failures as a missing file.
+            snapshot = null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Writes the snapshot to the given file, replacing it.  Failures to write are ignored since the file is only an optimization.
+     *
+     * @param file The file to write.
+     * @param fingerprint The fingerprint of the currently running code.
+     */
+    public void write(File file, byte[] fingerprint) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream stream = new DataOutputStream(bytes);
+            stream.writeInt(FILE_VERSION);
+            stream.write(fingerprint);
+
+            stream.writeInt(this.generatedShadowJDK.size());
+            for (Map.Entry<String, byte[]> entry : this.generatedShadowJDK.entrySet()) {
+                stream.writeUTF(entry.getKey());
+                stream.writeInt(entry.getValue().length);
+                stream.write(entry.getValue());
+            }
+            stream.writeInt(this.runtimeObjectSizes.size());
+            for (Map.Entry<String, Integer> entry : this.runtimeObjectSizes.entrySet()) {
+                stream.writeUTF(entry.getKey());
+                stream.writeInt(entry.getValue());
+            }
+            stream.writeInt(this.shadowMethodDescriptors.size());
+            for (Map.Entry<String, List<String>> entry : this.shadowMethodDescriptors.entrySet()) {
+                stream.writeUTF(entry.getKey());
+                writeStrings(stream, entry.getValue());
+            }
+            stream.writeInt(this.jclAndApiClassInfos.size());
+            for (ClassInformation info : this.jclAndApiClassInfos) {
+                // These are all post-rename, as built by ClassInformationFactory.fromPostRenameJar().
+                stream.writeBoolean(info.isInterface);
+                stream.writeUTF(info.dotName);
+                stream.writeBoolean(null != info.superClassDotName);
+                if (null != info.superClassDotName) {
+                    stream.writeUTF(info.superClassDotName);
+                }
+                writeStrings(stream, Arrays.asList(info.getInterfaces()));
+            }
+            stream.flush();
+            ChecksummedFile.write(file, bytes.toByteArray());
+        } catch (IOException e) {
+            // The file is only an optimization so we just drop this write.
+        }
+    }
+
+    private static BootstrapSnapshot readSnapshot(DataInputStream stream) throws IOException {
+        int classCount = stream.readInt();
+        Map<String, byte[]> generatedShadowJDK = new HashMap<>();
+        for (int i = 0; i < classCount; ++i) {
+            String name = stream.readUTF();
+            byte[] bytecode = new byte[stream.readInt()];
+            stream.readFully(bytecode);
+            generatedShadowJDK.put(name, bytecode);
+        }
+        int sizeCount = stream.readInt();
+        Map<String, Integer> runtimeObjectSizes = new HashMap<>();
+        for (int i = 0; i < sizeCount; ++i) {
+            runtimeObjectSizes.put(stream.readUTF(), stream.readInt());
+        }
+        int descriptorCount = stream.readInt();
+        Map<String, List<String>> shadowMethodDescriptors = new HashMap<>();
+        for (int i = 0; i < descriptorCount; ++i) {
+            shadowMethodDescriptors.put(stream.readUTF(), readStrings(stream));
+        }
+        int infoCount = stream.readInt();
+        List<ClassInformation> jclAndApiClassInfos = new ArrayList<>();
+        for (int i = 0; i < infoCount; ++i) {
+            boolean isInterface = stream.readBoolean();
+            String dotName = stream.readUTF();
+            String superClassDotName = stream.readBoolean() ? stream.readUTF() : null;
+            String[] interfaces = readStrings(stream).toArray(new String[0]);
+            jclAndApiClassInfos.add(ClassInformation.postRenameInfoFor(isInterface, dotName, superClassDotName, interfaces));
+        }
+        return new BootstrapSnapshot(generatedShadowJDK, runtimeObjectSizes, shadowMethodDescriptors, jclAndApiClassInfos);
+    }
+
+    private static void writeStrings(DataOutputStream stream, List<String> strings) throws IOException {
+        stream.writeInt(strings.size());
+        for (String string : strings) {
+            stream.writeUTF(string);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream stream) throws IOException {
+        int count = stream.readInt();
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            strings.add(stream.readUTF());
+        }
+        return Collections.unmodifiableList(strings);
+    }
+}
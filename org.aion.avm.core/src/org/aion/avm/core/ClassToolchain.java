@@ -3,6 +3,7 @@ package org.aion.avm.core;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -12,25 +13,33 @@ import java.util.Objects;
  * @author Roman Katerinenko
  */
 public final class ClassToolchain {
+    // Exactly one of reader or classNode is the source of the class.
     private final ClassReader reader;
+    private final ClassNode classNode;
     private final ClassWriter writer;
     private final ClassVisitor classVisitor;
     private final int parsingOptions;
 
-    private ClassToolchain(byte[] bytecode, ClassVisitor visitor, ClassWriter writer, int parsingOptions) {
-        this.reader = new ClassReader(bytecode);
+    private ClassToolchain(ClassReader reader, ClassNode classNode, ClassVisitor visitor, ClassWriter writer, int parsingOptions) {
+        this.reader = reader;
+        this.classNode = classNode;
         this.classVisitor = visitor;
         this.writer = writer;
         this.parsingOptions = parsingOptions;
     }
 
     public byte[] runAndGetBytecode() {
-        reader.accept(classVisitor, parsingOptions);
+        if (null != reader) {
+            reader.accept(classVisitor, parsingOptions);
+        } else {
+            classNode.accept(classVisitor);
+        }
         return writer.toByteArray();
     }
 
     public static final class Builder {
         private final byte[] bytecode;
+        private final ClassNode classNode;
         private final List<ToolChainClassVisitor> visitorSequence = new ArrayList<>();
         private final int parsingOptions;
 
@@ -39,9 +48,20 @@ public final class ClassToolchain {
         public Builder(byte[] bytecode, int parsingOptions) {
             Objects.requireNonNull(bytecode);
             this.bytecode = bytecode;
+            this.classNode = null;
             this.parsingOptions = parsingOptions;
         }
 
+        /**
+         * Starts the toolchain from a class which is already in tree form, instead of parsing it from bytecode.
+         */
+        public Builder(ClassNode classNode) {
+            Objects.requireNonNull(classNode);
+            this.bytecode = null;
+            this.classNode = classNode;
+            this.parsingOptions = 0;
+        }
+
         public Builder addNextVisitor(ToolChainClassVisitor visitor) {
             Objects.requireNonNull(visitor);
             visitorSequence.add(visitor);
@@ -54,6 +74,25 @@ public final class ClassToolchain {
             return new Creator();
         }
 
+        /**
+         * Runs the visitors into a tree, instead of a writer, so that a later pass can continue from it without parsing it again.
+         */
+        public ClassNode runAndGetClassNode() {
+            ClassNode result = new ClassNode();
+            ClassVisitor prevVisitor = result;
+            for (int i = visitorSequence.size() - 1; i >= 0; i--) {
+                ToolChainClassVisitor curVisitor = visitorSequence.get(i);
+                curVisitor.setDelegate(prevVisitor);
+                prevVisitor = curVisitor;
+            }
+            if (null != bytecode) {
+                new ClassReader(bytecode).accept(prevVisitor, parsingOptions);
+            } else {
+                classNode.accept(prevVisitor);
+            }
+            return result;
+        }
+
         public final class Creator {
             public ClassToolchain build() {
                 ClassVisitor prevVisitor = writer;
@@ -62,7 +101,8 @@ public final class ClassToolchain {
                     curVisitor.setDelegate(prevVisitor);
                     prevVisitor = curVisitor;
                 }
-                return new ClassToolchain(bytecode, visitorSequence.get(0), writer, parsingOptions);
+                ClassReader reader = (null != bytecode) ? new ClassReader(bytecode) : null;
+                return new ClassToolchain(reader, classNode, visitorSequence.get(0), writer, parsingOptions);
             }
         }
     }
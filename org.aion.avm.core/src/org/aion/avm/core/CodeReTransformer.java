@@ -17,14 +17,14 @@ import java.util.stream.Collectors;
  */
 public class CodeReTransformer {
 
-    public static byte[] transformCode(byte[] code, long blockTimeStamp, boolean preserveDebuggability, boolean verboseErrors) {
+    public static byte[] transformCode(byte[] code, long blockTimeStamp, boolean preserveDebuggability, boolean enableFusedTransformation, boolean enableEnergyChargeFolding, boolean verboseErrors) {
         byte[] transformedCode = null;
         try {
             RawDappModule rawDapp = RawDappModule.readFromJar(code, preserveDebuggability, verboseErrors);
 
             if (canRetransform(rawDapp)) {
                 long transformStartTime = System.nanoTime();
-                Map<String, byte[]> transformedClasses = DAppCreator.transformClasses(rawDapp.classes, rawDapp.classHierarchyForest, rawDapp.classHierarchy, rawDapp.classRenamer, preserveDebuggability);
+                Map<String, byte[]> transformedClasses = DAppCreator.transformClasses(rawDapp.classes, rawDapp.classHierarchyForest, rawDapp.classHierarchy, rawDapp.classRenamer, preserveDebuggability, enableFusedTransformation, enableEnergyChargeFolding);
                 AvmExecutorThread.currentThread().stats.addRetransformationTimeToStats(System.nanoTime() - transformStartTime);
                 Map<String, byte[]> immortalClasses = DAppCreator.stripClinitFromClasses(transformedClasses);
                 ImmortalDappModule immortalDapp = ImmortalDappModule.fromImmortalClasses(immortalClasses, rawDapp.mainClass);
@@ -42,9 +42,14 @@ import org.aion.kernel.*;
 import org.aion.parallel.TransactionTask;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
 
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 
 public class DAppCreator {
@@ -84,11 +89,42 @@ public class DAppCreator {
      * @return the transformed classes and any generated classes (names specified in .-style)
      */
     public static Map<String, byte[]> transformClasses(Map<String, byte[]> inputClasses, Forest<String, ClassInfo> oldPreRenameForest, ClassHierarchy classHierarchy, ClassRenamer classRenamer, boolean preserveDebuggability) {
+        return transformClasses(inputClasses, oldPreRenameForest, classHierarchy, classRenamer, preserveDebuggability, false);
+    }
+
+    /**
+     * The same as {@link #transformClasses(Map, Forest, ClassHierarchy, ClassRenamer, boolean)} but allows the fused pipeline to be
+     * used:  instead of writing each class, with its frames computed, after every pass, the intermediate passes only compute the
+     * maximum stack and locals and the class is kept in tree form for the last pass, so the frames are only computed once.
+     * The result is the same either way.
+     *
+     * @param enableFusedTransformation True if the fused pipeline should be used.
+     */
+    public static Map<String, byte[]> transformClasses(Map<String, byte[]> inputClasses, Forest<String, ClassInfo> oldPreRenameForest, ClassHierarchy classHierarchy, ClassRenamer classRenamer, boolean preserveDebuggability, boolean enableFusedTransformation) {
+        return transformClasses(inputClasses, oldPreRenameForest, classHierarchy, classRenamer, preserveDebuggability, enableFusedTransformation, false);
+    }
+
+    /**
+     * The same as {@link #transformClasses(Map, Forest, ClassHierarchy, ClassRenamer, boolean, boolean)} but allows the energy charges
+     * of straight-line chains of blocks to be folded into one charge (see EnergyChargeFolder).  The code is different but it bills the
+     * same amount and runs out of energy in the same cases.
+     *
+     * @param enableEnergyChargeFolding True if the energy charges should be folded.
+     */
+    public static Map<String, byte[]> transformClasses(Map<String, byte[]> inputClasses, Forest<String, ClassInfo> oldPreRenameForest, ClassHierarchy classHierarchy, ClassRenamer classRenamer, boolean preserveDebuggability, boolean enableFusedTransformation, boolean enableEnergyChargeFolding) {
+        return transformClasses(inputClasses, oldPreRenameForest, classHierarchy, classRenamer, preserveDebuggability, enableFusedTransformation, enableEnergyChargeFolding, true);
+    }
+
+    /**
+     * The same as {@link #transformClasses(Map, Forest, ClassHierarchy, ClassRenamer, boolean, boolean, boolean)} but allows the per-class
+     * passes to be run sequentially, on the calling thread, instead of on the common fork-join pool.  The result is the same either way.
+     */
+    static Map<String, byte[]> transformClasses(Map<String, byte[]> inputClasses, Forest<String, ClassInfo> oldPreRenameForest, ClassHierarchy classHierarchy, ClassRenamer classRenamer, boolean preserveDebuggability, boolean enableFusedTransformation, boolean enableEnergyChargeFolding, boolean inParallel) {
         // Before anything, pass the list of classes through the verifier.
         // (this will throw UncaughtException, on verification failure).
         Verifier.verifyUntrustedClasses(inputClasses);
         // We need to run our rejection filter and static rename pass.
-        Map<String, byte[]> safeClasses = rejectionAndRenameInputClasses(inputClasses, classHierarchy, classRenamer, preserveDebuggability);
+        Map<String, byte[]> safeClasses = rejectionAndRenameInputClasses(inputClasses, classHierarchy, classRenamer, preserveDebuggability, inParallel);
         
         ConstantClassBuilder.ConstantClassInfo constantClass = ConstantClassBuilder.buildConstantClassBytecodeForClasses(PackageConstants.kConstantClassName, safeClasses.values());
         
@@ -107,37 +143,86 @@ public class DAppCreator {
         };
         Map<String, Integer> postRenameObjectSizes = computeAllPostRenameObjectSizes(oldPreRenameForest, preserveDebuggability);
 
-        Map<String, byte[]> transformedClasses = new HashMap<>();
-
         int parsingOptions = preserveDebuggability ? ClassReader.EXPAND_FRAMES : ClassReader.EXPAND_FRAMES | ClassReader.SKIP_DEBUG;
 
-        for (String name : safeClasses.keySet()) {
+        // The classes are transformed independently but the results are always merged in this order, so the output doesn't depend on
+        // which class finishes first.
+        List<String> safeClassNames = new ArrayList<>(safeClasses.keySet());
+        List<TransformedClass> results = transformEachClass(safeClassNames, inParallel, (name) -> {
             // Note that transformClasses requires that the input class names by the .-style names.
             RuntimeAssertionError.assertTrue(-1 == name.indexOf("/"));
 
+            // Each class gets its own sink for the exception wrappers it generates, which are merged into the processed classes, below.
+            TransformedClass result = new TransformedClass();
+            GeneratedClassConsumer classSink = (superClassSlashName, classSlashName, bytecode) -> {
+                // Note that the processed classes are expected to use .-style names.
+                String classDotName = Utilities.internalNameToFulllyQualifiedName(classSlashName);
+                result.generatedClasses.put(classDotName, bytecode);
+            };
+
             // We need to parse with EXPAND_FRAMES, since the StackWatcherClassAdapter uses a MethodNode to parse methods.
             // We also add SKIP_DEBUG since we aren't using debug data and skipping it removes extraneous labels which would otherwise
             // cause the BlockBuildingMethodVisitor to build lots of small blocks instead of a few big ones (each block incurs a Helper
             // static call, which is somewhat expensive - this is how we bill for energy).
+            if (enableFusedTransformation) {
+                // The array analysis needs the correct maximum stack and locals but not the frames, which are dropped since they
+                // no longer describe the code.  The result is kept in tree form for the interface pass.
+                FrameStrippingVisitor frameStripper = new FrameStrippingVisitor();
+                byte[] bytecode = new ClassToolchain.Builder(safeClasses.get(name), parsingOptions)
+                        .addNextVisitor(new ClassMetering(postRenameObjectSizes, enableEnergyChargeFolding))
+                        .addNextVisitor(new ConstantVisitor(PackageConstants.kConstantClassName, constantClass.constantToFieldMap))
+                        .addNextVisitor(new InvokedynamicShadower(PackageConstants.kShadowSlashPrefix))
+                        .addNextVisitor(new ClassShadowing(PackageConstants.kShadowSlashPrefix))
+                        .addNextVisitor(new StackWatcherClassAdapter())
+                        .addNextVisitor(new ExceptionWrapping(classSink, classHierarchy))
+                        .addNextVisitor(new AutomaticGraphVisitor())
+                        .addNextVisitor(new StrictFPVisitor())
+                        .addNextVisitor(frameStripper)
+                        .addWriter(new ClassWriter(ClassWriter.COMPUTE_MAXS))
+                        .build()
+                        .runAndGetBytecode();
+                result.classNode = new ClassToolchain.Builder(bytecode, parsingOptions)
+                        .addNextVisitor(new ArraysRequiringAnalysisClassVisitor(classHierarchy))
+                        .addNextVisitor(new ArraysWithKnownTypesClassVisitor())
+                        .runAndGetClassNode();
+                // The intermediate class was written under an older version (so the writer would compute the maximum stack) so restore it.
+                result.classNode.version = frameStripper.getOriginalVersion();
+                return result;
+            }
             byte[] bytecode = new ClassToolchain.Builder(safeClasses.get(name), parsingOptions)
-                    .addNextVisitor(new ClassMetering(postRenameObjectSizes))
+                    .addNextVisitor(new ClassMetering(postRenameObjectSizes, enableEnergyChargeFolding))
                     .addNextVisitor(new ConstantVisitor(PackageConstants.kConstantClassName, constantClass.constantToFieldMap))
                     .addNextVisitor(new InvokedynamicShadower(PackageConstants.kShadowSlashPrefix))
                     .addNextVisitor(new ClassShadowing(PackageConstants.kShadowSlashPrefix))
                     .addNextVisitor(new StackWatcherClassAdapter())
-                    .addNextVisitor(new ExceptionWrapping(generatedClassesSink, classHierarchy))
+                    .addNextVisitor(new ExceptionWrapping(classSink, classHierarchy))
                     .addNextVisitor(new AutomaticGraphVisitor())
                     .addNextVisitor(new StrictFPVisitor())
                     .addWriter(new TypeAwareClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS, classHierarchy, classRenamer))
                     .build()
                     .runAndGetBytecode();
-            bytecode = new ClassToolchain.Builder(bytecode, parsingOptions)
+            result.bytecode = new ClassToolchain.Builder(bytecode, parsingOptions)
                     .addNextVisitor(new ArraysRequiringAnalysisClassVisitor(classHierarchy))
                     .addNextVisitor(new ArraysWithKnownTypesClassVisitor())
                     .addWriter(new TypeAwareClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS, classHierarchy, classRenamer))
                     .build()
                     .runAndGetBytecode();
-            transformedClasses.put(name, bytecode);
+            return result;
+        });
+
+        Map<String, byte[]> transformedClasses = new HashMap<>();
+        Map<String, ClassNode> transformedClassNodes = new HashMap<>();
+        for (int i = 0; i < safeClassNames.size(); ++i) {
+            TransformedClass result = results.get(i);
+            processedClasses.putAll(result.generatedClasses);
+            if (enableFusedTransformation) {
+                transformedClassNodes.put(safeClassNames.get(i), result.classNode);
+            } else {
+                transformedClasses.put(safeClassNames.get(i), result.bytecode);
+            }
+        }
+        if (enableFusedTransformation) {
+            return finishFusedTransformation(transformedClassNodes, processedClasses, generatedClassesSink, classHierarchy, classRenamer, parsingOptions, inParallel);
         }
 
         /*
@@ -150,23 +235,96 @@ public class DAppCreator {
         String javaLangObjectSlashName = PackageConstants.kShadowSlashPrefix + "java/lang/Object";
         for (String name : transformedClasses.keySet()) {
             // This visitor does not modify the byte code of transformedClasses. It only generates a new class containing fields and clinit for each interface.
+            // (this pass is cheap, since it doesn't write anything, and builds the shared mapping so it stays on the calling thread)
             new ClassReader(transformedClasses.get(name))
                     .accept(new InterfaceFieldClassGeneratorVisitor(generatedClassesSink, interfaceFieldClassNames, javaLangObjectSlashName), parsingOptions);
         }
 
-        for (String name : transformedClasses.keySet()) {
-            byte[] bytecode = new ClassToolchain.Builder(transformedClasses.get(name), parsingOptions)
+        List<String> transformedClassNames = new ArrayList<>(transformedClasses.keySet());
+        List<byte[]> mappedClasses = transformEachClass(transformedClassNames, inParallel, (name) ->
+                new ClassToolchain.Builder(transformedClasses.get(name), parsingOptions)
                     .addNextVisitor(new InterfaceFieldNameMappingVisitor(interfaceFieldClassNames))
                     .addWriter(new TypeAwareClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS, classHierarchy, classRenamer))
                     .build()
-                    .runAndGetBytecode();
+                    .runAndGetBytecode()
+        );
+        for (int i = 0; i < transformedClassNames.size(); ++i) {
+            processedClasses.put(transformedClassNames.get(i), mappedClasses.get(i));
+        }
+
+        return processedClasses;
+    }
+
+    private static Map<String, byte[]> finishFusedTransformation(Map<String, ClassNode> transformedClassNodes, Map<String, byte[]> processedClasses, GeneratedClassConsumer generatedClassesSink, ClassHierarchy classHierarchy, ClassRenamer classRenamer, int parsingOptions, boolean inParallel) {
+        // This is the same interface pass as the one in transformClasses, except that it starts from the tree of each class.
+        Map<String, String> interfaceFieldClassNames = new HashMap<>();
 
-            processedClasses.put(name, bytecode);
+        String javaLangObjectSlashName = PackageConstants.kShadowSlashPrefix + "java/lang/Object";
+        for (String name : transformedClassNodes.keySet()) {
+            ClassNode classNode = transformedClassNodes.get(name);
+            // Nothing is generated for anything but an interface.
+            if (Opcodes.ACC_INTERFACE == (classNode.access & Opcodes.ACC_INTERFACE)) {
+                // The clinit is copied into the generated class, as is, so it needs its frames (interfaces are rare, so this is cheap).
+                ClassWriter writer = new TypeAwareClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS, classHierarchy, classRenamer);
+                classNode.accept(writer);
+                new ClassReader(writer.toByteArray())
+                        .accept(new InterfaceFieldClassGeneratorVisitor(generatedClassesSink, interfaceFieldClassNames, javaLangObjectSlashName), parsingOptions);
+            }
+        }
+
+        List<String> transformedClassNames = new ArrayList<>(transformedClassNodes.keySet());
+        List<byte[]> mappedClasses = transformEachClass(transformedClassNames, inParallel, (name) ->
+                new ClassToolchain.Builder(transformedClassNodes.get(name))
+                    .addNextVisitor(new InterfaceFieldNameMappingVisitor(interfaceFieldClassNames))
+                    .addWriter(new TypeAwareClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS, classHierarchy, classRenamer))
+                    .build()
+                    .runAndGetBytecode()
+        );
+        for (int i = 0; i < transformedClassNames.size(); ++i) {
+            processedClasses.put(transformedClassNames.get(i), mappedClasses.get(i));
         }
 
         return processedClasses;
     }
 
+    /**
+     * Applies the given transformation to each of the named classes, returning the results in the same order as the names.
+     * When run in parallel, the classes are spread across the common fork-join pool (the calling thread also helps).  This is safe
+     * since each class is transformed independently:  the class hierarchy and other shared inputs are only read, at this point.
+     *
+     * If any transformations fail, the failure of the first of those classes, in the given order, is thrown, so the failure is the
+     * same as if they had been run sequentially.
+     */
+    private static <T> List<T> transformEachClass(List<String> classNames, boolean inParallel, Function<String, T> transformation) {
+        int count = classNames.size();
+        // Each index is only set by one thread and set() doesn't change the structure of the list, so this is safe to share.
+        List<T> results = new ArrayList<>(Collections.nCopies(count, null));
+        Throwable[] failures = new Throwable[count];
+        IntStream indices = IntStream.range(0, count);
+        // There is no point in paying for the hand-off when there is only one class.
+        if (inParallel && (count > 1)) {
+            indices = indices.parallel();
+        }
+        indices.forEach((i) -> {
+            try {
+                results.set(i, transformation.apply(classNames.get(i)));
+            } catch (Throwable t) {
+                failures[i] = t;
+            }
+        });
+
+        for (Throwable failure : failures) {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (null != failure) {
+                throw RuntimeAssertionError.unexpected(failure);
+            }
+        }
+        return results;
+    }
+
     public static AvmWrappedTransactionResult create(IExternalCapabilities capabilities
             , IExternalState externalState
             , AvmInternal avm
@@ -181,6 +339,8 @@ public class DAppCreator {
             , BigInteger transactionValue
             , AvmWrappedTransactionResult internalResult
             , boolean preserveDebuggability
+            , boolean enableFusedTransformation
+            , boolean enableEnergyChargeFolding
             , boolean verboseErrors
             , boolean enableBlockchainPrintln
     ) {
@@ -217,7 +377,7 @@ public class DAppCreator {
 
             // transform
             long transformStartTime = System.nanoTime();
-            Map<String, byte[]> transformedClasses = transformClasses(rawDapp.classes, dappClassesForest, rawDapp.classHierarchy, rawDapp.classRenamer, preserveDebuggability);
+            Map<String, byte[]> transformedClasses = transformClasses(rawDapp.classes, dappClassesForest, rawDapp.classHierarchy, rawDapp.classRenamer, preserveDebuggability, enableFusedTransformation, enableEnergyChargeFolding);
             AvmExecutorThread.currentThread().stats.addTransformationTimeToStats(System.nanoTime() - transformStartTime);
             TransformedDappModule transformedDapp = TransformedDappModule.fromTransformedClasses(transformedClasses, rawDapp.mainClass);
 
@@ -339,11 +499,18 @@ public class DAppCreator {
         return immortalClasses;
     }
 
-    private static Map<String, byte[]> rejectionAndRenameInputClasses(Map<String, byte[]> inputClasses, ClassHierarchy classHierarchy, ClassRenamer classRenamer, boolean preserveDebuggability) {
+    private static final class TransformedClass {
+        // The classes generated while transforming this one, in the order they were generated (.-style names).
+        private final Map<String, byte[]> generatedClasses = new LinkedHashMap<>();
+        private byte[] bytecode;
+        // Only used by the fused pipeline, instead of the bytecode.
+        private ClassNode classNode;
+    }
+
+    private static Map<String, byte[]> rejectionAndRenameInputClasses(Map<String, byte[]> inputClasses, ClassHierarchy classHierarchy, ClassRenamer classRenamer, boolean preserveDebuggability, boolean inParallel) {
         // By this point, we at least know that the classHierarchy is internally consistent.
         // This also means we can safely count instance variables to make sure we haven't reached our limit.
         InstanceVariableCountManager manager = new InstanceVariableCountManager();
-        Map<String, byte[]> safeClasses = new HashMap<>();
 
         Set<String> preRenameUserClassAndInterfaceSet = classHierarchy.getPreRenameUserDefinedClassesAndInterfaces();
         Set<String> preRenameUserDefinedClasses = classHierarchy.getPreRenameUserDefinedClassesOnly(classRenamer);
@@ -351,7 +518,10 @@ public class DAppCreator {
         PreRenameClassAccessRules preRenameClassAccessRules = new PreRenameClassAccessRules(preRenameUserDefinedClasses, preRenameUserClassAndInterfaceSet);
         NamespaceMapper namespaceMapper = new NamespaceMapper(preRenameClassAccessRules);
         
-        for (String name : inputClasses.keySet()) {
+        // Each class is checked and renamed independently, with its own instance variable counts, and the results are merged in this order.
+        List<String> inputClassNames = new ArrayList<>(inputClasses.keySet());
+        Map<String, InstanceVariableCountManager> classCounts = new ConcurrentHashMap<>();
+        List<byte[]> renamedClasses = transformEachClass(inputClassNames, inParallel, (name) -> {
             // Note that transformClasses requires that the input class names by the .-style names.
             RuntimeAssertionError.assertTrue(-1 == name.indexOf("/"));
 
@@ -387,7 +557,8 @@ public class DAppCreator {
                 }
                 
                 // Now, proceed with the ASM pipeline for high-level rejection and renaming.
-                InstanceVariableCountingVisitor variableCounter = new InstanceVariableCountingVisitor(manager);
+                InstanceVariableCountManager classCount = new InstanceVariableCountManager();
+                InstanceVariableCountingVisitor variableCounter = new InstanceVariableCountingVisitor(classCount);
                 byte[] bytecode = new ClassToolchain.Builder(classBytecode, parsingOptions)
                     .addNextVisitor(new RejectionClassVisitor(preRenameClassAccessRules, namespaceMapper, preserveDebuggability))
                     .addNextVisitor(new LoopingExceptionStrippingVisitor())
@@ -396,11 +567,19 @@ public class DAppCreator {
                     .addWriter(new TypeAwareClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS, classHierarchy, classRenamer))
                     .build()
                     .runAndGetBytecode();
-                String mappedName = DebugNameResolver.getUserPackageDotPrefix(name, preserveDebuggability);
-                safeClasses.put(mappedName, bytecode);
+                classCounts.put(name, classCount);
+                return bytecode;
             } catch (Exception e) {
                 throw new RejectedClassException(e.getMessage());
             }
+        });
+
+        Map<String, byte[]> safeClasses = new HashMap<>();
+        for (int i = 0; i < inputClassNames.size(); ++i) {
+            String name = inputClassNames.get(i);
+            manager.addCounts(classCounts.get(name));
+            String mappedName = DebugNameResolver.getUserPackageDotPrefix(name, preserveDebuggability);
+            safeClasses.put(mappedName, renamedClasses.get(i));
         }
         // Before we return, make sure we didn't exceed the instance variable limits (will throw RejectedClassException on failure).
         manager.verifyAllCounts();
@@ -435,7 +614,7 @@ public class DAppCreator {
 
             // Save back the state before we return.
             long startNanos = System.nanoTime();
-            byte[] rawGraphData = dapp.saveEntireGraph(threadInstrumentation.peekNextHashCode(), StorageFees.MAX_GRAPH_SIZE);
+            byte[] rawGraphData = dapp.saveEntireGraph(AvmExecutorThread.currentThread().serializationBuffers, threadInstrumentation.peekNextHashCode(), StorageFees.MAX_GRAPH_SIZE);
             long endNanos = System.nanoTime();
             // Bill for writing this size.
             threadInstrumentation.chargeEnergy(StorageFees.WRITE_PRICE_PER_BYTE * rawGraphData.length);
@@ -6,6 +6,7 @@ import org.aion.avm.RuntimeMethodFeeSchedule;
 import org.aion.avm.StorageFees;
 import org.aion.avm.core.persistence.LoadedDApp;
 import org.aion.avm.core.persistence.ReentrantGraph;
+import org.aion.avm.core.persistence.SerializationBufferPool;
 import org.aion.avm.core.util.Helpers;
 import org.aion.avm.core.util.TransactionResultUtil;
 import org.aion.kernel.AvmWrappedTransactionResult;
@@ -39,13 +40,15 @@ public class DAppExecutor {
                             , long energyLimit
                             , long energyPrice
                             , BigInteger transactionValue
-                            , AvmWrappedTransactionResult internalResult, boolean verboseErrors, boolean readFromCache, boolean enableBlockchainPrintln) {
+                            , AvmWrappedTransactionResult internalResult, boolean verboseErrors, boolean readFromCache, boolean enableBlockchainPrintln, boolean enableUnmodifiedGraphReuse, boolean enableLazyGraphLoading) {
         AvmWrappedTransactionResult result = internalResult;
+        // All graph serialization in this call uses this thread's pooled buffers.
+        SerializationBufferPool bufferPool = AvmExecutorThread.currentThread().serializationBuffers;
         
         // If this is a reentrant call, we need to serialize the graph of the parent frame.  This is required to both copy-back our changes but also
         // is required in case we want to revert the state.
         ReentrantGraph callerState = (null != stateToResume)
-                ? dapp.captureStateAsCaller(stateToResume.getNextHashCode(), StorageFees.MAX_GRAPH_SIZE)
+                ? dapp.captureStateAsCaller(bufferPool, stateToResume.getNextHashCode(), StorageFees.MAX_GRAPH_SIZE)
                 : null;
         
         // Note that the instrumentation is just a per-thread access to the state stack - we can grab it at any time as it never changes for this thread.
@@ -78,7 +81,15 @@ public class DAppExecutor {
             byte[] rawGraphData = (null != callerState)
                     ? callerState.rawState
                     : externalState.getObjectGraph(dappAddress);
-            nextHashCode = dapp.loadEntireGraph(initialClassWrappers, rawGraphData);
+            // Only the top-level load can be lazy since a reentrant load must be fully populated for the copy-back into the caller.
+            // It also needs the DApp to report graph writes since, otherwise, saving the graph would populate every instance anyway.
+            nextHashCode = (enableLazyGraphLoading && (null == callerState) && dapp.tracksGraphWrites())
+                    ? dapp.loadEntireGraphLazily(initialClassWrappers, rawGraphData)
+                    : dapp.loadEntireGraph(initialClassWrappers, rawGraphData);
+            if (null == callerState) {
+                // This is now the persisted state of the DApp, in case we can re-use it when saving.
+                dapp.rememberPersistedGraph(rawGraphData);
+            }
             rawGraphDataLength = rawGraphData.length;
             stats.cache_data_miss += 1;
         }
@@ -121,18 +132,39 @@ public class DAppExecutor {
             // Save back the state before we return.
             if (null != stateToResume) {
                 int updatedNextHashCode = threadInstrumentation.peekNextHashCode();
-                ReentrantGraph calleeState = dapp.captureStateAsCallee(updatedNextHashCode, StorageFees.MAX_GRAPH_SIZE);
+                ReentrantGraph calleeState = dapp.captureStateAsCallee(bufferPool, updatedNextHashCode, StorageFees.MAX_GRAPH_SIZE);
                 // Bill for writing this size.
                 threadInstrumentation.chargeEnergy(StorageFees.WRITE_PRICE_PER_BYTE * calleeState.rawState.length);
                 // Now, commit this back into the callerState.
                 dapp.commitReentrantChanges(initialClassWrappers, callerState, calleeState);
                 // Update the final hash code.
                 stateToResume.updateNextHashCode(updatedNextHashCode);
+            } else if (task.isReadOnly() && (0 == task.getTransactionStackDepth())) {
+                // This is the end of a read-only query so the graph is discarded instead of stored.  We still need to bill for its size but,
+                // if nothing in it was written, that is the size of the graph we loaded so we don't need to serialize it.
+                int newHashCode = threadInstrumentation.peekNextHashCode();
+                int postCallGraphSize = threadInstrumentation.isGraphModified()
+                        ? -1
+                        : dapp.getUnmodifiedGraphSize(StorageFees.MAX_GRAPH_SIZE);
+                if (-1 != postCallGraphSize) {
+                    stats.serializedGraph_discarded += 1;
+                } else {
+                    postCallGraphSize = dapp.saveEntireGraph(bufferPool, newHashCode, StorageFees.MAX_GRAPH_SIZE).length;
+                }
+                threadInstrumentation.chargeEnergy(StorageFees.WRITE_PRICE_PER_BYTE * postCallGraphSize);
             } else {
                 // We are at the "top" so write this back to disk.
                 int newHashCode = threadInstrumentation.peekNextHashCode();
                 long startNanos = System.nanoTime();
-                byte[] postCallGraphData = dapp.saveEntireGraph(newHashCode, StorageFees.MAX_GRAPH_SIZE);
+                // If nothing in the graph was written, we can re-use what we loaded instead of serializing it (the result is the same).
+                byte[] postCallGraphData = (enableUnmodifiedGraphReuse && !threadInstrumentation.isGraphModified())
+                        ? dapp.reuseUnmodifiedGraph(newHashCode, StorageFees.MAX_GRAPH_SIZE)
+                        : null;
+                if (null != postCallGraphData) {
+                    stats.serializedGraph_reused += 1;
+                } else {
+                    postCallGraphData = dapp.saveEntireGraph(bufferPool, newHashCode, StorageFees.MAX_GRAPH_SIZE);
+                }
                 long endNanos = System.nanoTime();
                 // Bill for writing this size.
                 threadInstrumentation.chargeEnergy(StorageFees.WRITE_PRICE_PER_BYTE * postCallGraphData.length);
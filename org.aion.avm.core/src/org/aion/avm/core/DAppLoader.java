@@ -8,6 +8,7 @@ import org.aion.avm.core.classloading.AvmClassLoader;
 import org.aion.avm.core.persistence.LoadedDApp;
 import org.aion.avm.core.types.ImmortalDappModule;
 import org.aion.avm.core.types.TransformedDappModule;
+import org.aion.avm.core.util.ByteArrayWrapper;
 import org.aion.avm.core.util.Helpers;
 import i.PackageConstants;
 
@@ -26,27 +27,59 @@ public class DAppLoader {
      * @throws IOException If there was a failure decoding the code from the kernel.
      */
     public static LoadedDApp loadFromGraph(byte[] immortalDappJar, boolean preserveDebuggability) throws IOException {
+        return loadFromGraph(immortalDappJar, preserveDebuggability, null);
+    }
+
+    /**
+     * Called to load an immortal DApp from the code storage provided by the kernel, re-using the parsed jar of this code from the given
+     * cache, if it has one (and adding it, if not).
+     * 
+     * @param immortalDappJar The contract jar.
+     * @param parsedJarCache The cache of parsed DApp jars (can be null, in which case the jar is always read).
+     * @return The DApp instance, or NULL if not exist
+     * @throws IOException If there was a failure decoding the code from the kernel.
+     */
+    public static LoadedDApp loadFromGraph(byte[] immortalDappJar, boolean preserveDebuggability, ParsedDAppJarCache parsedJarCache) throws IOException {
         // normal account or account with no code?
         if (immortalDappJar == null || immortalDappJar.length == 0) {
             return null;
         }
 
-        // parse the code
-        ImmortalDappModule app = ImmortalDappModule.readFromJar(immortalDappJar);
-        
-        // We now need all the classes which will loaded within the class loader for this DApp (includes Helper and userlib classes we add).
-        Map<String, byte[]> allClasses = Helpers.mapIncludingHelperBytecode(app.classes, Helpers.loadDefaultHelperBytecode());
-        
+        ParsedDAppJar parsedJar = null;
+        if (null != parsedJarCache) {
+            ByteArrayWrapper key = ParsedDAppJarCache.keyForCode(immortalDappJar);
+            parsedJar = parsedJarCache.get(key);
+            if (null != parsedJar) {
+                AvmExecutorThread.currentThread().stats.cache_parsedJar_hit += 1;
+            } else {
+                AvmExecutorThread.currentThread().stats.cache_parsedJar_miss += 1;
+                parsedJar = ParsedDAppJar.fromImmortalModule(ImmortalDappModule.readFromJar(immortalDappJar));
+                parsedJarCache.put(key, parsedJar);
+            }
+        } else {
+            parsedJar = ParsedDAppJar.fromImmortalModule(ImmortalDappModule.readFromJar(immortalDappJar));
+        }
+        return instantiate(parsedJar, preserveDebuggability);
+    }
+
+    /**
+     * Creates a new DApp instance, with its own class loader (and, hence, its own statics), from the given parsed jar.
+     * Note that this still defines every class in the new class loader:  only the jar parsing is saved by the cache.
+     * 
+     * @param parsedJar The parsed jar of the DApp.
+     * @return The new DApp instance.
+     */
+    public static LoadedDApp instantiate(ParsedDAppJar parsedJar, boolean preserveDebuggability) {
         // Construct the per-contract class loader.
-        AvmClassLoader classLoader = NodeEnvironment.singleton.createInvocationClassLoader(allClasses);
+        AvmClassLoader classLoader = NodeEnvironment.singleton.createInvocationClassLoader(parsedJar.allClasses);
         
         // Load all the user-defined classes (these are required for both loading and storing state).
         // (we do this in alphabetical order since the persistence model needs consistent read/write order).
-        List<Class<?>> aphabeticalContractClasses = Helpers.getAlphabeticalUserTransformedDappClasses(classLoader, app.classes.keySet());
+        List<Class<?>> aphabeticalContractClasses = Helpers.getAlphabeticalUserTransformedDappClasses(classLoader, parsedJar.alphabeticalUserClassNames);
 
         // We now have all the information to describe the LoadedDApp.
         SplitClasses splitClasses = SplitClasses.splitAllSavedClasses(aphabeticalContractClasses);
-        return new LoadedDApp(classLoader, splitClasses.sortedUserClasses, splitClasses.constantClass, app.mainClass, preserveDebuggability);
+        return new LoadedDApp(classLoader, splitClasses.sortedUserClasses, splitClasses.constantClass, parsedJar.mainClass, preserveDebuggability, parsedJar.tracksGraphWrites);
     }
 
     /**
@@ -57,7 +90,7 @@ public class DAppLoader {
      */
     public static LoadedDApp fromTransformed(TransformedDappModule app, boolean preserveDebuggability) {
         // We now need all the classes which will loaded within the class loader for this DApp (includes Helper and userlib classes we add).
-        Map<String, byte[]> allClasses = Helpers.mapIncludingHelperBytecode(app.classes, Helpers.loadDefaultHelperBytecode());
+        Map<String, byte[]> allClasses = NodeEnvironment.singleton.mapIncludingRuntimeHelperBytecode(app.classes);
         
         // Construct the per-contract class loader.
         AvmClassLoader classLoader = NodeEnvironment.singleton.createInvocationClassLoader(allClasses);
@@ -68,7 +101,8 @@ public class DAppLoader {
 
         // We now have all the information to describe the LoadedDApp.
         SplitClasses splitClasses = SplitClasses.splitAllSavedClasses(aphabeticalContractClasses);
-        return new LoadedDApp(classLoader, splitClasses.sortedUserClasses, splitClasses.constantClass, app.mainClass, preserveDebuggability);
+        // We just transformed this, so it reports writes to its graph.
+        return new LoadedDApp(classLoader, splitClasses.sortedUserClasses, splitClasses.constantClass, app.mainClass, preserveDebuggability, true);
     }
 
 
@@ -18,14 +18,23 @@ import org.aion.types.TransactionResult;
  */
 public final class FutureResult {
     private final HandoffMonitor handoffMonitor;
+    private final HandoffMonitor.Batch batch;
     private final int index;
     private AvmWrappedTransactionResult cachedResult;
 
-    public FutureResult(HandoffMonitor handoffMonitor, int index) {
+    public FutureResult(HandoffMonitor handoffMonitor, HandoffMonitor.Batch batch, int index) {
         this.handoffMonitor = handoffMonitor;
+        this.batch = batch;
         this.index = index;
     }
 
+    /**
+     * @return The batch this result belongs to (for waiting on the whole batch with HandoffMonitor.blockingWaitForCompletion()).
+     */
+    HandoffMonitor.Batch getBatch() {
+        return this.batch;
+    }
+
     /**
      * Returns a transaction result, blocking if no result is ready to be consumed yet.
      *
@@ -33,7 +42,7 @@ public final class FutureResult {
      */
     public TransactionResult getResult() {
         if (null == this.cachedResult) {
-            this.cachedResult = this.handoffMonitor.blockingConsumeResult(this.index);
+            this.cachedResult = this.handoffMonitor.blockingConsumeResult(this.batch, this.index);
         }
         return this.cachedResult.unwrap();
     }
@@ -46,7 +55,7 @@ public final class FutureResult {
      */
     public IExternalState getExternalState() {
         if (null == this.cachedResult) {
-            this.cachedResult = this.handoffMonitor.blockingConsumeResult(this.index);
+            this.cachedResult = this.handoffMonitor.blockingConsumeResult(this.batch, this.index);
         }
         return this.cachedResult.externalState;
     }
@@ -63,7 +72,7 @@ public final class FutureResult {
      */
     public Throwable getException() {
         if (null == this.cachedResult) {
-            this.cachedResult = this.handoffMonitor.blockingConsumeResult(this.index);
+            this.cachedResult = this.handoffMonitor.blockingConsumeResult(this.batch, this.index);
         }
         return this.cachedResult.exception;
     }
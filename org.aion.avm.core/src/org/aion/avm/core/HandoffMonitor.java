@@ -6,74 +6,77 @@ import org.aion.kernel.AvmWrappedTransactionResult;
 import org.aion.kernel.SideEffects;
 import org.aion.parallel.TransactionTask;
 
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
 
 /**
- * Used by the AvmImpl to manage communication between its internal execution thread and the external calling thread.
+ * Used by the AvmImpl to manage communication between its internal execution threads and the external calling threads.
  * This just provides monitor-protected blocking input/output variables, exception handling, and a safe way to shutdown.
  * Note that once an instance of this has been shutdown, it can't be started back up.
  * 
- * NOTE:  This currently assumes only one external thread is interacting with it at any given time.  This means that
- * attempting to send transactions from multiple threads or shutdown with one thread while running a transaction on another
- * would result in undefined behaviour.
+ * Any number of batches can be in flight at once (for example, a block import, a mining template, and ETH_CALL queries), possibly sent
+ * from different external threads.  Each batch has its own result array and its tasks are handed out after those of the batches sent
+ * before it, so the executor threads pick up the next batch as soon as they run out of work in the previous one.
+ * Which execution types can safely overlap is decided by the caller (see AvmImpl.run()), which can wait for a batch to finish with
+ * blockingWaitForCompletion().
+ * 
+ * NOTE:  Shutting down with one thread while consuming results on another would result in undefined behaviour.
  */
 public class HandoffMonitor {
     private Set<Thread> internalThreads;
-    private TransactionTask[] incomingTransactionTasks;
 
     private Queue<TransactionTask> taskQueue;
 
-    private AvmWrappedTransactionResult[] outgoingResults;
+    // The batch of each task which has been sent but whose result hasn't yet been returned (tasks only compare by index so this is by identity).
+    private Map<TransactionTask, Batch> batchesByTask;
+
     private Throwable backgroundThrowable;
-    //private int nextTransactionIndex;
 
     public HandoffMonitor(Set<Thread> threadSet) {
         this.internalThreads = threadSet;
         this.taskQueue = new LinkedList<>();
+        this.batchesByTask = new IdentityHashMap<>();
     }
 
     /**
-     * Called by the external thread.
-     * Called to send new transactions to the internal thread.
+     * Called by an external thread.
+     * Called to send new transactions to the internal threads.  This doesn't wait for any previously sent batches to complete.
      * 
      * @param tasks The tasks for each transaction to run.
      * @return The result of the transactions in the given tasks as a corresponding array of asynchronous futures.
      */
     public synchronized FutureResult[] sendTransactionsAsynchronously(TransactionTask[] tasks) {
-        // We lock-step these, so there can't already be a transaction in the hand-off.
-        RuntimeAssertionError.assertTrue(this.taskQueue.isEmpty());
-        RuntimeAssertionError.assertTrue(null == this.outgoingResults);
         RuntimeAssertionError.assertTrue(tasks.length > 0);
-        // Also, we can't have already been shut down.
+        // We can't have already been shut down.
         if (null == this.internalThreads) {
             throw new IllegalStateException("Thread already stopped");
         }
 
-        this.incomingTransactionTasks = new TransactionTask[tasks.length];
+        Batch batch = new Batch(tasks.length);
 
-        // Enqueue the new tasks and wake up the background thread.
+        // Enqueue the new tasks and wake up the background threads.
         for (int i = 0; i < tasks.length; ++i ) {
-            this.incomingTransactionTasks[i] = tasks[i];
+            batch.incomingTransactionTasks[i] = tasks[i];
+            this.batchesByTask.put(tasks[i], batch);
             this.taskQueue.add(tasks[i]);
         }
-
-        this.outgoingResults = new AvmWrappedTransactionResult[tasks.length];
         this.notifyAll();
         
         // Return the future result, which will do the waiting for us.
         FutureResult[] results = new FutureResult[tasks.length];
         for (int i = 0; i < results.length; ++i ) {
-            results[i] = new FutureResult(this, i);
+            results[i] = new FutureResult(this, batch, i);
         }
         return results;
     }
 
-    public synchronized AvmWrappedTransactionResult blockingConsumeResult(int index) {
+    public synchronized AvmWrappedTransactionResult blockingConsumeResult(Batch batch, int index) {
         // Wait until we have the result or something went wrong.
-        while ((null == this.outgoingResults[index]) && (null == this.backgroundThrowable)) {
+        while ((null == batch.outgoingResults[index]) && (null == this.backgroundThrowable)) {
             // It is an error to request a result while the avm is shut down.
             RuntimeAssertionError.assertTrue(this.internalThreads != null);
 
@@ -90,21 +93,15 @@ public class HandoffMonitor {
         handleThrowable();
         
         // Consume the result and return it.
-        AvmWrappedTransactionResult result = this.outgoingResults[index];
+        AvmWrappedTransactionResult result = batch.outgoingResults[index];
 
         // Merge the logs and internal transactions from the side effects into the result.
-        SideEffects sideEffects = incomingTransactionTasks[index].popSideEffects();
+        SideEffects sideEffects = batch.incomingTransactionTasks[index].popSideEffects();
         result = TransactionResultUtil.addLogsAndInternalTransactions(result, sideEffects.getExecutionLogs(), sideEffects.getInternalTransactions());
 
-        RuntimeAssertionError.assertTrue(incomingTransactionTasks[index].isSideEffectsStackEmpty());
-        this.incomingTransactionTasks[index] = null;
-        this.outgoingResults[index] = null;
-        // If this is the last one in the list, drop it.
-        // (note that this assumes the the results are consumed in-order - this requirement exists in more fundamental parts of the system, though).
-        if ((index + 1) == this.outgoingResults.length) {
-            this.incomingTransactionTasks = null;
-            this.outgoingResults = null;
-        }
+        RuntimeAssertionError.assertTrue(batch.incomingTransactionTasks[index].isSideEffectsStackEmpty());
+        batch.incomingTransactionTasks[index] = null;
+        batch.outgoingResults[index] = null;
         return result;
     }
 
@@ -122,11 +119,13 @@ public class HandoffMonitor {
         
         // First, write-back any results that we have and notify anyone listening for that, on the front.
         if (null != previousResult) {
-            this.outgoingResults[previousTask.getIndex()] = previousResult;
+            Batch batch = this.batchesByTask.remove(previousTask);
+            batch.outgoingResults[previousTask.getIndex()] = previousResult;
+            batch.unfinishedTaskCount -= 1;
         }
         this.notifyAll();
         
-        // This means that we only actually block when the incoming transactions are null (we make it null when we consume the last element and it becomes non-null when new data enqueued).
+        // This means that we only actually block when there are no queued transactions, in any batch.
         while ((null != this.internalThreads) && (this.taskQueue.isEmpty())) {
             try {
                 this.wait();
@@ -139,14 +138,31 @@ public class HandoffMonitor {
         // Unless this was a shutdown request, get the next transaction.
         TransactionTask nextTask = null;
         if (null != this.internalThreads) {
-            // Make sure that we don't already have a response for the transaction we want to hand out.
-            RuntimeAssertionError.assertTrue(null == this.outgoingResults[this.taskQueue.peek().getIndex()]);
-
             nextTask = this.taskQueue.poll();
+            // Make sure that we don't already have a response for the transaction we want to hand out.
+            RuntimeAssertionError.assertTrue(null == this.batchesByTask.get(nextTask).outgoingResults[nextTask.getIndex()]);
         }
         return nextTask;
     }
 
+    /**
+     * Called by an external thread.
+     * Waits until every task of the given batch has finished running (whether or not its result has been consumed), or something went
+     * wrong in the background (which the caller will see when it next sends or consumes anything).
+     * 
+     * @param batch The batch to wait for.
+     */
+    public synchronized void blockingWaitForCompletion(Batch batch) {
+        while ((batch.unfinishedTaskCount > 0) && (null == this.backgroundThrowable) && (null != this.internalThreads)) {
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                // We don't use interruption.
+                RuntimeAssertionError.unexpected(e);
+            }
+        }
+    }
+
     /**
      * Called by the internal thread.
      * This is called if something goes wrong while running the transaction on the internal thread to communicate this problem to the external.
@@ -216,4 +232,22 @@ public class HandoffMonitor {
             }
         }
     }
+
+
+    /**
+     * The tasks and results of one call to sendTransactionsAsynchronously.
+     * Results are consumed independently of any other batch.
+     */
+    public static final class Batch {
+        private final TransactionTask[] incomingTransactionTasks;
+        private final AvmWrappedTransactionResult[] outgoingResults;
+        // (only accessed under the monitor of the HandoffMonitor)
+        private int unfinishedTaskCount;
+
+        private Batch(int size) {
+            this.incomingTransactionTasks = new TransactionTask[size];
+            this.outgoingResults = new AvmWrappedTransactionResult[size];
+            this.unfinishedTaskCount = size;
+        }
+    }
 }
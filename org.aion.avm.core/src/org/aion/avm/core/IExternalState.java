@@ -21,6 +21,18 @@ public interface IExternalState {
      */
     public void commitTo(IExternalState externalState);
 
+    /**
+     * Applies the net effect of the writes made to a child IExternalState, as committed by that child.
+     *
+     * The default implementation applies each write through the other methods of this interface.  An implementation backed by a database
+     * can override this to apply the whole write set as a single write batch.
+     *
+     * @param writeSet The writes to apply.
+     */
+    public default void commitWriteSet(StateWriteSet writeSet) {
+        writeSet.applyTo(this);
+    }
+
     /**
      * Returns a new IExternalState that is a child of this IExternalState.
      *
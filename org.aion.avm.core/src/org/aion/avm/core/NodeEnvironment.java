@@ -6,10 +6,13 @@ import org.aion.avm.core.classloading.AvmSharedClassLoader;
 import org.aion.avm.core.dappreading.LoadedJar;
 import org.aion.avm.core.instrument.JCLAndAPIHeapInstanceSize;
 import org.aion.avm.core.types.*;
+import org.aion.avm.core.util.Helpers;
 import org.aion.avm.core.util.MethodDescriptorCollector;
 import org.aion.avm.utilities.Utilities;
+import org.objectweb.asm.ClassWriter;
 import i.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
@@ -25,12 +28,19 @@ import p.avm.Result;
  * NodeEnvironment - that is, each AvmImpl instance).
  * Note that this is also responsible for any bootstrap initialization of the shared environment.  Specifically, this involves
  * eagerly loading the shadow JDK in order to run their <clinit> methods.
+ * If the BOOTSTRAP_SNAPSHOT_PROPERTY system property names a file, the parts of this bootstrap which only depend on the AVM's own code
+ * are read from that file (see BootstrapSnapshot), when it was written by the same AVM jars, or computed and written to it, otherwise.
  */
 public class NodeEnvironment {
+    // The system property naming the file to read the bootstrap snapshot from, or write it to (no snapshot is used if it isn't set).
+    public static final String BOOTSTRAP_SNAPSHOT_PROPERTY = "org.aion.avm.bootstrapSnapshot";
+
     // NOTE:  This is only temporarily a singleton and will probably see its relationship inverted, in the future:  becoming the Avm factory.
-    public static final NodeEnvironment singleton = new NodeEnvironment();
+    public static final NodeEnvironment singleton = new NodeEnvironment(bootstrapSnapshotFile());
 
     private final AvmSharedClassLoader sharedClassLoader;
+    // The Helper class, already renamed for use in a DApp's class loader (this never changes, so we only rename it once).
+    private final byte[] runtimeHelperBytecode;
     // Note that the constant map is a map of constant hashcodes to constant instances.  This is just provided so that reference deserialization
     // mechanisms can map from this primitive identity into the actual instances.
     private final Map<Integer, s.java.lang.Object> constantMap;
@@ -48,9 +58,22 @@ public class NodeEnvironment {
     // The full class hierarchy; we only ever give away deep copies of this object!
     private ClassHierarchy classHierarchy;
 
-    private NodeEnvironment() {
-        Map<String, byte[]> generatedShadowJDK = CommonGenerators.generateShadowJDK();
+    // (package-private for tests - everything else must use the singleton)
+    NodeEnvironment(File bootstrapSnapshotFile) {
+        // We only use a snapshot when we can tell that it was written by the same code:  core, rt (the shadow JDK), and ASM (which
+        // generates the rest of it).
+        byte[] snapshotFingerprint = (null != bootstrapSnapshotFile)
+                ? BootstrapSnapshot.fingerprintOfJarsContaining(NodeEnvironment.class, IInstrumentation.class, ClassWriter.class)
+                : null;
+        BootstrapSnapshot snapshot = (null != snapshotFingerprint)
+                ? BootstrapSnapshot.readIfValid(bootstrapSnapshotFile, snapshotFingerprint)
+                : null;
+
+        Map<String, byte[]> generatedShadowJDK = (null != snapshot)
+                ? snapshot.generatedShadowJDK
+                : CommonGenerators.generateShadowJDK();
         this.sharedClassLoader = new AvmSharedClassLoader(generatedShadowJDK);
+        this.runtimeHelperBytecode = Helpers.renameHelperBytecode(Helpers.loadDefaultHelperBytecode());
         try {
             this.shadowApiClasses = new Class<?>[] {
                 Address.class,
@@ -173,7 +196,9 @@ public class NodeEnvironment {
         RuntimeAssertionError.assertTrue(this.constantMap.size() == 34);
 
         // create the object size look-up maps
-        Map<String, Integer> rtObjectSizeMap = computeRuntimeObjectSizes();
+        Map<String, Integer> rtObjectSizeMap = (null != snapshot)
+                ? snapshot.runtimeObjectSizes
+                : computeRuntimeObjectSizes();
         // This is to ensure the JCLAndAPIHeapInstanceSize is updated with the correct instance size of a newly added JCL or API class
         RuntimeAssertionError.assertTrue(rtObjectSizeMap.size() == 95);
 
@@ -200,8 +225,25 @@ public class NodeEnvironment {
         this.preRenameRuntimeObjectSizeMap = Collections.unmodifiableMap(preRenameObjectSizes);
         this.postRenameRuntimeObjectSizeMap = Collections.unmodifiableMap(postRenameObjectSizes);
 
-        this.shadowClassSlashNameMethodDescriptorMap = Collections.unmodifiableMap(getShadowClassSlashNameMethodDescriptorMap());
-        this.classHierarchy = buildJCLAndAPIClassHierarchy();
+        Map<String, List<String>> shadowMethodDescriptors = (null != snapshot)
+                ? snapshot.shadowMethodDescriptors
+                : getShadowClassSlashNameMethodDescriptorMap();
+        this.shadowClassSlashNameMethodDescriptorMap = Collections.unmodifiableMap(shadowMethodDescriptors);
+        List<ClassInformation> jclAndApiClassInfos = (null != snapshot)
+                ? snapshot.jclAndApiClassInfos
+                : readJCLAndAPIClassInformation();
+        this.classHierarchy = buildJCLAndAPIClassHierarchy(jclAndApiClassInfos);
+
+        if ((null != snapshotFingerprint) && (null == snapshot)) {
+            new BootstrapSnapshot(generatedShadowJDK, rtObjectSizeMap, shadowMethodDescriptors, jclAndApiClassInfos).write(bootstrapSnapshotFile, snapshotFingerprint);
+        }
+    }
+
+    private static File bootstrapSnapshotFile() {
+        String path = System.getProperty(BOOTSTRAP_SNAPSHOT_PROPERTY);
+        return (null != path)
+                ? new File(path)
+                : null;
     }
 
     // This is an example of the more "factory-like" nature of the NodeEnvironment.
@@ -209,6 +251,17 @@ public class NodeEnvironment {
         return new AvmClassLoader(this.sharedClassLoader, finalContractClasses);
     }
 
+    /**
+     * Constructs the map of all the classes visible to a DApp's class loader:  the given contract classes plus the Helper (using the
+     * bytecode we renamed when starting up) and the other classes we add to each DApp.
+     *
+     * @param contractClasses The transformed contract classes.
+     * @return A new map containing the contract classes and the classes the AVM adds to them.
+     */
+    public Map<String, byte[]> mapIncludingRuntimeHelperBytecode(Map<String, byte[]> contractClasses) {
+        return Helpers.mapIncludingRuntimeHelperBytecode(contractClasses, this.runtimeHelperBytecode);
+    }
+
     public Class<?> loadSharedClass(String name) throws ClassNotFoundException {
         return Class.forName(name, true, this.sharedClassLoader);
     }
@@ -333,6 +386,14 @@ public class NodeEnvironment {
                 throw RuntimeAssertionError.unreachable("Nobody should be calling this");
             }
             @Override
+            public void markGraphModified() {
+                throw RuntimeAssertionError.unreachable("Nobody should be calling this");
+            }
+            @Override
+            public boolean isGraphModified() {
+                throw RuntimeAssertionError.unreachable("Nobody should be calling this");
+            }
+            @Override
             public void enterNewFrame(ClassLoader contractLoader, long energyLeft, int nextHashCode, InternedClasses classWrappers) {
                 throw RuntimeAssertionError.unreachable("Nobody should be calling this");
             }
@@ -404,7 +465,7 @@ public class NodeEnvironment {
         return objectHeapSizeMap;
     }
 
-    private ClassHierarchy buildJCLAndAPIClassHierarchy() {
+    private List<ClassInformation> readJCLAndAPIClassInformation() {
         Map<String, byte[]> classBytesByQualifiedNames = new HashMap<>();
         String mainClassName = "java.lang.Object";
 
@@ -422,12 +483,14 @@ public class NodeEnvironment {
         }
         LoadedJar runtimeJar = new LoadedJar(classBytesByQualifiedNames, mainClassName);
 
-        // Construct the full class hierarchy.
         ClassInformationFactory classInfoFactory = new ClassInformationFactory();
-        Set<ClassInformation> classInfos = classInfoFactory.fromPostRenameJar(runtimeJar);
+        return new ArrayList<>(classInfoFactory.fromPostRenameJar(runtimeJar));
+    }
 
+    private ClassHierarchy buildJCLAndAPIClassHierarchy(List<ClassInformation> classInfos) {
+        // Construct the full class hierarchy.
         return new ClassHierarchyBuilder()
-                .addPostRenameNonUserDefinedClasses(classInfos)
+                .addPostRenameNonUserDefinedClasses(new HashSet<>(classInfos))
                 .build();
     }
 
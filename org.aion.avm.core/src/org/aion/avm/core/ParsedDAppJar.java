@@ -0,0 +1,49 @@
+package org.aion.avm.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.aion.avm.core.types.ImmortalDappModule;
+
+
+/**
+ * A DApp's contract jar, as parsed from the code storage:  the bytecode of its classes (plus the Helper and the other classes we add) and
+ * what we read from its manifest.  This is what the ParsedDAppJarCache holds, so that a DApp can be instantiated again without unzipping
+ * its jar or renaming its Helper.
+ *
+ * Note that this is only a parse cache:  the classes themselves can't be shared since the statics of a DApp live in its Class objects (and
+ * are replaced whenever its graph is loaded), so every LoadedDApp still needs its own class loader to define (and verify) them.
+ */
+public final class ParsedDAppJar {
+    /**
+     * Creates the parsed form of the given DApp, as read from the code storage.
+     *
+     * @param app The module read from the contract jar.
+     * @return The parsed jar of this DApp.
+     */
+    public static ParsedDAppJar fromImmortalModule(ImmortalDappModule app) {
+        Map<String, byte[]> allClasses = NodeEnvironment.singleton.mapIncludingRuntimeHelperBytecode(app.classes);
+        // (the persistence model needs a consistent read/write order, so we keep these in alphabetical order).
+        List<String> userClassNames = new ArrayList<>(app.classes.keySet());
+        Collections.sort(userClassNames);
+        // Code transformed by an older AVM version doesn't report writes to its graph.
+        boolean tracksGraphWrites = (app.transformationVersion >= ImmortalDappModule.GRAPH_WRITE_TRACKING_VERSION);
+        return new ParsedDAppJar(Collections.unmodifiableMap(allClasses), Collections.unmodifiableList(userClassNames), app.mainClass, tracksGraphWrites);
+    }
+
+    // All the classes visible to this DApp's class loader (includes Helper and the other classes we add).
+    public final Map<String, byte[]> allClasses;
+    // The names of the user-defined classes, in alphabetical order.
+    public final List<String> alphabeticalUserClassNames;
+    public final String mainClass;
+    public final boolean tracksGraphWrites;
+
+    private ParsedDAppJar(Map<String, byte[]> allClasses, List<String> alphabeticalUserClassNames, String mainClass, boolean tracksGraphWrites) {
+        this.allClasses = allClasses;
+        this.alphabeticalUserClassNames = alphabeticalUserClassNames;
+        this.mainClass = mainClass;
+        this.tracksGraphWrites = tracksGraphWrites;
+    }
+}
@@ -0,0 +1,73 @@
+package org.aion.avm.core;
+
+import java.lang.ref.SoftReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aion.avm.core.util.ByteArrayWrapper;
+
+import i.RuntimeAssertionError;
+
+
+/**
+ * A concurrent cache of ParsedDAppJar instances, keyed by a hash of the transformed code they were read from, and based on SoftReferences.
+ * Unlike the ICache implementations, lookups don't check anything out:  a parsed jar is immutable so any number of LoadedDApp instances,
+ * on any number of threads, can be built from it at once.  This also means that identical contracts deployed at different addresses share
+ * one parsed jar.
+ */
+public class ParsedDAppJarCache {
+    private final ConcurrentHashMap<ByteArrayWrapper, SoftReference<ParsedDAppJar>> underlyingMap;
+
+    public ParsedDAppJarCache() {
+        this.underlyingMap = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @param transformedCode The transformed code (the contract jar read from the code storage).
+     * @return The key to use for this code in get() and put().
+     */
+    public static ByteArrayWrapper keyForCode(byte[] transformedCode) {
+        try {
+            return new ByteArrayWrapper(MessageDigest.getInstance("SHA-256").digest(transformedCode));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required to be present in every JVM.
+            throw RuntimeAssertionError.unexpected(e);
+        }
+    }
+
+    /**
+     * @param key The key of the transformed code (see keyForCode()).
+     * @return The cached parsed jar or null, if there isn't one (or it has been cleared by the GC).
+     */
+    public ParsedDAppJar get(ByteArrayWrapper key) {
+        SoftReference<ParsedDAppJar> wrapper = this.underlyingMap.get(key);
+        return (null != wrapper)
+                ? wrapper.get()
+                : null;
+    }
+
+    /**
+     * Stores the given parsed jar, replacing any which was there (since they would be equivalent).
+     *
+     * @param key The key of the transformed code (see keyForCode()).
+     * @param parsedJar The parsed jar read from that code.
+     */
+    public void put(ByteArrayWrapper key, ParsedDAppJar parsedJar) {
+        this.underlyingMap.put(key, new SoftReference<>(parsedJar));
+    }
+
+    /**
+     * Removes the map entries whose parsed jars have been cleared by the GC.
+     */
+    public void removeCleared() {
+        this.underlyingMap.values().removeIf((reference) -> (null == reference.get()));
+    }
+
+    /**
+     * Removes all the parsed jars.
+     */
+    public void clear() {
+        this.underlyingMap.clear();
+    }
+}
@@ -0,0 +1,221 @@
+package org.aion.avm.core;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.aion.avm.core.util.ByteArrayWrapper;
+import org.aion.types.AionAddress;
+
+
+/**
+ * The net effect of a sequence of writes to an IExternalState:  the final value of each storage key, code, transformed code, and object
+ * graph, the sum of the balance adjustments, and the number of nonce increments, per account.  Writing the same storage key many times
+ * only leaves its last value, so committing this is one write per changed location, instead of one per write made.
+ *
+ * Deleting or creating an account can't be folded into the writes before it (since it discards them, in the target) so each of these
+ * starts a new AccountWrites for the account, after the ones already recorded.  Applying the AccountWrites in order therefore has the same
+ * effect as applying each of the original writes in order.
+ *
+ * See IExternalState.commitWriteSet(StateWriteSet).
+ */
+public final class StateWriteSet {
+    // In the order they were started (an account only appears more than once if it was deleted or created after being written).
+    private final List<AccountWrites> accountWrites;
+    // The most recent AccountWrites of each account.
+    private final Map<AionAddress, AccountWrites> latestByAddress;
+
+    public StateWriteSet() {
+        this.accountWrites = new ArrayList<>();
+        this.latestByAddress = new HashMap<>();
+    }
+
+    /**
+     * @return The writes to apply, per account, in the order they must be applied.
+     */
+    public List<AccountWrites> getAccountWrites() {
+        return Collections.unmodifiableList(this.accountWrites);
+    }
+
+    public boolean isEmpty() {
+        return this.accountWrites.isEmpty();
+    }
+
+    public void createAccount(AionAddress address) {
+        AccountWrites writes = this.latestByAddress.get(address);
+        if ((null == writes) || writes.hasAnythingAfterDelete()) {
+            writes = startAccountWrites(address);
+        }
+        writes.isCreated = true;
+    }
+
+    public void deleteAccount(AionAddress address) {
+        AccountWrites writes = this.latestByAddress.get(address);
+        if ((null == writes) || writes.hasAnythingAfterDelete()) {
+            writes = startAccountWrites(address);
+        }
+        writes.isDeleted = true;
+    }
+
+    public void putCode(AionAddress address, byte[] code) {
+        writesFor(address).code = code;
+    }
+
+    public void setTransformedCode(AionAddress address, byte[] code) {
+        writesFor(address).transformedCode = code;
+    }
+
+    public void putObjectGraph(AionAddress address, byte[] objectGraph) {
+        writesFor(address).objectGraph = objectGraph;
+    }
+
+    public void putStorage(AionAddress address, byte[] key, byte[] value) {
+        writesFor(address).storage.put(new ByteArrayWrapper(key), value);
+    }
+
+    public void removeStorage(AionAddress address, byte[] key) {
+        writesFor(address).storage.put(new ByteArrayWrapper(key), null);
+    }
+
+    public void adjustBalance(AionAddress address, BigInteger delta) {
+        AccountWrites writes = writesFor(address);
+        // A zero delta is still recorded since the adjustment may lazily create the account, in the target.
+        writes.balanceDelta = (null != writes.balanceDelta)
+                ? writes.balanceDelta.add(delta)
+                : delta;
+    }
+
+    public void incrementNonce(AionAddress address) {
+        writesFor(address).nonceIncrements += 1;
+    }
+
+    /**
+     * Applies these writes to the given target, one call per changed location, in the order described in the class comment.
+     * This is the default implementation of IExternalState.commitWriteSet(StateWriteSet).
+     *
+     * @param target The state to write.
+     */
+    public void applyTo(IExternalState target) {
+        for (AccountWrites writes : this.accountWrites) {
+            AionAddress address = writes.address;
+            if (writes.isDeleted) {
+                target.deleteAccount(address);
+            }
+            if (writes.isCreated) {
+                target.createAccount(address);
+            }
+            if (null != writes.code) {
+                target.putCode(address, writes.code);
+            }
+            if (null != writes.transformedCode) {
+                target.setTransformedCode(address, writes.transformedCode);
+            }
+            if (null != writes.objectGraph) {
+                target.putObjectGraph(address, writes.objectGraph);
+            }
+            for (Map.Entry<ByteArrayWrapper, byte[]> entry : writes.storage.entrySet()) {
+                if (null != entry.getValue()) {
+                    target.putStorage(address, entry.getKey().getData(), entry.getValue());
+                } else {
+                    target.removeStorage(address, entry.getKey().getData());
+                }
+            }
+            if (null != writes.balanceDelta) {
+                target.adjustBalance(address, writes.balanceDelta);
+            }
+            for (int i = 0; i < writes.nonceIncrements; ++i) {
+                target.incrementNonce(address);
+            }
+        }
+    }
+
+    private AccountWrites writesFor(AionAddress address) {
+        AccountWrites writes = this.latestByAddress.get(address);
+        if (null == writes) {
+            writes = startAccountWrites(address);
+        }
+        return writes;
+    }
+
+    private AccountWrites startAccountWrites(AionAddress address) {
+        AccountWrites writes = new AccountWrites(address);
+        this.accountWrites.add(writes);
+        this.latestByAddress.put(address, writes);
+        return writes;
+    }
+
+
+    /**
+     * The net writes to one account:  if isDeleted, the account is deleted first, then created if isCreated, and then each of the other
+     * writes is applied (null meaning "not written").
+     */
+    public static final class AccountWrites {
+        public final AionAddress address;
+        private boolean isDeleted;
+        private boolean isCreated;
+        private byte[] code;
+        private byte[] transformedCode;
+        private byte[] objectGraph;
+        // A null value means the key was removed.
+        private final Map<ByteArrayWrapper, byte[]> storage;
+        private BigInteger balanceDelta;
+        private int nonceIncrements;
+
+        private AccountWrites(AionAddress address) {
+            this.address = address;
+            this.storage = new LinkedHashMap<>();
+        }
+
+        public boolean isDeleted() {
+            return this.isDeleted;
+        }
+
+        public boolean isCreated() {
+            return this.isCreated;
+        }
+
+        public byte[] getCode() {
+            return this.code;
+        }
+
+        public byte[] getTransformedCode() {
+            return this.transformedCode;
+        }
+
+        public byte[] getObjectGraph() {
+            return this.objectGraph;
+        }
+
+        /**
+         * @return The final value of each storage key written, where null means the key was removed.
+         */
+        public Map<ByteArrayWrapper, byte[]> getStorage() {
+            return Collections.unmodifiableMap(this.storage);
+        }
+
+        /**
+         * @return The sum of the balance adjustments, or null if the balance wasn't adjusted.
+         */
+        public BigInteger getBalanceDelta() {
+            return this.balanceDelta;
+        }
+
+        public int getNonceIncrements() {
+            return this.nonceIncrements;
+        }
+
+        private boolean hasAnythingAfterDelete() {
+            return this.isCreated
+                    || (null != this.code)
+                    || (null != this.transformedCode)
+                    || (null != this.objectGraph)
+                    || !this.storage.isEmpty()
+                    || (null != this.balanceDelta)
+                    || (this.nonceIncrements > 0);
+        }
+    }
+}
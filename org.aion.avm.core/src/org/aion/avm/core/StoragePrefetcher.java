@@ -0,0 +1,253 @@
+package org.aion.avm.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.aion.avm.core.types.Pair;
+import org.aion.avm.core.util.ByteArrayWrapper;
+import org.aion.avm.userlib.abi.ABIToken;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import i.RuntimeAssertionError;
+
+
+/**
+ * Warms the block read cache of a batch (see BlockReadCachingState) before its transactions run, so that most of what they read from the
+ * kernel is already in memory by the time an executor thread asks for it.
+ *
+ * What a call will read is predicted from what earlier calls to the same DApp and method read:  the storage keys read by each successful
+ * call are recorded under the DApp called by the external transaction and the method selector of its data (the ABI-encoded method name,
+ * if the data starts with one).  Prefetching a transaction reads the accounts of its sender and destination, the destination's code and
+ * object graph, and the storage keys recorded for its DApp and method, on a small pool of daemon threads.
+ *
+ * This is only an optimization:  a wrong prediction just reads something nobody asks for and a prefetch which hasn't finished when the
+ * transaction reads the same location just means both read the kernel.  The history is bounded (per method and in the number of methods)
+ * and each prefetch job only touches the cache of its own batch.
+ *
+ * The jobs of a batch are tied to it by the BatchPrefetch returned by prefetch():  once every task of the batch has finished, it is
+ * closed, which drops the jobs which haven't started, stops those running before their next read, and waits for them, so nothing
+ * reads the kernel on behalf of a batch after its last result is returned.
+ */
+public class StoragePrefetcher {
+    // The most keys recorded for one DApp and method (anything past this is not predicted).
+    private static final int MAXIMUM_KEYS_PER_METHOD = 64;
+    // The most DApp and method pairs remembered (once full, calls to any other method just aren't predicted).
+    private static final int MAXIMUM_METHODS = 4096;
+    private static final byte[] NO_SELECTOR = new byte[0];
+
+    private final ConcurrentHashMap<Pair<AionAddress, ByteArrayWrapper>, Set<Pair<AionAddress, ByteArrayWrapper>>> history;
+    private final AtomicInteger methodCount;
+    private final ThreadPoolExecutor executor;
+
+    public StoragePrefetcher(int threadCount) {
+        this.history = new ConcurrentHashMap<>();
+        this.methodCount = new AtomicInteger(0);
+        AtomicInteger threadNumber = new AtomicInteger(0);
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), (runnable) -> {
+            Thread thread = new Thread(runnable, "AVM Storage Prefetch " + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Records the storage keys read by a successful call so that later calls to the same DApp and method prefetch them.
+     *
+     * @param transaction The external transaction (only calls are recorded).
+     * @param storageReads The storage keys read by the transaction, in any DApp it called.
+     */
+    public void recordStorageReads(Transaction transaction, Set<Pair<AionAddress, ByteArrayWrapper>> storageReads) {
+        if (!transaction.isCreate && !storageReads.isEmpty()) {
+            Pair<AionAddress, ByteArrayWrapper> method = methodOf(transaction);
+            Set<Pair<AionAddress, ByteArrayWrapper>> keys = this.history.get(method);
+            if ((null == keys) && (this.methodCount.get() < MAXIMUM_METHODS)) {
+                Set<Pair<AionAddress, ByteArrayWrapper>> newKeys = Collections.newSetFromMap(new ConcurrentHashMap<>());
+                keys = this.history.putIfAbsent(method, newKeys);
+                if (null == keys) {
+                    this.methodCount.incrementAndGet();
+                    keys = newKeys;
+                }
+            }
+            if (null != keys) {
+                Iterator<Pair<AionAddress, ByteArrayWrapper>> iterator = storageReads.iterator();
+                // (racing recorders can overshoot the bound a little, which is harmless)
+                while (iterator.hasNext() && (keys.size() < MAXIMUM_KEYS_PER_METHOD)) {
+                    keys.add(iterator.next());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the storage keys predicted for the given transaction (empty if there is no history for its DApp and method).
+     *
+     * @param transaction The external transaction.
+     * @return The predicted storage keys, which must not be modified.
+     */
+    public Set<Pair<AionAddress, ByteArrayWrapper>> predictStorageReads(Transaction transaction) {
+        Set<Pair<AionAddress, ByteArrayWrapper>> keys = transaction.isCreate
+                ? null
+                : this.history.get(methodOf(transaction));
+        return (null != keys)
+                ? keys
+                : Collections.emptySet();
+    }
+
+    /**
+     * Asynchronously reads what each of the given transactions is predicted to read, through the given cache.  This doesn't wait for
+     * the reads, each transaction being its own job so that the transactions at the start of the batch are prefetched first.
+     *
+     * @param cache The block read cache of the batch.
+     * @param transactions The transactions of the batch.
+     * @return The prefetch of this batch, which must be told as each of its tasks finishes (see BatchPrefetch.taskFinished()).
+     */
+    public BatchPrefetch prefetch(IExternalState cache, Transaction[] transactions) {
+        BatchPrefetch batch = new BatchPrefetch(transactions.length);
+        for (Transaction transaction : transactions) {
+            Runnable job = () -> prefetchTransaction(batch, cache, transaction);
+            batch.jobs.add(job);
+            this.executor.execute(job);
+        }
+        return batch;
+    }
+
+    /**
+     * Stops the prefetch threads, dropping any prefetch which hasn't started, and waits for those which have to finish (so nothing reads
+     * a kernel once this returns).
+     */
+    public void shutdown() {
+        // We don't interrupt the running prefetches since the kernel might not expect that.
+        this.executor.getQueue().clear();
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // We don't use interruption.
+            throw RuntimeAssertionError.unexpected(e);
+        }
+    }
+
+    private void prefetchTransaction(BatchPrefetch batch, IExternalState cache, Transaction transaction) {
+        if (batch.startJob()) {
+            try {
+                // We check that the batch is still running before each read since it may be closed at any point.
+                AionAddress sender = transaction.senderAddress;
+                if (!batch.isClosed) {
+                    cache.getBalance(sender);
+                }
+                if (!batch.isClosed) {
+                    cache.getNonce(sender);
+                }
+                if (!transaction.isCreate) {
+                    AionAddress destination = transaction.destinationAddress;
+                    if (!batch.isClosed) {
+                        cache.getBalance(destination);
+                    }
+                    if (!batch.isClosed) {
+                        cache.getTransformedCode(destination);
+                    }
+                    if (!batch.isClosed) {
+                        cache.getObjectGraph(destination);
+                    }
+                    Iterator<Pair<AionAddress, ByteArrayWrapper>> keys = predictStorageReads(transaction).iterator();
+                    while (!batch.isClosed && keys.hasNext()) {
+                        Pair<AionAddress, ByteArrayWrapper> key = keys.next();
+                        cache.getStorage(key.key, key.value.getData());
+                    }
+                }
+            } finally {
+                batch.finishJob();
+            }
+        }
+    }
+
+    private static Pair<AionAddress, ByteArrayWrapper> methodOf(Transaction transaction) {
+        return Pair.of(transaction.destinationAddress, new ByteArrayWrapper(selectorOf(transaction.copyOfTransactionData())));
+    }
+
+    /**
+     * The selector is the ABI-encoded method name which starts the data of a call (the string token, its 2-byte length, and the name) or
+     * empty if the data doesn't start with a complete string.
+     */
+    static byte[] selectorOf(byte[] data) {
+        byte[] selector = NO_SELECTOR;
+        if ((null != data) && (data.length >= 3) && (ABIToken.STRING == data[0])) {
+            int length = ((data[1] & 0xff) << 8) | (data[2] & 0xff);
+            if (data.length >= (3 + length)) {
+                selector = Arrays.copyOf(data, 3 + length);
+            }
+        }
+        return selector;
+    }
+
+
+    /**
+     * The prefetch jobs of one batch.  This is closed when the last of the batch's tasks finishes (or when it is closed explicitly).
+     */
+    public final class BatchPrefetch {
+        private final Set<Runnable> jobs;
+        private final AtomicInteger unfinishedTaskCount;
+        // Written under the monitor but read before each prefetch read, without it.
+        private volatile boolean isClosed;
+        // (only accessed under the monitor)
+        private int runningJobCount;
+
+        private BatchPrefetch(int taskCount) {
+            this.jobs = Collections.newSetFromMap(new IdentityHashMap<>());
+            this.unfinishedTaskCount = new AtomicInteger(taskCount);
+            this.isClosed = false;
+            this.runningJobCount = 0;
+        }
+
+        /**
+         * Called by the executor thread which finished one of the tasks of this batch, before its result is written back.  The last
+         * task to finish closes the batch, so every result of the batch is returned only once nothing is prefetching for it.
+         */
+        public void taskFinished() {
+            if (0 == this.unfinishedTaskCount.decrementAndGet()) {
+                close();
+            }
+        }
+
+        /**
+         * Stops the prefetch for this batch:  jobs which haven't started are dropped and this waits for those running to stop (they stop
+         * before their next read).
+         */
+        public void close() {
+            synchronized (this) {
+                this.isClosed = true;
+                while (this.runningJobCount > 0) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        // We don't use interruption.
+                        throw RuntimeAssertionError.unexpected(e);
+                    }
+                }
+            }
+            // (any of these we miss, since they are already being dequeued, will see that we are closed and do nothing)
+            StoragePrefetcher.this.executor.getQueue().removeAll(this.jobs);
+        }
+
+        private synchronized boolean startJob() {
+            boolean shouldRun = !this.isClosed;
+            if (shouldRun) {
+                this.runningJobCount += 1;
+            }
+            return shouldRun;
+        }
+
+        private synchronized void finishJob() {
+            this.runningJobCount -= 1;
+            this.notifyAll();
+        }
+    }
+}
@@ -84,6 +84,12 @@ class ArraysRequiringAnalysisMethodNode extends MethodNode {
             AbstractInsnNode insn = insns[i];
             Frame<BasicValue> f = frames[i];
 
+            // Unreachable code has no frame (it can only be seen here if the frames weren't computed since the last change, which
+            // is the case in the fused pipeline) so we leave it alone:  the final writer replaces it, anyway.
+            if (null == f) {
+                continue;
+            }
+
             // We only handle aaload here since aastore is generic
             // the log is the following
             // check instruction -> check stack map frame -> replace instruction with invokeV and checkcast
@@ -54,6 +54,7 @@ public class LoadedJar {
     private static LoadedJar safeLoadFromBytes(ByteArrayInputStream byteReader) throws IOException, SizeException {
         Map<String, byte[]> classBytesByQualifiedNames = new HashMap<>();
         String mainClassName = null;
+        Attributes manifestAttributes = null;
         
         boolean verify = true;
         try (JarInputStream jarReader = new JarInputStream(byteReader, verify)) {
@@ -63,6 +64,7 @@ public class LoadedJar {
                 Attributes mainAttributes = manifest.getMainAttributes();
                 if (null != mainAttributes) {
                     mainClassName = mainAttributes.getValue(Attributes.Name.MAIN_CLASS);
+                    manifestAttributes = mainAttributes;
                 }
             }
             
@@ -90,16 +92,32 @@ public class LoadedJar {
                 }
             }
         }
-        return new LoadedJar(classBytesByQualifiedNames, mainClassName);
+        return new LoadedJar(classBytesByQualifiedNames, mainClassName, manifestAttributes);
     }
 
 
     public final Map<String, byte[]> classBytesByQualifiedNames;
     public final String mainClassName;
+    private final Attributes manifestAttributes;
 
     public LoadedJar(Map<String, byte[]> classBytesByQualifiedNames, String mainClassName) {
+        this(classBytesByQualifiedNames, mainClassName, null);
+    }
+
+    private LoadedJar(Map<String, byte[]> classBytesByQualifiedNames, String mainClassName, Attributes manifestAttributes) {
         this.classBytesByQualifiedNames = Collections.unmodifiableMap(classBytesByQualifiedNames);
         this.mainClassName = mainClassName;
+        this.manifestAttributes = manifestAttributes;
+    }
+
+    /**
+     * @param name The name of a main attribute in the manifest.
+     * @return The value of the attribute, or null if the JAR had no manifest or the attribute isn't present.
+     */
+    public String getManifestAttribute(String name) {
+        return (null != this.manifestAttributes)
+                ? this.manifestAttributes.getValue(name)
+                : null;
     }
 
 
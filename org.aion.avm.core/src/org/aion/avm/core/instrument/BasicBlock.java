@@ -10,6 +10,7 @@ import java.util.List;
  * Describes a single basic block within a method.
  * Note that only the opcodeSequence, switchCounts, and allocatedTypes are meant to be immutable.
  * The variable energyCost is mutable, deliberately, to allow for mutation requests.
+ * The isBranchTarget flag is set once the whole method has been read, since a jump to this block might come after it.
  */
 public class BasicBlock {
     public final List<Integer> opcodeSequence;
@@ -20,6 +21,7 @@ public class BasicBlock {
     public final List<Integer> switchCases;
     public final List<String> allocatedTypes;
     private long energyCost;
+    private boolean isBranchTarget;
 
     public BasicBlock(List<Integer> opcodes, List<Integer> switchCases, List<String> allocatedTypes) {
         this.opcodeSequence = Collections.unmodifiableList(opcodes);
@@ -43,6 +45,21 @@ public class BasicBlock {
         return this.energyCost;
     }
 
+    /**
+     * Marks this block as the target of a jump, a switch, or an exception handler, meaning that it can be entered from somewhere other
+     * than the end of the block before it.
+     */
+    public void markAsBranchTarget() {
+        this.isBranchTarget = true;
+    }
+
+    /**
+     * @return True if this block can be entered from somewhere other than the end of the block before it.
+     */
+    public boolean isBranchTarget() {
+        return this.isBranchTarget;
+    }
+
     @Override
     public String toString() {
         final var builder = new StringBuilder("BasicBlock{");
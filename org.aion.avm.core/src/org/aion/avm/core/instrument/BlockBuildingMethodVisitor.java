@@ -7,12 +7,15 @@ import org.objectweb.asm.Opcodes;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 
 /**
  * Collects information regarding BasicBlocks within a method.
  * Specifically, this refers to the opcodes, switch cases, and allocated types within a given block.
+ * We also note which blocks are the targets of jumps, switches, or exception handlers, once the whole method has been read.
  * 
  * Note that this was adapted from the ClassRewriter.BlockMethodReader.
  */
@@ -21,10 +24,17 @@ public class BlockBuildingMethodVisitor extends MethodVisitor {
     private List<Integer> currentBuildingBlock;
     private List<Integer> currentBlockSwitches;
     private List<String> currentAllocationList;
+    // The labels which precede each block in buildingList (and those preceding the block currently being built).
+    private final List<List<Label>> entryLabels;
+    private List<Label> currentEntryLabels;
+    private final Set<Label> branchTargets;
 
     public BlockBuildingMethodVisitor() {
         super(Opcodes.ASM6);
         this.buildingList = new ArrayList<>();
+        this.entryLabels = new ArrayList<>();
+        this.currentEntryLabels = new ArrayList<>();
+        this.branchTargets = new HashSet<>();
         
         // We need to enter our initial state in the constructor since this method may be abstract and have no code.
         this.currentBuildingBlock = new ArrayList<>();
@@ -43,6 +53,16 @@ public class BlockBuildingMethodVisitor extends MethodVisitor {
         this.currentBuildingBlock = null;
         this.currentBlockSwitches = null;
         this.currentAllocationList = null;
+        this.currentEntryLabels = null;
+        
+        // Now that we have seen every jump, we can mark the blocks they enter.
+        for (int i = 0; i < this.buildingList.size(); ++i) {
+            for (Label label : this.entryLabels.get(i)) {
+                if (this.branchTargets.contains(label)) {
+                    this.buildingList.get(i).markAsBranchTarget();
+                }
+            }
+        }
     }
     @Override
     public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
@@ -73,6 +93,7 @@ public class BlockBuildingMethodVisitor extends MethodVisitor {
     @Override
     public void visitJumpInsn(int opcode, Label label) {
         this.currentBuildingBlock.add(opcode);
+        this.branchTargets.add(label);
         // Jump is the end of a block so emit the label.
         // (note that this is also where if statements show up).
         handleLabel();
@@ -80,6 +101,7 @@ public class BlockBuildingMethodVisitor extends MethodVisitor {
     @Override
     public void visitLabel(Label label) {
         handleLabel();
+        this.currentEntryLabels.add(label);
     }
     @Override
     public void visitLdcInsn(Object value) {
@@ -90,6 +112,7 @@ public class BlockBuildingMethodVisitor extends MethodVisitor {
         this.currentBuildingBlock.add(Opcodes.LOOKUPSWITCH);
         // Count the number of labels plus the default.
         this.currentBlockSwitches.add(labels.length + 1);
+        addSwitchTargets(dflt, labels);
         
         // Even though every label is given, there could be unreachable code immediately after.
         handleLabel();
@@ -107,11 +130,17 @@ public class BlockBuildingMethodVisitor extends MethodVisitor {
         this.currentBuildingBlock.add(Opcodes.TABLESWITCH);
         // Count the number of labels plus the default.
         this.currentBlockSwitches.add(labels.length + 1);
+        addSwitchTargets(dflt, labels);
         
         // Even though every label is given, there could be unreachable code immediately after.
         handleLabel();
     }
     @Override
+    public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+        // Only the handler is entered from elsewhere:  the start and end just delimit the range it covers.
+        this.branchTargets.add(handler);
+    }
+    @Override
     public void visitTypeInsn(int opcode, String type) {
         this.currentBuildingBlock.add(opcode);
         // If this is a new, att the type to the allocation list for the block.
@@ -133,10 +162,19 @@ public class BlockBuildingMethodVisitor extends MethodVisitor {
         if (!this.currentBuildingBlock.isEmpty()) {
             // Add the block to our finished block list.
             this.buildingList.add(new BasicBlock(this.currentBuildingBlock, this.currentBlockSwitches, this.currentAllocationList));
+            this.entryLabels.add(this.currentEntryLabels);
             // Start the new block.
             this.currentBuildingBlock = new ArrayList<>();
             this.currentBlockSwitches = new ArrayList<>();
             this.currentAllocationList = new ArrayList<>();
+            this.currentEntryLabels = new ArrayList<>();
+        }
+    }
+
+    private void addSwitchTargets(Label dflt, Label[] labels) {
+        this.branchTargets.add(dflt);
+        for (Label label : labels) {
+            this.branchTargets.add(label);
         }
     }
 }
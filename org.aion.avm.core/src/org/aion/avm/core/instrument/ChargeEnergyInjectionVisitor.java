@@ -20,6 +20,7 @@ import org.objectweb.asm.Opcodes;
  * 
  * The actual value charged is expected to be set on the BasicBlock elsewhere as this class doesn't know where the
  * number came from, just how to inject the call.
+ * A block with a zero cost gets no call:  it is charged for elsewhere (see EnergyChargeFolder).
  */
 public class ChargeEnergyInjectionVisitor extends MethodVisitor {
     private final List<BasicBlock> blocks;
@@ -140,17 +141,19 @@ public class ChargeEnergyInjectionVisitor extends MethodVisitor {
      */
     private void checkInject() {
         if (this.scanningToNewBlockStart) {
-            // We were waiting for this so make sure that this block has some associated cost.
+            // We were waiting for this so see what cost is associated with this block.
             BasicBlock currentBlock = this.blocks.get(this.nextBlockIndexToWrite);
             long currentEnergyCost = currentBlock.getEnergyCost();
-            // We should never encounter a block with a zero/negative cost.
-            RuntimeAssertionError.assertTrue(currentEnergyCost > 0L);
+            // We should never encounter a block with a negative cost (zero means that it was folded into another block's charge).
+            RuntimeAssertionError.assertTrue(currentEnergyCost >= 0L);
             // We track this as a long but report it as an int so prove that this can't overflow.
             RuntimeAssertionError.assertTrue(currentEnergyCost <= (long)Integer.MAX_VALUE);
             
             // Inject the bytecodes.
-            super.visitLdcInsn(Integer.valueOf((int)currentEnergyCost));
-            super.visitMethodInsn(Opcodes.INVOKESTATIC, Helper.RUNTIME_HELPER_NAME, "chargeEnergy", "(I)V", false);
+            if (currentEnergyCost > 0L) {
+                super.visitLdcInsn(Integer.valueOf((int)currentEnergyCost));
+                super.visitMethodInsn(Opcodes.INVOKESTATIC, Helper.RUNTIME_HELPER_NAME, "chargeEnergy", "(I)V", false);
+            }
             
             // Reset the state machine for the next block.
             this.scanningToNewBlockStart = false;
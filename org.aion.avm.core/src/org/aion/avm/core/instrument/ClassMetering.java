@@ -15,15 +15,22 @@ import java.util.Map;
  * Internally, this activity is applied on a per-method basis, creating sub-visitors which perform the read and write operations:
  * -BlockBuildingMethodVisitor:  reads the bytecode, finding the basic blocks within each method, and using this to construct a billing total (algorithm internal to this class)
  * -ChargeEnergyInjectionVisitor:  reads the bytecode again, using the basic blocks from the previous step to inject a billing call at the beginning of each block
+ * If charge folding is enabled, the EnergyChargeFolder is applied to the blocks in between these 2 steps so that fewer blocks need a billing call.
  */
 public class ClassMetering extends ClassToolchain.ToolChainClassVisitor {
     private Map<String, Integer> objectSizes;
     private final BytecodeFeeScheduler bytecodeFeeScheduler;
+    private final boolean enableChargeFolding;
 
     public ClassMetering(Map<String, Integer> objectSizes) {
+        this(objectSizes, false);
+    }
+
+    public ClassMetering(Map<String, Integer> objectSizes, boolean enableChargeFolding) {
         super(Opcodes.ASM6);
 
         this.objectSizes = objectSizes;
+        this.enableChargeFolding = enableChargeFolding;
         
         // Note that we construct the fee scheduler, internally.
         this.bytecodeFeeScheduler = new BytecodeFeeScheduler();
@@ -57,6 +64,9 @@ public class ClassMetering extends ClassToolchain.ToolChainClassVisitor {
                     long feeForBlock = calculateBlockFee(block);
                     block.setEnergyCost(feeForBlock);
                 }
+                if (ClassMetering.this.enableChargeFolding) {
+                    EnergyChargeFolder.foldCharges(blocks);
+                }
 
                 // We can now build the injection visitor over the real visitor, and accept it in order to add the instrumentation.
                 ChargeEnergyInjectionVisitor instrumentingVisitor = new ChargeEnergyInjectionVisitor(realVisitor, blocks);
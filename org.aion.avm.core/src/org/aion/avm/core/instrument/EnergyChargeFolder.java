@@ -0,0 +1,110 @@
+package org.aion.avm.core.instrument;
+
+import java.util.List;
+
+import org.objectweb.asm.Opcodes;
+
+
+/**
+ * Reduces the number of "Helper.chargeEnergy(int)" calls injected into a method, without changing what is billed or when a transaction
+ * runs out of energy (in any way the transaction, or its caller, could observe).
+ *
+ * This is done by changing the energy cost of the method's blocks (so it must be run after they have been costed, and before they are
+ * injected by the ChargeEnergyInjectionVisitor, which doesn't inject anything for a block with a zero cost):
+ * -a block which can only be entered from the end of the block before it, where every block in the chain leading to it always falls
+ *  through (no calls, jumps, returns, or anything else which could throw or end the block early), is charged as part of the first
+ *  block of that chain.  Since nothing in that chain can observe the remaining energy, or stop before the end, charging it all up
+ *  front bills the same amount and fails in the same cases.
+ * -a block which can't be entered at all (not a branch target and the block before it can't fall through) isn't charged.
+ *
+ * Note that we don't fold the cost of a loop's body into a single charge before the loop since we can't know how many times it will
+ * run so that would either over-bill or change the point where the transaction runs out of energy.
+ */
+public class EnergyChargeFolder {
+    // CommonInstrumentation.chargeEnergy() requires that every charge be less than 2^30, so we never fold beyond that.
+    private static final long MAXIMUM_FOLDED_COST = (1L << 30) - 1L;
+
+    /**
+     * Folds the costs of the given blocks, in-place.
+     *
+     * @param blocks The blocks of a method, in order, with their energy costs set.
+     */
+    public static void foldCharges(List<BasicBlock> blocks) {
+        // The block which is currently charging for the chain of blocks after it (null if the previous block can't be entered).
+        BasicBlock chargingBlock = null;
+        for (int i = 0; i < blocks.size(); ++i) {
+            BasicBlock block = blocks.get(i);
+            if ((0 == i) || block.isBranchTarget()) {
+                // This block can be entered from elsewhere so it needs its own charge.
+                chargingBlock = block;
+            } else {
+                BasicBlock previous = blocks.get(i - 1);
+                if ((null == chargingBlock) || !canFallThrough(previous)) {
+                    // The only way into this block is from the previous one, which never gets here.
+                    block.setEnergyCost(0L);
+                    chargingBlock = null;
+                } else if (alwaysFallsThrough(previous) && ((chargingBlock.getEnergyCost() + block.getEnergyCost()) <= MAXIMUM_FOLDED_COST)) {
+                    // Every block since the charging block always falls through (it was checked as we added them) so this one is also
+                    // always reached once the charging block is.
+                    chargingBlock.setEnergyCost(chargingBlock.getEnergyCost() + block.getEnergyCost());
+                    block.setEnergyCost(0L);
+                } else {
+                    chargingBlock = block;
+                }
+            }
+        }
+    }
+
+    private static boolean canFallThrough(BasicBlock block) {
+        int lastOpcode = block.opcodeSequence.get(block.opcodeSequence.size() - 1);
+        boolean endsBlock;
+        switch (lastOpcode) {
+            case Opcodes.GOTO:
+            case Opcodes.TABLESWITCH:
+            case Opcodes.LOOKUPSWITCH:
+            case Opcodes.IRETURN:
+            case Opcodes.LRETURN:
+            case Opcodes.FRETURN:
+            case Opcodes.DRETURN:
+            case Opcodes.ARETURN:
+            case Opcodes.RETURN:
+            case Opcodes.ATHROW:
+                endsBlock = true;
+                break;
+            default:
+                endsBlock = false;
+        }
+        return !endsBlock;
+    }
+
+    private static boolean alwaysFallsThrough(BasicBlock block) {
+        boolean alwaysFallsThrough = true;
+        for (int opcode : block.opcodeSequence) {
+            if (!alwaysCompletesNormally(opcode)) {
+                alwaysFallsThrough = false;
+                break;
+            }
+        }
+        return alwaysFallsThrough;
+    }
+
+    /**
+     * Only the opcodes which work on the operand stack and local variables can be trusted to always complete, without observing or
+     * changing anything outside of the current frame.  Anything which touches fields, arrays, or objects, or calls out, is excluded
+     * (as is LDC, since it can load classes).
+     */
+    private static boolean alwaysCompletesNormally(int opcode) {
+        boolean isSafe;
+        if ((Opcodes.IDIV == opcode) || (Opcodes.LDIV == opcode) || (Opcodes.IREM == opcode) || (Opcodes.LREM == opcode)) {
+            // Integer division can throw ArithmeticException.
+            isSafe = false;
+        } else {
+            isSafe = ((Opcodes.NOP <= opcode) && (opcode <= Opcodes.SIPUSH))
+                    || ((Opcodes.ILOAD <= opcode) && (opcode <= Opcodes.ALOAD))
+                    || ((Opcodes.ISTORE <= opcode) && (opcode <= Opcodes.ASTORE))
+                    // The stack manipulation, arithmetic, conversion, and comparison opcodes are contiguous.
+                    || ((Opcodes.POP <= opcode) && (opcode <= Opcodes.DCMPG));
+        }
+        return isSafe;
+    }
+}
@@ -0,0 +1,46 @@
+package org.aion.avm.core.miscvisitors;
+
+import org.aion.avm.core.ClassToolchain;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+
+/**
+ * Drops all the stack map frames from a class.
+ * This is used when an intermediate pass writes a class without computing frames (only the maximum stack and locals), since the frames
+ * it was given no longer describe the code once earlier visitors have changed it.  The frames are computed once, by the final writer.
+ *
+ * Note that, for a class of version 51 (Java 7) or later, the ClassWriter derives the maximum stack from the frames, instead of computing
+ * it, so the class is presented as version 50 to the writer.  The original version must be restored on whatever reads the result back
+ * (see getOriginalVersion()).
+ */
+public class FrameStrippingVisitor extends ClassToolchain.ToolChainClassVisitor {
+    private int originalVersion;
+
+    public FrameStrippingVisitor() {
+        super(Opcodes.ASM6);
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        this.originalVersion = version;
+        super.visit(Math.min(version, Opcodes.V1_6), access, name, signature, superName, interfaces);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        return new MethodVisitor(Opcodes.ASM6, super.visitMethod(access, name, descriptor, signature, exceptions)) {
+            @Override
+            public void visitFrame(int type, int nLocal, Object[] local, int nStack, Object[] stack) {
+                // Drop the frame.
+            }
+        };
+    }
+
+    /**
+     * @return The class version which was given to this visitor (which may not be the one it passed on).
+     */
+    public int getOriginalVersion() {
+        return this.originalVersion;
+    }
+}
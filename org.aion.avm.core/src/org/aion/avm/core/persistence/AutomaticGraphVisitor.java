@@ -16,9 +16,11 @@ import org.objectweb.asm.tree.analysis.Frame;
  * Specifically, this means the following transformations:
  * 1)  Add a special constructor, which cannot already be present, just calling its superclass counterpart.
  * 2)  Remove "final" from all fields (at least instance fields - we may be able to treat static fields differently).
- * 3)  Prepend all PUTFIELD/GETFIELD instructions with a call to "lazyLoad()" on the receiver object (unless "this" in a constructor).
+ * 3)  Prepend all GETFIELD instructions with a call to "lazyLoad()" and all PUTFIELD instructions with a call to "markModified()" on the
+ *  receiver object (unless "this" in a constructor) and all PUTSTATIC instructions with a call to the helper's "markGraphModified()".
  * 
- * Note that this transformation doesn't depend on the persistence model being applied.  So long as "lazyLoad()" is a safe no-op,
+ * Note that this transformation doesn't depend on the persistence model being applied.  So long as "lazyLoad()" is a safe no-op (and
+ * the write notifications are only consulted when re-using an unmodified graph),
  * there is no harm in enabling this without the corresponding persistence logic.
  * This should probably be put late in the pipeline since these transformations are substantial, and could change energy and stack
  * accounting in pretty large ways for what are essentially our own implementation details.
@@ -90,7 +92,7 @@ public class AutomaticGraphVisitor extends ClassToolchain.ToolChainClassVisitor
                 }
             };
         } else {
-            // 3) Otherwise, insert lazyLoad() calls before any field access.
+            // 3) Otherwise, insert lazyLoad()/markModified() calls before any field access.
             visitor = new LazyLoadingMethodVisitor(downstream, null);
         }
         return visitor;
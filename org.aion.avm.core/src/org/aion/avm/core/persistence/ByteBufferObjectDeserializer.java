@@ -25,6 +25,22 @@ public class ByteBufferObjectDeserializer implements IObjectDeserializer {
         this.instanceList = instanceList;
     }
 
+    /**
+     * @return The current position of the receiver within its buffer.
+     */
+    public int getPosition() {
+        return this.buffer.position();
+    }
+
+    /**
+     * Moves the receiver to the given position within its buffer (used when lazily loading an instance).
+     * 
+     * @param position The new position.
+     */
+    public void setPosition(int position) {
+        this.buffer.position(position);
+    }
+
     @Override
     public boolean readBoolean() {
         return ((byte)0x1 == this.buffer.get());
@@ -116,57 +132,59 @@ public class ByteBufferObjectDeserializer implements IObjectDeserializer {
     public void automaticallyDeserializeFromRoot(Class<?> rootClass, Object instance) {
         // This is called after any rootClass instance variables have been deserialized.
         // So, we just need to deserialize all the fields defined by other classes, excluding the root class.
-        
-        // This means, we need to recursively walk to the root.
-        internalDeserializeFieldsFromRoot(rootClass, instance.getClass(), instance);
+        // The cache has already flattened the hierarchy, down from the root, into one layout (there is nothing to do if this is the root).
+        Class<?> thisClass = instance.getClass();
+        if (rootClass != thisClass) {
+            readFields(this.cache.getInstanceLayout(rootClass, thisClass), instance);
+        }
     }
 
-
-    private void internalDeserializeFieldsFromRoot(Class<?> rootClass, Class<?> thisClass, Object instance) {
-        if (rootClass != thisClass) {
-            // We can deserialize this one, but first see if we need to call a superclass.
-            internalDeserializeFieldsFromRoot(rootClass, thisClass.getSuperclass(), instance);
-            
-            // Now, serialize the fields in this level.
-            try {
-                Field[] fields = this.cache.getInstanceFields(thisClass);
-                for (Field field : fields) {
-                    // We need to crack the type, here.
-                    Class<?> type = field.getType();
-                    if (boolean.class == type) {
-                        boolean val = this.readBoolean();
-                        field.setBoolean(instance, val);
-                    } else if (byte.class == type) {
-                        byte val = this.readByte();
-                        field.setByte(instance, val);
-                    } else if (short.class == type) {
-                        short val = this.readShort();
-                        field.setShort(instance, val);
-                    } else if (char.class == type) {
-                        char val = this.readChar();
-                        field.setChar(instance, val);
-                    } else if (int.class == type) {
-                        int val = this.readInt();
-                        field.setInt(instance, val);
-                    } else if (float.class == type) {
-                        float val = this.readFloat();
-                        field.setFloat(instance, val);
-                    } else if (long.class == type) {
-                        long val = this.readLong();
-                        field.setLong(instance, val);
-                    } else if (double.class == type) {
-                        double val = this.readDouble();
-                        field.setDouble(instance, val);
-                    } else {
+    /**
+     * Reads the fields described by layout, setting them in instance (null for static fields).
+     * 
+     * @param layout The fields to read, in order.
+     * @param instance The instance to populate (null if the fields are static).
+     */
+    public void readFields(FieldLayout layout, Object instance) {
+        Field[] fields = layout.fields;
+        byte[] types = layout.types;
+        try {
+            for (int i = 0; i < fields.length; ++i) {
+                Field field = fields[i];
+                switch (types[i]) {
+                    case FieldLayout.TYPE_BOOLEAN:
+                        field.setBoolean(instance, this.readBoolean());
+                        break;
+                    case FieldLayout.TYPE_BYTE:
+                        field.setByte(instance, this.readByte());
+                        break;
+                    case FieldLayout.TYPE_SHORT:
+                        field.setShort(instance, this.readShort());
+                        break;
+                    case FieldLayout.TYPE_CHAR:
+                        field.setChar(instance, this.readChar());
+                        break;
+                    case FieldLayout.TYPE_INT:
+                        field.setInt(instance, this.readInt());
+                        break;
+                    case FieldLayout.TYPE_FLOAT:
+                        field.setFloat(instance, this.readFloat());
+                        break;
+                    case FieldLayout.TYPE_LONG:
+                        field.setLong(instance, this.readLong());
+                        break;
+                    case FieldLayout.TYPE_DOUBLE:
+                        field.setDouble(instance, this.readDouble());
+                        break;
+                    default:
                         // Object types require further logic.
-                        Object val = this.readObject();
-                        field.set(instance, val);
-                    }
+                        field.set(instance, this.readObject());
+                        break;
                 }
-            } catch (IllegalAccessException e) {
-                // Reflection errors can't happen since we set this up so we could access it.
-                throw RuntimeAssertionError.unexpected(e);
             }
+        } catch (IllegalAccessException e) {
+            // Reflection errors can't happen since we set this up so we could access it.
+            throw RuntimeAssertionError.unexpected(e);
         }
     }
 
@@ -107,57 +107,59 @@ public class ByteBufferObjectSerializer implements IObjectSerializer {
     public void automaticallySerializeToRoot(Class<?> rootClass, Object instance) {
         // This is called after any root information has been serialized, including class name and root instance variables.
         // So, we just need to serialize all the fields defined by other classes, excluding the root class.
-        
-        // This means, we need to recursively walk to the root.
-        internalSerializeFieldsToRoot(rootClass, instance.getClass(), instance);
+        // The cache has already flattened the hierarchy, down from the root, into one layout (there is nothing to do if this is the root).
+        Class<?> thisClass = instance.getClass();
+        if (rootClass != thisClass) {
+            writeFields(this.cache.getInstanceLayout(rootClass, thisClass), instance);
+        }
     }
 
-
-    private void internalSerializeFieldsToRoot(Class<?> rootClass, Class<?> thisClass, Object instance) {
-        if (rootClass != thisClass) {
-            // We can serialize this one, but first see if we need to call a superclass.
-            internalSerializeFieldsToRoot(rootClass, thisClass.getSuperclass(), instance);
-            
-            // Now, serialize the fields in this level.
-            try {
-                Field[] fields = this.cache.getInstanceFields(thisClass);
-                for (Field field : fields) {
-                    // We need to crack the type, here.
-                    Class<?> type = field.getType();
-                    if (boolean.class == type) {
-                        boolean val = field.getBoolean(instance);
-                        this.writeBoolean(val);
-                    } else if (byte.class == type) {
-                        byte val = field.getByte(instance);
-                        this.writeByte(val);
-                    } else if (short.class == type) {
-                        short val = field.getShort(instance);
-                        this.writeShort(val);
-                    } else if (char.class == type) {
-                        char val = field.getChar(instance);
-                        this.writeChar(val);
-                    } else if (int.class == type) {
-                        int val = field.getInt(instance);
-                        this.writeInt(val);
-                    } else if (float.class == type) {
-                        float actual = field.getFloat(instance);
-                        this.writeFloat(actual);
-                    } else if (long.class == type) {
-                        long val = field.getLong(instance);
-                        this.writeLong(val);
-                    } else if (double.class == type) {
-                        double actual = field.getDouble(instance);
-                        this.writeDouble(actual);
-                    } else {
+    /**
+     * Writes the fields described by layout, read from instance (null for static fields).
+     * 
+     * @param layout The fields to write, in order.
+     * @param instance The instance to read the fields from (null if they are static).
+     */
+    public void writeFields(FieldLayout layout, Object instance) {
+        Field[] fields = layout.fields;
+        byte[] types = layout.types;
+        try {
+            for (int i = 0; i < fields.length; ++i) {
+                Field field = fields[i];
+                switch (types[i]) {
+                    case FieldLayout.TYPE_BOOLEAN:
+                        this.writeBoolean(field.getBoolean(instance));
+                        break;
+                    case FieldLayout.TYPE_BYTE:
+                        this.writeByte(field.getByte(instance));
+                        break;
+                    case FieldLayout.TYPE_SHORT:
+                        this.writeShort(field.getShort(instance));
+                        break;
+                    case FieldLayout.TYPE_CHAR:
+                        this.writeChar(field.getChar(instance));
+                        break;
+                    case FieldLayout.TYPE_INT:
+                        this.writeInt(field.getInt(instance));
+                        break;
+                    case FieldLayout.TYPE_FLOAT:
+                        this.writeFloat(field.getFloat(instance));
+                        break;
+                    case FieldLayout.TYPE_LONG:
+                        this.writeLong(field.getLong(instance));
+                        break;
+                    case FieldLayout.TYPE_DOUBLE:
+                        this.writeDouble(field.getDouble(instance));
+                        break;
+                    default:
                         // Object types require further logic.
-                        Object target = field.get(instance);
-                        this.writeObject(target);
-                    }
+                        this.writeObject(field.get(instance));
+                        break;
                 }
-            } catch (IllegalAccessException e) {
-                // Reflection errors can't happen since we set this up so we could access it.
-                throw RuntimeAssertionError.unexpected(e);
             }
+        } catch (IllegalAccessException e) {
+            // Reflection errors can't happen since we set this up so we could access it.
+            throw RuntimeAssertionError.unexpected(e);
         }
     }
 
@@ -1,6 +1,5 @@
 package org.aion.avm.core.persistence;
 
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.BufferUnderflowException;
@@ -26,7 +25,7 @@ public class Deserializer {
         deserializeClassStatics(prePassDeserializer, cache, sortedRoots, constantClass);
         
         // Now, walk the rest of the data, deserializing each object, but this is just to find out the instance types and advance through the buffer, consistently.
-        List<Object> instanceList = createAllInstancesFromBuffer(prePassDeserializer, existingObjectIndex, cache, classNameMapper);
+        List<Object> instanceList = createAllInstancesFromBuffer(prePassDeserializer, existingObjectIndex, cache, classNameMapper, null);
         
         // Now, we have enough information to build the graph.
         // Reset the buffer and read it again.
@@ -45,6 +44,41 @@ public class Deserializer {
         return nextHashCode;
     }
 
+    /**
+     * Deserializes the class statics but only creates stubs for the instances in the graph:  each one is populated from the buffer the
+     * first time it is loaded (see s.java.lang.Object.lazyLoad()), so untouched instances never pay the cost of being connected.
+     * Note that the graph format has no per-instance lengths so we still need to walk every instance once to find where it starts (skipping
+     * ahead would need a new graph format, which is part of consensus).  The stubs share the inputBuffer, which they retain until the
+     * last of them is populated.
+     * This can't be used to deserialize into existing instances (the reentrant case) since those may already be referenced.
+     * 
+     * @return The nextHashCode serialized within the graph.
+     */
+    public static int deserializeGraphLazilyAndNextHashCode(ByteBuffer inputBuffer, IGlobalResolver resolver, SortedFieldCache cache, IPersistenceNameMapper classNameMapper, Class<?>[] sortedRoots, Class<?> constantClass) {
+        // We define the storage as big-endian.
+        RuntimeAssertionError.assertTrue(ByteOrder.BIG_ENDIAN == inputBuffer.order());
+        
+        // The first pass is the same as the eager case, except that we also record where each instance starts.
+        inputBuffer.getInt();
+        ByteBufferObjectDeserializer prePassDeserializer = new ByteBufferObjectDeserializer(inputBuffer, null, cache, resolver, classNameMapper);
+        deserializeClassStatics(prePassDeserializer, cache, sortedRoots, constantClass);
+        List<Integer> instanceOffsets = new ArrayList<>();
+        List<Object> instanceList = createAllInstancesFromBuffer(prePassDeserializer, null, cache, classNameMapper, instanceOffsets);
+        
+        // Now, read the real hash code and statics, since those are the roots of the graph.
+        inputBuffer.rewind();
+        int nextHashCode = inputBuffer.getInt();
+        ByteBufferObjectDeserializer objectDeserializer = new ByteBufferObjectDeserializer(inputBuffer, instanceList, cache, resolver, classNameMapper);
+        deserializeClassStatics(objectDeserializer, cache, sortedRoots, constantClass);
+        
+        // Instead of populating the instances, we give them the loader which will do that on demand.
+        LazyInstanceLoader loader = new LazyInstanceLoader(objectDeserializer, cache.getDeserializeSelfMethod(), instanceOffsets);
+        for (Object instance : instanceList) {
+            ((s.java.lang.Object) instance).setLazyLoader(loader);
+        }
+        return nextHashCode;
+    }
+
     public static void cleanClassStatics(SortedFieldCache cache, Class<?>[] sortedRoots, Class<?> constantClass) {
         cleanOneClass(cache, constantClass);
         for (Class<?> clazz : sortedRoots) {
@@ -53,28 +87,16 @@ public class Deserializer {
     }
 
     private static void cleanOneClass(SortedFieldCache cache, Class<?> clazz) {
-        Field[] constants = cache.getConstantFields(clazz);
-        cleanFieldsForClass(constants);
-
-        Field[] fields = cache.getUserStaticFields(clazz);
-        cleanFieldsForClass(fields);
+        cleanFieldsForClass(cache.getConstantLayout(clazz));
+        cleanFieldsForClass(cache.getUserStaticLayout(clazz));
     }
 
-    private static void cleanFieldsForClass(Field[] fields) {
+    private static void cleanFieldsForClass(FieldLayout layout) {
         try {
-            for (Field field : fields) {
-                // We need to crack the type, here, since only object references are cleared.
-                Class<?> type = field.getType();
-                if (boolean.class == type) {
-                } else if (byte.class == type) {
-                } else if (short.class == type) {
-                } else if (char.class == type) {
-                } else if (int.class == type) {
-                } else if (float.class == type) {
-                } else if (long.class == type) {
-                } else if (double.class == type) {
-                } else {
-                    field.set(null, null);
+            for (int i = 0; i < layout.fields.length; ++i) {
+                // Only object references are cleared.
+                if (FieldLayout.TYPE_REFERENCE == layout.types[i]) {
+                    layout.fields[i].set(null, null);
                 }
             }
         } catch (IllegalAccessException e) {
@@ -83,6 +105,19 @@ public class Deserializer {
         }
     }
 
+    /**
+     * Deserializes the fields of instance from the current position of the objectDeserializer.
+     * Shadow objects (which is everything in a real graph) are called directly, so the call is visible to the JIT, while anything else
+     * (only possible in tests) goes through the given reflective method.
+     */
+    static void deserializeInstance(Method deserializeSelfMethod, Object instance, ByteBufferObjectDeserializer objectDeserializer) throws IllegalAccessException, InvocationTargetException {
+        if (instance instanceof s.java.lang.Object) {
+            ((s.java.lang.Object) instance).deserializeSelf(null, objectDeserializer);
+        } else {
+            deserializeSelfMethod.invoke(instance, null, objectDeserializer);
+        }
+    }
+
     private static void deserializeClassStatics(ByteBufferObjectDeserializer objectDeserializer, SortedFieldCache cache, Class<?>[] sortedRoots, Class<?> constantClass) {
         // First, we serialize the constants.
         deserializeConstantClass(objectDeserializer, cache, constantClass);
@@ -94,17 +129,15 @@ public class Deserializer {
 
     private static void deserializeConstantClass(ByteBufferObjectDeserializer objectDeserializer, SortedFieldCache cache, Class<?> constantClass) {
         // Note that we don't serialize the class name - the roots are in the same sorted order for reading and writing.
-        Field[] constants = cache.getConstantFields(constantClass);
-        deserializeFieldsForClass(objectDeserializer, constants);
+        objectDeserializer.readFields(cache.getConstantLayout(constantClass), null);
     }
 
     private static void deserializeOneUserClass(ByteBufferObjectDeserializer objectDeserializer, SortedFieldCache cache, Class<?> clazz) {
         // Note that we don't serialize the class name - the roots are in the same sorted order for reading and writing.
-        Field[] fields = cache.getUserStaticFields(clazz);
-        deserializeFieldsForClass(objectDeserializer, fields);
+        objectDeserializer.readFields(cache.getUserStaticLayout(clazz), null);
     }
 
-    private static List<Object> createAllInstancesFromBuffer(ByteBufferObjectDeserializer objectDeserializer, List<Object> existingObjectIndex, SortedFieldCache cache, IPersistenceNameMapper classNameMapper) {
+    private static List<Object> createAllInstancesFromBuffer(ByteBufferObjectDeserializer objectDeserializer, List<Object> existingObjectIndex, SortedFieldCache cache, IPersistenceNameMapper classNameMapper, List<Integer> out_instanceOffsets) {
         Method deserializeSelfMethod = cache.getDeserializeSelfMethod();
         List<Object> instanceList = new ArrayList<>();
         // We want to tell each instance which index we read them as - this is useful in the case of reentrant calls so we can track the
@@ -129,12 +162,15 @@ public class Deserializer {
                     keepRunning = false;
                 }
                 if (keepRunning) {
+                    if (null != out_instanceOffsets) {
+                        out_instanceOffsets.add(objectDeserializer.getPosition());
+                    }
                     // Note that we might be re-using an old instance (if we are returning from a reentrant call).
                     // Even if there is a different object instance we want to re-use, we still need to create the instance in order to advance the stream.
                     Object instance = (isDeserializingIntoCallerObjects && (null != existingObjectIndex.get(readIndex)))
                             ? existingObjectIndex.get(readIndex)
                             : cache.getNewInstance(internalClassName, isDeserializingIntoCallerObjects ? -1 : readIndex);
-                    deserializeSelfMethod.invoke(instance, null, objectDeserializer);
+                    deserializeInstance(deserializeSelfMethod, instance, objectDeserializer);
                     instanceList.add(instance);
                     readIndex += 1;
                 }
@@ -155,7 +191,12 @@ public class Deserializer {
                 // Read the class name, but just to advance the cursor.
                 objectDeserializer.readClassName();
                 // Now, deserialize the instance.
-                deserializeSelfMethod.invoke(instance, null, objectDeserializer);
+                deserializeInstance(deserializeSelfMethod, instance, objectDeserializer);
+                // The instance now matches what was deserialized so any later write must be reported.
+                // (tests use plain objects for some of these cases so we need to check the type).
+                if (instance instanceof s.java.lang.Object) {
+                    ((s.java.lang.Object) instance).markPersisted();
+                }
             }
         } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
             // Reflection errors can't happen since we set this up so we could access it.
@@ -163,43 +204,5 @@ public class Deserializer {
         }
     }
 
-    private static void deserializeFieldsForClass(ByteBufferObjectDeserializer objectDeserializer, Field[] fields) {
-        try {
-            for (Field field : fields) {
-                // We need to crack the type, here.
-                Class<?> type = field.getType();
-                if (boolean.class == type) {
-                    boolean val = objectDeserializer.readBoolean();
-                    field.setBoolean(null, val);
-                } else if (byte.class == type) {
-                    byte val = objectDeserializer.readByte();
-                    field.setByte(null, val);
-                } else if (short.class == type) {
-                    short val = objectDeserializer.readShort();
-                    field.setShort(null, val);
-                } else if (char.class == type) {
-                    char val = objectDeserializer.readChar();
-                    field.setChar(null, val);
-                } else if (int.class == type) {
-                    int val = objectDeserializer.readInt();
-                    field.setInt(null, val);
-                } else if (float.class == type) {
-                    float val = objectDeserializer.readFloat();
-                    field.setFloat(null, val);
-                } else if (long.class == type) {
-                    long val = objectDeserializer.readLong();
-                    field.setLong(null, val);
-                } else if (double.class == type) {
-                    double val = objectDeserializer.readDouble();
-                    field.setDouble(null, val);
-                } else {
-                    Object val = objectDeserializer.readObject();
-                    field.set(null, val);
-                }
-            }
-        } catch (IllegalAccessException e) {
-            // Reflection errors can't happen since we set this up so we could access it.
-            throw RuntimeAssertionError.unexpected(e);
-        }
-    }
+
 }
@@ -0,0 +1,63 @@
+package org.aion.avm.core.persistence;
+
+import java.lang.reflect.Field;
+
+
+/**
+ * The fields of a class (or, for instances, of a class hierarchy) in the order they are serialized, with the type of each field
+ * classified up-front so that reading and writing them is a switch on a pre-computed tag, instead of a series of type comparisons
+ * for every field of every object.
+ * These are built and cached by the SortedFieldCache.
+ */
+public final class FieldLayout {
+    public static final byte TYPE_BOOLEAN = 0;
+    public static final byte TYPE_BYTE = 1;
+    public static final byte TYPE_SHORT = 2;
+    public static final byte TYPE_CHAR = 3;
+    public static final byte TYPE_INT = 4;
+    public static final byte TYPE_FLOAT = 5;
+    public static final byte TYPE_LONG = 6;
+    public static final byte TYPE_DOUBLE = 7;
+    public static final byte TYPE_REFERENCE = 8;
+
+    public static FieldLayout forFields(Field[] fields) {
+        byte[] types = new byte[fields.length];
+        for (int i = 0; i < fields.length; ++i) {
+            types[i] = classify(fields[i].getType());
+        }
+        return new FieldLayout(fields, types);
+    }
+
+    private static byte classify(Class<?> type) {
+        byte tag;
+        if (boolean.class == type) {
+            tag = TYPE_BOOLEAN;
+        } else if (byte.class == type) {
+            tag = TYPE_BYTE;
+        } else if (short.class == type) {
+            tag = TYPE_SHORT;
+        } else if (char.class == type) {
+            tag = TYPE_CHAR;
+        } else if (int.class == type) {
+            tag = TYPE_INT;
+        } else if (float.class == type) {
+            tag = TYPE_FLOAT;
+        } else if (long.class == type) {
+            tag = TYPE_LONG;
+        } else if (double.class == type) {
+            tag = TYPE_DOUBLE;
+        } else {
+            tag = TYPE_REFERENCE;
+        }
+        return tag;
+    }
+
+
+    public final Field[] fields;
+    public final byte[] types;
+
+    private FieldLayout(Field[] fields, byte[] types) {
+        this.fields = fields;
+        this.types = types;
+    }
+}
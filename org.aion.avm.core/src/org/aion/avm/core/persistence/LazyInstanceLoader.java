@@ -0,0 +1,47 @@
+package org.aion.avm.core.persistence;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import i.ILazyInstanceLoader;
+import i.IObject;
+import i.RuntimeAssertionError;
+
+
+/**
+ * Populates the stub instances created by Deserializer.deserializeGraphLazilyAndNextHashCode(), one at a time, as they are first loaded.
+ * All of the stubs from one graph share one of these, along with the buffer and the deserializer (which already knows every instance
+ * in the graph so references can be resolved to the other stubs without loading them).
+ */
+public class LazyInstanceLoader implements ILazyInstanceLoader {
+    private final ByteBufferObjectDeserializer objectDeserializer;
+    private final Method deserializeSelfMethod;
+    private final int[] instanceOffsets;
+
+    public LazyInstanceLoader(ByteBufferObjectDeserializer objectDeserializer, Method deserializeSelfMethod, List<Integer> instanceOffsets) {
+        this.objectDeserializer = objectDeserializer;
+        this.deserializeSelfMethod = deserializeSelfMethod;
+        this.instanceOffsets = new int[instanceOffsets.size()];
+        for (int i = 0; i < this.instanceOffsets.length; ++i) {
+            this.instanceOffsets[i] = instanceOffsets.get(i);
+        }
+    }
+
+    @Override
+    public void loadInstance(IObject instance, int readIndex) {
+        // We restore the previous position when done, in case this load was triggered while another instance was being deserialized.
+        int previousPosition = this.objectDeserializer.getPosition();
+        this.objectDeserializer.setPosition(this.instanceOffsets[readIndex]);
+        try {
+            Deserializer.deserializeInstance(this.deserializeSelfMethod, instance, this.objectDeserializer);
+        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+            // Reflection errors can't happen since we set this up so we could access it.
+            throw RuntimeAssertionError.unexpected(e);
+        } finally {
+            this.objectDeserializer.setPosition(previousPosition);
+        }
+        // The instance now matches what was deserialized so any later write must be reported.
+        ((s.java.lang.Object) instance).markPersisted();
+    }
+}
@@ -3,6 +3,7 @@ package org.aion.avm.core.persistence;
 import org.aion.avm.core.util.DescriptorParser;
 import org.aion.avm.utilities.Utilities;
 
+import i.Helper;
 import i.RuntimeAssertionError;
 import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
@@ -11,12 +12,15 @@ import org.objectweb.asm.Opcodes;
 
 
 /**
- * Walks the method code, replace prepending a call to "lazyLoad()" on any GETFIELD/PUTFIELD bytecodes.
+ * Walks the method code, replace prepending a call to "lazyLoad()" on any GETFIELD bytecodes and "markModified()" on any PUTFIELD bytecodes.
+ * Additionally, any PUTSTATIC is prepended with a call to "markGraphModified()" on the helper.  These write notifications are what allow
+ * an unmodified object graph to be re-used, instead of re-serialized, at the end of a call.
  * Note that there are special-cases:
  * -"&lt;clinit&gt;" - no re-writing is done here since nothing visible at this point could be a stub (this
  *  visitor isn't created in those cases).
  * -"&lt;init&gt;" - extra analysis is done to determine where the "this" pointer is since we can't call
- *  lazyLoad() on it (fields can be accessed before "this" has been initialized).
+ *  lazyLoad() or markModified() on it (fields can be accessed before "this" has been initialized).  Note that "this", within a constructor,
+ *  is always a new instance, so it can't be part of a previously persisted graph.
  * 
  * It may be possible to expand this control flow analysis to also avoid redundant lazyLoad() calls in all
  * methods, but this is a later consideration.
@@ -25,6 +29,10 @@ public class LazyLoadingMethodVisitor extends MethodVisitor {
     private static final String SHADOW_OBJECT_NAME = Utilities.fulllyQualifiedNameToInternalName(s.java.lang.Object.class.getName());
     private static final String LAZY_LOAD_NAME = "lazyLoad";
     private static final String LAZY_LOAD_DESCRIPTOR = "()V";
+    private static final String MARK_MODIFIED_NAME = "markModified";
+    private static final String MARK_MODIFIED_DESCRIPTOR = "()V";
+    private static final String MARK_GRAPH_MODIFIED_NAME = "markGraphModified";
+    private static final String MARK_GRAPH_MODIFIED_DESCRIPTOR = "()V";
 
     private final StackThisTracker tracker;
     // The offset of the next instruction into the canSafelySkip array.  Usually, this is just bytecodes but labels, frames, and line number entries
@@ -148,9 +156,10 @@ public class LazyLoadingMethodVisitor extends MethodVisitor {
      * @param descriptor The type descriptor of the field to which the opcode is applied.
      */
     private void checkInjectLazyLoad(int opcode, String descriptor) {
-        // If this is a PUTFIELD or GETFIELD, we want to call "lazyLoad()":
+        // If this is a PUTFIELD, we want to call "markModified()" and, if GETFIELD, "lazyLoad()":
         // -PUTIFELD:  DUP2, POP, INVOKEVIRTUAL
         // -GETIFELD:  DUP, INVOKEVIRTUAL
+        // A PUTSTATIC just needs the static helper call since there is no receiver.
         if ((Opcodes.PUTFIELD == opcode) && ((null == this.tracker) || !this.tracker.isThisTargetOfPut(this.frameOffset))) {
             // We need to see how big this type is since double and long need a far more complex dance.
             if ((1 == descriptor.length()) && ((DescriptorParser.LONG == descriptor.charAt(0)) || (DescriptorParser.DOUBLE == descriptor.charAt(0)))) {
@@ -164,7 +173,7 @@ public class LazyLoadingMethodVisitor extends MethodVisitor {
                 // DUP: ... VAR1, VAR2, OBJECT, OBJECT (top)
                 super.visitInsn(Opcodes.DUP);
                 // INOKE: ... VAR1, VAR2, OBJECT (top)
-                super.visitMethodInsn(Opcodes.INVOKEVIRTUAL, SHADOW_OBJECT_NAME, LAZY_LOAD_NAME, LAZY_LOAD_DESCRIPTOR, false);
+                super.visitMethodInsn(Opcodes.INVOKEVIRTUAL, SHADOW_OBJECT_NAME, MARK_MODIFIED_NAME, MARK_MODIFIED_DESCRIPTOR, false);
                 // DUP_X2: ... OBJECT, VAR1, VAR2, OBJECT (top)
                 super.visitInsn(Opcodes.DUP_X2);
                 // POP: ... OBJECT, VAR1, VAR2 (top)
@@ -178,13 +187,16 @@ public class LazyLoadingMethodVisitor extends MethodVisitor {
                 // POP: ... OBJECT, VAR, OBJECT (top)
                 super.visitInsn(Opcodes.POP);
                 // INOKE: ... OBJECT, VAR (top)
-                super.visitMethodInsn(Opcodes.INVOKEVIRTUAL, SHADOW_OBJECT_NAME, LAZY_LOAD_NAME, LAZY_LOAD_DESCRIPTOR, false);
+                super.visitMethodInsn(Opcodes.INVOKEVIRTUAL, SHADOW_OBJECT_NAME, MARK_MODIFIED_NAME, MARK_MODIFIED_DESCRIPTOR, false);
             }
         } else if ((Opcodes.GETFIELD == opcode) && ((null == this.tracker) || !this.tracker.isThisTargetOfGet(this.frameOffset))) {
             // Here, the stack looks like: ... OBJECT, (top)
             // Where we need:  ... OBJECT, OBJECT (top)
             super.visitInsn(Opcodes.DUP);
             super.visitMethodInsn(Opcodes.INVOKEVIRTUAL, SHADOW_OBJECT_NAME, LAZY_LOAD_NAME, LAZY_LOAD_DESCRIPTOR, false);
+        } else if (Opcodes.PUTSTATIC == opcode) {
+            // The stack is unchanged by this call.
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, Helper.RUNTIME_HELPER_NAME, MARK_GRAPH_MODIFIED_NAME, MARK_GRAPH_MODIFIED_DESCRIPTOR, false);
         }
     }
 }
@@ -83,17 +83,26 @@ public class LoadedDApp {
     private Method mainMethod;
     private long loadedDataBlockNum;
     private long loadedCodeBlockNum;
+    // Identifies the data cached with this instance, so the owner of the cache can tell whether a newer copy has since been cached.
+    private long dataGeneration;
 
     // Note that we track the interned classes here since they have the same lifecycle as the LoadedDApp (including for reentrant calls).
     public final InternedClasses internedClasses;
 
     private final ClassRenamer classRenamer;
     private final boolean preserveDebuggability;
+    // True if the code was transformed to report writes to the persisted graph (see LazyLoadingMethodVisitor) - older code wasn't.
+    private final boolean tracksGraphWrites;
 
     // Next hashcode which can be used to resume the state or serialize the DApp
     private int hashCode;
     // Used for billing
     private int serializedLength;
+    // The total size of the transformed bytecode of the classes in this DApp (lazily computed, only used for cache accounting).
+    private long totalBytecodeLength;
+    // The serialized graph which the current in-memory state was last loaded from or saved to, at the top level (null if unknown).
+    // This is only retained if we track graph writes since it is only used to skip serializing an unmodified graph.
+    private byte[] persistedGraphData;
 
     /**
      * Creates the LoadedDApp to represent the classes related to DApp at address.
@@ -103,8 +112,9 @@ public class LoadedDApp {
      * @param constantClass The class we generated to contain all constants.
      * @param originalMainClassName The pre-translation name of the user's main class.
      * @param preserveDebuggability True if we should preserve debuggability by not renaming classes.
+     * @param tracksGraphWrites True if the classes report writes to the persisted graph (so an unmodified graph can be re-used).
      */
-    public LoadedDApp(ClassLoader loader, Class<?>[] userClasses, Class<?> constantClass, String originalMainClassName, boolean preserveDebuggability) {
+    public LoadedDApp(ClassLoader loader, Class<?>[] userClasses, Class<?> constantClass, String originalMainClassName, boolean preserveDebuggability, boolean tracksGraphWrites) {
         this.loader = loader;
         // Note that the storage system defines the classes as being sorted alphabetically.
         this.sortedUserClasses = Arrays.stream(userClasses)
@@ -114,6 +124,7 @@ public class LoadedDApp {
         this.originalMainClassName = originalMainClassName;
         this.fieldCache = new SortedFieldCache(this.loader, SERIALIZE_SELF, DESERIALIZE_SELF, FIELD_READ_INDEX);
         this.preserveDebuggability = preserveDebuggability;
+        this.tracksGraphWrites = tracksGraphWrites;
 
         // Collect all of the user-defined classes, discarding any generated exception wrappers for them.
         // This information is to be handed off to the persistance layer.
@@ -164,46 +175,127 @@ public class LoadedDApp {
         return nextHashCode;
     }
 
+    /**
+     * @return True if the classes report writes to the persisted graph (so an unmodified graph can be re-used instead of serialized).
+     */
+    public boolean tracksGraphWrites() {
+        return this.tracksGraphWrites;
+    }
+
+    /**
+     * Requests that the Classes in the receiver be populated with data from the rawGraphData, but only the statics are connected:  the
+     * instances in the graph are stubs which populate themselves when first used.
+     * The stubs retain rawGraphData until they have all been populated so this should be the same array passed to rememberPersistedGraph().
+     * This MUST NOT be used for the reentrant case (the caller state is copied back into the existing instances).
+     * NOTE:  The caller is expected to manage billing - none of that is done in here.
+     * 
+     * @param internedClassMap The interned classes, in case class references need to be instantiated.
+     * @param rawGraphData The data from which to read the graph (note that this must encompass all and only a completely serialized graph.
+     * @return The nextHashCode serialized within the graph.
+     */
+    public int loadEntireGraphLazily(InternedClasses internedClassMap, byte[] rawGraphData) {
+        ByteBuffer inputBuffer = ByteBuffer.wrap(rawGraphData);
+        StandardGlobalResolver resolver = new StandardGlobalResolver(internedClassMap, this.loader);
+        StandardNameMapper classNameMapper = new StandardNameMapper(this.classRenamer);
+        return Deserializer.deserializeGraphLazilyAndNextHashCode(inputBuffer, resolver, this.fieldCache, classNameMapper, this.sortedUserClasses, this.constantClass);
+    }
+
     /**
      * Requests that the Classes in the receiver be walked and all referenced objects be serialized into a graph.
      * NOTE:  The caller is expected to manage billing - none of that is done in here.
      * 
+     * @param bufferPool The calling thread's pool of serialization buffers.
      * @param nextHashCode The nextHashCode to serialize into the graph so that this can be resumed in the future.
      * @param maximumSizeInBytes The size limit on the serialized graph size (this is a parameter for testing but also to allow the caller to impose energy-based limits).
      * @return The enter serialized object graph.
      */
-    public byte[] saveEntireGraph(int nextHashCode, int maximumSizeInBytes) {
-        ByteBuffer outputBuffer = ByteBuffer.allocate(maximumSizeInBytes);
-        List<Object> out_instanceIndex = null;
-        List<Integer> out_calleeToCallerIndexMap = null;
-        StandardGlobalResolver resolver = new StandardGlobalResolver(null, this.loader);
-        StandardNameMapper classNameMapper = new StandardNameMapper(this.classRenamer);
-        Serializer.serializeEntireGraph(outputBuffer, out_instanceIndex, out_calleeToCallerIndexMap, resolver, this.fieldCache, classNameMapper, nextHashCode, this.sortedUserClasses, this.constantClass);
-        
-        byte[] finalBytes = new byte[outputBuffer.position()];
-        System.arraycopy(outputBuffer.array(), 0, finalBytes, 0, finalBytes.length);
+    public byte[] saveEntireGraph(SerializationBufferPool bufferPool, int nextHashCode, int maximumSizeInBytes) {
+        ByteBuffer outputBuffer = bufferPool.checkout(maximumSizeInBytes);
+        byte[] finalBytes = null;
+        try {
+            List<Object> out_instanceIndex = null;
+            List<Integer> out_calleeToCallerIndexMap = null;
+            StandardGlobalResolver resolver = new StandardGlobalResolver(null, this.loader);
+            StandardNameMapper classNameMapper = new StandardNameMapper(this.classRenamer);
+            Serializer.serializeEntireGraph(outputBuffer, out_instanceIndex, out_calleeToCallerIndexMap, resolver, this.fieldCache, classNameMapper, nextHashCode, this.sortedUserClasses, this.constantClass);
+            
+            finalBytes = bufferPool.copyWrittenBytes(outputBuffer);
+        } finally {
+            bufferPool.checkin(outputBuffer);
+        }
+        rememberPersistedGraph(finalBytes);
         return finalBytes;
     }
 
-    public ReentrantGraph captureStateAsCaller(int nextHashCode, int maxGraphSize) {
+    /**
+     * Records the serialized graph which the in-memory state was just loaded from, at the top level (that is, not for a reentrant call).
+     * 
+     * @param rawGraphData The data which was passed to loadEntireGraph().
+     */
+    public void rememberPersistedGraph(byte[] rawGraphData) {
+        this.persistedGraphData = this.tracksGraphWrites
+                ? rawGraphData
+                : null;
+    }
+
+    /**
+     * Returns the serialized graph for the in-memory state, assuming that the caller has verified that nothing in the graph has been written
+     * since it was last loaded or saved at the top level.  Since the graph is unchanged, this is the previous serialized graph with only the
+     * nextHashCode updated, which is exactly what saveEntireGraph() would produce.
+     * We keep the graph we already had (only its nextHashCode is stale, which is replaced in any copy we return), since any instances of a
+     * lazily-loaded graph which haven't been used yet still read from that one.
+     * NOTE:  The caller is expected to manage billing - none of that is done in here.
+     * 
+     * @param nextHashCode The nextHashCode to serialize into the graph so that this can be resumed in the future.
+     * @param maximumSizeInBytes The size limit on the serialized graph size.
+     * @return The serialized object graph or null if it can't be re-used (in which case the caller must call saveEntireGraph()).
+     */
+    public byte[] reuseUnmodifiedGraph(int nextHashCode, int maximumSizeInBytes) {
+        byte[] finalBytes = null;
+        if ((null != this.persistedGraphData) && (this.persistedGraphData.length <= maximumSizeInBytes)) {
+            finalBytes = Arrays.copyOf(this.persistedGraphData, this.persistedGraphData.length);
+            // The nextHashCode is always the first thing in the graph.
+            ByteBuffer.wrap(finalBytes).putInt(0, nextHashCode);
+        }
+        return finalBytes;
+    }
+
+    /**
+     * Returns the size of the serialized graph for the in-memory state, under the same assumptions as reuseUnmodifiedGraph(), without
+     * building it.
+     * 
+     * @param maximumSizeInBytes The size limit on the serialized graph size.
+     * @return The size of the serialized object graph or -1 if it isn't known (in which case the caller must call saveEntireGraph()).
+     */
+    public int getUnmodifiedGraphSize(int maximumSizeInBytes) {
+        return ((null != this.persistedGraphData) && (this.persistedGraphData.length <= maximumSizeInBytes))
+                ? this.persistedGraphData.length
+                : -1;
+    }
+
+    public ReentrantGraph captureStateAsCaller(SerializationBufferPool bufferPool, int nextHashCode, int maxGraphSize) {
+        // The graph is about to be changed by a reentrant call, which we don't track, so we can't re-use the last persisted graph.
+        this.persistedGraphData = null;
         StandardGlobalResolver resolver = new StandardGlobalResolver(null, this.loader);
         StandardNameMapper classNameMapper = new StandardNameMapper(this.classRenamer);
-        return ReentrantGraph.captureCallerState(resolver, this.fieldCache, classNameMapper, maxGraphSize, nextHashCode, this.sortedUserClasses, this.constantClass);
+        return ReentrantGraph.captureCallerState(resolver, this.fieldCache, classNameMapper, bufferPool, maxGraphSize, nextHashCode, this.sortedUserClasses, this.constantClass);
     }
 
-    public ReentrantGraph captureStateAsCallee(int updatedNextHashCode, int maxGraphSize) {
+    public ReentrantGraph captureStateAsCallee(SerializationBufferPool bufferPool, int updatedNextHashCode, int maxGraphSize) {
         StandardGlobalResolver resolver = new StandardGlobalResolver(null, this.loader);
         StandardNameMapper classNameMapper = new StandardNameMapper(this.classRenamer);
-        return ReentrantGraph.captureCalleeState(resolver, this.fieldCache, classNameMapper, maxGraphSize, updatedNextHashCode, this.sortedUserClasses, this.constantClass);
+        return ReentrantGraph.captureCalleeState(resolver, this.fieldCache, classNameMapper, bufferPool, maxGraphSize, updatedNextHashCode, this.sortedUserClasses, this.constantClass);
     }
 
     public void commitReentrantChanges(InternedClasses internedClassMap, ReentrantGraph callerState, ReentrantGraph calleeState) {
+        this.persistedGraphData = null;
         StandardGlobalResolver resolver = new StandardGlobalResolver(internedClassMap, this.loader);
         StandardNameMapper classNameMapper = new StandardNameMapper(this.classRenamer);
         callerState.commitChangesToState(resolver, this.fieldCache, classNameMapper, this.sortedUserClasses, this.constantClass, calleeState);
     }
 
     public void revertToCallerState(InternedClasses internedClassMap, ReentrantGraph callerState) {
+        this.persistedGraphData = null;
         StandardGlobalResolver resolver = new StandardGlobalResolver(internedClassMap, this.loader);
         StandardNameMapper classNameMapper = new StandardNameMapper(this.classRenamer);
         callerState.revertChangesToState(resolver, this.fieldCache, classNameMapper, this.sortedUserClasses, this.constantClass);
@@ -334,6 +426,7 @@ public class LoadedDApp {
      */
     public void clearDataState() {
         loadedDataBlockNum = -1;
+        this.persistedGraphData = null;
         Deserializer.cleanClassStatics(this.fieldCache, this.sortedUserClasses, this.constantClass);
     }
 
@@ -408,9 +501,14 @@ public class LoadedDApp {
         return loadedCodeBlockNum;
     }
 
-    public void updateLoadedBlockForSuccessfulTransaction(long loadedBlockNum){
+    public void updateLoadedBlockForSuccessfulTransaction(long loadedBlockNum, long dataGeneration){
         // Store the current block as the last number which the DApp data was loaded in
         loadedDataBlockNum = loadedBlockNum;
+        this.dataGeneration = dataGeneration;
+    }
+
+    public long getDataGeneration() {
+        return dataGeneration;
     }
 
     public boolean hasValidCachedData(long loadedBlockNum){
@@ -432,6 +530,27 @@ public class LoadedDApp {
 
     public int getSerializedLength() { return serializedLength; }
 
+    /**
+     * Estimates the number of bytes retained by this DApp when it is held in a cache:  the transformed bytecode of its classes plus
+     * the serialized length of its object graph.
+     * This is only an estimate (it ignores the JVM's representation of the classes and the shape of the live graph) but it scales
+     * with the actual footprint, which is what a size-bounded cache needs.
+     * 
+     * @return The estimated number of bytes retained by this DApp.
+     */
+    public long getEstimatedRetainedBytes() {
+        long bytecodeLength = this.totalBytecodeLength;
+        if (0L == bytecodeLength) {
+            AvmClassLoader appLoader = (AvmClassLoader) this.loader;
+            bytecodeLength = appLoader.getUserClassBytecode(this.constantClass.getName()).length;
+            for (Class<?> clazz : this.sortedUserClasses) {
+                bytecodeLength += appLoader.getUserClassBytecode(clazz.getName()).length;
+            }
+            this.totalBytecodeLength = bytecodeLength;
+        }
+        return bytecodeLength + (long) this.serializedLength;
+    }
+
     private Set<String> fetchPreRenameSlashStyleJclExceptions() {
         Set<String> jclExceptions = new HashSet<>();
 
@@ -10,22 +10,28 @@ import java.util.List;
  * In the future, this logic and data may be split, since they don't need to be together.  This just makes the connection more obvious, for now.
  */
 public class ReentrantGraph {
-    public static ReentrantGraph captureCallerState(IGlobalResolver resolver, SortedFieldCache cache, IPersistenceNameMapper classNameMapper, int maximumSizeInBytes, int nextHashCode, Class<?>[] sortedRoots, Class<?> constantClass) {
-        ByteBuffer buffer = ByteBuffer.allocate(maximumSizeInBytes);
-        List<Object> existingObjectIndex = new ArrayList<>();
-        Serializer.serializeEntireGraph(buffer, existingObjectIndex, null, resolver, cache, classNameMapper, nextHashCode, sortedRoots, constantClass);
-        byte[] finalBytes = new byte[buffer.position()];
-        System.arraycopy(buffer.array(), 0, finalBytes, 0, finalBytes.length);
-        return new ReentrantGraph(finalBytes, existingObjectIndex, null);
+    public static ReentrantGraph captureCallerState(IGlobalResolver resolver, SortedFieldCache cache, IPersistenceNameMapper classNameMapper, SerializationBufferPool bufferPool, int maximumSizeInBytes, int nextHashCode, Class<?>[] sortedRoots, Class<?> constantClass) {
+        ByteBuffer buffer = bufferPool.checkout(maximumSizeInBytes);
+        try {
+            List<Object> existingObjectIndex = new ArrayList<>();
+            Serializer.serializeEntireGraph(buffer, existingObjectIndex, null, resolver, cache, classNameMapper, nextHashCode, sortedRoots, constantClass);
+            byte[] finalBytes = bufferPool.copyWrittenBytes(buffer);
+            return new ReentrantGraph(finalBytes, existingObjectIndex, null);
+        } finally {
+            bufferPool.checkin(buffer);
+        }
     }
 
-    public static ReentrantGraph captureCalleeState(IGlobalResolver resolver, SortedFieldCache cache, IPersistenceNameMapper classNameMapper, int maximumSizeInBytes, int nextHashCode, Class<?>[] sortedRoots, Class<?> constantClass) {
-        ByteBuffer calleeBuffer = ByteBuffer.allocate(maximumSizeInBytes);
-        List<Integer> calleeToCallerMapping = new ArrayList<>();
-        Serializer.serializeEntireGraph(calleeBuffer, null, calleeToCallerMapping, resolver, cache, classNameMapper, nextHashCode, sortedRoots, constantClass);
-        byte[] calleeBytes = new byte[calleeBuffer.position()];
-        System.arraycopy(calleeBuffer.array(), 0, calleeBytes, 0, calleeBytes.length);
-        return new ReentrantGraph(calleeBytes, null, calleeToCallerMapping);
+    public static ReentrantGraph captureCalleeState(IGlobalResolver resolver, SortedFieldCache cache, IPersistenceNameMapper classNameMapper, SerializationBufferPool bufferPool, int maximumSizeInBytes, int nextHashCode, Class<?>[] sortedRoots, Class<?> constantClass) {
+        ByteBuffer calleeBuffer = bufferPool.checkout(maximumSizeInBytes);
+        try {
+            List<Integer> calleeToCallerMapping = new ArrayList<>();
+            Serializer.serializeEntireGraph(calleeBuffer, null, calleeToCallerMapping, resolver, cache, classNameMapper, nextHashCode, sortedRoots, constantClass);
+            byte[] calleeBytes = bufferPool.copyWrittenBytes(calleeBuffer);
+            return new ReentrantGraph(calleeBytes, null, calleeToCallerMapping);
+        } finally {
+            bufferPool.checkin(calleeBuffer);
+        }
     }
 
 
@@ -0,0 +1,73 @@
+package org.aion.avm.core.persistence;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.aion.avm.core.AvmThreadStats;
+
+
+/**
+ * The buffers used to serialize object graphs, re-used across calls so that we don't allocate a new maximum-sized buffer every time a
+ * graph is saved or captured for a reentrant call.
+ * Each AvmExecutorThread owns one of these so it is NOT thread-safe.
+ *
+ * Note that the serialized graph is always copied out of the buffer, once, into an array of exactly the serialized size since the
+ * result is retained (by the kernel, the caches, and the reentrant stack) after the buffer has been re-used.
+ */
+public class SerializationBufferPool {
+    // Serialization doesn't nest (every graph is copied out before the next one is started) so we only expect to ever need one buffer.
+    private static final int MAXIMUM_RETAINED_BUFFERS = 2;
+
+    private final AvmThreadStats stats;
+    private final Deque<ByteBuffer> availableBuffers;
+
+    public SerializationBufferPool(AvmThreadStats stats) {
+        this.stats = stats;
+        this.availableBuffers = new ArrayDeque<>();
+    }
+
+    /**
+     * Gets a buffer to serialize into, re-using one which was previously checked-in if it is large enough.
+     * 
+     * @param maximumSizeInBytes The size limit on the serialized graph (the returned buffer's limit).
+     * @return A buffer, positioned at 0, which will overflow if more than maximumSizeInBytes are written.
+     */
+    public ByteBuffer checkout(int maximumSizeInBytes) {
+        ByteBuffer buffer = this.availableBuffers.pollFirst();
+        if ((null != buffer) && (buffer.capacity() >= maximumSizeInBytes)) {
+            buffer.clear();
+            this.stats.serializationBuffer_reused += 1;
+        } else {
+            // If this was too small, we just drop it, since the new one will be larger.
+            buffer = ByteBuffer.allocate(maximumSizeInBytes);
+            this.stats.serializationBuffer_allocated += 1;
+        }
+        buffer.limit(maximumSizeInBytes);
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer from checkout() to the pool.  The caller must not use the buffer after this.
+     * 
+     * @param buffer The buffer to return.
+     */
+    public void checkin(ByteBuffer buffer) {
+        if (this.availableBuffers.size() < MAXIMUM_RETAINED_BUFFERS) {
+            this.availableBuffers.addFirst(buffer);
+        }
+    }
+
+    /**
+     * Copies what has been written into the buffer (everything before its position) into a new array.
+     * 
+     * @param buffer A buffer from checkout().
+     * @return The serialized bytes.
+     */
+    public byte[] copyWrittenBytes(ByteBuffer buffer) {
+        byte[] finalBytes = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, finalBytes, 0, finalBytes.length);
+        this.stats.serializationBuffer_bytesCopied += finalBytes.length;
+        return finalBytes;
+    }
+}
@@ -57,14 +57,12 @@ public class Serializer {
 
     private static void serializeConstantClass(ByteBufferObjectSerializer objectSerializer, SortedFieldCache cache, Class<?> clazz) {
         // Note that we don't serialize the class name - the roots are in the same sorted order for reading and writing.
-        Field[] constants = cache.getConstantFields(clazz);
-        serializeFieldsForClass(objectSerializer, constants);
+        objectSerializer.writeFields(cache.getConstantLayout(clazz), null);
     }
 
     private static void serializeOneUserClass(ByteBufferObjectSerializer objectSerializer, SortedFieldCache cache, Class<?> clazz) {
         // Note that we don't serialize the class name - the roots are in the same sorted order for reading and writing.
-        Field[] fields = cache.getUserStaticFields(clazz);
-        serializeFieldsForClass(objectSerializer, fields);
+        objectSerializer.writeFields(cache.getUserStaticLayout(clazz), null);
     }
 
     private static void serializeGraphFromWorkQueue(List<Object> out_instanceIndex, List<Integer> out_calleeToCallerIndexMap, ByteBufferObjectSerializer objectSerializer, SortedFieldCache cache, Queue<Object> toProcessQueue) {
@@ -77,7 +75,26 @@ public class Serializer {
                 // We first need to serialize the class name.
                 String internalClassName = instance.getClass().getName();
                 objectSerializer.writeClassName(internalClassName);
-                serializeSelfMethod.invoke(instance, null, objectSerializer);
+                // (tests use plain objects for some of these cases so we need to check the type).
+                boolean isShadowObject = (instance instanceof s.java.lang.Object);
+                if (isShadowObject) {
+                    // The instance may be a stub from a lazily-loaded graph, so make sure it has its state before we write it.
+                    s.java.lang.Object shadowInstance = (s.java.lang.Object) instance;
+                    shadowInstance.lazyLoad();
+                    // We call this directly, instead of through reflection, so the JIT can see the call.
+                    try {
+                        shadowInstance.serializeSelf(null, objectSerializer);
+                    } catch (BufferOverflowException e) {
+                        // This is if we run off the end of the buffer, which is an example of out of energy.
+                        throw new OutOfEnergyException();
+                    }
+                } else {
+                    serializeSelfMethod.invoke(instance, null, objectSerializer);
+                }
+                // The instance now matches what was serialized so any later write must be reported.
+                if (isShadowObject) {
+                    ((s.java.lang.Object) instance).markPersisted();
+                }
                 if (null != out_instanceIndex) {
                     out_instanceIndex.add(instance);
                 } else if (null != out_calleeToCallerIndexMap) {
@@ -103,43 +120,5 @@ public class Serializer {
         }
     }
 
-    private static void serializeFieldsForClass(ByteBufferObjectSerializer objectSerializer, Field[] fields) {
-        try {
-            for (Field field : fields) {
-                // We need to crack the type, here.
-                Class<?> type = field.getType();
-                if (boolean.class == type) {
-                    boolean val = field.getBoolean(null);
-                    objectSerializer.writeBoolean(val);
-                } else if (byte.class == type) {
-                    byte val = field.getByte(null);
-                    objectSerializer.writeByte(val);
-                } else if (short.class == type) {
-                    short val = field.getShort(null);
-                    objectSerializer.writeShort(val);
-                } else if (char.class == type) {
-                    char val = field.getChar(null);
-                    objectSerializer.writeChar(val);
-                } else if (int.class == type) {
-                    int val = field.getInt(null);
-                    objectSerializer.writeInt(val);
-                } else if (float.class == type) {
-                    float actual = field.getFloat(null);
-                    objectSerializer.writeFloat(actual);
-                } else if (long.class == type) {
-                    long val = field.getLong(null);
-                    objectSerializer.writeLong(val);
-                } else if (double.class == type) {
-                    double actual = field.getDouble(null);
-                    objectSerializer.writeDouble(actual);
-                } else {
-                    Object target = field.get(null);
-                    objectSerializer.writeObject(target);
-                }
-            }
-        } catch (IllegalAccessException e) {
-            // Reflection errors can't happen since we set this up so we could access it.
-            throw RuntimeAssertionError.unexpected(e);
-        }
-    }
+
 }
@@ -5,8 +5,10 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import i.RuntimeAssertionError;
@@ -23,6 +25,11 @@ public class SortedFieldCache {
     private final Map<Class<?>, Field[]> constantFields;
     private final Map<Class<?>, Field[]> staticFields;
     private final Map<Class<?>, Field[]> instanceFields;
+    private final Map<Class<?>, FieldLayout> constantLayouts;
+    private final Map<Class<?>, FieldLayout> staticLayouts;
+    // Instance layouts are for the entire hierarchy, below the root class (which is the same for every class we see, in practice).
+    private final Map<Class<?>, FieldLayout> instanceLayouts;
+    private Class<?> instanceLayoutRoot;
     private final ClassLoader dappClassLoader;
     private final Method serializeSelf;
     private final Method deserializeSelf;
@@ -33,6 +40,10 @@ public class SortedFieldCache {
         this.constantFields = new HashMap<>();
         this.staticFields = new HashMap<>();
         this.instanceFields = new HashMap<>();
+        this.constantLayouts = new HashMap<>();
+        this.staticLayouts = new HashMap<>();
+        this.instanceLayouts = new HashMap<>();
+        this.instanceLayoutRoot = null;
         this.dappClassLoader = dappClassLoader;
         this.serializeSelf = serializeSelf;
         this.deserializeSelf = deserializeSelf;
@@ -83,6 +94,51 @@ public class SortedFieldCache {
         return result;
     }
 
+    public FieldLayout getConstantLayout(Class<?> clazz) {
+        FieldLayout result = this.constantLayouts.get(clazz);
+        if (null == result) {
+            result = FieldLayout.forFields(getConstantFields(clazz));
+            this.constantLayouts.put(clazz, result);
+        }
+        return result;
+    }
+
+    public FieldLayout getUserStaticLayout(Class<?> clazz) {
+        FieldLayout result = this.staticLayouts.get(clazz);
+        if (null == result) {
+            result = FieldLayout.forFields(getUserStaticFields(clazz));
+            this.staticLayouts.put(clazz, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the instance fields of clazz and all of its superclasses, stopping before rootClass, in the order they are serialized:
+     * from the class just below the root down to clazz, with each class's fields sorted by name.
+     * 
+     * @param rootClass The class whose fields (and those of its superclasses) are not included.
+     * @param clazz The class of the instance.
+     * @return The layout of the instance fields to serialize.
+     */
+    public FieldLayout getInstanceLayout(Class<?> rootClass, Class<?> clazz) {
+        if (null == this.instanceLayoutRoot) {
+            this.instanceLayoutRoot = rootClass;
+        }
+        FieldLayout result = (rootClass == this.instanceLayoutRoot)
+                ? this.instanceLayouts.get(clazz)
+                : null;
+        if (null == result) {
+            List<Field> fields = new ArrayList<>();
+            collectInstanceFieldsToRoot(fields, rootClass, clazz);
+            result = FieldLayout.forFields(fields.toArray(new Field[fields.size()]));
+            // We only cache the common root (callers never use different ones for the same cache, outside of tests).
+            if (rootClass == this.instanceLayoutRoot) {
+                this.instanceLayouts.put(clazz, result);
+            }
+        }
+        return result;
+    }
+
     public Method getSerializeSelfMethod() {
         return this.serializeSelf;
     }
@@ -95,6 +151,14 @@ public class SortedFieldCache {
         return this.readIndex;
     }
 
+    private void collectInstanceFieldsToRoot(List<Field> out_fields, Class<?> rootClass, Class<?> thisClass) {
+        if (rootClass != thisClass) {
+            // The superclass fields come first.
+            collectInstanceFieldsToRoot(out_fields, rootClass, thisClass.getSuperclass());
+            out_fields.addAll(Arrays.asList(getInstanceFields(thisClass)));
+        }
+    }
+
     public Object getNewInstance(String internalClassName, int readIndex) {
         Class<?> clazz = this.internalNameClasses.get(internalClassName);
         if (null == clazz) {
@@ -17,6 +17,14 @@ public class InstanceVariableCountManager {
         this.nameToSuperClassName.put(className, superClassName);
     }
 
+    // Used to merge the counts from classes which were visited independently.
+    public void addCounts(InstanceVariableCountManager other) {
+        for (Map.Entry<String, Integer> entry : other.nameToDeclaredCount.entrySet()) {
+            String className = entry.getKey();
+            addCount(className, other.nameToSuperClassName.get(className), entry.getValue());
+        }
+    }
+
     public void verifyAllCounts() {
         Map<String, Integer> cache = new HashMap<>();
         for (String className : this.nameToDeclaredCount.keySet()) {
@@ -266,15 +266,13 @@ public final class ClassHierarchy {
             throw new IllegalArgumentException("The hierarchy does not contain: " + class2);
         }
 
-        // Visit the ancestors of the two starting nodes and mark them differently.
-        visitAncestorsAndMarkGreen(class1);
-        visitAncestorsAndMarkRed(class2);
+        // Collect the ancestors of the two starting nodes and keep the ones they have in common.
+        // (this only reads the hierarchy, so it can be queried from many threads once it is built)
+        Set<String> commonAncestors = collectAncestors(class1);
+        commonAncestors.retainAll(collectAncestors(class2));
 
-        // Now, starting at the root, discover all doubly marked leaf nodes.
-        Set<ClassInformation> leafNodes = discoverAllDoublyMarkedLeafNodesFromRoot();
-
-        // Clean up the mess we made.
-        clearAllMarkings();
+        // Now, starting at the root, discover all common ancestors which are leaf nodes.
+        Set<ClassInformation> leafNodes = discoverAllCommonLeafNodesFromRoot(commonAncestors);
 
         // If these nodes have no super class in common something is very wrong.
         RuntimeAssertionError.assertTrue(!leafNodes.isEmpty());
@@ -444,31 +442,35 @@ public final class ClassHierarchy {
     }
 
     /**
-     * Visits all ancestor nodes of the provided starting node and marks them green.
+     * Returns the names of the provided starting node and all of its ancestors.
      *
      * ASSUMPTION: startingNode is non-null and exists in the hierarchy.
      */
-    private void visitAncestorsAndMarkGreen(String startingNode) {
-        visitAncestors(startingNode, true);
-    }
+    private Set<String> collectAncestors(String startingNode) {
+        Queue<String> nodesToVisit = new LinkedList<>();
+        nodesToVisit.add(startingNode);
 
-    /**
-     * Visits all ancestor nodes of the provided starting node and marks them red.
-     *
-     * ASSUMPTION: startingNode is non-null and exists in the hierarchy.
-     */
-    private void visitAncestorsAndMarkRed(String startingNode) {
-        visitAncestors(startingNode, false);
+        Set<String> ancestors = new HashSet<>();
+        while (!nodesToVisit.isEmpty()) {
+
+            String next = nodesToVisit.poll();
+
+            if (ancestors.add(next)) {
+                for (IHierarchyNode parent : this.nameToNodeMapping.get(next).getParents()) {
+                    nodesToVisit.add(parent.getDotName());
+                }
+            }
+        }
+        return ancestors;
     }
 
     /**
-     * Visists all descendants of the root node in the hierarchy only if they are doubly marked
-     * (that is, marked both green and red).
+     * Visists all descendants of the root node in the hierarchy only if they are common ancestors.
      *
-     * Returns the list of all such doubly-marked nodes that are leaf nodes in this node subset.
+     * Returns the list of all such common ancestors that are leaf nodes in this node subset.
      */
-    private Set<ClassInformation> discoverAllDoublyMarkedLeafNodesFromRoot() {
-        RuntimeAssertionError.assertTrue(this.root.isMarkedGreen() && this.root.isMarkedRed());
+    private Set<ClassInformation> discoverAllCommonLeafNodesFromRoot(Set<String> commonAncestors) {
+        RuntimeAssertionError.assertTrue(commonAncestors.contains(this.root.getDotName()));
 
         Queue<String> nodesToVisit = new LinkedList<>();
         nodesToVisit.add(this.root.getDotName());
@@ -478,16 +480,13 @@ public final class ClassHierarchy {
 
             DecoratedHierarchyNode nextNode = this.nameToNodeMapping.get(nodesToVisit.poll());
 
-            // A leaf node in our context is a node that has no doubly-marked children!
+            // A leaf node in our context is a node that has no children which are common ancestors!
             boolean foundChild = false;
 
             for (IHierarchyNode child : nextNode.getChildren()) {
 
-                // The child pointers are not decorated, so we need to graph the node from the map.
-                DecoratedHierarchyNode decoratedChild = this.nameToNodeMapping.get(child.getDotName());
-
-                // Only visit a doubly-marked node.
-                if (decoratedChild.isMarkedGreen() && decoratedChild.isMarkedRed()) {
+                // Only visit a common ancestor.
+                if (commonAncestors.contains(child.getDotName())) {
                     foundChild = true;
                     nodesToVisit.add(child.getDotName());
                 }
@@ -504,15 +503,6 @@ public final class ClassHierarchy {
         return leafNodes;
     }
 
-    /**
-     * Clears all of the decorated nodes of any markings applied to them.
-     */
-    private void clearAllMarkings() {
-        for (DecoratedHierarchyNode node : this.nameToNodeMapping.values()) {
-            node.clearMarkings();
-        }
-    }
-
     /**
      * Replaces the ghost node with the real node.
      *
@@ -541,28 +531,6 @@ public final class ClassHierarchy {
         }
     }
 
-    private void visitAncestors(String startingNode, boolean markGreen) {
-        Queue<String> nodesToVisit = new LinkedList<>();
-        nodesToVisit.add(startingNode);
-
-        while (!nodesToVisit.isEmpty()) {
-
-            String next = nodesToVisit.poll();
-
-            DecoratedHierarchyNode nextNode = this.nameToNodeMapping.get(next);
-
-            if (markGreen) {
-                nextNode.markGreen();
-            } else {
-                nextNode.markRed();
-            }
-
-            for (IHierarchyNode child : nextNode.getParents()) {
-                nodesToVisit.add(child.getDotName());
-            }
-        }
-    }
-
     private void connectChildAndParent(IHierarchyNode child, IHierarchyNode parent) {
         child.addParent(parent);
         parent.addChild(child);
@@ -4,23 +4,16 @@ import java.util.Set;
 import i.RuntimeAssertionError;
 
 /**
- * A decorated node is just a {@link IHierarchyNode} wrapper that allows for a node to be marked different
- * colours.
- *
- * This is used by the {@link ClassHierarchy#getTightestCommonSuperClass(String, String)}
- * algorithm.
+ * A decorated node is just a {@link IHierarchyNode} wrapper around the nodes held by the {@link ClassHierarchy}.
  *
  * A decorated node cannot 'decorate' (wrap) another decorated node. You can always assume the
  * wrapped node is not decorated.
  *
  * A decorated node directly exposes the node it wraps and so the immutability of this underlying
- * node is subject to the immutability guarantees of the wrapped node (typically not immutable), and
- * the markings on the decorated node are not immutable either.
+ * node is subject to the immutability guarantees of the wrapped node (typically not immutable).
  */
 public class DecoratedHierarchyNode implements IHierarchyNode {
     private IHierarchyNode node;
-    private boolean isGreen;
-    private boolean isRed;
 
     private DecoratedHierarchyNode(IHierarchyNode node) {
         if (node == null) {
@@ -29,8 +22,6 @@ public class DecoratedHierarchyNode implements IHierarchyNode {
         RuntimeAssertionError.assertTrue(!(node instanceof DecoratedHierarchyNode));
 
         this.node = node;
-        this.isGreen = false;
-        this.isRed = false;
     }
 
     public static DecoratedHierarchyNode decorate(IHierarchyNode node) {
@@ -49,27 +40,6 @@ public class DecoratedHierarchyNode implements IHierarchyNode {
         return (HierarchyGhostNode) this.node;
     }
 
-    public void markGreen() {
-        this.isGreen = true;
-    }
-
-    public void markRed() {
-        this.isRed = true;
-    }
-
-    public boolean isMarkedGreen() {
-        return this.isGreen;
-    }
-
-    public boolean isMarkedRed() {
-        return this.isRed;
-    }
-
-    public void clearMarkings() {
-        this.isGreen = false;
-        this.isRed = false;
-    }
-
     @Override
     public boolean isGhostNode() {
         return this.node.isGhostNode();
@@ -23,6 +23,20 @@ import org.aion.avm.core.dappreading.LoadedJar;
 public class ImmortalDappModule {
     // Note that we currently limit the size of an in-memory JAR to 1 MiB.
     private static final int MAX_JAR_BYTES = 1024 * 1024;
+    // The manifest attribute describing which version of the transformation produced the classes (missing in code from older AVM versions).
+    // Note that this is part of the stored transformed code, so this AVM doesn't write the same jar as an older one for the same classes
+    // (although the write tracking instrumentation already changes the classes, themselves).  Code transformed by an older AVM has no
+    // attribute so it is read as version 0 and doesn't re-use its graph until it is transformed again.
+    private static final String TRANSFORMATION_VERSION_ATTRIBUTE = "Avm-Transformation-Version";
+
+    /**
+     * The first transformation version where the classes report writes to the persisted object graph (see LazyLoadingMethodVisitor).
+     */
+    public static final int GRAPH_WRITE_TRACKING_VERSION = 1;
+    /**
+     * The version of the transformation which this AVM applies (written into the manifest of any JAR we create).
+     */
+    public static final int CURRENT_TRANSFORMATION_VERSION = GRAPH_WRITE_TRACKING_VERSION;
 
     /**
      * Reads the Dapp module from JAR bytes, in memory.
@@ -36,23 +50,40 @@ public class ImmortalDappModule {
         LoadedJar loadedJar = LoadedJar.fromBytes(jar);
         Map<String, byte[]> classes = loadedJar.classBytesByQualifiedNames;
         String mainClass = loadedJar.mainClassName;
+        int transformationVersion = parseTransformationVersion(loadedJar.getManifestAttribute(TRANSFORMATION_VERSION_ATTRIBUTE));
         // To be a valid Dapp, this must specify a main class and have at least one class.
         return ((null != mainClass) && !classes.isEmpty())
-                ? new ImmortalDappModule(classes, mainClass)
+                ? new ImmortalDappModule(classes, mainClass, transformationVersion)
                 : null;
     }
 
     public static ImmortalDappModule fromImmortalClasses(Map<String, byte[]> classes, String mainClass)  {
-        return new ImmortalDappModule(classes, mainClass);
+        return new ImmortalDappModule(classes, mainClass, CURRENT_TRANSFORMATION_VERSION);
+    }
+
+    private static int parseTransformationVersion(String value) {
+        // Code stored by an older AVM has no version, which we treat as 0.
+        int version = 0;
+        if (null != value) {
+            try {
+                version = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                // We wrote this so it should be valid but treat anything else as the oldest version.
+                version = 0;
+            }
+        }
+        return version;
     }
 
 
     public final Map<String, byte[]> classes;
     public final String mainClass;
+    public final int transformationVersion;
 
-    private ImmortalDappModule(Map<String, byte[]> classes, String mainClass) {
+    private ImmortalDappModule(Map<String, byte[]> classes, String mainClass, int transformationVersion) {
         this.classes = classes;
         this.mainClass = mainClass;
+        this.transformationVersion = transformationVersion;
     }
 
     /**
@@ -66,6 +97,7 @@ public class ImmortalDappModule {
         Manifest manifest = new Manifest();
         manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
         manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, this.mainClass);
+        manifest.getMainAttributes().put(new Attributes.Name(TRANSFORMATION_VERSION_ATTRIBUTE), Integer.toString(this.transformationVersion));
 
         ZipEntry manifestEntry = new ZipEntry(JarFile.MANIFEST_NAME);
         manifestEntry.setLastModifiedTime(timestamp);
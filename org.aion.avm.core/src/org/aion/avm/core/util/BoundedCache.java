@@ -0,0 +1,182 @@
+package org.aion.avm.core.util;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+import i.RuntimeAssertionError;
+
+
+/**
+ * A concurrent cache with a maximum size, measured in estimated retained bytes, which evicts the least-recently-used entries when
+ * a checkin would push it over that size.
+ * Unlike SoftCache, the values are strongly held so the GC never clears anything behind our back:  the cache only shrinks due
+ * to explicit eviction, checkout, or removeValueIf.
+ *
+ * Since checkout removes the entry and checkin re-adds it, the insertion order of the underlying map is the same as the
+ * order of last use, which is what we evict by.
+ * Each key can hold a small pool of values (by default, only 1), in which case the oldest value of the least-recently-used key is
+ * evicted first.
+ *
+ * NOTE:  The size of each value is estimated when it is checked in so the estimator should reflect the value's state at that point.
+ *
+ * @param <K> The key type (should have sensible hashCode() and equals() implementations).
+ * @param <V> The value type.
+ */
+public class BoundedCache<K, V> implements ICache<K, V> {
+    private final long maximumRetainedBytes;
+    private final ToLongFunction<V> sizeEstimator;
+    private final int valuesPerKey;
+    // Each key maps to its pool of values, most-recently-checked-in first.
+    private final LinkedHashMap<K, ArrayDeque<SizedValue<V>>> underlyingMap;
+    private long retainedBytes;
+
+    /**
+     * Creates the cache, with only 1 value per key.
+     *
+     * @param maximumRetainedBytes The maximum number of bytes the cache can retain, as measured by sizeEstimator (must be positive).
+     * @param sizeEstimator Estimates the number of bytes retained by a value.
+     */
+    public BoundedCache(long maximumRetainedBytes, ToLongFunction<V> sizeEstimator) {
+        this(maximumRetainedBytes, sizeEstimator, 1);
+    }
+
+    /**
+     * Creates the cache.
+     *
+     * @param maximumRetainedBytes The maximum number of bytes the cache can retain, as measured by sizeEstimator (must be positive).
+     * @param sizeEstimator Estimates the number of bytes retained by a value.
+     * @param valuesPerKey The maximum number of values which can be checked in under the same key (must be positive).
+     */
+    public BoundedCache(long maximumRetainedBytes, ToLongFunction<V> sizeEstimator, int valuesPerKey) {
+        RuntimeAssertionError.assertTrue(maximumRetainedBytes > 0L);
+        RuntimeAssertionError.assertTrue(valuesPerKey > 0);
+        this.maximumRetainedBytes = maximumRetainedBytes;
+        this.sizeEstimator = sizeEstimator;
+        this.valuesPerKey = valuesPerKey;
+        this.underlyingMap = new LinkedHashMap<>();
+        this.retainedBytes = 0L;
+    }
+
+    @Override
+    public synchronized V checkout(K key) {
+        ArrayDeque<SizedValue<V>> pool = this.underlyingMap.remove(key);
+        V value = null;
+        if (null != pool) {
+            SizedValue<V> wrapper = pool.pollFirst();
+            this.retainedBytes -= wrapper.size;
+            value = wrapper.value;
+            // Any other values for this key are re-added as the most recently used.
+            if (!pool.isEmpty()) {
+                this.underlyingMap.put(key, pool);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized int checkin(K key, V value) {
+        long size = this.sizeEstimator.applyAsLong(value);
+        int evictedCount = 0;
+        // If this value could never fit, we just drop it (logically evicting it, immediately).
+        if (size > this.maximumRetainedBytes) {
+            evictedCount = 1;
+        } else {
+            // We remove this key's pool while we work on it so that it is re-added as the most recently used.
+            ArrayDeque<SizedValue<V>> pool = this.underlyingMap.remove(key);
+            if (null == pool) {
+                pool = new ArrayDeque<>();
+            }
+            // We don't expect collisions in this cache - that would imply that consumers disagree about cache state.
+            RuntimeAssertionError.assertTrue(pool.size() < this.valuesPerKey);
+            
+            // Evict the oldest entries until we have room for this one.
+            Iterator<ArrayDeque<SizedValue<V>>> oldestFirst = this.underlyingMap.values().iterator();
+            ArrayDeque<SizedValue<V>> victims = null;
+            while ((this.retainedBytes + size) > this.maximumRetainedBytes) {
+                if ((null == victims) || victims.isEmpty()) {
+                    // (this key's own pool is only used once all the others are gone).
+                    victims = oldestFirst.hasNext() ? oldestFirst.next() : pool;
+                }
+                SizedValue<V> oldest = victims.pollLast();
+                this.retainedBytes -= oldest.size;
+                evictedCount += 1;
+                if (victims.isEmpty() && (victims != pool)) {
+                    oldestFirst.remove();
+                }
+            }
+            pool.addFirst(new SizedValue<>(value, size));
+            this.underlyingMap.put(key, pool);
+            this.retainedBytes += size;
+        }
+        return evictedCount;
+    }
+
+    @Override
+    public synchronized int checkinIfAbsent(K key, V value) {
+        ArrayDeque<SizedValue<V>> pool = this.underlyingMap.get(key);
+        return ((null != pool) && (pool.size() >= this.valuesPerKey))
+                ? 0
+                : checkin(key, value);
+    }
+
+    @Override
+    public synchronized void removeValueIf(Predicate<V> condition) {
+        Iterator<ArrayDeque<SizedValue<V>>> pools = this.underlyingMap.values().iterator();
+        while (pools.hasNext()) {
+            ArrayDeque<SizedValue<V>> pool = pools.next();
+            Iterator<SizedValue<V>> iterator = pool.iterator();
+            while (iterator.hasNext()) {
+                SizedValue<V> wrapper = iterator.next();
+                if (condition.test(wrapper.value)) {
+                    this.retainedBytes -= wrapper.size;
+                    iterator.remove();
+                }
+            }
+            if (pool.isEmpty()) {
+                pools.remove();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void apply(Consumer<V> consumer) {
+        for (ArrayDeque<SizedValue<V>> pool : this.underlyingMap.values()) {
+            for (SizedValue<V> wrapper : pool) {
+                consumer.accept(wrapper.value);
+            }
+        }
+    }
+
+    /**
+     * @return The number of bytes currently retained by the cache, as measured when each value was checked in.
+     */
+    public synchronized long getRetainedBytes() {
+        return this.retainedBytes;
+    }
+
+    /**
+     * @return The number of values currently in the cache (across all keys).
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (ArrayDeque<SizedValue<V>> pool : this.underlyingMap.values()) {
+            size += pool.size();
+        }
+        return size;
+    }
+
+
+    private static class SizedValue<V> {
+        public final V value;
+        public final long size;
+
+        public SizedValue(V value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+}
@@ -18,6 +18,11 @@ public final class ByteArrayWrapper
         this.data = data;
     }
 
+    public byte[] getData()
+    {
+        return data;
+    }
+
     @Override
     public boolean equals(Object object)
     {
@@ -0,0 +1,83 @@
+package org.aion.avm.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import i.RuntimeAssertionError;
+
+
+/**
+ * Reads and writes the files we use to carry state between runs of the AVM (which are only ever optimizations).
+ * Each file is the SHA-256 of its contents followed by the contents, and is replaced atomically (where the file system allows it) so a
+ * reader sees either the complete old file or the complete new one.  A file which doesn't match its hash is read as missing.
+ */
+public class ChecksummedFile {
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final int DIGEST_LENGTH = 32;
+
+    /**
+     * Writes the given contents to the given file, replacing it.
+     *
+     * @param file The file to write.
+     * @param contents The contents to write.
+     * @throws IOException The file couldn't be written (any temporary file is deleted).
+     */
+    public static void write(File file, byte[] contents) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        Path tempFile = Files.createTempFile(directory.toPath(), file.getName(), TEMP_FILE_SUFFIX);
+        try {
+            Files.write(tempFile, Helpers.merge(sha256(contents), contents));
+            try {
+                Files.move(tempFile, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tempFile = null;
+        } finally {
+            if (null != tempFile) {
+                tempFile.toFile().delete();
+            }
+        }
+    }
+
+    /**
+     * Reads the contents written by write().
+     *
+     * @param file The file to read.
+     * @return The contents of the file or null if it is missing or doesn't match its hash.
+     * @throws IOException The file couldn't be read.
+     */
+    public static byte[] read(File file) throws IOException {
+        byte[] contents = null;
+        if (file.isFile()) {
+            byte[] raw = Files.readAllBytes(file.toPath());
+            if (raw.length > DIGEST_LENGTH) {
+                byte[] candidate = Arrays.copyOfRange(raw, DIGEST_LENGTH, raw.length);
+                if (Arrays.equals(Arrays.copyOfRange(raw, 0, DIGEST_LENGTH), sha256(candidate))) {
+                    contents = candidate;
+                }
+            }
+        }
+        return contents;
+    }
+
+    public static byte[] sha256(byte[] data) {
+        return newDigest().digest(data);
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required to be present in every JVM.
+            throw RuntimeAssertionError.unexpected(e);
+        }
+    }
+}
@@ -21,11 +21,11 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 
 /**
@@ -150,16 +150,34 @@ public class Helpers {
      * @return The inputMap with the Helper bytecode added.
      */
     public static Map<String, byte[]> mapIncludingHelperBytecode(Map<String, byte[]> inputMap, byte[] helperBytes) {
-        // First, rename the helper class to the runtime helper name.
-        byte[] renamedBytes = new ClassToolchain.Builder(helperBytes, ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG)
+        return mapIncludingRuntimeHelperBytecode(inputMap, renameHelperBytecode(helperBytes));
+    }
+
+    /**
+     * Renames the given Helper class bytecode to the runtime helper name.
+     * Since this result never changes, callers which build many class loaders should compute it once.
+     *
+     * @param helperBytes The bytecode of the Helper class.
+     * @return The bytecode of the Helper class, renamed to Helper.RUNTIME_HELPER_NAME.
+     */
+    public static byte[] renameHelperBytecode(byte[] helperBytes) {
+        return new ClassToolchain.Builder(helperBytes, ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG)
                         .addNextVisitor(new ClassRenameVisitor(Helper.RUNTIME_HELPER_NAME))
                         .addWriter(new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS))
                         .build()
                         .runAndGetBytecode();
-        
-        // Now, construct the map.
+    }
+
+    /**
+     * The same as "mapIncludingHelperBytecode()" but for Helper bytecode which has already been renamed (see "renameHelperBytecode()").
+     *
+     * @param inputMap The initial map of class names to bytecodes.
+     * @param runtimeHelperBytes The bytecode of the Helper class, already renamed to the runtime helper name.
+     * @return The inputMap with the Helper bytecode added.
+     */
+    public static Map<String, byte[]> mapIncludingRuntimeHelperBytecode(Map<String, byte[]> inputMap, byte[] runtimeHelperBytes) {
         Map<String, byte[]> modifiedMap = new HashMap<>(inputMap);
-        modifiedMap.put(Helper.RUNTIME_HELPER_NAME, renamedBytes);
+        modifiedMap.put(Helper.RUNTIME_HELPER_NAME, runtimeHelperBytes);
         modifiedMap.put(blockchainRuntimeClassName, blockchainRuntimeBytes);
         return modifiedMap;
     }
@@ -238,7 +256,7 @@ public class Helpers {
      * @param classNames The names of the classes which should be loaded.
      * @return The class objects, in alphabetical order by their names.
      */
-    public static List<Class<?>> getAlphabeticalUserTransformedDappClasses(AvmClassLoader classLoader, Set<String> classNames) {
+    public static List<Class<?>> getAlphabeticalUserTransformedDappClasses(AvmClassLoader classLoader, Collection<String> classNames) {
         List<String> nameList = new ArrayList<>(classNames);
         Collections.sort(nameList);
         List<Class<?>> classList = new ArrayList<>();
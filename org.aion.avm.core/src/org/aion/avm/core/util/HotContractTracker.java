@@ -0,0 +1,152 @@
+package org.aion.avm.core.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.aion.types.AionAddress;
+
+
+/**
+ * Counts how many times each DApp is executed so that the transformed code of the most frequently executed ones can be written to a
+ * file when the AVM shuts down, and read back when it next starts (see AvmImpl), before the first batch arrives.
+ *
+ * The code of each DApp is only softly referenced, since we see every DApp which is called, so a DApp whose code was cleared by the GC
+ * is just left out of the file.
+ *
+ * The file is a ChecksummedFile containing a format version, the fingerprint of the AVM which wrote it, the number of entries, and then
+ * each entry:  the address and the transformed code (each prefixed by its length).  A file which is truncated, corrupted, of another
+ * version, or which was written by a different AVM is treated as empty.
+ */
+public class HotContractTracker {
+    private static final int FILE_VERSION = 2;
+    private static final int FINGERPRINT_LENGTH = 32;
+
+    private final ConcurrentHashMap<AionAddress, ExecutionRecord> records;
+
+    public HotContractTracker() {
+        this.records = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Records one execution of the DApp at the given address.
+     *
+     * @param address The address of the DApp.
+     * @param transformedCode The transformed code of the DApp.
+     */
+    public void recordExecution(AionAddress address, byte[] transformedCode) {
+        this.records.computeIfAbsent(address, (key) -> new ExecutionRecord()).record(transformedCode);
+    }
+
+    /**
+     * Writes the transformed code of the most frequently executed DApps to the given file, replacing it.
+     * Failures to write are ignored since the file is only an optimization.
+     *
+     * @param file The file to write.
+     * @param fingerprint The fingerprint of the currently running AVM (see BootstrapSnapshot.fingerprintOfJarsContaining()).
+     * @param maximumCount The maximum number of DApps to write.
+     */
+    public void writeMostExecuted(File file, byte[] fingerprint, int maximumCount) {
+        List<Map.Entry<AionAddress, ExecutionRecord>> sorted = new ArrayList<>(this.records.entrySet());
+        sorted.sort(Comparator.comparingLong((Map.Entry<AionAddress, ExecutionRecord> entry) -> entry.getValue().count.sum()).reversed());
+
+        List<byte[]> addresses = new ArrayList<>();
+        List<byte[]> codes = new ArrayList<>();
+        for (Map.Entry<AionAddress, ExecutionRecord> entry : sorted) {
+            if (addresses.size() == maximumCount) {
+                break;
+            }
+            byte[] code = entry.getValue().code.get();
+            if (null != code) {
+                addresses.add(entry.getKey().toByteArray());
+                codes.add(code);
+            }
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream stream = new DataOutputStream(bytes);
+            stream.writeInt(FILE_VERSION);
+            stream.write(fingerprint);
+            stream.writeInt(addresses.size());
+            for (int i = 0; i < addresses.size(); ++i) {
+                writeLengthPrefixed(stream, addresses.get(i));
+                writeLengthPrefixed(stream, codes.get(i));
+            }
+            stream.flush();
+            ChecksummedFile.write(file, bytes.toByteArray());
+        } catch (IOException e) {
+            // The file is only an optimization so we just drop this write.
+        }
+    }
+
+    /**
+     * Reads the transformed code written by writeMostExecuted().
+     *
+     * @param file The file to read.
+     * @param fingerprint The fingerprint of the currently running AVM.
+     * @return The transformed code of each DApp in the file, most frequently executed first (empty if the file is missing, invalid, or
+     * was written by a different AVM).
+     */
+    public static List<byte[]> readTransformedCode(File file, byte[] fingerprint) {
+        List<byte[]> codes = new ArrayList<>();
+        try {
+            byte[] contents = ChecksummedFile.read(file);
+            if (null != contents) {
+                DataInputStream stream = new DataInputStream(new ByteArrayInputStream(contents));
+                if (FILE_VERSION == stream.readInt()) {
+                    byte[] writtenFingerprint = new byte[FINGERPRINT_LENGTH];
+                    stream.readFully(writtenFingerprint);
+                    if (Arrays.equals(fingerprint, writtenFingerprint)) {
+                        int count = stream.readInt();
+                        for (int i = 0; i < count; ++i) {
+                            // (we only need the code - the address is there for anyone inspecting the file).
+                            readLengthPrefixed(stream);
+                            codes.add(readLengthPrefixed(stream));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // We treat read failures as an empty file.
+            codes.clear();
+        }
+        return codes;
+    }
+
+    private static void writeLengthPrefixed(DataOutputStream stream, byte[] data) throws IOException {
+        stream.writeInt(data.length);
+        stream.write(data);
+    }
+
+    private static byte[] readLengthPrefixed(DataInputStream stream) throws IOException {
+        byte[] data = new byte[stream.readInt()];
+        stream.readFully(data);
+        return data;
+    }
+
+
+    private static class ExecutionRecord {
+        public final LongAdder count = new LongAdder();
+        // Only the most recent code is kept (a DApp's code can only change by being re-transformed, which doesn't change its behaviour).
+        public volatile SoftReference<byte[]> code = new SoftReference<>(null);
+
+        public void record(byte[] transformedCode) {
+            this.count.increment();
+            if (this.code.get() != transformedCode) {
+                this.code = new SoftReference<>(transformedCode);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.aion.avm.core.util;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+
+/**
+ * The common interface of the AVM-internal caches (DApp hot cache and transformed code cache).
+ * Entries are "checked out" (removed) while in use and "checked in" when the caller is done with them, meaning that a value is only
+ * ever owned by one consumer at a time.
+ * A cache can be built to hold more than 1 value per key, in which case each checkout takes one of them (so that many consumers can
+ * each own a value for the same key, at once).
+ *
+ * @param <K> The key type (should have sensible hashCode() and equals() implementations).
+ * @param <V> The value type.
+ */
+public interface ICache<K, V> {
+    /**
+     * Removes a value associated with key from the cache and returns it (the most recently checked in, if there are several).
+     *
+     * @param key The key to look up.
+     * @return A value previously cached under key, or null if there was no such value.
+     */
+    V checkout(K key);
+
+    /**
+     * Adds value to the cache, under key.  There must not already be the maximum number of values associated with key.
+     *
+     * @param key The key to store the value under.
+     * @param value The value to store.
+     * @return The number of existing entries which were evicted to make room for this one (0 for caches without a maximum size).
+     */
+    int checkin(K key, V value);
+
+    /**
+     * Like checkin() but, if there are already the maximum number of values associated with key, those values are kept and the given
+     * one is dropped.
+     * This is for consumers which can check out the same key concurrently (speculative execution), so can't assume they own it.
+     *
+     * @param key The key to store the value under.
+     * @param value The value to store.
+     * @return The number of existing entries which were evicted to make room for this one.
+     */
+    int checkinIfAbsent(K key, V value);
+
+    /**
+     * Removes all entries whose values match the given condition.  Any entries whose values are no longer available (cleared
+     * references, for example) are also removed.
+     *
+     * @param condition The condition to test against each available value.
+     */
+    void removeValueIf(Predicate<V> condition);
+
+    /**
+     * Applies the given consumer to every available value in the cache.
+     *
+     * @param consumer The consumer to apply.
+     */
+    void apply(Consumer<V> consumer);
+}
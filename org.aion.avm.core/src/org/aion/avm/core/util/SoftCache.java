@@ -1,6 +1,7 @@
 package org.aion.avm.core.util;
 
 import java.lang.ref.SoftReference;
+import java.util.ArrayDeque;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -9,38 +10,110 @@ import i.RuntimeAssertionError;
 
 
 /**
- * A simple concurrent cache, based on SoftReferences.  There is currently no maximum size.
+ * A simple concurrent cache, based on SoftReferences.  There is currently no maximum size (see BoundedCache for that).
  * Keys associated wih cleared SoftReferences are cleaned up using removeValueIf method. If the referent of the map value is null, that entry is removed.
  *
+ * Each key can hold a small pool of values (by default, only 1).  Values are checked out most-recently-checked-in first.
+ *
  * @param <K> The key type (should have sensible hashCode() and equals() implementations).
  * @param <V> The value type.
  */
-public class SoftCache<K, V> {
-    private final ConcurrentHashMap<K, SoftReference<V>> underlyingMap;
+public class SoftCache<K, V> implements ICache<K, V> {
+    private final int valuesPerKey;
+    // Note that each pool is only ever read or modified while its map entry is locked (that is, within compute-like calls).
+    private final ConcurrentHashMap<K, ArrayDeque<SoftReference<V>>> underlyingMap;
 
     public SoftCache() {
+        this(1);
+    }
+
+    /**
+     * Creates the cache.
+     *
+     * @param valuesPerKey The maximum number of values which can be checked in under the same key (must be positive).
+     */
+    public SoftCache(int valuesPerKey) {
+        RuntimeAssertionError.assertTrue(valuesPerKey > 0);
+        this.valuesPerKey = valuesPerKey;
         this.underlyingMap = new ConcurrentHashMap<>();
     }
 
+    @Override
     public V checkout(K key) {
-        SoftReference<V> wrapper = this.underlyingMap.remove(key);
-        return (null != wrapper)
-                ? wrapper.get()
-                : null;
+        Object[] result = new Object[1];
+        this.underlyingMap.computeIfPresent(key, (k, pool) -> {
+            while ((null == result[0]) && !pool.isEmpty()) {
+                result[0] = pool.pollFirst().get();
+            }
+            return pool.isEmpty() ? null : pool;
+        });
+        @SuppressWarnings("unchecked")
+        V value = (V) result[0];
+        return value;
+    }
+
+    @Override
+    public int checkin(K key, V value) {
+        this.underlyingMap.compute(key, (k, pool) -> {
+            ArrayDeque<SoftReference<V>> livePool = removeCleared(pool);
+            // We don't expect collisions in this cache - that would imply that consumers disagree about cache state.
+            // (in the future, we probably want to change this).
+            RuntimeAssertionError.assertTrue(livePool.size() < this.valuesPerKey);
+            livePool.addFirst(new SoftReference<>(value));
+            return livePool;
+        });
+        // We never evict anything, ourselves (that is left to the GC).
+        return 0;
+    }
+
+    @Override
+    public int checkinIfAbsent(K key, V value) {
+        this.underlyingMap.compute(key, (k, pool) -> {
+            ArrayDeque<SoftReference<V>> livePool = removeCleared(pool);
+            // An existing reference which has been cleared doesn't count as a value.
+            if (livePool.size() < this.valuesPerKey) {
+                livePool.addFirst(new SoftReference<>(value));
+            }
+            return livePool;
+        });
+        return 0;
     }
 
-    public void checkin(K key, V value) {
-        SoftReference<V> previous = this.underlyingMap.put(key, new SoftReference<>(value));
-        // We don't expect collisions in this cache - that would imply that consumers disagree about cache state.
-        // (in the future, we probably want to change this).
-        RuntimeAssertionError.assertTrue(null == previous);
+    @Override
+    public void removeValueIf(Predicate<V> condition){
+        for (K key : this.underlyingMap.keySet()) {
+            this.underlyingMap.computeIfPresent(key, (k, pool) -> {
+                pool.removeIf((reference) -> {
+                    V value = reference.get();
+                    // remove the map entry if the soft reference has been cleared and the referent is null.
+                    return (null == value) || condition.test(value);
+                });
+                return pool.isEmpty() ? null : pool;
+            });
+        }
     }
 
-    public void removeValueIf(Predicate<SoftReference<V>> condition){
-        this.underlyingMap.values().removeIf(condition);
+    @Override
+    public void apply(Consumer<V> consumer){
+        for (K key : this.underlyingMap.keySet()) {
+            this.underlyingMap.computeIfPresent(key, (k, pool) -> {
+                for (SoftReference<V> reference : pool) {
+                    V value = reference.get();
+                    if (null != value) {
+                        consumer.accept(value);
+                    }
+                }
+                return pool;
+            });
+        }
     }
 
-    public void apply(Consumer<SoftReference<V>> consumer){
-        this.underlyingMap.values().forEach(consumer);
+    private static <V> ArrayDeque<SoftReference<V>> removeCleared(ArrayDeque<SoftReference<V>> pool) {
+        if (null == pool) {
+            pool = new ArrayDeque<>();
+        } else {
+            pool.removeIf((reference) -> (null == reference.get()));
+        }
+        return pool;
     }
 }
@@ -133,6 +133,14 @@ public class TestingHelper implements IInstrumentation {
         throw RuntimeAssertionError.unreachable("Shouldn't be called in the testing code");
     }
     @Override
+    public void markGraphModified() {
+        // Nothing is persisted in the testing code so there is nothing to track.
+    }
+    @Override
+    public boolean isGraphModified() {
+        throw RuntimeAssertionError.unreachable("Shouldn't be called in the testing code");
+    }
+    @Override
     public boolean isLoadedByCurrentClassLoader(java.lang.Class<?> userClass) {
         throw RuntimeAssertionError.unreachable("Not expected in this test");
     }
@@ -0,0 +1,160 @@
+package org.aion.avm.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import i.RuntimeAssertionError;
+import org.aion.avm.core.types.ImmortalDappModule;
+
+
+/**
+ * A persistent, content-addressed store of re-transformed (immortal) DApp code, on disk.
+ * Entries are keyed by a hash of the original code, the fingerprint of the code doing the transformation (see
+ * BootstrapSnapshot.fingerprintOfJarsContaining()), and every option which changes the transformed code, meaning that identical contracts
+ * deployed at many addresses share one entry and a restarted node can skip re-transformation entirely, while any other build or
+ * configuration of the AVM can never load what this one stored.
+ *
+ * Each file is the SHA-256 of the transformed code followed by the code, itself, so a truncated or corrupted file is detected on load
+ * and treated as a miss (the file is then deleted).
+ * Writes are done to a temporary file which is then moved into place, so concurrent writers of the same key (which will be writing the
+ * same code) can't expose a partial file to a reader.
+ *
+ * NOTE:  The transformed jar embeds the timestamp of the block where it is transformed (see ImmortalDappModule.createJar()) so that the
+ * whole network agrees on its bytes.  The classes don't depend on the block so they are what we share, but load() re-writes the jar with
+ * the timestamp of the block asking for it, meaning that it returns exactly what re-transforming the code in that block would have.
+ */
+public class TransformedCodeStore {
+    private static final String FILE_SUFFIX = ".jar";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final int DIGEST_LENGTH = 32;
+
+    private final File storeDirectory;
+    private final byte[] transformationKey;
+
+    /**
+     * Creates a store for the code transformed by one build and configuration of the AVM.
+     *
+     * @param storeDirectory The directory holding the stored code.
+     * @param transformerFingerprint The fingerprint of the code doing the transformation (must be non-null).
+     * @param preserveDebuggability The debuggability option the code is transformed with.
+     * @param enableFusedTransformation The fused transformation option the code is transformed with.
+     * @param enableEnergyChargeFolding The energy charge folding option the code is transformed with.
+     * @param enableVerboseContractErrors The verbose errors option the code is transformed with.
+     */
+    public TransformedCodeStore(File storeDirectory, byte[] transformerFingerprint, boolean preserveDebuggability, boolean enableFusedTransformation, boolean enableEnergyChargeFolding, boolean enableVerboseContractErrors) {
+        RuntimeAssertionError.assertTrue(null != transformerFingerprint);
+        this.storeDirectory = storeDirectory;
+        byte options = (byte) ((preserveDebuggability ? 0x1 : 0x0)
+                | (enableFusedTransformation ? 0x2 : 0x0)
+                | (enableEnergyChargeFolding ? 0x4 : 0x0)
+                | (enableVerboseContractErrors ? 0x8 : 0x0));
+        this.transformationKey = Helpers.merge(transformerFingerprint, new byte[] { options });
+    }
+
+    public void startup() {
+        if (!this.storeDirectory.exists()) {
+            this.storeDirectory.mkdirs();
+        }
+        RuntimeAssertionError.assertTrue(this.storeDirectory.isDirectory());
+    }
+
+    /**
+     * Looks up the transformed code for the given original code.
+     *
+     * @param code The original code, as deployed.
+     * @param blockTimeStamp The timestamp of the block where the code is being re-transformed.
+     * @return The transformed code, as it would be written in this block, or null if it isn't in the store (or the stored copy was invalid).
+     */
+    public byte[] load(byte[] code, long blockTimeStamp) {
+        File file = fileForKey(code);
+        byte[] transformedCode = null;
+        if (file.isFile()) {
+            try {
+                byte[] raw = Files.readAllBytes(file.toPath());
+                if (raw.length > DIGEST_LENGTH) {
+                    byte[] candidate = Arrays.copyOfRange(raw, DIGEST_LENGTH, raw.length);
+                    if (Arrays.equals(Arrays.copyOfRange(raw, 0, DIGEST_LENGTH), sha256(candidate))) {
+                        transformedCode = candidate;
+                    }
+                }
+            } catch (IOException e) {
+                // We treat read failures as a miss (the caller will just re-transform).
+            }
+            if (null == transformedCode) {
+                // This entry is corrupt so remove it - the caller will write back a correct version.
+                file.delete();
+            } else {
+                transformedCode = restamp(transformedCode, blockTimeStamp);
+            }
+        }
+        return transformedCode;
+    }
+
+    /**
+     * Stores the transformed code for the given original code, replacing any existing entry.
+     * Failures to write are ignored since the store is only an optimization.
+     *
+     * @param code The original code, as deployed.
+     * @param transformedCode The transformed code.
+     */
+    public void store(byte[] code, byte[] transformedCode) {
+        File file = fileForKey(code);
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(this.storeDirectory.toPath(), file.getName(), TEMP_FILE_SUFFIX);
+            Files.write(tempFile, Helpers.merge(sha256(transformedCode), transformedCode));
+            try {
+                Files.move(tempFile, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tempFile = null;
+        } catch (IOException e) {
+            // The store is only an optimization so we just drop this write.
+        } finally {
+            if (null != tempFile) {
+                tempFile.toFile().delete();
+            }
+        }
+    }
+
+    private static byte[] restamp(byte[] transformedCode, long blockTimeStamp) {
+        byte[] restamped = null;
+        try {
+            ImmortalDappModule module = ImmortalDappModule.readFromJar(transformedCode);
+            if (null != module) {
+                restamped = module.createJar(blockTimeStamp);
+            }
+        } catch (IOException e) {
+            // We wrote this jar so this shouldn't happen but it is still just a miss (the caller will just re-transform).
+        }
+        return restamped;
+    }
+
+    private File fileForKey(byte[] code) {
+        MessageDigest digest = newSha256();
+        digest.update(this.transformationKey);
+        digest.update(code);
+        return new File(this.storeDirectory, Helpers.bytesToHexString(digest.digest()) + FILE_SUFFIX);
+    }
+
+    private static byte[] sha256(byte[] data) {
+        return newSha256().digest(data);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required to be present in every JVM.
+            throw RuntimeAssertionError.unexpected(e);
+        }
+    }
+}
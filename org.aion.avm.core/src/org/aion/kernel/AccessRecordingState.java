@@ -0,0 +1,300 @@
+package org.aion.kernel;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import i.RuntimeAssertionError;
+import org.aion.avm.core.IExternalState;
+import org.aion.avm.core.util.ByteArrayWrapper;
+import org.aion.types.AionAddress;
+
+
+/**
+ * Sits between a task's TransactionalState and the block's kernel, when executing speculatively, in order to record the task's read set
+ * (everything it read from the kernel while running) and write set (everything it changed in the kernel when it committed).
+ *
+ * State is broken into locations:  the account itself (balance, nonce, code, existence), its object graph, each storage key, and whether
+ * it has any storage.  This is fine-grained enough that transactions which only share a contract's unchanged graph, or distinct storage
+ * keys, don't conflict.
+ * Writes which don't change anything (storing an identical graph, adjusting an existing balance by zero) are not recorded, since they
+ * can't invalidate a reader.
+ */
+public class AccessRecordingState implements IExternalState {
+    private final IExternalState parent;
+    private final Set<Location> readSet;
+    private final Set<Location> writeSet;
+
+    public AccessRecordingState(IExternalState parent) {
+        this.parent = parent;
+        this.readSet = new HashSet<>();
+        this.writeSet = new HashSet<>();
+    }
+
+    /**
+     * @return The locations read, from the parent, since this instance was created.
+     */
+    public Set<Location> getReadSet() {
+        return this.readSet;
+    }
+
+    /**
+     * @return The locations changed, in the parent, since this instance was created.
+     */
+    public Set<Location> getWriteSet() {
+        return this.writeSet;
+    }
+
+    @Override
+    public IExternalState newChildExternalState() {
+        return new TransactionalState(this);
+    }
+
+    @Override
+    public void commit() {
+        throw RuntimeAssertionError.unreachable("This class does not implement this method.");
+    }
+
+    @Override
+    public void commitTo(IExternalState target) {
+        throw RuntimeAssertionError.unreachable("This class does not implement this method.");
+    }
+
+    @Override
+    public void createAccount(AionAddress address) {
+        this.writeSet.add(Location.account(address));
+        this.parent.createAccount(address);
+    }
+
+    @Override
+    public boolean hasAccountState(AionAddress address) {
+        this.readSet.add(Location.account(address));
+        return this.parent.hasAccountState(address);
+    }
+
+    @Override
+    public byte[] getCode(AionAddress address) {
+        this.readSet.add(Location.account(address));
+        return this.parent.getCode(address);
+    }
+
+    @Override
+    public void putCode(AionAddress address, byte[] code) {
+        this.writeSet.add(Location.account(address));
+        this.parent.putCode(address, code);
+    }
+
+    @Override
+    public byte[] getTransformedCode(AionAddress address) {
+        this.readSet.add(Location.account(address));
+        return this.parent.getTransformedCode(address);
+    }
+
+    @Override
+    public void setTransformedCode(AionAddress address, byte[] code) {
+        if (!Arrays.equals(code, this.parent.getTransformedCode(address))) {
+            this.writeSet.add(Location.account(address));
+        }
+        this.parent.setTransformedCode(address, code);
+    }
+
+    @Override
+    public void putObjectGraph(AionAddress address, byte[] objectGraph) {
+        if (!Arrays.equals(objectGraph, this.parent.getObjectGraph(address))) {
+            this.writeSet.add(Location.graph(address));
+        }
+        this.parent.putObjectGraph(address, objectGraph);
+    }
+
+    @Override
+    public byte[] getObjectGraph(AionAddress address) {
+        this.readSet.add(Location.graph(address));
+        return this.parent.getObjectGraph(address);
+    }
+
+    @Override
+    public void putStorage(AionAddress address, byte[] key, byte[] value) {
+        if (!Arrays.equals(value, this.parent.getStorage(address, key))) {
+            this.writeSet.add(Location.storage(address, key));
+            this.writeSet.add(Location.anyStorage(address));
+        }
+        this.parent.putStorage(address, key, value);
+    }
+
+    @Override
+    public void removeStorage(AionAddress address, byte[] key) {
+        this.writeSet.add(Location.storage(address, key));
+        this.writeSet.add(Location.anyStorage(address));
+        this.parent.removeStorage(address, key);
+    }
+
+    @Override
+    public byte[] getStorage(AionAddress address, byte[] key) {
+        // Deleting the account changes its storage without touching individual keys so we also depend on the account.
+        this.readSet.add(Location.storage(address, key));
+        this.readSet.add(Location.account(address));
+        return this.parent.getStorage(address, key);
+    }
+
+    @Override
+    public void deleteAccount(AionAddress address) {
+        this.writeSet.add(Location.account(address));
+        this.writeSet.add(Location.graph(address));
+        this.writeSet.add(Location.anyStorage(address));
+        this.parent.deleteAccount(address);
+    }
+
+    @Override
+    public BigInteger getBalance(AionAddress address) {
+        this.readSet.add(Location.account(address));
+        return this.parent.getBalance(address);
+    }
+
+    @Override
+    public void adjustBalance(AionAddress address, BigInteger amount) {
+        // Calls always "transfer" their value, even if it is zero, so don't let that look like a write (unless it lazily creates the account).
+        if ((0 != amount.signum()) || !this.parent.hasAccountState(address)) {
+            this.writeSet.add(Location.account(address));
+        }
+        this.parent.adjustBalance(address, amount);
+    }
+
+    @Override
+    public BigInteger getNonce(AionAddress address) {
+        this.readSet.add(Location.account(address));
+        return this.parent.getNonce(address);
+    }
+
+    @Override
+    public void incrementNonce(AionAddress address) {
+        this.writeSet.add(Location.account(address));
+        this.parent.incrementNonce(address);
+    }
+
+    @Override
+    public void refundAccount(AionAddress address, BigInteger refund) {
+        if ((0 != refund.signum()) || !this.parent.hasAccountState(address)) {
+            this.writeSet.add(Location.account(address));
+        }
+        this.parent.refundAccount(address, refund);
+    }
+
+    @Override
+    public byte[] getBlockHashByNumber(long blockNumber) {
+        return this.parent.getBlockHashByNumber(blockNumber);
+    }
+
+    @Override
+    public boolean accountNonceEquals(AionAddress address, BigInteger nonce) {
+        this.readSet.add(Location.account(address));
+        return this.parent.accountNonceEquals(address, nonce);
+    }
+
+    @Override
+    public boolean accountBalanceIsAtLeast(AionAddress address, BigInteger amount) {
+        this.readSet.add(Location.account(address));
+        return this.parent.accountBalanceIsAtLeast(address, amount);
+    }
+
+    @Override
+    public boolean isValidEnergyLimitForCreate(long limit) {
+        return this.parent.isValidEnergyLimitForCreate(limit);
+    }
+
+    @Override
+    public boolean isValidEnergyLimitForNonCreate(long limit) {
+        return this.parent.isValidEnergyLimitForNonCreate(limit);
+    }
+
+    @Override
+    public boolean destinationAddressIsSafeForThisVM(AionAddress address) {
+        this.readSet.add(Location.account(address));
+        return this.parent.destinationAddressIsSafeForThisVM(address);
+    }
+
+    @Override
+    public long getBlockNumber() {
+        return this.parent.getBlockNumber();
+    }
+
+    @Override
+    public long getBlockTimestamp() {
+        return this.parent.getBlockTimestamp();
+    }
+
+    @Override
+    public long getBlockEnergyLimit() {
+        return this.parent.getBlockEnergyLimit();
+    }
+
+    @Override
+    public BigInteger getBlockDifficulty() {
+        return this.parent.getBlockDifficulty();
+    }
+
+    @Override
+    public AionAddress getMinerAddress() {
+        return this.parent.getMinerAddress();
+    }
+
+    @Override
+    public boolean hasStorage(AionAddress address) {
+        this.readSet.add(Location.anyStorage(address));
+        return this.parent.hasStorage(address);
+    }
+
+
+    /**
+     * A piece of the kernel state which can be read or written by a transaction.
+     */
+    public static final class Location {
+        private static final byte KIND_ACCOUNT = 0;
+        private static final byte KIND_GRAPH = 1;
+        private static final byte KIND_STORAGE = 2;
+        private static final byte KIND_ANY_STORAGE = 3;
+
+        public static Location account(AionAddress address) {
+            return new Location(KIND_ACCOUNT, address, null);
+        }
+
+        public static Location graph(AionAddress address) {
+            return new Location(KIND_GRAPH, address, null);
+        }
+
+        public static Location storage(AionAddress address, byte[] key) {
+            return new Location(KIND_STORAGE, address, new ByteArrayWrapper(key));
+        }
+
+        public static Location anyStorage(AionAddress address) {
+            return new Location(KIND_ANY_STORAGE, address, null);
+        }
+
+        private final byte kind;
+        private final ByteArrayWrapper address;
+        private final ByteArrayWrapper key;
+
+        private Location(byte kind, AionAddress address, ByteArrayWrapper key) {
+            this.kind = kind;
+            this.address = new ByteArrayWrapper(address.toByteArray());
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * this.address.hashCode() + ((null != this.key) ? this.key.hashCode() : 0)) * 4 + this.kind;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            boolean isEqual = (this == obj);
+            if (!isEqual && (obj instanceof Location)) {
+                Location other = (Location) obj;
+                isEqual = (this.kind == other.kind)
+                        && this.address.equals(other.address)
+                        && ((null == this.key) ? (null == other.key) : this.key.equals(other.key));
+            }
+            return isEqual;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package org.aion.kernel;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import i.RuntimeAssertionError;
+import org.aion.avm.core.AvmExecutorThread;
+import org.aion.avm.core.IExternalState;
+import org.aion.avm.core.StateWriteSet;
+import org.aion.avm.core.util.ByteArrayWrapper;
+import org.aion.types.AionAddress;
+
+
+/**
+ * Sits between all the tasks of one batch and the block's kernel, caching what they read from the kernel (storage, balance, nonce, code,
+ * transformed code, and object graph) so that a transaction which reads what an earlier one in the block already read doesn't go back to
+ * the kernel.
+ *
+ * The tasks commit through this instance so every location a commit writes is invalidated, as part of that commit, before the next task
+ * can acquire the address (or, when executing speculatively, before the next task commits).  Reads race with commits, though, so a value
+ * read from the kernel is only cached if no write started or finished while it was being read:  writers move the generation to odd before
+ * writing the kernel and back to even once they have invalidated what they wrote.
+ *
+ * Only one batch should be in flight against a given kernel, while using this cache, since writes made to the kernel by anything other
+ * than this instance aren't seen by it.
+ */
+public class BlockReadCachingState implements IExternalState {
+    // Stands in for a null (absent) value, in the maps.
+    private static final Object ABSENT = new Object();
+
+    private final IExternalState parent;
+    private final ConcurrentHashMap<AionAddress, Object> balances;
+    private final ConcurrentHashMap<AionAddress, Object> nonces;
+    private final ConcurrentHashMap<AionAddress, Object> codes;
+    private final ConcurrentHashMap<AionAddress, Object> transformedCodes;
+    private final ConcurrentHashMap<AionAddress, Object> objectGraphs;
+    private final ConcurrentHashMap<AionAddress, ConcurrentHashMap<ByteArrayWrapper, Object>> storage;
+    // Odd while a write is in progress (only changed under the monitor).
+    private volatile long generation;
+
+    public BlockReadCachingState(IExternalState parent) {
+        this.parent = parent;
+        this.balances = new ConcurrentHashMap<>();
+        this.nonces = new ConcurrentHashMap<>();
+        this.codes = new ConcurrentHashMap<>();
+        this.transformedCodes = new ConcurrentHashMap<>();
+        this.objectGraphs = new ConcurrentHashMap<>();
+        this.storage = new ConcurrentHashMap<>();
+        this.generation = 0L;
+    }
+
+    @Override
+    public IExternalState newChildExternalState() {
+        return new TransactionalState(this);
+    }
+
+    @Override
+    public void commit() {
+        throw RuntimeAssertionError.unreachable("This class does not implement this method.");
+    }
+
+    @Override
+    public void commitTo(IExternalState target) {
+        throw RuntimeAssertionError.unreachable("This class does not implement this method.");
+    }
+
+    @Override
+    public void commitWriteSet(StateWriteSet writeSet) {
+        beginWrite();
+        this.parent.commitWriteSet(writeSet);
+        for (StateWriteSet.AccountWrites writes : writeSet.getAccountWrites()) {
+            invalidateAccount(writes.address);
+            if (writes.isDeleted() || writes.isCreated()) {
+                this.storage.remove(writes.address);
+            } else {
+                for (ByteArrayWrapper key : writes.getStorage().keySet()) {
+                    invalidateStorage(writes.address, key);
+                }
+            }
+        }
+        endWrite();
+    }
+
+    @Override
+    public void createAccount(AionAddress address) {
+        beginWrite();
+        this.parent.createAccount(address);
+        invalidateAccount(address);
+        this.storage.remove(address);
+        endWrite();
+    }
+
+    @Override
+    public boolean hasAccountState(AionAddress address) {
+        return this.parent.hasAccountState(address);
+    }
+
+    @Override
+    public byte[] getCode(AionAddress address) {
+        return (byte[]) read(this.codes, address, this.parent::getCode);
+    }
+
+    @Override
+    public void putCode(AionAddress address, byte[] code) {
+        beginWrite();
+        this.parent.putCode(address, code);
+        this.codes.remove(address);
+        endWrite();
+    }
+
+    @Override
+    public byte[] getTransformedCode(AionAddress address) {
+        return (byte[]) read(this.transformedCodes, address, this.parent::getTransformedCode);
+    }
+
+    @Override
+    public void setTransformedCode(AionAddress address, byte[] code) {
+        beginWrite();
+        this.parent.setTransformedCode(address, code);
+        this.transformedCodes.remove(address);
+        endWrite();
+    }
+
+    @Override
+    public void putObjectGraph(AionAddress address, byte[] objectGraph) {
+        beginWrite();
+        this.parent.putObjectGraph(address, objectGraph);
+        this.objectGraphs.remove(address);
+        endWrite();
+    }
+
+    @Override
+    public byte[] getObjectGraph(AionAddress address) {
+        return (byte[]) read(this.objectGraphs, address, this.parent::getObjectGraph);
+    }
+
+    @Override
+    public void putStorage(AionAddress address, byte[] key, byte[] value) {
+        beginWrite();
+        this.parent.putStorage(address, key, value);
+        invalidateStorage(address, new ByteArrayWrapper(key));
+        endWrite();
+    }
+
+    @Override
+    public void removeStorage(AionAddress address, byte[] key) {
+        beginWrite();
+        this.parent.removeStorage(address, key);
+        invalidateStorage(address, new ByteArrayWrapper(key));
+        endWrite();
+    }
+
+    @Override
+    public byte[] getStorage(AionAddress address, byte[] key) {
+        ConcurrentHashMap<ByteArrayWrapper, Object> accountStorage = this.storage.computeIfAbsent(address, (ignored) -> new ConcurrentHashMap<>());
+        return (byte[]) read(accountStorage, new ByteArrayWrapper(key), (ignored) -> this.parent.getStorage(address, key));
+    }
+
+    @Override
+    public void deleteAccount(AionAddress address) {
+        beginWrite();
+        this.parent.deleteAccount(address);
+        invalidateAccount(address);
+        this.storage.remove(address);
+        endWrite();
+    }
+
+    @Override
+    public BigInteger getBalance(AionAddress address) {
+        return (BigInteger) read(this.balances, address, this.parent::getBalance);
+    }
+
+    @Override
+    public void adjustBalance(AionAddress address, BigInteger amount) {
+        beginWrite();
+        this.parent.adjustBalance(address, amount);
+        invalidateAccount(address);
+        endWrite();
+    }
+
+    @Override
+    public BigInteger getNonce(AionAddress address) {
+        return (BigInteger) read(this.nonces, address, this.parent::getNonce);
+    }
+
+    @Override
+    public void incrementNonce(AionAddress address) {
+        beginWrite();
+        this.parent.incrementNonce(address);
+        invalidateAccount(address);
+        endWrite();
+    }
+
+    @Override
+    public void refundAccount(AionAddress address, BigInteger refund) {
+        beginWrite();
+        this.parent.refundAccount(address, refund);
+        invalidateAccount(address);
+        endWrite();
+    }
+
+    @Override
+    public byte[] getBlockHashByNumber(long blockNumber) {
+        return this.parent.getBlockHashByNumber(blockNumber);
+    }
+
+    @Override
+    public boolean accountNonceEquals(AionAddress address, BigInteger nonce) {
+        // The kernel may apply special logic to this check so we don't answer it from the cache.
+        return this.parent.accountNonceEquals(address, nonce);
+    }
+
+    @Override
+    public boolean accountBalanceIsAtLeast(AionAddress address, BigInteger amount) {
+        // The kernel may apply special logic to this check so we don't answer it from the cache.
+        return this.parent.accountBalanceIsAtLeast(address, amount);
+    }
+
+    @Override
+    public boolean isValidEnergyLimitForCreate(long limit) {
+        return this.parent.isValidEnergyLimitForCreate(limit);
+    }
+
+    @Override
+    public boolean isValidEnergyLimitForNonCreate(long limit) {
+        return this.parent.isValidEnergyLimitForNonCreate(limit);
+    }
+
+    @Override
+    public boolean destinationAddressIsSafeForThisVM(AionAddress address) {
+        return this.parent.destinationAddressIsSafeForThisVM(address);
+    }
+
+    @Override
+    public long getBlockNumber() {
+        return this.parent.getBlockNumber();
+    }
+
+    @Override
+    public long getBlockTimestamp() {
+        return this.parent.getBlockTimestamp();
+    }
+
+    @Override
+    public long getBlockEnergyLimit() {
+        return this.parent.getBlockEnergyLimit();
+    }
+
+    @Override
+    public BigInteger getBlockDifficulty() {
+        return this.parent.getBlockDifficulty();
+    }
+
+    @Override
+    public AionAddress getMinerAddress() {
+        return this.parent.getMinerAddress();
+    }
+
+    @Override
+    public boolean hasStorage(AionAddress address) {
+        return this.parent.hasStorage(address);
+    }
+
+    private <K> Object read(Map<K, Object> cache, K key, Function<K, Object> reader) {
+        Object cached = cache.get(key);
+        Object result = null;
+        if (null != cached) {
+            countLookup(true);
+            result = (ABSENT != cached)
+                    ? cached
+                    : null;
+        } else {
+            countLookup(false);
+            long generationBeforeRead = this.generation;
+            result = reader.apply(key);
+            if (0L == (generationBeforeRead & 1L)) {
+                synchronized (this) {
+                    // Nothing may have been written while we were reading.
+                    if (generationBeforeRead == this.generation) {
+                        cache.putIfAbsent(key, (null != result) ? result : ABSENT);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private synchronized void beginWrite() {
+        this.generation += 1L;
+    }
+
+    private synchronized void endWrite() {
+        this.generation += 1L;
+    }
+
+    private void invalidateAccount(AionAddress address) {
+        this.balances.remove(address);
+        this.nonces.remove(address);
+        this.codes.remove(address);
+        this.transformedCodes.remove(address);
+        this.objectGraphs.remove(address);
+    }
+
+    private void invalidateStorage(AionAddress address, ByteArrayWrapper key) {
+        ConcurrentHashMap<ByteArrayWrapper, Object> accountStorage = this.storage.get(address);
+        if (null != accountStorage) {
+            accountStorage.remove(key);
+        }
+    }
+
+    private static void countLookup(boolean isHit) {
+        // The stats are per executor thread (this is only used on other threads in tests).
+        Thread thread = Thread.currentThread();
+        if (thread instanceof AvmExecutorThread) {
+            if (isHit) {
+                ((AvmExecutorThread) thread).stats.cache_blockRead_hit += 1;
+            } else {
+                ((AvmExecutorThread) thread).stats.cache_blockRead_miss += 1;
+            }
+        }
+    }
+}
@@ -93,7 +93,11 @@ public class CachingState implements IExternalState {
 
     @Override
     public byte[] getObjectGraph(AionAddress address) {
-        return lazyCreateAccount(address.toByteArray()).getObjectGraph();
+        // Like the other reads, this doesn't create the account (so it can't change what hasAccountState() reports).
+        IAccountStore account = this.dataStore.openAccount(address.toByteArray());
+        return (null != account)
+                ? account.getObjectGraph()
+                : null;
     }
 
     @Override
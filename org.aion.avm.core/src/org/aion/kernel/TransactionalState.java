@@ -1,13 +1,11 @@
 package org.aion.kernel;
 
 import java.math.BigInteger;
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
-import java.util.function.Consumer;
 
 import org.aion.avm.core.IExternalState;
+import org.aion.avm.core.StateWriteSet;
 import org.aion.types.AionAddress;
 import org.aion.avm.core.types.Pair;
 import org.aion.avm.core.util.ByteArrayWrapper;
@@ -16,16 +14,23 @@ import org.aion.avm.core.util.ByteArrayWrapper;
 /**
  * A transactional implementation of the IExternalState which only writes back to its "parent" on commit.
  * 
- * This uses a relatively extensible pattern for its implementation, building a transaction log rather than its own actual direct implementation.
- * This means that changes to the interface should mostly just translate into a new kind of transaction log entry, in this implementation.
+ * Each write is applied to a local CachingState, to answer reads, and recorded in a StateWriteSet, which keeps only its net effect (the last
+ * value of each storage key, the sum of balance adjustments, etc).  Committing hands the StateWriteSet to the parent, in one call, so the
+ * number of writes committed depends on the locations changed, not on how many times they were written.
+ * A TransactionalState built on another one shares its WrittenLocationFilter and the state at the bottom of the chain (the "root"):  a read
+ * of a location which no level has written goes straight to the root, instead of missing in each level on the way down.
  * Special attention needs to be paid to read-and-write operations (such as adjustBalance()) and anything involving deletes.
  */
 public class TransactionalState implements IExternalState {
     private final IExternalState parent;
+    // The first state under this chain which isn't a TransactionalState (our parent, if it isn't one).
+    private final IExternalState root;
+    // Shared by every TransactionalState over the same root, in this chain.
+    private final WrittenLocationFilter writtenLocations;
     private final CachingState writeCache;
-    private final List<Consumer<IExternalState>> writeLog;
-    private final Set<ByteArrayWrapper> deletedAccountProjection;
-    private final Set<ByteArrayWrapper> cachedAccountBalances;
+    private final StateWriteSet writeSet;
+    private final Set<AionAddress> deletedAccountProjection;
+    private final Set<AionAddress> cachedAccountBalances;
     private final Set<Pair<AionAddress, ByteArrayWrapper>> deletedStorageKeys;
 
 
@@ -37,8 +42,15 @@ public class TransactionalState implements IExternalState {
 
     public TransactionalState(IExternalState parent) {
         this.parent = parent;
+        if (parent instanceof TransactionalState) {
+            this.root = ((TransactionalState) parent).root;
+            this.writtenLocations = ((TransactionalState) parent).writtenLocations;
+        } else {
+            this.root = parent;
+            this.writtenLocations = new WrittenLocationFilter();
+        }
         this.writeCache = new CachingState();
-        this.writeLog = new ArrayList<>();
+        this.writeSet = new StateWriteSet();
         this.deletedAccountProjection = new HashSet<>();
         this.cachedAccountBalances = new HashSet<>();
         this.blockDifficulty = parent.getBlockDifficulty();
@@ -60,9 +72,7 @@ public class TransactionalState implements IExternalState {
      */
     @Override
     public void commit() {
-        for (Consumer<IExternalState> mutation : this.writeLog) {
-            mutation.accept(this.parent);
-        }
+        this.parent.commitWriteSet(this.writeSet);
     }
 
     /**
@@ -71,27 +81,25 @@ public class TransactionalState implements IExternalState {
      */
     @Override
     public void commitTo(IExternalState target) {
-        for (Consumer<IExternalState> mutation : this.writeLog) {
-            mutation.accept(target);
-        }
+        target.commitWriteSet(this.writeSet);
     }
 
     @Override
     public void createAccount(AionAddress address) {
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.createAccount(address);
-        };
-        write.accept(writeCache);
-        writeLog.add(write);
-        this.deletedAccountProjection.remove(new ByteArrayWrapper(address.toByteArray()));
+        this.writtenLocations.markAccount(address);
+        this.writeCache.createAccount(address);
+        this.writeSet.createAccount(address);
+        this.deletedAccountProjection.remove(address);
         // Say that we have this cached so we don't go back to any old version in the parent (even though it is unlikely we will create over delete).
-        this.cachedAccountBalances.add(new ByteArrayWrapper(address.toByteArray()));
+        this.cachedAccountBalances.add(address);
     }
 
     @Override
     public boolean hasAccountState(AionAddress address) {
         boolean result = false;
-        if (!this.deletedAccountProjection.contains(new ByteArrayWrapper(address.toByteArray()))) {
+        if (!this.writtenLocations.mightHaveWrittenAccount(address)) {
+            result = this.root.hasAccountState(address);
+        } else if (!this.deletedAccountProjection.contains(address)) {
             result = this.writeCache.hasAccountState(address);
             if (!result) {
                 result = this.parent.hasAccountState(address);
@@ -103,7 +111,9 @@ public class TransactionalState implements IExternalState {
     @Override
     public byte[] getCode(AionAddress address) {
         byte[] result = null;
-        if (!this.deletedAccountProjection.contains(new ByteArrayWrapper(address.toByteArray()))) {
+        if (!this.writtenLocations.mightHaveWrittenAccount(address)) {
+            result = this.root.getCode(address);
+        } else if (!this.deletedAccountProjection.contains(address)) {
             result = this.writeCache.getCode(address);
             if (null == result) {
                 result = this.parent.getCode(address);
@@ -114,17 +124,17 @@ public class TransactionalState implements IExternalState {
 
     @Override
     public void putCode(AionAddress address, byte[] code) {
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.putCode(address, code);
-        };
-        write.accept(writeCache);
-        writeLog.add(write);
+        this.writtenLocations.markAccount(address);
+        this.writeCache.putCode(address, code);
+        this.writeSet.putCode(address, code);
     }
 
     @Override
     public byte[] getTransformedCode(AionAddress address) {
         byte[] result = null;
-        if (!this.deletedAccountProjection.contains(new ByteArrayWrapper(address.toByteArray()))) {
+        if (!this.writtenLocations.mightHaveWrittenAccount(address)) {
+            result = this.root.getTransformedCode(address);
+        } else if (!this.deletedAccountProjection.contains(address)) {
             result = this.writeCache.getTransformedCode(address);
             if (null == result) {
                 result = this.parent.getTransformedCode(address);
@@ -135,70 +145,74 @@ public class TransactionalState implements IExternalState {
 
     @Override
     public void setTransformedCode(AionAddress address, byte[] bytes) {
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.setTransformedCode(address, bytes);
-        };
-        write.accept(writeCache);
-        writeLog.add(write);
+        this.writtenLocations.markAccount(address);
+        this.writeCache.setTransformedCode(address, bytes);
+        this.writeSet.setTransformedCode(address, bytes);
     }
 
     @Override
     public void putObjectGraph(AionAddress address, byte[] bytes) {
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.putObjectGraph(address, bytes);
-        };
-        write.accept(writeCache);
-        writeLog.add(write);
+        this.writtenLocations.markAccount(address);
+        this.writeCache.putObjectGraph(address, bytes);
+        this.writeSet.putObjectGraph(address, bytes);
     }
 
     @Override
     public byte[] getObjectGraph(AionAddress address) {
-        byte[] result = this.writeCache.getObjectGraph(address);
-        if (null == result) {
-            result = this.parent.getObjectGraph(address);
+        byte[] result = null;
+        if (!this.writtenLocations.mightHaveWrittenAccount(address)) {
+            result = this.root.getObjectGraph(address);
+        } else {
+            result = this.writeCache.getObjectGraph(address);
+            if (null == result) {
+                result = this.parent.getObjectGraph(address);
+            }
         }
         return result;
     }
 
     @Override
     public void putStorage(AionAddress address, byte[] key, byte[] value) {
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.putStorage(address, key, value);
-        };
         if(deletedStorageKeys.contains(Pair.of(address, new ByteArrayWrapper(key)))){
             deletedStorageKeys.remove(Pair.of(address, new ByteArrayWrapper(key)));
         }
-        write.accept(writeCache);
-        writeLog.add(write);
+        this.writtenLocations.markStorage(address, key);
+        this.writeCache.putStorage(address, key, value);
+        this.writeSet.putStorage(address, key, value);
     }
 
     @Override
     public byte[] getStorage(AionAddress address, byte[] key) {
         // We issue these requests from the given address, only, so it is safe for us to decide that we permit reads after deletes.
         // The direct reason why this happens is that DApps which are already running are permitted to continue running but may need to lazyLoad.
-        byte[] result = this.writeCache.getStorage(address, key);
-        // check if the key has not been deleted
-        if (null == result && !deletedStorageKeys.contains(Pair.of(address, new ByteArrayWrapper(key)))) {
-            result = this.parent.getStorage(address, key);
+        byte[] result = null;
+        if (!this.writtenLocations.mightHaveWrittenStorage(address, key)) {
+            result = this.root.getStorage(address, key);
+        } else {
+            result = this.writeCache.getStorage(address, key);
+            // check if the key has not been deleted
+            if (null == result && !deletedStorageKeys.contains(Pair.of(address, new ByteArrayWrapper(key)))) {
+                result = this.parent.getStorage(address, key);
+            }
         }
         return result;
     }
 
     @Override
     public void deleteAccount(AionAddress address) {
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.deleteAccount(address);
-        };
-        write.accept(writeCache);
-        writeLog.add(write);
-        this.deletedAccountProjection.add(new ByteArrayWrapper(address.toByteArray()));
-        this.cachedAccountBalances.remove(new ByteArrayWrapper(address.toByteArray()));
+        this.writtenLocations.markAccount(address);
+        this.writeCache.deleteAccount(address);
+        this.writeSet.deleteAccount(address);
+        this.deletedAccountProjection.add(address);
+        this.cachedAccountBalances.remove(address);
     }
 
     @Override
     public BigInteger getBalance(AionAddress address) {
         BigInteger result = BigInteger.ZERO;
-        if (!this.deletedAccountProjection.contains(new ByteArrayWrapper(address.toByteArray()))) {
+        if (!this.writtenLocations.mightHaveWrittenAccount(address)) {
+            result = this.root.getBalance(address);
+        } else if (!this.deletedAccountProjection.contains(address)) {
             result = this.writeCache.getBalance(address);
             if (result.equals(BigInteger.ZERO)) {
                 result = this.parent.getBalance(address);
@@ -210,25 +224,23 @@ public class TransactionalState implements IExternalState {
     @Override
     public void adjustBalance(AionAddress address, BigInteger delta) {
         // This is a read-then-write operation so we need to make sure that there is an entry in our cache, first, before we can apply the mutation.
-        if (!this.cachedAccountBalances.contains(new ByteArrayWrapper(address.toByteArray()))) {
+        if (!this.cachedAccountBalances.contains(address)) {
             // We can only re-cache this if we didn't already delete it.
             // If it was deleted, we need to fake the lazy creation and start it at zero.
-            if (!this.deletedAccountProjection.contains(new ByteArrayWrapper(address.toByteArray()))) {
+            if (!this.deletedAccountProjection.contains(address)) {
                 BigInteger balance = this.parent.getBalance(address);
                 this.writeCache.adjustBalance(address, balance);
             } else {
                 this.writeCache.adjustBalance(address, BigInteger.ZERO);
             }
-            this.cachedAccountBalances.add(new ByteArrayWrapper(address.toByteArray()));
+            this.cachedAccountBalances.add(address);
         }
         // If this was previously deleted, fake the lazy re-creation.
-        this.deletedAccountProjection.remove(new ByteArrayWrapper(address.toByteArray()));
+        this.deletedAccountProjection.remove(address);
 
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.adjustBalance(address, delta);
-        };
-        write.accept(writeCache);
-        writeLog.add(write);
+        this.writtenLocations.markAccount(address);
+        this.writeCache.adjustBalance(address, delta);
+        this.writeSet.adjustBalance(address, delta);
     }
 
     @Override
@@ -236,7 +248,9 @@ public class TransactionalState implements IExternalState {
         BigInteger result = BigInteger.ZERO;
         // Note that nonce matters for deleted accounts since it is possible for a contract to self-destruct and continue running.
         // The number doesn't need to be preserved, though, as we only need to handle it consistently, here.
-        if (!this.deletedAccountProjection.contains(new ByteArrayWrapper(address.toByteArray()))) {
+        if (!this.writtenLocations.mightHaveWrittenAccount(address)) {
+            result = this.root.getNonce(address);
+        } else if (!this.deletedAccountProjection.contains(address)) {
             result = this.writeCache.getNonce(address);
             if (result.equals(BigInteger.ZERO)) {
                 result = this.parent.getNonce(address);
@@ -249,7 +263,7 @@ public class TransactionalState implements IExternalState {
     public void incrementNonce(AionAddress address) {
         // Note that nonce matters for deleted accounts since it is possible for a contract to self-destruct and continue running.
         // The number doesn't need to be preserved, though, as we only need to handle it consistently, here.
-        if (!this.deletedAccountProjection.contains(new ByteArrayWrapper(address.toByteArray()))) {
+        if (!this.deletedAccountProjection.contains(address)) {
             // Note that we need to make sure that the nonce was initialized, before we increment it.
             // TODO(AKI-383): This special-case can be avoided if the IExternalState methods are changed to be idempotent.
             BigInteger peek = this.writeCache.getNonce(address);
@@ -260,39 +274,37 @@ public class TransactionalState implements IExternalState {
         }
         
         // Now proceed with normal operation.
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.incrementNonce(address);
-        };
-        write.accept(writeCache);
-        writeLog.add(write);
+        this.writtenLocations.markAccount(address);
+        this.writeCache.incrementNonce(address);
+        this.writeSet.incrementNonce(address);
     }
 
     @Override
     public boolean accountNonceEquals(AionAddress address, BigInteger nonce) {
-        // Delegate the check to our parent. The actual KernelInterface given to us by the externalState
-        // has an opportunity to do some special case logic here when it wishes.
-        return this.parent.accountNonceEquals(address, nonce);
+        // Delegate the check to our root (every TransactionalState between would just delegate it). The actual KernelInterface given to
+        // us by the externalState has an opportunity to do some special case logic here when it wishes.
+        return this.root.accountNonceEquals(address, nonce);
     }
 
     @Override
     public boolean accountBalanceIsAtLeast(AionAddress address, BigInteger amount) {
-        // Delegate the check to our parent. The actual KernelInterface given to us by the externalState
-        // has an opportunity to do some special case logic here when it wishes.
-        return this.parent.accountBalanceIsAtLeast(address, amount);
+        // Delegate the check to our root (every TransactionalState between would just delegate it). The actual KernelInterface given to
+        // us by the externalState has an opportunity to do some special case logic here when it wishes.
+        return this.root.accountBalanceIsAtLeast(address, amount);
     }
 
     @Override
     public boolean isValidEnergyLimitForCreate(long energyLimit) {
-        // Delegate the check to our parent. The actual KernelInterface given to us by the externalState
-        // has an opportunity to do some special case logic here when it wishes.
-        return this.parent.isValidEnergyLimitForCreate(energyLimit);
+        // Delegate the check to our root (every TransactionalState between would just delegate it). The actual KernelInterface given to
+        // us by the externalState has an opportunity to do some special case logic here when it wishes.
+        return this.root.isValidEnergyLimitForCreate(energyLimit);
     }
 
     @Override
     public boolean isValidEnergyLimitForNonCreate(long energyLimit) {
-        // Delegate the check to our parent. The actual KernelInterface given to us by the externalState
-        // has an opportunity to do some special case logic here when it wishes.
-        return this.parent.isValidEnergyLimitForNonCreate(energyLimit);
+        // Delegate the check to our root (every TransactionalState between would just delegate it). The actual KernelInterface given to
+        // us by the externalState has an opportunity to do some special case logic here when it wishes.
+        return this.root.isValidEnergyLimitForNonCreate(energyLimit);
     }
 
     @Override
@@ -308,19 +320,19 @@ public class TransactionalState implements IExternalState {
 
     @Override
     public void removeStorage(AionAddress address, byte[] key) {
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.removeStorage(address, key);
-        };
         deletedStorageKeys.add(Pair.of(address, new ByteArrayWrapper(key)));
-        write.accept(writeCache);
-        writeLog.add(write);
+        this.writtenLocations.markStorage(address, key);
+        this.writeCache.removeStorage(address, key);
+        this.writeSet.removeStorage(address, key);
     }
 
     @Override
     public boolean destinationAddressIsSafeForThisVM(AionAddress address) {
         // We need to delegate to our parent externalState to apply whatever logic is defined there.
         // The only exception to this is cases where we already stored code in our cache so see if that is there.
-        return (null != this.writeCache.getTransformedCode(address)) || this.parent.destinationAddressIsSafeForThisVM(address);
+        return this.writtenLocations.mightHaveWrittenAccount(address)
+                ? ((null != this.writeCache.getTransformedCode(address)) || this.parent.destinationAddressIsSafeForThisVM(address))
+                : this.root.destinationAddressIsSafeForThisVM(address);
     }
 
     @Override
@@ -350,10 +362,15 @@ public class TransactionalState implements IExternalState {
 
     @Override
     public boolean hasStorage(AionAddress address) {
-        boolean result = this.writeCache.hasStorage(address);
-        if (!result) {
-            // Delegate the check to our parent.
-            result = this.parent.hasStorage(address);
+        boolean result = false;
+        if (!this.writtenLocations.mightHaveWrittenAccount(address)) {
+            result = this.root.hasStorage(address);
+        } else {
+            result = this.writeCache.hasStorage(address);
+            if (!result) {
+                // Delegate the check to our parent.
+                result = this.parent.hasStorage(address);
+            }
         }
         return result;
     }
@@ -0,0 +1,69 @@
+package org.aion.kernel;
+
+import java.util.Arrays;
+
+import org.aion.types.AionAddress;
+
+
+/**
+ * A conservative filter of the locations written anywhere in a chain of nested TransactionalState instances, shared by all of them.
+ *
+ * If a location was never marked, no level of the chain can have a different value for it than the state under the chain, so a read can
+ * go straight to that state instead of missing in every level on the way down.  A marked location (or one which collides with a marked
+ * location) is read through the chain, as usual.
+ * Locations are never unmarked (a level which is discarded, instead of committed, just leaves its marks) since that only costs a walk.
+ *
+ * This is a fixed-size bit set indexed by hash so marking and checking don't allocate.
+ */
+final class WrittenLocationFilter {
+    private static final int WORD_COUNT = 256;
+    private static final int BIT_MASK = (WORD_COUNT * Long.SIZE) - 1;
+
+    private final long[] bits;
+
+    public WrittenLocationFilter() {
+        this.bits = new long[WORD_COUNT];
+    }
+
+    /**
+     * Marks anything about the account (including its storage, as a whole) as written.
+     */
+    public void markAccount(AionAddress address) {
+        mark(address.hashCode());
+    }
+
+    /**
+     * Marks the given storage key as written (the account is also marked since this changes whether it has storage).
+     */
+    public void markStorage(AionAddress address, byte[] key) {
+        mark(address.hashCode());
+        mark(storageHash(address, key));
+    }
+
+    public boolean mightHaveWrittenAccount(AionAddress address) {
+        return isMarked(address.hashCode());
+    }
+
+    public boolean mightHaveWrittenStorage(AionAddress address, byte[] key) {
+        return isMarked(storageHash(address, key));
+    }
+
+    private void mark(int hash) {
+        int bit = spread(hash);
+        this.bits[bit >>> 6] |= (1L << bit);
+    }
+
+    private boolean isMarked(int hash) {
+        int bit = spread(hash);
+        return 0L != (this.bits[bit >>> 6] & (1L << bit));
+    }
+
+    private static int storageHash(AionAddress address, byte[] key) {
+        // Mixed so that a key doesn't land on the same bit as its own account.
+        return (31 * address.hashCode() + Arrays.hashCode(key)) * 0x9E3779B9;
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) & BIT_MASK;
+    }
+}
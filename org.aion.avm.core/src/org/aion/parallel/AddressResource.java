@@ -1,35 +1,35 @@
 package org.aion.parallel;
 
-import java.util.PriorityQueue;
+import java.util.TreeSet;
 
 /**
  * A package private class represent resource from address.
  *
- * Each {@link AddressResource} keeps a {@link PriorityQueue} of tasks waiting to acquire the resource.
+ * Each {@link AddressResource} keeps an ordered set of tasks waiting to acquire the resource.
+ * Each resource is its own lock:  all of these methods must be called while synchronized on the resource.
  */
 
 class AddressResource {
 
     /**
-     * Priority queue of {@link TransactionTask}
+     * Ordered set of {@link TransactionTask}, so adding, removing, and finding the next owner are all O(log n).
      * The priority is determined by the index of the transaction.
      * See {@link TransactionTask#compareTo(TransactionTask)}
      */
-    private PriorityQueue<TransactionTask> waitingQueue;
+    private TreeSet<TransactionTask> waitingQueue;
 
     private boolean isOwned;
 
     private TransactionTask ownedBy;
 
     AddressResource(){
-        this.waitingQueue = new PriorityQueue<>();
+        this.waitingQueue = new TreeSet<>();
         this.isOwned = false;
         this.ownedBy = null;
     }
 
     boolean addToWaitingQueue(TransactionTask task){
-        if (!waitingQueue.contains(task)) {
-            waitingQueue.add(task);
+        if (waitingQueue.add(task)) {
             if (isNextOwner(task) && null != ownedBy && task != ownedBy) {
                 ownedBy.setAbortState();
                 return true;
@@ -47,7 +47,7 @@ class AddressResource {
     }
 
     boolean isNextOwner(TransactionTask task){
-        return (task.getIndex() == waitingQueue.peek().getIndex());
+        return (task.getIndex() == waitingQueue.first().getIndex());
     }
 
     TransactionTask getOwnedBy() {
@@ -60,7 +60,7 @@ class AddressResource {
     }
 
     TransactionTask getNextOwner(){
-        return this.waitingQueue.peek();
+        return this.waitingQueue.isEmpty() ? null : this.waitingQueue.first();
     }
 
     @Override
@@ -72,4 +72,3 @@ class AddressResource {
         return ret;
     }
 }
-
@@ -2,52 +2,121 @@ package org.aion.parallel;
 
 import i.RuntimeAssertionError;
 
+import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.aion.avm.core.AvmExecutorThread;
 import org.aion.avm.core.AvmThreadStats;
+import org.aion.kernel.AccessRecordingState;
+import org.aion.kernel.TransactionalState;
 
 
 /**
  * Used by executor threads to communicate with each other.
  * Executor threads can only acquire/release {@link AddressResource}, commit result through this monitor.
  * A new monitor will be created for each batch of transactions.
+ *
+ * There is no global lock:  each {@link AddressResource} is its own lock and a blocked task is only woken by the events which could
+ * let it proceed (the resource it is waiting for being released to it, its turn to commit, or its abort).  See
+ * {@link TransactionTask#blockUntilSignalled()}.
+ *
+ * In speculative mode, no resources are acquired:  tasks run against the kernel as committed so far, recording what they read, and are
+ * validated when it is their turn to commit.  If anything a task read was written by a commit after it started, it is re-executed
+ * (which can't fail validation, since every earlier task has committed by then).  Only truly conflicting transactions are re-executed.
+ *
+ * In read-only mode, used for queries, tasks are independent of each other and their writes are discarded:  nothing is acquired, ordered,
+ * or committed.
  */
 public class AddressResourceMonitor {
     static boolean DEBUG = false;
 
     // Map for resource retrieval
-    private HashMap<AddressWrapper, AddressResource> resources;
+    private final ConcurrentHashMap<AddressWrapper, AddressResource> resources;
 
-    // Ownership records for each task. It provide fast resource release.
-    private HashMap<TransactionTask, Set<AddressResource>> ownerships;
+    // The resources each task is owning or waiting for. It provide fast resource release.
+    // (each set is only accessed by the thread running the task)
+    private final ConcurrentHashMap<TransactionTask, Set<AddressResource>> ownerships;
 
-    // Private monitor for safety
-    private final Object sync;
+    // The tasks blocked waiting for their turn to commit, by index, so the committing task can wake only the next one.
+    private final ConcurrentHashMap<Integer, TransactionTask> commitWaiters;
 
-    // Commit counter used to serialize transaction commit
-    private int commitCounter;
+    // Commit counter used to serialize transaction commit (only the task whose index matches can change it).
+    private volatile int commitCounter;
+
+    // Speculative mode:  the commit counter when each task started and the index of the last task to write each location.
+    private final boolean isSpeculative;
+    private final ConcurrentHashMap<TransactionTask, Integer> speculationStarts;
+    private final HashMap<AccessRecordingState.Location, Integer> lastWriters;
+
+    // Read-only mode:  the tasks are queries which never commit.
+    private final boolean isReadOnly;
 
     public AddressResourceMonitor()
     {
-        this.resources = new HashMap<>();
-        this.ownerships = new HashMap<>();
-        this.sync = new Object();
+        this(false, false);
+    }
+
+    public AddressResourceMonitor(boolean isSpeculative)
+    {
+        this(isSpeculative, false);
+    }
+
+    public AddressResourceMonitor(boolean isSpeculative, boolean isReadOnly)
+    {
+        RuntimeAssertionError.assertTrue(!(isSpeculative && isReadOnly));
+        this.resources = new ConcurrentHashMap<>();
+        this.ownerships = new ConcurrentHashMap<>();
+        this.commitWaiters = new ConcurrentHashMap<>();
         this.commitCounter = 0;
+        this.isSpeculative = isSpeculative;
+        this.speculationStarts = new ConcurrentHashMap<>();
+        this.lastWriters = new HashMap<>();
+        this.isReadOnly = isReadOnly;
+    }
+
+    /**
+     * @return True if tasks are executed speculatively and validated at commit, instead of acquiring address resources.
+     */
+    public boolean isSpeculative() {
+        return this.isSpeculative;
+    }
+
+    /**
+     * @return True if tasks are read-only queries, which never acquire address resources or commit.
+     */
+    public boolean isReadOnly() {
+        return this.isReadOnly;
     }
 
     /**
      * Reset the state of the address resource monitor.
-     * This method will be called for each batch of transaction request.
+     * This method will be called for each batch of transaction request (when no tasks are running).
      *
      */
     public void clear(){
-        synchronized (sync) {
-            this.resources.clear();
-            this.ownerships.clear();
-            this.commitCounter = 0;
+        this.resources.clear();
+        this.ownerships.clear();
+        this.commitWaiters.clear();
+        this.commitCounter = 0;
+        this.speculationStarts.clear();
+        synchronized (this.lastWriters) {
+            this.lastWriters.clear();
+        }
+    }
+
+    /**
+     * Called by the executor thread when a task starts (or restarts) executing, before it reads anything from the kernel.
+     * In speculative mode, this records which commits the task can see.
+     *
+     * @param task The task which is starting.
+     */
+    public void startTask(TransactionTask task) {
+        if (this.isSpeculative) {
+            // Everything done by the commits counted here happened-before the counter was incremented.
+            this.speculationStarts.put(task, this.commitCounter);
         }
     }
 
@@ -67,90 +136,103 @@ public class AddressResourceMonitor {
      * @return true if the address was acquired by the task, false otherwise
      */
     public boolean acquire(byte[] address, TransactionTask task){
+        if (this.isSpeculative || this.isReadOnly) {
+            // Speculative tasks never wait or abort:  what they access is recorded by their kernel and validated on commit.
+            // Read-only tasks never write to the shared kernel so they have nothing to protect.
+            return true;
+        }
         // We will need the stats to report information about concurrent resource blocking.
         AvmThreadStats stats = AvmExecutorThread.currentThread().stats;
-        synchronized (sync) {
-            AddressWrapper addressWrapper = new AddressWrapper(address);
-            AddressResource resource = getResource(addressWrapper);
-
-            // Add task to the waiting queue.
-            if (resource.addToWaitingQueue(task)) {
-                sync.notifyAll();
-            }
-
-            long startTime = 0;
-            long endTime = 0;
-
-            if (DEBUG) {
-                int holder = null != resource.getOwnedBy() ? resource.getOwnedBy().getIndex() : -1;
-                int nextOwner = null != resource.getNextOwner() ? resource.getNextOwner().getIndex() : -1;
-                System.out.println("Request " + task.getIndex() + " " + resource.toString() + " hold by " + holder +
-                        " nextOwner " + nextOwner + " locked " + resource.isOwned() + " inAbortState " + task.inAbortState());
-                startTime = System.nanoTime();
-            }
+        AddressResource resource = this.resources.computeIfAbsent(new AddressWrapper(address), (key) -> new AddressResource());
+        // We record this before we are in the waiting queue so that the release always removes us from it.
+        this.ownerships.computeIfAbsent(task, (key) -> new HashSet<>()).add(resource);
+
+        long startTime = 0;
+        long endTime = 0;
+        if (DEBUG) {
+            startTime = System.nanoTime();
+        }
 
-            // Resource res is granted to task iff
-            // res is not hold by other task && task is the next owner
-            // (only report the wait once per attempt).
-            boolean didReport = false;
-            while ((resource.isOwned() || !resource.isNextOwner(task)) && task != resource.getOwnedBy()
-                    && !task.inAbortState()){
-                try {
-                    if (!didReport) {
-                        stats.concurrentResource_waited += 1;
-                        didReport = true;
-                    }
-                    sync.wait();
-                }catch (InterruptedException e){
-                    RuntimeAssertionError.unreachable("Waiting executor thread received interruption: ACQUIRE");
+        // Resource res is granted to task iff
+        // res is not hold by other task && task is the next owner
+        // (only report the wait once per attempt).
+        boolean didReport = false;
+        boolean isAcquired = false;
+        boolean isAborted = false;
+        task.prepareToBlock();
+        while (!isAcquired && !isAborted) {
+            synchronized (resource) {
+                // Add task to the waiting queue (this aborts the owner if we take priority over it).
+                resource.addToWaitingQueue(task);
+                if (DEBUG && !didReport) {
+                    int holder = null != resource.getOwnedBy() ? resource.getOwnedBy().getIndex() : -1;
+                    int nextOwner = null != resource.getNextOwner() ? resource.getNextOwner().getIndex() : -1;
+                    System.out.println("Request " + task.getIndex() + " " + resource.toString() + " hold by " + holder +
+                            " nextOwner " + nextOwner + " locked " + resource.isOwned() + " inAbortState " + task.inAbortState());
                 }
-            }
 
-            boolean isAborted = task.inAbortState();
-            if (!isAborted) {
-                if (DEBUG) {
-                    endTime = System.nanoTime();
-                    System.out.println("Acquire " + task.getIndex() + " " + resource.toString()
-                            + " waitingTime " + (endTime - startTime)/1000 + " \u00B5s");
+                if (task.inAbortState()) {
+                    isAborted = true;
+                } else if ((!resource.isOwned() && resource.isNextOwner(task)) || (task == resource.getOwnedBy())) {
+                    resource.setOwner(task);
+                    isAcquired = true;
                 }
-                stats.concurrentResource_acquired += 1;
-                resource.setOwner(task);
-                recordOwnership(resource, task);
-            }else{
-                stats.concurrentResource_aborted += 1;
-                if (DEBUG) {
-                    endTime = System.nanoTime();
-                    System.out.println("Abort   " + task.getIndex() + " " + resource.toString()
-                            + " waitingTime " + (endTime - startTime)/1000 + " \u00B5s");
+            }
+            if (!isAcquired && !isAborted) {
+                if (!didReport) {
+                    stats.concurrentResource_waited += 1;
+                    didReport = true;
                 }
+                task.blockUntilSignalled();
             }
+        }
+        task.finishBlocking();
 
-            if (DEBUG) System.out.flush();
-            return !isAborted;
+        if (isAcquired) {
+            if (DEBUG) {
+                endTime = System.nanoTime();
+                System.out.println("Acquire " + task.getIndex() + " " + resource.toString()
+                        + " waitingTime " + (endTime - startTime)/1000 + " \u00B5s");
+            }
+            stats.concurrentResource_acquired += 1;
+        }else{
+            stats.concurrentResource_aborted += 1;
+            if (DEBUG) {
+                endTime = System.nanoTime();
+                System.out.println("Abort   " + task.getIndex() + " " + resource.toString()
+                        + " waitingTime " + (endTime - startTime)/1000 + " \u00B5s");
+            }
         }
+
+        if (DEBUG) System.out.flush();
+        return isAcquired;
     }
 
     /**
-     * Release all resource holding by given task.
+     * Release all resource holding by given task (and leave the waiting queues it is in).
      * Called by executor thread when the task finished/need restart.
      *
-     * This method will not block.
+     * This method will not block.  It only wakes the task which is now first in line for each released resource.
      *
      * @param task The requesting task.
      */
     private void releaseResourcesForTask(TransactionTask task){
-        RuntimeAssertionError.assertTrue(Thread.holdsLock(sync));
-
         Set<AddressResource> toRemove = ownerships.remove(task);
         if (null != toRemove) {
             for (AddressResource resource : toRemove) {
-                resource.removeFromWaitingQueue(task);
-                if (task == resource.getOwnedBy()) {
-                    resource.setOwner(null);
+                TransactionTask nextOwner;
+                synchronized (resource) {
+                    resource.removeFromWaitingQueue(task);
+                    if (task == resource.getOwnedBy()) {
+                        resource.setOwner(null);
+                    }
+                    nextOwner = resource.getNextOwner();
                 }
                 if (DEBUG) {
-                    int nextOwner = null != resource.getNextOwner() ? resource.getNextOwner().getIndex() : -1;
-                    System.out.println("Release " + task.getIndex() + " " + resource.toString() + " nextOwner " + nextOwner);
+                    System.out.println("Release " + task.getIndex() + " " + resource.toString() + " nextOwner " + (null != nextOwner ? nextOwner.getIndex() : -1));
+                }
+                if (null != nextOwner) {
+                    nextOwner.signal();
                 }
             }
         }
@@ -172,66 +254,110 @@ public class AddressResourceMonitor {
      * @return True if commit is successful. False if task need to abort.
      */
     public boolean commitKernelForTask(TransactionTask task, boolean isRejected){
+        if (this.isSpeculative) {
+            return validateAndCommitSpeculativeTask(task, isRejected);
+        }
+        if (this.isReadOnly) {
+            // Queries don't depend on each other and their writes are discarded so there is nothing to wait for or commit.
+            task.outputFlush();
+            return true;
+        }
         boolean ret = false;
 
-        synchronized (sync){
+        waitForCommitTurn(task);
 
-            while (this.commitCounter != task.getIndex() && !task.inAbortState()){
-                try {
-                    sync.wait();
-                }catch (InterruptedException e){
-                    RuntimeAssertionError.unreachable("Waiting executor thread received interruption: COMMIT");
+        if (!task.inAbortState()){
+            if (!isRejected) {
+                task.getThisTransactionalKernel().commit();
+                task.outputFlush();
+            }
+            ret = true;
+        } else {
+            AvmThreadStats stats = AvmExecutorThread.currentThread().stats;
+            stats.concurrentResource_aborted += 1;
+        }
+
+        // The resources can only be released after the commit so the next owners see its changes.
+        releaseResourcesForTask(task);
+
+        if (ret) {
+            passCommitTurn();
+        }
+        return ret;
+    }
+
+    private boolean validateAndCommitSpeculativeTask(TransactionTask task, boolean isRejected){
+        AvmThreadStats stats = AvmExecutorThread.currentThread().stats;
+        boolean ret = false;
+
+        // Speculative tasks are never aborted so this only returns on our turn.
+        waitForCommitTurn(task);
+
+        synchronized (this.lastWriters){
+            // Everything before this task has now committed so it is valid iff nothing it read was written after it started.
+            // Note that even rejections must be validated, since they are based on what was read (nonce and balance checks).
+            int startedAt = this.speculationStarts.remove(task);
+            boolean isValid = true;
+            if (startedAt < this.commitCounter) {
+                AccessRecordingState recorder = task.getAccessRecorder();
+                for (AccessRecordingState.Location location : recorder.getReadSet()) {
+                    Integer lastWriter = this.lastWriters.get(location);
+                    if ((null != lastWriter) && (lastWriter >= startedAt)) {
+                        isValid = false;
+                        break;
+                    }
                 }
             }
 
-            if (!task.inAbortState()){
+            if (isValid) {
                 if (!isRejected) {
-                    task.getThisTransactionalKernel().commit();
+                    TransactionalState kernel = task.getThisTransactionalKernel();
+                    BigInteger minerFee = task.getDeferredMinerFee();
+                    if (null != minerFee) {
+                        kernel.adjustBalance(kernel.getMinerAddress(), minerFee);
+                    }
+                    kernel.commit();
                     task.outputFlush();
+                    for (AccessRecordingState.Location location : task.getAccessRecorder().getWriteSet()) {
+                        this.lastWriters.put(location, task.getIndex());
+                    }
                 }
-                this.commitCounter++;
+                stats.speculative_committed += 1;
                 ret = true;
             } else {
-                AvmThreadStats stats = AvmExecutorThread.currentThread().stats;
-                stats.concurrentResource_aborted += 1;
+                // The caller will re-execute the task, which will then be the next to commit.
+                stats.speculative_conflicts += 1;
             }
-
-            releaseResourcesForTask(task);
-
-            // Only wake up others when all resources are released
-            sync.notifyAll();
         }
 
+        if (ret) {
+            passCommitTurn();
+        }
         return ret;
     }
 
-    private AddressResource getResource(AddressWrapper addr){
-        RuntimeAssertionError.assertTrue(Thread.holdsLock(sync));
-
-        AddressResource ret = resources.get(addr);
-        if (null == ret){
-            ret = new AddressResource();
-            resources.put(addr, ret);
+    private void waitForCommitTurn(TransactionTask task) {
+        // We register before checking the counter so that either we see the new value or the committing task sees us.
+        task.prepareToBlock();
+        this.commitWaiters.put(task.getIndex(), task);
+        while (this.commitCounter != task.getIndex() && !task.inAbortState()){
+            task.blockUntilSignalled();
         }
-        return ret;
+        this.commitWaiters.remove(task.getIndex());
+        task.finishBlocking();
     }
 
-    private void recordOwnership(AddressResource res, TransactionTask task){
-        RuntimeAssertionError.assertTrue(Thread.holdsLock(sync));
-
-        Set<AddressResource> entry = ownerships.get(task);
-        if (null == entry){
-            entry = new HashSet<>();
-            ownerships.put(task, entry);
+    private void passCommitTurn() {
+        // Only the task whose turn it was can get here so this doesn't need to be atomic.
+        int next = this.commitCounter + 1;
+        this.commitCounter = next;
+        TransactionTask nextTask = this.commitWaiters.get(next);
+        if (null != nextTask) {
+            nextTask.signal();
         }
-        entry.add(res);
     }
 
     void testReleaseResourcesForTask(TransactionTask task){
-        synchronized (sync) {
-            releaseResourcesForTask(task);
-            sync.notifyAll();
-        }
+        releaseResourcesForTask(task);
     }
 }
-
@@ -2,15 +2,19 @@ package org.aion.parallel;
 
 import avm.Address;
 
+import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.locks.LockSupport;
 
 import org.aion.avm.core.ExecutionType;
 import org.aion.avm.core.IExternalState;
 import org.aion.types.AionAddress;
 import org.aion.types.Transaction;
 import org.aion.avm.core.ReentrantDAppStack;
+import org.aion.avm.core.StoragePrefetcher;
 import org.aion.avm.core.types.Pair;
 import org.aion.avm.core.util.ByteArrayWrapper;
 import org.aion.avm.core.util.Helpers;
@@ -30,6 +34,8 @@ public class TransactionTask implements Comparable<TransactionTask>{
     private final IExternalState parentKernel;
     private Transaction externalTransaction;
     private volatile boolean abortState;
+    // The thread running this task, while it may block in the AddressResourceMonitor (null otherwise).
+    private volatile Thread blockingThread;
     private IInstrumentation threadOwningTask;
     private ReentrantDAppStack reentrantDAppStack;
     private int index;
@@ -42,9 +48,25 @@ public class TransactionTask implements Comparable<TransactionTask>{
     private Set<Pair<AionAddress, ByteArrayWrapper>> resetStorageKeys;
     public final ExecutionType executionType;
     public final long commonMainchainBlockNumber;
+    // The monitor ordering the batch this task belongs to (each batch is its own ordering domain).
+    private final AddressResourceMonitor resourceMonitor;
+    // Speculative tasks don't acquire address resources but record what they access so their commit can be validated.
+    private final boolean isSpeculative;
+    // Read-only tasks are queries which run against the parent kernel without ever committing to it.
+    private final boolean isReadOnly;
+    private AccessRecordingState accessRecorder;
+    private BigInteger deferredMinerFee;
+    // The storage keys read by the current attempt (null unless recording was enabled, for storage prefetch).
+    private Set<Pair<AionAddress, ByteArrayWrapper>> storageReads;
+    // The storage prefetch of this task's batch (null if there is none).
+    private StoragePrefetcher.BatchPrefetch storagePrefetch;
 
 
     public TransactionTask(IExternalState parentKernel, Transaction tx, int index, AionAddress origin, ExecutionType executionType, long commonMainchainBlockNumber){
+        this(parentKernel, tx, index, origin, executionType, commonMainchainBlockNumber, null);
+    }
+
+    public TransactionTask(IExternalState parentKernel, Transaction tx, int index, AionAddress origin, ExecutionType executionType, long commonMainchainBlockNumber, AddressResourceMonitor resourceMonitor){
         this.parentKernel = parentKernel;
         this.externalTransaction = tx;
         this.index = index;
@@ -60,6 +82,9 @@ public class TransactionTask implements Comparable<TransactionTask>{
         this.resetStorageKeys = new HashSet<>();
         this.executionType = executionType;
         this.commonMainchainBlockNumber = commonMainchainBlockNumber;
+        this.resourceMonitor = resourceMonitor;
+        this.isSpeculative = (null != resourceMonitor) && resourceMonitor.isSpeculative();
+        this.isReadOnly = (null != resourceMonitor) && resourceMonitor.isReadOnly();
     }
 
     public void startNewTransaction() {
@@ -69,9 +94,19 @@ public class TransactionTask implements Comparable<TransactionTask>{
         this.sideEffectsStack = new Stack<>();
         this.sideEffectsStack.push(new SideEffects());
         this.outBuffer = new StringBuffer();
+        this.deferredMinerFee = null;
+        if (null != this.storageReads) {
+            this.storageReads = new HashSet<>();
+        }
         
         // All IO will be performed on an per task transactional kernel so we can abort the whole task in one go
-        this.thisTransactionKernel = new TransactionalState(this.parentKernel);
+        if (this.isSpeculative) {
+            // Each attempt needs its own record of what it read.
+            this.accessRecorder = new AccessRecordingState(this.parentKernel);
+            this.thisTransactionKernel = new TransactionalState(this.accessRecorder);
+        } else {
+            this.thisTransactionKernel = new TransactionalState(this.parentKernel);
+        }
     }
 
     /**
@@ -101,6 +136,38 @@ public class TransactionTask implements Comparable<TransactionTask>{
         if (null != this.threadOwningTask){
             this.threadOwningTask.setAbortState();
         }
+        // If the task is blocked, it needs to wake up to see this.
+        signal();
+    }
+
+    /**
+     * Called by the thread running this task before it checks whether it needs to block, so that any signal() sent after that point
+     * will either be seen in the check or wake the subsequent blockUntilSignalled().
+     */
+    void prepareToBlock() {
+        this.blockingThread = Thread.currentThread();
+    }
+
+    /**
+     * Blocks the thread running this task until signal() is called (or spuriously) so callers must re-check their condition.
+     */
+    void blockUntilSignalled() {
+        RuntimeAssertionError.assertTrue(Thread.currentThread() == this.blockingThread);
+        LockSupport.park(this);
+    }
+
+    void finishBlocking() {
+        this.blockingThread = null;
+    }
+
+    /**
+     * Wakes the thread running this task if it is (or is about to be) blocked.
+     */
+    void signal() {
+        Thread thread = this.blockingThread;
+        if (null != thread) {
+            LockSupport.unpark(thread);
+        }
     }
 
     /**
@@ -148,6 +215,56 @@ public class TransactionTask implements Comparable<TransactionTask>{
         return this.thisTransactionKernel;
     }
 
+    /**
+     * Get the address resource monitor of the batch this task belongs to.
+     *
+     * @return The address resource monitor of the task's batch.
+     */
+    public AddressResourceMonitor getResourceMonitor() {
+        return this.resourceMonitor;
+    }
+
+    /**
+     * Check if the current task is executed speculatively (validated at commit, instead of acquiring address resources).
+     *
+     * @return True if the task is speculative.
+     */
+    public boolean isSpeculative() {
+        return this.isSpeculative;
+    }
+
+    /**
+     * Check if the current task is a read-only query (its writes are discarded instead of being committed).
+     *
+     * @return True if the task is read-only.
+     */
+    public boolean isReadOnly() {
+        return this.isReadOnly;
+    }
+
+    /**
+     * Get the recorder of what the current attempt of this speculative task read from, and wrote to, the parent kernel.
+     *
+     * @return The access recorder (null if the task isn't speculative).
+     */
+    public AccessRecordingState getAccessRecorder() {
+        return this.accessRecorder;
+    }
+
+    /**
+     * Every transaction pays the miner so, in speculative mode, the fee is only added when the task commits.
+     * Otherwise, every task would read the miner's balance and conflict with every commit before it.
+     *
+     * @param fee The fee to add to the miner's balance on commit.
+     */
+    public void setDeferredMinerFee(BigInteger fee) {
+        this.deferredMinerFee = fee;
+    }
+
+    public BigInteger getDeferredMinerFee() {
+        return this.deferredMinerFee;
+    }
+
     public void outputPrint(String toPrint){
         this.outBuffer.append(toPrint);
     }
@@ -196,6 +313,37 @@ public class TransactionTask implements Comparable<TransactionTask>{
 
     public int getResetStorageKeyCount(){ return resetStorageKeys.size(); }
 
+    /**
+     * Ties this task to the storage prefetch of its batch and starts recording the storage keys it reads (see getStorageReads()).  Must
+     * be called before the task is started.
+     *
+     * @param storagePrefetch The prefetch of this task's batch.
+     */
+    public void attachStoragePrefetch(StoragePrefetcher.BatchPrefetch storagePrefetch) {
+        this.storagePrefetch = storagePrefetch;
+        this.storageReads = new HashSet<>();
+    }
+
+    /**
+     * @return The storage prefetch of this task's batch, or null if there is none.
+     */
+    public StoragePrefetcher.BatchPrefetch getStoragePrefetch() {
+        return this.storagePrefetch;
+    }
+
+    public void recordStorageRead(AionAddress address, byte[] key) {
+        if (null != this.storageReads) {
+            this.storageReads.add(Pair.of(address, new ByteArrayWrapper(Arrays.copyOf(key, key.length))));
+        }
+    }
+
+    /**
+     * @return The storage keys read by the current attempt at this task, in any DApp, or null if recording isn't enabled.
+     */
+    public Set<Pair<AionAddress, ByteArrayWrapper>> getStorageReads() {
+        return this.storageReads;
+    }
+
     void outputFlush(){
         if (this.outBuffer.length() > 0) {
             System.out.println("Output from transaction " + Helpers.bytesToHexString(externalTransaction.copyOfTransactionHash()));
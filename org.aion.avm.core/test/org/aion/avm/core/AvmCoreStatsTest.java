@@ -121,6 +121,36 @@ public class AvmCoreStatsTest {
     }
 
 
+    /**
+     * Run some calls against an AVM with a tiny bounded hot cache and observe that the DApp is evicted rather than cached.
+     */
+    @Test
+    public void testBoundedCacheEvictions() {
+        boolean shouldFail = false;
+        byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(ReentrantCrossCallResource.class);
+        byte[] txData = new CodeAndArguments(jar, new byte[0]).encodeToBytes();
+        TestingState kernel = new TestingState(block);
+        AvmConfiguration config = new AvmConfiguration();
+        // No DApp can fit in a 1-byte cache so every checkin is an eviction.
+        config.hotCacheMaximumBytes = 1L;
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        AvmCoreStats stats = avm.getStats();
+        
+        Transaction create = createCreateTransaction(kernel, txData);
+        TransactionResult createResult = runSuccessfulBatch(kernel, avm, new Transaction[] {create})[0];
+        AionAddress contractAddress = new AionAddress(createResult.copyOfTransactionOutput().orElseThrow());
+        
+        stats.clear();
+        Transaction transaction = createCallTransaction(contractAddress, kernel.getNonce(deployer), "getFar", shouldFail);
+        runSuccessfulBatch(kernel, avm, new Transaction[] {transaction});
+        transaction = createCallTransaction(contractAddress, kernel.getNonce(deployer), "getFar", shouldFail);
+        runSuccessfulBatch(kernel, avm, new Transaction[] {transaction});
+        Assert.assertEquals(0, stats.getCodeCacheHits());
+        Assert.assertEquals(2, stats.getCodeCacheMisses());
+        Assert.assertEquals(2, stats.getCodeCacheEvictions());
+        avm.shutdown();
+    }
+
     private Transaction createCreateTransaction(IExternalState externalState, byte[] createData) {
         return AvmTransactionUtil.create(deployer, externalState.getNonce(deployer), BigInteger.ZERO, createData, ENERGY_LIMIT_DEPLOY, ENERGY_PRICE);
     }
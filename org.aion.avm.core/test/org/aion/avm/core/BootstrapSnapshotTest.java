@@ -0,0 +1,96 @@
+package org.aion.avm.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+
+import org.aion.avm.core.classgeneration.CommonGenerators;
+import org.aion.avm.core.types.ClassHierarchy;
+import org.aion.avm.core.types.ClassInformation;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+
+import i.IInstrumentation;
+
+
+public class BootstrapSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSnapshotMatchesComputedBootstrap() throws IOException {
+        byte[] fingerprint = fingerprint();
+        File file = new File(this.folder.getRoot(), "bootstrap.snapshot");
+
+        // The first environment computes everything and writes the snapshot, the second reads it back.
+        NodeEnvironment computed = new NodeEnvironment(file);
+        Assert.assertTrue(file.isFile());
+        BootstrapSnapshot snapshot = BootstrapSnapshot.readIfValid(file, fingerprint);
+        Assert.assertNotNull(snapshot);
+        NodeEnvironment restored = new NodeEnvironment(file);
+
+        Assert.assertEquals(computed.preRenameRuntimeObjectSizeMap, restored.preRenameRuntimeObjectSizeMap);
+        Assert.assertEquals(computed.postRenameRuntimeObjectSizeMap, restored.postRenameRuntimeObjectSizeMap);
+        Assert.assertEquals(computed.shadowClassSlashNameMethodDescriptorMap, restored.shadowClassSlashNameMethodDescriptorMap);
+        Assert.assertEquals(computed.getJclSlashClassNames().size(), restored.getJclSlashClassNames().size());
+        Assert.assertTrue(computed.getJclSlashClassNames().containsAll(restored.getJclSlashClassNames()));
+
+        ClassHierarchy computedHierarchy = computed.deepCopyOfClassHierarchy();
+        ClassHierarchy restoredHierarchy = restored.deepCopyOfClassHierarchy();
+        Assert.assertEquals(computedHierarchy.size(), restoredHierarchy.size());
+        for (ClassInformation info : snapshot.jclAndApiClassInfos) {
+            Assert.assertTrue(restoredHierarchy.contains(info.dotName));
+            Assert.assertEquals(computedHierarchy.postRenameTypeIsInterface(info.dotName), restoredHierarchy.postRenameTypeIsInterface(info.dotName));
+            if (!info.isInterface) {
+                Assert.assertEquals(computedHierarchy.getConcreteSuperClassDotName(info.dotName), restoredHierarchy.getConcreteSuperClassDotName(info.dotName));
+            }
+        }
+
+        Map<String, byte[]> generated = CommonGenerators.generateShadowJDK();
+        Assert.assertEquals(generated.keySet(), snapshot.generatedShadowJDK.keySet());
+        for (String name : generated.keySet()) {
+            Assert.assertArrayEquals(name, generated.get(name), snapshot.generatedShadowJDK.get(name));
+        }
+    }
+
+    @Test
+    public void testInvalidSnapshotIgnored() throws IOException {
+        byte[] fingerprint = fingerprint();
+        File file = new File(this.folder.getRoot(), "bootstrap.snapshot");
+        new NodeEnvironment(file);
+        Assert.assertNotNull(BootstrapSnapshot.readIfValid(file, fingerprint));
+
+        // Different code.
+        byte[] otherFingerprint = fingerprint.clone();
+        otherFingerprint[0] ^= 1;
+        Assert.assertNull(BootstrapSnapshot.readIfValid(file, otherFingerprint));
+
+        // Corrupted.
+        try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+            access.seek(access.length() / 2);
+            int original = access.read();
+            access.seek(access.length() / 2);
+            access.write(original ^ 1);
+        }
+        Assert.assertNull(BootstrapSnapshot.readIfValid(file, fingerprint));
+
+        // An environment started from the corrupted file computes everything and replaces it.
+        new NodeEnvironment(file);
+        Assert.assertNotNull(BootstrapSnapshot.readIfValid(file, fingerprint));
+
+        // Missing.
+        Assert.assertNull(BootstrapSnapshot.readIfValid(new File(this.folder.getRoot(), "missing"), fingerprint));
+    }
+
+    private static byte[] fingerprint() {
+        byte[] fingerprint = BootstrapSnapshot.fingerprintOfJarsContaining(NodeEnvironment.class, IInstrumentation.class, ClassWriter.class);
+        // The snapshot is only used when running from the jars (not the case in some IDE configurations).
+        Assume.assumeNotNull(fingerprint);
+        return fingerprint;
+    }
+}
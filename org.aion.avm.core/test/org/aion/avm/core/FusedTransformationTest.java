@@ -0,0 +1,115 @@
+package org.aion.avm.core;
+
+import java.util.Map;
+
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.types.RawDappModule;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * A differential test of the fused transformation pipeline:  each of these DApps (and the userlib classes they are packaged with) must be
+ * transformed into exactly the same classes by both pipelines, or rejected by both in the same way.
+ */
+public class FusedTransformationTest {
+    // DApps chosen to cover the interesting passes:  common super class computation, arrays, exceptions, interface fields, lambdas, and
+    // some larger programs.  Each is the main class followed by the other classes it needs.
+    private static final String[][] DAPPS = {
+            {"org.aion.avm.core.unification.UnificationSample"},
+            {"org.aion.avm.core.unification.UnificationArraySample", "org.aion.avm.core.unification.UnificationSample"},
+            {"org.aion.avm.core.unification.CommonSuperClassTarget_combineWithArrays", "org.aion.avm.core.unification.CommonSuperClassTypes"},
+            {"org.aion.avm.core.unification.CommonSuperClassTarget_combineWithExceptions", "org.aion.avm.core.unification.CommonSuperClassTypes"},
+            {"org.aion.avm.core.unification.CommonSuperClassTarget_combineWithInterfaces", "org.aion.avm.core.unification.CommonSuperClassTypes"},
+            {"org.aion.avm.core.unification.CommonSuperClassTarget_combineWithEnums", "org.aion.avm.core.unification.CommonSuperClassTypes"},
+            {"org.aion.avm.core.unification.CommonSuperClassTarget_combineAmbiguousClasses", "org.aion.avm.core.unification.CommonSuperClassTypes"},
+            {"org.aion.avm.core.exceptionwrapping.PersistentExceptionTarget"},
+            {"org.aion.avm.core.exceptionwrapping.AttackExceptionHandlingTarget"},
+            {"org.aion.avm.core.miscvisitors.interfaceVisitor.ClassWithFieldsInterface"},
+            {"org.aion.avm.core.miscvisitors.interfaceVisitor.ClassWithNestedInterfaces", "org.aion.avm.core.miscvisitors.interfaceVisitor.interfaces.LevelOneInterface"},
+            {"org.aion.avm.core.miscvisitors.interfaceVisitor.ClassWithFIELDSAsInterfaceName", "org.aion.avm.core.miscvisitors.interfaceVisitor.interfaces.InnerFIELDSInterface", "org.aion.avm.core.miscvisitors.interfaceVisitor.InnerFIELDSImplementation"},
+            {"org.aion.avm.core.miscvisitors.interfaceVisitor.FieldsClassDefinedInterfaceFail", "org.aion.avm.core.miscvisitors.interfaceVisitor.interfaces.FIELDSInterfaceFail"},
+            {"org.aion.avm.core.shadowing.lambdas.FunctionShadowResource"},
+            {"org.aion.avm.core.shadowing.TestDefaultMethodInClinitResource"},
+            {"org.aion.avm.core.collection.AionMapPerfContract"},
+            {"org.aion.avm.core.rejection.RejectClass32Variables"},
+            {"org.aion.avm.core.testWallet.Wallet", "org.aion.avm.core.testWallet.Multiowned", "org.aion.avm.core.testWallet.ByteArrayWrapper", "org.aion.avm.core.testWallet.Operation", "org.aion.avm.core.testWallet.ByteArrayHelpers", "org.aion.avm.core.testWallet.BytesKey", "org.aion.avm.core.testWallet.RequireFailedException", "org.aion.avm.core.testWallet.Daylimit", "org.aion.avm.core.testWallet.EventLogger"},
+            {"org.aion.avm.core.testBlake2b.Main", "org.aion.avm.core.testBlake2b.Blake2b"},
+            {"org.aion.avm.core.bitcoin.Main", "org.aion.avm.core.bitcoin.Block", "org.aion.avm.core.bitcoin.BlockInfo", "org.aion.avm.core.bitcoin.Blockchain", "org.aion.avm.core.bitcoin.ByteArrayWrapper", "org.aion.avm.core.bitcoin.Genesis", "org.aion.avm.core.bitcoin.Transaction"},
+            {"org.aion.avm.core.BasicPerfContract"},
+            {"org.aion.avm.core.HashCodeIntegrationTestTarget"},
+            {"org.aion.avm.core.PersistanceNameMappingTestTarget"},
+    };
+
+    @Test
+    public void testFusedMatchesClassic() throws Exception {
+        compareAll(false);
+    }
+
+    @Test
+    public void testFusedMatchesClassicWithDebug() throws Exception {
+        compareAll(true);
+    }
+
+    private static void compareAll(boolean preserveDebuggability) throws Exception {
+        int transformedCount = 0;
+        for (String[] classNames : DAPPS) {
+            if (compareTransformations(buildJar(classNames), preserveDebuggability)) {
+                transformedCount += 1;
+            }
+        }
+        // Make sure that we aren't just comparing rejections.
+        Assert.assertTrue(transformedCount > (DAPPS.length / 2));
+    }
+
+    /**
+     * Transforms the given DApp with both pipelines, asserting that the results are identical.
+     *
+     * @return True if the DApp was transformed, false if both pipelines rejected it.
+     */
+    public static boolean compareTransformations(byte[] jar, boolean preserveDebuggability) {
+        Map<String, byte[]> classic = null;
+        RuntimeException classicFailure = null;
+        try {
+            classic = transform(jar, preserveDebuggability, false);
+        } catch (RuntimeException e) {
+            classicFailure = e;
+        }
+        Map<String, byte[]> fused = null;
+        RuntimeException fusedFailure = null;
+        try {
+            fused = transform(jar, preserveDebuggability, true);
+        } catch (RuntimeException e) {
+            fusedFailure = e;
+        }
+
+        if (null != classicFailure) {
+            Assert.assertNotNull(fusedFailure);
+            Assert.assertEquals(classicFailure.getClass(), fusedFailure.getClass());
+            Assert.assertEquals(classicFailure.getMessage(), fusedFailure.getMessage());
+        } else {
+            if (null != fusedFailure) {
+                throw new AssertionError("Only the fused pipeline failed", fusedFailure);
+            }
+            Assert.assertEquals(classic.keySet(), fused.keySet());
+            for (String name : classic.keySet()) {
+                Assert.assertArrayEquals(name, classic.get(name), fused.get(name));
+            }
+        }
+        return (null == classicFailure);
+    }
+
+    private static Map<String, byte[]> transform(byte[] jar, boolean preserveDebuggability, boolean enableFusedTransformation) {
+        RawDappModule rawDapp = RawDappModule.readFromJar(jar, preserveDebuggability, false);
+        return DAppCreator.transformClasses(rawDapp.classes, rawDapp.classHierarchyForest, rawDapp.classHierarchy, rawDapp.classRenamer, preserveDebuggability, enableFusedTransformation);
+    }
+
+    private static byte[] buildJar(String[] classNames) throws ClassNotFoundException {
+        // (the nested and anonymous classes of each class are included automatically)
+        Class<?>[] otherClasses = new Class<?>[classNames.length - 1];
+        for (int i = 0; i < otherClasses.length; ++i) {
+            otherClasses[i] = Class.forName(classNames[i + 1]);
+        }
+        return UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(Class.forName(classNames[0]), otherClasses);
+    }
+}
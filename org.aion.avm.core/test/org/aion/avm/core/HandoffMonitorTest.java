@@ -7,9 +7,9 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.aion.types.Transaction;
-import i.RuntimeAssertionError;
 import org.aion.avm.core.util.Helpers;
 import org.aion.kernel.AvmWrappedTransactionResult;
 import org.aion.kernel.AvmWrappedTransactionResult.AvmInternalError;
@@ -33,7 +33,7 @@ public class HandoffMonitorTest {
     }
 
     @Test
-    public void failEnqueueBeforeFutureGet() {
+    public void pipelinedBatches() {
         // Startup.
         MonitorThread thread = new MonitorThread(null, 0);
         Set<Thread> executorThreads = new HashSet<>();
@@ -41,19 +41,64 @@ public class HandoffMonitorTest {
         HandoffMonitor monitor = new HandoffMonitor(executorThreads);
         thread.startAgainstMonitor(monitor);
         
-        // Enqueue transaction.
-        monitor.sendTransactionsAsynchronously(wrapTransactionInTasks(new Transaction[] {newFakeTransaction()}));
-        // Second enqueue should fail with RuntimeAssertionError.
-        boolean didFail = false;
-        try {
-            monitor.sendTransactionsAsynchronously(wrapTransactionInTasks(new Transaction[] {newFakeTransaction()}));
-        } catch (RuntimeAssertionError e) {
-            didFail = true;
+        // Enqueue a second batch before consuming the first and then consume them in the opposite order.
+        FutureResult[] first = monitor.sendTransactionsAsynchronously(wrapTransactionInTasks(new Transaction[] {newFakeTransaction(), newFakeTransaction()}));
+        FutureResult[] second = monitor.sendTransactionsAsynchronously(wrapTransactionInTasks(new Transaction[] {newFakeTransaction(), newFakeTransaction(), newFakeTransaction()}));
+        Assert.assertEquals(2, first.length);
+        Assert.assertEquals(3, second.length);
+        for (FutureResult result : second) {
+            result.getResult();
+        }
+        for (FutureResult result : first) {
+            result.getResult();
         }
         
         monitor.stopAndWaitForShutdown();
         Assert.assertFalse(thread.isAlive());
-        Assert.assertTrue(didFail);
+    }
+
+    @Test
+    public void concurrentSenders() throws InterruptedException {
+        // Startup.
+        final int executorCount = 4;
+        Set<Thread> executorThreads = new HashSet<>();
+        for (int i = 0; i < executorCount; i++){
+            executorThreads.add(new MonitorThread(null, i));
+        }
+        HandoffMonitor monitor = new HandoffMonitor(executorThreads);
+        for (Thread t: executorThreads){
+            ((MonitorThread) t).startAgainstMonitor(monitor);
+        }
+        
+        // Each sender keeps sending batches, of different sizes, without coordinating with the others.
+        final int senderCount = 4;
+        Thread[] senders = new Thread[senderCount];
+        AtomicInteger consumed = new AtomicInteger();
+        for (int i = 0; i < senderCount; i++){
+            int batchSize = i + 1;
+            senders[i] = new Thread(() -> {
+                for (int j = 0; j < 20; j++) {
+                    Transaction[] transactions = new Transaction[batchSize];
+                    for (int k = 0; k < batchSize; k++) {
+                        transactions[k] = newFakeTransaction();
+                    }
+                    for (FutureResult result : monitor.sendTransactionsAsynchronously(wrapTransactionInTasks(transactions))) {
+                        result.getResult();
+                        consumed.incrementAndGet();
+                    }
+                }
+            });
+            senders[i].start();
+        }
+        for (Thread sender : senders){
+            sender.join();
+        }
+        Assert.assertEquals(20 * (1 + 2 + 3 + 4), consumed.get());
+        
+        monitor.stopAndWaitForShutdown();
+        for (Thread t: executorThreads){
+            Assert.assertFalse(t.isAlive());
+        }
     }
 
     @Test
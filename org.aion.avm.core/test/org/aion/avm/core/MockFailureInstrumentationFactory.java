@@ -101,6 +101,14 @@ public class MockFailureInstrumentationFactory implements IInstrumentationFactor
                 underlying.forceNextHashCode(nextHashCode);
             }
             @Override
+            public void markGraphModified() {
+                underlying.markGraphModified();
+            }
+            @Override
+            public boolean isGraphModified() {
+                return underlying.isGraphModified();
+            }
+            @Override
             public void bootstrapOnly() {
                 underlying.bootstrapOnly();
             }
@@ -0,0 +1,45 @@
+package org.aion.avm.core;
+
+import java.util.Map;
+
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.types.RawDappModule;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Verifies that transforming the classes of a DApp on the fork-join pool produces exactly the same classes as transforming them sequentially.
+ */
+public class ParallelTransformationTest {
+    @Test
+    public void testParallelMatchesSequential() {
+        compareTransformations(false);
+    }
+
+    @Test
+    public void testParallelMatchesSequentialWithDebug() {
+        compareTransformations(true);
+    }
+
+    private static void compareTransformations(boolean preserveDebuggability) {
+        // The userlib gives us many classes, with exception handlers, and the interface resource gives us the generated interface field classes.
+        byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(InterfaceTestResource.class, OuterInteface.class, HashCodeTestTarget.class);
+
+        Map<String, byte[]> sequential = transform(jar, preserveDebuggability, false);
+        // Run the parallel version a few times since any ordering problem would depend on the scheduling.
+        for (int i = 0; i < 5; ++i) {
+            Map<String, byte[]> parallel = transform(jar, preserveDebuggability, true);
+            Assert.assertEquals(sequential.keySet(), parallel.keySet());
+            for (String name : sequential.keySet()) {
+                Assert.assertArrayEquals(name, sequential.get(name), parallel.get(name));
+            }
+        }
+    }
+
+    private static Map<String, byte[]> transform(byte[] jar, boolean preserveDebuggability, boolean inParallel) {
+        // The module is read each time so the runs can't share anything they might have built up.
+        RawDappModule rawDapp = RawDappModule.readFromJar(jar, preserveDebuggability, false);
+        return DAppCreator.transformClasses(rawDapp.classes, rawDapp.classHierarchyForest, rawDapp.classHierarchy, rawDapp.classRenamer, preserveDebuggability, false, false, inParallel);
+    }
+}
@@ -0,0 +1,172 @@
+package org.aion.avm.core;
+
+import java.io.File;
+import java.math.BigInteger;
+
+import i.IInstrumentation;
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.persistence.HotObjectContract;
+import org.aion.avm.core.persistence.LoadedDApp;
+import org.aion.avm.core.types.ImmortalDappModule;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.core.util.HotContractTracker;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.avm.userlib.abi.ABIDecoder;
+import org.aion.avm.userlib.abi.ABIStreamingEncoder;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+
+
+public class ParsedDAppJarCacheTest {
+    private static final AionAddress DEPLOYER = TestingState.PREMINED_ADDRESS;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TestingState kernel;
+    private AvmImpl avm;
+
+    @Before
+    public void setup() {
+        TestingBlock block = new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]);
+        this.kernel = new TestingState(block);
+        this.avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), new AvmConfiguration());
+    }
+
+    @After
+    public void tearDown() {
+        this.avm.shutdown();
+    }
+
+    /**
+     * Deploys the same code at 2 addresses and calls them without the hot cache (deep sidechain), observing that the code is only read once.
+     */
+    @Test
+    public void testParsedJarSharedAcrossAddresses() {
+        byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(HotObjectContract.class);
+        byte[] txData = new CodeAndArguments(jar, new byte[0]).encodeToBytes();
+        AionAddress first = deploy(txData);
+        AionAddress second = deploy(txData);
+        Assert.assertArrayEquals(this.kernel.getTransformedCode(first), this.kernel.getTransformedCode(second));
+
+        AvmCoreStats stats = this.avm.getStats();
+        stats.clear();
+        Assert.assertEquals(10, callDoubleStaticValue(first));
+        Assert.assertEquals(1, stats.getParsedJarCacheMisses());
+        Assert.assertEquals(0, stats.getParsedJarCacheHits());
+
+        // Each address still has its own statics.
+        Assert.assertEquals(10, callDoubleStaticValue(second));
+        Assert.assertEquals(20, callDoubleStaticValue(first));
+        Assert.assertEquals(1, stats.getParsedJarCacheMisses());
+        Assert.assertEquals(2, stats.getParsedJarCacheHits());
+    }
+
+    /**
+     * Instantiates the same parsed jar twice, observing that each instance has its own classes.
+     */
+    @Test
+    public void testInstancesHaveDistinctClasses() throws Exception {
+        byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(HotObjectContract.class);
+        byte[] txData = new CodeAndArguments(jar, new byte[0]).encodeToBytes();
+        AionAddress address = deploy(txData);
+        byte[] transformedCode = this.kernel.getTransformedCode(address);
+
+        ParsedDAppJarCache cache = new ParsedDAppJarCache();
+        ParsedDAppJar parsedJar = ParsedDAppJar.fromImmortalModule(ImmortalDappModule.readFromJar(transformedCode));
+        cache.put(ParsedDAppJarCache.keyForCode(transformedCode), parsedJar);
+        Assert.assertSame(parsedJar, cache.get(ParsedDAppJarCache.keyForCode(transformedCode)));
+        Assert.assertNull(cache.get(ParsedDAppJarCache.keyForCode(new byte[] {1})));
+
+        LoadedDApp one = DAppLoader.instantiate(parsedJar, false);
+        LoadedDApp two = DAppLoader.instantiate(parsedJar, false);
+        Assert.assertNotSame(one.loader, two.loader);
+        String userClassName = parsedJar.alphabeticalUserClassNames.get(0);
+        Assert.assertNotSame(one.loader.loadClass(userClassName), two.loader.loadClass(userClassName));
+    }
+
+    /**
+     * Calls a DApp on an AVM with a hot contract file and verifies that, after a restart, its jar is parsed before the first call.
+     */
+    @Test
+    public void testHotContractPrewarm() throws Exception {
+        File hotContractFile = new File(this.folder.newFolder(), "hot");
+        this.avm.shutdown();
+        AvmConfiguration config = new AvmConfiguration();
+        config.hotContractFile = hotContractFile;
+        this.avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+
+        byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(HotObjectContract.class);
+        byte[] txData = new CodeAndArguments(jar, new byte[0]).encodeToBytes();
+        AionAddress address = deploy(txData);
+        Assert.assertEquals(10, callDoubleStaticValue(address));
+        this.avm.shutdown();
+        Assert.assertEquals(1, HotContractTracker.readTransformedCode(hotContractFile, avmFingerprint()).size());
+
+        // Restart and wait for the pre-warm before calling.
+        this.avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        this.avm.waitForHotContractPrewarm();
+        AvmCoreStats stats = this.avm.getStats();
+        Assert.assertEquals(20, callDoubleStaticValue(address));
+        Assert.assertEquals(0, stats.getParsedJarCacheMisses());
+        Assert.assertEquals(1, stats.getParsedJarCacheHits());
+    }
+
+    /**
+     * Writes a hot contract file whose most executed entry isn't a valid jar and verifies that the pre-warm skips it and still parses the rest.
+     */
+    @Test
+    public void testHotContractPrewarmSkipsInvalidCode() throws Exception {
+        byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(HotObjectContract.class);
+        byte[] txData = new CodeAndArguments(jar, new byte[0]).encodeToBytes();
+        AionAddress address = deploy(txData);
+        this.avm.shutdown();
+
+        File hotContractFile = new File(this.folder.newFolder(), "hot");
+        HotContractTracker tracker = new HotContractTracker();
+        AionAddress invalidAddress = Helpers.randomAddress();
+        tracker.recordExecution(invalidAddress, new byte[] {1, 2, 3});
+        tracker.recordExecution(invalidAddress, new byte[] {1, 2, 3});
+        tracker.recordExecution(address, this.kernel.getTransformedCode(address));
+        tracker.writeMostExecuted(hotContractFile, avmFingerprint(), 2);
+
+        AvmConfiguration config = new AvmConfiguration();
+        config.hotContractFile = hotContractFile;
+        this.avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        this.avm.waitForHotContractPrewarm();
+        AvmCoreStats stats = this.avm.getStats();
+        Assert.assertEquals(10, callDoubleStaticValue(address));
+        Assert.assertEquals(0, stats.getParsedJarCacheMisses());
+        Assert.assertEquals(1, stats.getParsedJarCacheHits());
+    }
+
+    private static byte[] avmFingerprint() {
+        return BootstrapSnapshot.fingerprintOfJarsContaining(AvmImpl.class, IInstrumentation.class, ClassWriter.class);
+    }
+
+    private AionAddress deploy(byte[] txData) {
+        Transaction create = AvmTransactionUtil.create(DEPLOYER, this.kernel.getNonce(DEPLOYER), BigInteger.ZERO, txData, 5_000_000L, 1L);
+        TransactionResult result = this.avm.run(this.kernel, new Transaction[] {create}, ExecutionType.ASSUME_MAINCHAIN, this.kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertTrue(result.transactionStatus.isSuccess());
+        return new AionAddress(result.copyOfTransactionOutput().orElseThrow());
+    }
+
+    private int callDoubleStaticValue(AionAddress address) {
+        byte[] data = new ABIStreamingEncoder().encodeOneString("doubleStaticValue").toBytes();
+        Transaction call = AvmTransactionUtil.call(DEPLOYER, address, this.kernel.getNonce(DEPLOYER), BigInteger.ZERO, data, 2_000_000L, 1L);
+        TransactionResult result = this.avm.run(this.kernel, new Transaction[] {call}, ExecutionType.ASSUME_DEEP_SIDECHAIN, this.kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertTrue(result.transactionStatus.isSuccess());
+        return new ABIDecoder(result.copyOfTransactionOutput().orElseThrow()).decodeOneInteger();
+    }
+}
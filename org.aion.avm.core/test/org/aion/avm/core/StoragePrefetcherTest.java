@@ -0,0 +1,202 @@
+package org.aion.avm.core;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.types.Pair;
+import org.aion.avm.core.util.ByteArrayWrapper;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.avm.userlib.abi.ABIStreamingEncoder;
+import org.aion.kernel.BlockReadCachingState;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.kernel.TransactionalState;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class StoragePrefetcherTest {
+    private static final long ENERGY_LIMIT = 10_000_000L;
+    private static final long ENERGY_PRICE = 1L;
+
+    @Test
+    public void testSelector() {
+        byte[] data = new ABIStreamingEncoder().encodeOneString("get").encodeOneByteArray(new byte[32]).toBytes();
+        Assert.assertArrayEquals(Arrays.copyOf(data, 6), StoragePrefetcher.selectorOf(data));
+        Assert.assertArrayEquals(Arrays.copyOf(data, 6), StoragePrefetcher.selectorOf(Arrays.copyOf(data, 6)));
+
+        // Data which doesn't start with a complete method name has the empty selector.
+        Assert.assertEquals(0, StoragePrefetcher.selectorOf(Arrays.copyOf(data, 5)).length);
+        Assert.assertEquals(0, StoragePrefetcher.selectorOf(new byte[] { 1, 2, 3, 4 }).length);
+        Assert.assertEquals(0, StoragePrefetcher.selectorOf(new byte[0]).length);
+    }
+
+    @Test
+    public void testPredictionsByMethod() {
+        StoragePrefetcher prefetcher = new StoragePrefetcher(1);
+        AionAddress sender = Helpers.randomAddress();
+        AionAddress dapp = Helpers.randomAddress();
+        Pair<AionAddress, ByteArrayWrapper> read = Pair.of(dapp, new ByteArrayWrapper(Helpers.randomBytes(32)));
+
+        prefetcher.recordStorageReads(call(sender, dapp, "get", new byte[] { 1 }), Set.of(read));
+
+        // Calls to the same method predict the same keys, whatever their arguments.
+        Assert.assertEquals(Set.of(read), prefetcher.predictStorageReads(call(sender, dapp, "get", new byte[] { 2 })));
+        Assert.assertTrue(prefetcher.predictStorageReads(call(sender, dapp, "put", new byte[] { 1 })).isEmpty());
+        Assert.assertTrue(prefetcher.predictStorageReads(call(sender, Helpers.randomAddress(), "get", new byte[] { 1 })).isEmpty());
+        prefetcher.shutdown();
+    }
+
+    @Test
+    public void testPrefetchWarmsCache() throws InterruptedException {
+        StoragePrefetcher prefetcher = new StoragePrefetcher(1);
+        CountingStorageState kernel = new CountingStorageState();
+        AionAddress sender = Helpers.randomAddress();
+        AionAddress dapp = Helpers.randomAddress();
+        byte[] key = Helpers.randomBytes(32);
+        kernel.putStorage(dapp, key, new byte[1]);
+        prefetcher.recordStorageReads(call(sender, dapp, "get", new byte[0]), Set.of(Pair.of(dapp, new ByteArrayWrapper(key))));
+
+        BlockReadCachingState cache = new BlockReadCachingState(kernel);
+        StoragePrefetcher.BatchPrefetch batch = prefetcher.prefetch(cache, new Transaction[] { call(sender, dapp, "get", new byte[0]) });
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while ((0 == kernel.storageReads) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10L);
+        }
+        // (the last task finishing closes the batch, waiting for the job which is still populating the cache)
+        batch.taskFinished();
+        prefetcher.shutdown();
+
+        // The transaction's read is answered by the cache.
+        Assert.assertArrayEquals(new byte[1], new TransactionalState(cache).getStorage(dapp, key));
+        Assert.assertEquals(1, kernel.storageReads);
+    }
+
+    /**
+     * Closing a batch waits for its running job, which stops before its next read, and drops its queued jobs.
+     */
+    @Test
+    public void testCloseStopsPrefetch() throws InterruptedException {
+        StoragePrefetcher prefetcher = new StoragePrefetcher(1);
+        CountingStorageState kernel = new CountingStorageState();
+        AionAddress sender = Helpers.randomAddress();
+        AionAddress dapp = Helpers.randomAddress();
+        AionAddress otherDapp = Helpers.randomAddress();
+        for (int i = 0; i < 10; ++i) {
+            prefetcher.recordStorageReads(call(sender, dapp, "get", new byte[0]), Set.of(Pair.of(dapp, new ByteArrayWrapper(Helpers.randomBytes(32)))));
+            prefetcher.recordStorageReads(call(sender, otherDapp, "get", new byte[0]), Set.of(Pair.of(otherDapp, new ByteArrayWrapper(Helpers.randomBytes(32)))));
+        }
+
+        // The first job blocks in its first storage read while the second is queued behind it.
+        kernel.blockStorageReads();
+        StoragePrefetcher.BatchPrefetch batch = prefetcher.prefetch(new BlockReadCachingState(kernel), new Transaction[] {
+                call(sender, dapp, "get", new byte[0]),
+                call(sender, otherDapp, "get", new byte[0]),
+        });
+        kernel.waitUntilStorageReadBlocked();
+        Thread closer = new Thread(batch::close);
+        closer.start();
+        closer.join(200L);
+        Assert.assertTrue(closer.isAlive());
+
+        kernel.unblockStorageReads();
+        closer.join();
+        prefetcher.shutdown();
+        Assert.assertEquals(1, kernel.storageReads);
+    }
+
+    /**
+     * Transactions of the same batch which write and then read the predicted keys still see each other's writes.
+     */
+    @Test
+    public void testWritesSeenWithPrefetch() {
+        TestingBlock block = new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]);
+        TestingState kernel = new TestingState(block);
+        AvmConfiguration config = new AvmConfiguration();
+        config.enableStoragePrefetch = true;
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        AionAddress deployer = TestingState.PREMINED_ADDRESS;
+
+        byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(KeyValueStoreTestTarget.class);
+        Transaction create = AvmTransactionUtil.create(deployer, kernel.getNonce(deployer), BigInteger.ZERO, new CodeAndArguments(jar, null).encodeToBytes(), ENERGY_LIMIT, ENERGY_PRICE);
+        TransactionResult createResult = avm.run(kernel, new Transaction[] { create }, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertTrue(createResult.transactionStatus.isSuccess());
+        AionAddress dapp = new AionAddress(createResult.copyOfTransactionOutput().orElseThrow());
+
+        byte[] key = Helpers.randomBytes(32);
+        for (int i = 1; i <= 3; ++i) {
+            // Each batch overwrites the key and then reads it, after the previous batch taught the prefetcher that "get" reads it.
+            kernel.generateBlock();
+            BigInteger nonce = kernel.getNonce(deployer);
+            byte[] put = new ABIStreamingEncoder().encodeOneString("testAvmPutStorage").encodeOneByteArray(key).encodeOneByteArray(new byte[] { (byte) i }).toBytes();
+            byte[] get = new ABIStreamingEncoder().encodeOneString("testAvmGetStorage").encodeOneByteArray(key).toBytes();
+            Transaction[] batch = new Transaction[] {
+                    AvmTransactionUtil.call(deployer, dapp, nonce, BigInteger.ZERO, get, ENERGY_LIMIT, ENERGY_PRICE),
+                    AvmTransactionUtil.call(deployer, dapp, nonce.add(BigInteger.ONE), BigInteger.ZERO, put, ENERGY_LIMIT, ENERGY_PRICE),
+                    AvmTransactionUtil.call(deployer, dapp, nonce.add(BigInteger.TWO), BigInteger.ZERO, get, ENERGY_LIMIT, ENERGY_PRICE),
+            };
+            FutureResult[] results = avm.run(kernel, batch, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1);
+            TransactionResult before = results[0].getResult();
+            Assert.assertTrue(results[1].getResult().transactionStatus.isSuccess());
+            TransactionResult after = results[2].getResult();
+            Assert.assertTrue(before.transactionStatus.isSuccess());
+            Assert.assertTrue(after.transactionStatus.isSuccess());
+            if (1 == i) {
+                Assert.assertFalse(before.copyOfTransactionOutput().isPresent());
+            } else {
+                Assert.assertArrayEquals(new byte[] { (byte) (i - 1) }, before.copyOfTransactionOutput().orElseThrow());
+            }
+            Assert.assertArrayEquals(new byte[] { (byte) i }, after.copyOfTransactionOutput().orElseThrow());
+        }
+        avm.shutdown();
+    }
+
+    private static Transaction call(AionAddress sender, AionAddress dapp, String methodName, byte[] argument) {
+        byte[] data = new ABIStreamingEncoder().encodeOneString(methodName).encodeOneByteArray(argument).toBytes();
+        return AvmTransactionUtil.call(sender, dapp, BigInteger.ZERO, BigInteger.ZERO, data, ENERGY_LIMIT, ENERGY_PRICE);
+    }
+
+
+    private static class CountingStorageState extends TestingState {
+        public volatile int storageReads;
+        private CountDownLatch blocked;
+        private CountDownLatch unblocked;
+
+        public void blockStorageReads() {
+            this.blocked = new CountDownLatch(1);
+            this.unblocked = new CountDownLatch(1);
+        }
+
+        public void waitUntilStorageReadBlocked() throws InterruptedException {
+            this.blocked.await();
+        }
+
+        public void unblockStorageReads() {
+            this.unblocked.countDown();
+        }
+
+        @Override
+        public byte[] getStorage(AionAddress address, byte[] key) {
+            if (null != this.unblocked) {
+                this.blocked.countDown();
+                try {
+                    this.unblocked.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            }
+            byte[] value = super.getStorage(address, key);
+            // (only read by one thread at a time, in this test)
+            this.storageReads += 1;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.aion.avm.core;
+
+import java.util.Map;
+
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.testBlake2b.Blake2b;
+import org.aion.avm.core.testBlake2b.Main;
+import org.aion.avm.core.testWallet.ByteArrayHelpers;
+import org.aion.avm.core.testWallet.ByteArrayWrapper;
+import org.aion.avm.core.testWallet.BytesKey;
+import org.aion.avm.core.testWallet.Daylimit;
+import org.aion.avm.core.testWallet.EventLogger;
+import org.aion.avm.core.testWallet.Multiowned;
+import org.aion.avm.core.testWallet.Operation;
+import org.aion.avm.core.testWallet.RequireFailedException;
+import org.aion.avm.core.testWallet.Wallet;
+import org.aion.avm.core.types.RawDappModule;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * A basic comparison of the time taken to transform each class of a few DApps with the classic pipeline versus the fused one.  While it can be run as a
+ * standard unit test, it is designed to be tuned for more hands-on measurement.
+ * Note that only the transformation is measured:  reading the JAR and building the class hierarchy is the same for both.
+ */
+public class TransformationPerfTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private final static boolean REPORT = false;
+    private final static int WARMUP_COUNT = 10;
+    private final static int COUNT = 20;
+
+    @Test
+    public void testClassicVersusFused() {
+        byte[][] jars = {
+                UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(Main.class, Blake2b.class),
+                UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(Wallet.class, Multiowned.class, ByteArrayWrapper.class, Operation.class, ByteArrayHelpers.class, BytesKey.class, RequireFailedException.class, Daylimit.class, EventLogger.class),
+        };
+        for (int i = 0; i < WARMUP_COUNT; ++i) {
+            timeTransformations(jars, false);
+            timeTransformations(jars, true);
+        }
+        int classCount = 0;
+        for (byte[] jar : jars) {
+            classCount += RawDappModule.readFromJar(jar, false, false).classes.size();
+        }
+        long classicNanos = 0L;
+        long fusedNanos = 0L;
+        // Alternate between them so that neither is favoured by whatever else the machine is doing.
+        for (int i = 0; i < COUNT; ++i) {
+            classicNanos += timeTransformations(jars, false);
+            fusedNanos += timeTransformations(jars, true);
+        }
+        if (REPORT) {
+            System.out.println("CLASSIC NANOS PER CLASS: " + (classicNanos / COUNT / classCount));
+            System.out.println("FUSED NANOS PER CLASS: " + (fusedNanos / COUNT / classCount));
+        }
+    }
+
+    private static long timeTransformations(byte[][] jars, boolean enableFusedTransformation) {
+        long nanos = 0L;
+        for (byte[] jar : jars) {
+            RawDappModule rawDapp = RawDappModule.readFromJar(jar, false, false);
+            long start = System.nanoTime();
+            Map<String, byte[]> transformed = DAppCreator.transformClasses(rawDapp.classes, rawDapp.classHierarchyForest, rawDapp.classHierarchy, rawDapp.classRenamer, false, enableFusedTransformation);
+            nanos += System.nanoTime() - start;
+            Assert.assertFalse(transformed.isEmpty());
+        }
+        return nanos;
+    }
+}
@@ -0,0 +1,93 @@
+package org.aion.avm.core.benchmarking;
+
+import i.CommonInstrumentation;
+import i.IInstrumentation;
+import i.InstrumentationHelpers;
+import i.InstrumentedThread;
+import i.InternedClasses;
+import org.aion.avm.core.NodeEnvironment;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Benchmarking the lookup of the current thread's IInstrumentation, as done by the shadow JDK on every allocation and billed call.
+ *
+ * Each iteration allocates a shadow Object and asks for its hash code, through a CommonInstrumentation, which looks up the instrumentation
+ * twice (the constructor takes the next hash code and avm_hashCode() charges energy).  The hash codes are summed and checked so that
+ * none of this can be optimized away or hoisted out of the loop.
+ *
+ * This benchmark compares:
+ *   1. IInstrumentation.attachedThreadInstrumentation on an InstrumentedThread (how it is done on the AvmExecutorThread).
+ *   2. IInstrumentation.attachedThreadInstrumentation on any other thread (falls back to a ThreadLocal, how this was originally done).
+ */
+public class ThreadInstrumentationBenchmarkTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+    private static final int SPINS = 10_000_000;
+    private static final int ROUNDS = 5;
+
+    @BeforeClass
+    public static void setupClass() {
+        // The shadow JDK classes must be initialized, with the bootstrap instrumentation, by the NodeEnvironment before we allocate any.
+        Assert.assertNotNull(NodeEnvironment.singleton);
+    }
+
+    @Test
+    public void testAllocationOnInstrumentedThread() throws Exception {
+        long[] nanos = new long[1];
+        runAndJoin(new InstrumentedThread("benchmark") {
+            @Override
+            public void run() {
+                nanos[0] = timeAllocation();
+            }
+        });
+        report("InstrumentedThread", nanos[0]);
+    }
+
+    @Test
+    public void testAllocationOnOtherThread() throws Exception {
+        long[] nanos = new long[1];
+        runAndJoin(new Thread(() -> {
+            nanos[0] = timeAllocation();
+        }));
+        report("Fallback to ThreadLocal", nanos[0]);
+    }
+
+    private static void runAndJoin(Thread thread) throws Exception {
+        Throwable[] failure = new Throwable[1];
+        thread.setUncaughtExceptionHandler((t, e) -> failure[0] = e);
+        thread.start();
+        thread.join();
+        if (null != failure[0]) {
+            throw new AssertionError("Benchmark thread failed", failure[0]);
+        }
+    }
+
+    private static long timeAllocation() {
+        IInstrumentation instrumentation = new CommonInstrumentation();
+        InstrumentationHelpers.attachThread(instrumentation);
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; ++round) {
+            // Each round is a new frame so the hash codes start from 1, again.
+            instrumentation.enterNewFrame(ThreadInstrumentationBenchmarkTest.class.getClassLoader(), Long.MAX_VALUE, 1, new InternedClasses());
+            long hashCodeSum = 0L;
+            long start = System.nanoTime();
+            for (int i = 0; i < SPINS; ++i) {
+                hashCodeSum += new s.java.lang.Object().avm_hashCode();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+            instrumentation.exitCurrentFrame();
+            Assert.assertEquals(((long) SPINS * (SPINS + 1)) / 2L, hashCodeSum);
+        }
+        InstrumentationHelpers.detachThread(instrumentation);
+        Assert.assertNull(IInstrumentation.attachedThreadInstrumentation.get());
+        return best;
+    }
+
+    private static void report(String name, long nanos) {
+        if (REPORT) {
+            System.out.println(name + ": " + (nanos / 1_000_000L) + " ms for " + SPINS + " allocations (best of " + ROUNDS + ")");
+        }
+    }
+}
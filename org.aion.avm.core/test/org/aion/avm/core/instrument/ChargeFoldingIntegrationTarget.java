@@ -0,0 +1,75 @@
+package org.aion.avm.core.instrument;
+
+import avm.Blockchain;
+import org.aion.avm.userlib.abi.ABIDecoder;
+import org.aion.avm.userlib.abi.ABIEncoder;
+
+
+/**
+ * Used by ChargeFoldingIntegrationTest:  each method returns the energy remaining when it finishes, so that a difference in when
+ * energy is charged would be visible.
+ */
+public class ChargeFoldingIntegrationTarget {
+    private static int counter;
+
+    public static byte[] main() {
+        ABIDecoder decoder = new ABIDecoder(Blockchain.getData());
+        String methodName = decoder.decodeMethodName();
+        int argument = decoder.decodeOneInteger();
+        long result;
+        switch (methodName) {
+            case "arithmetic":
+                result = arithmetic(argument);
+                break;
+            case "loop":
+                result = loop(argument);
+                break;
+            case "exceptions":
+                result = exceptions(argument);
+                break;
+            default:
+                result = 0L;
+        }
+        return ABIEncoder.encodeOneLong(result ^ Blockchain.getRemainingEnergy());
+    }
+
+    private static long arithmetic(int value) {
+        long a = value * 31;
+        try {
+            a = (a << 3) ^ value;
+        } catch (RuntimeException e) {
+            a = -1;
+        }
+        long b = a + Blockchain.getRemainingEnergy();
+        try {
+            b -= value;
+        } finally {
+            counter += 1;
+        }
+        return a + b;
+    }
+
+    private static long loop(int count) {
+        long sum = 0;
+        for (int i = 0; i < count; ++i) {
+            try {
+                sum += i;
+            } catch (RuntimeException e) {
+                sum = 0;
+            }
+            sum ^= Blockchain.getRemainingEnergy();
+        }
+        return sum;
+    }
+
+    private static long exceptions(int divisor) {
+        long result = 7;
+        try {
+            result = 100 / divisor;
+            result += 1;
+        } catch (ArithmeticException e) {
+            result = Blockchain.getRemainingEnergy();
+        }
+        return result;
+    }
+}
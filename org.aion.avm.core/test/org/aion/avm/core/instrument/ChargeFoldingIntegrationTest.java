@@ -0,0 +1,109 @@
+package org.aion.avm.core.instrument;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.aion.avm.core.AvmConfiguration;
+import org.aion.avm.core.AvmImpl;
+import org.aion.avm.core.AvmTransactionUtil;
+import org.aion.avm.core.CommonAvmFactory;
+import org.aion.avm.core.ExecutionType;
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.avm.userlib.abi.ABIStreamingEncoder;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Runs the same calls against an AVM with enableEnergyChargeFolding and one without, verifying that the results and billing are identical,
+ * including when a call is given exactly enough energy, or just too little.
+ */
+public class ChargeFoldingIntegrationTest {
+    private static final AionAddress DEPLOYER = TestingState.PREMINED_ADDRESS;
+    private static final String[] METHODS = {"arithmetic", "arithmetic", "loop", "loop", "exceptions", "exceptions"};
+    private static final int[] ARGUMENTS = {5, -3, 0, 20, 4, 0};
+
+    @Test
+    public void testSameBilling() {
+        compareRuns(false);
+    }
+
+    @Test
+    public void testSameBillingWithDebug() {
+        // Debug data adds many more labels, so this is where folding matters the most.
+        compareRuns(true);
+    }
+
+    private static void compareRuns(boolean preserveDebuggability) {
+        List<CallRecord> unfolded = runCalls(preserveDebuggability, false);
+        List<CallRecord> folded = runCalls(preserveDebuggability, true);
+        Assert.assertEquals(unfolded.size(), folded.size());
+        for (int i = 0; i < unfolded.size(); ++i) {
+            Assert.assertEquals(unfolded.get(i).isSuccess, folded.get(i).isSuccess);
+            Assert.assertArrayEquals(unfolded.get(i).output, folded.get(i).output);
+            Assert.assertEquals(unfolded.get(i).energyUsed, folded.get(i).energyUsed);
+        }
+    }
+
+    private static List<CallRecord> runCalls(boolean preserveDebuggability, boolean enableEnergyChargeFolding) {
+        TestingBlock block = new TestingBlock(new byte[32], 1, Helpers.randomAddress(), 1L, new byte[0]);
+        TestingState kernel = new TestingState(block);
+        AvmConfiguration config = new AvmConfiguration();
+        config.preserveDebuggability = preserveDebuggability;
+        config.enableEnergyChargeFolding = enableEnergyChargeFolding;
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        try {
+            byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(ChargeFoldingIntegrationTarget.class);
+            byte[] txData = new CodeAndArguments(jar, new byte[0]).encodeToBytes();
+            TransactionResult createResult = run(avm, kernel, AvmTransactionUtil.create(DEPLOYER, kernel.getNonce(DEPLOYER), BigInteger.ZERO, txData, 5_000_000L, 1L));
+            Assert.assertTrue(createResult.transactionStatus.isSuccess());
+            AionAddress dappAddress = new AionAddress(createResult.copyOfTransactionOutput().orElseThrow());
+
+            List<CallRecord> records = new ArrayList<>();
+            for (int i = 0; i < METHODS.length; ++i) {
+                byte[] data = new ABIStreamingEncoder().encodeOneString(METHODS[i]).encodeOneInteger(ARGUMENTS[i]).toBytes();
+                TransactionResult result = run(avm, kernel, AvmTransactionUtil.call(DEPLOYER, dappAddress, kernel.getNonce(DEPLOYER), BigInteger.ZERO, data, 2_000_000L, 1L));
+                Assert.assertTrue(result.transactionStatus.isSuccess());
+                records.add(new CallRecord(result));
+                // Now, give the same call exactly the energy it used, and then one less.
+                TransactionResult exact = run(avm, kernel, AvmTransactionUtil.call(DEPLOYER, dappAddress, kernel.getNonce(DEPLOYER), BigInteger.ZERO, data, result.energyUsed, 1L));
+                Assert.assertTrue(exact.transactionStatus.isSuccess());
+                records.add(new CallRecord(exact));
+                TransactionResult tooLittle = run(avm, kernel, AvmTransactionUtil.call(DEPLOYER, dappAddress, kernel.getNonce(DEPLOYER), BigInteger.ZERO, data, result.energyUsed - 1L, 1L));
+                Assert.assertFalse(tooLittle.transactionStatus.isSuccess());
+                records.add(new CallRecord(tooLittle));
+            }
+            return records;
+        } finally {
+            avm.shutdown();
+        }
+    }
+
+    private static TransactionResult run(AvmImpl avm, TestingState kernel, Transaction tx) {
+        TransactionResult result = avm.run(kernel, new Transaction[] {tx}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+        kernel.generateBlock();
+        return result;
+    }
+
+
+    private static class CallRecord {
+        public final boolean isSuccess;
+        public final byte[] output;
+        public final long energyUsed;
+
+        public CallRecord(TransactionResult result) {
+            this.isSuccess = result.transactionStatus.isSuccess();
+            this.output = result.copyOfTransactionOutput().orElse(null);
+            this.energyUsed = result.energyUsed;
+        }
+    }
+}
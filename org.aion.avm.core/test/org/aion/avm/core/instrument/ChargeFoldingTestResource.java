@@ -0,0 +1,54 @@
+package org.aion.avm.core.instrument;
+
+
+/**
+ * NOTE:  This class is used for the EnergyChargeFolderTest.
+ * Each method has a different shape of blocks for the folder to handle.
+ */
+public class ChargeFoldingTestResource {
+    public static int straightLine(int a, int b) {
+        // The try's labels split this into blocks which always fall through into each other.
+        int c = a * b;
+        try {
+            c += a;
+        } catch (RuntimeException e) {
+            c = 0;
+        }
+        return c;
+    }
+
+    public static int division(int a, int b) {
+        // The division can throw so the following block can't be charged up front.
+        int c = 0;
+        try {
+            c = a / b;
+            c += 1;
+        } catch (ArithmeticException e) {
+            c = -1;
+        }
+        return c;
+    }
+
+    public static int loop(int count) {
+        int sum = 0;
+        for (int i = 0; i < count; ++i) {
+            sum += i;
+        }
+        return sum;
+    }
+
+    public static int switchAndCall(int value) {
+        int result;
+        switch (value) {
+            case 1:
+                result = Integer.valueOf(value).hashCode();
+                break;
+            case 2:
+                result = value * 2;
+                break;
+            default:
+                result = 0;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,158 @@
+package org.aion.avm.core.instrument;
+
+import org.aion.avm.core.ClassToolchain;
+import org.aion.avm.core.NodeEnvironment;
+import org.aion.avm.core.classloading.AvmClassLoader;
+import org.aion.avm.core.instrument.ClassMeteringTest.HelperStub;
+import org.aion.avm.core.instrument.ClassMeteringTest.TestEnergy;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.utilities.Utilities;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+public class EnergyChargeFolderTest {
+    /**
+     * Tests that a chain of blocks which always fall through is charged up front, by its first block.
+     */
+    @Test
+    public void testFoldStraightLine() throws Exception {
+        List<BasicBlock> blocks = new ArrayList<>();
+        blocks.add(block(10, Opcodes.ILOAD, Opcodes.ILOAD, Opcodes.IADD, Opcodes.ISTORE));
+        blocks.add(block(20, Opcodes.ILOAD, Opcodes.ICONST_1, Opcodes.ISHL, Opcodes.ISTORE));
+        blocks.add(block(30, Opcodes.ILOAD, Opcodes.IRETURN));
+        EnergyChargeFolder.foldCharges(blocks);
+        assertCosts(blocks, 60, 0, 0);
+    }
+
+    /**
+     * Tests that a block isn't folded into an earlier one if something before it might not fall through, or if it can be entered from
+     * elsewhere.
+     */
+    @Test
+    public void testNoFoldAfterUnsafeOrIntoTarget() throws Exception {
+        List<BasicBlock> blocks = new ArrayList<>();
+        blocks.add(block(10, Opcodes.ILOAD, Opcodes.ILOAD, Opcodes.IDIV, Opcodes.ISTORE));
+        blocks.add(block(20, Opcodes.ALOAD, Opcodes.INVOKEVIRTUAL, Opcodes.ISTORE));
+        blocks.add(block(30, Opcodes.ILOAD, Opcodes.ISTORE));
+        BasicBlock target = block(40, Opcodes.ILOAD, Opcodes.IRETURN);
+        target.markAsBranchTarget();
+        blocks.add(target);
+        EnergyChargeFolder.foldCharges(blocks);
+        assertCosts(blocks, 10, 20, 30, 40);
+    }
+
+    /**
+     * Tests that a block which can't be entered isn't charged, nor is anything it falls through to.
+     */
+    @Test
+    public void testUnreachableBlocks() throws Exception {
+        List<BasicBlock> blocks = new ArrayList<>();
+        blocks.add(block(10, Opcodes.ICONST_0, Opcodes.IRETURN));
+        blocks.add(block(20, Opcodes.ICONST_1, Opcodes.ISTORE));
+        blocks.add(block(30, Opcodes.ILOAD, Opcodes.IRETURN));
+        BasicBlock target = block(40, Opcodes.ICONST_2, Opcodes.IRETURN);
+        target.markAsBranchTarget();
+        blocks.add(target);
+        EnergyChargeFolder.foldCharges(blocks);
+        assertCosts(blocks, 10, 0, 0, 40);
+    }
+
+    /**
+     * Instruments a class with and without folding and verifies that each call is billed the same, with fewer charges where folding applies.
+     */
+    @Test
+    public void testFoldedClassBillsTheSame() throws Exception {
+        Class<?> unfolded = loadMetered(false);
+        Class<?> folded = loadMetered(true);
+
+        int[][] straightLineArgs = {{2, 3}, {-1, 7}};
+        for (int[] args : straightLineArgs) {
+            int unfoldedCharges = assertSameBilling(unfolded, folded, "straightLine", args[0], args[1]);
+            Assert.assertTrue(TestEnergy.totalCharges < unfoldedCharges);
+        }
+        int[][] divisionArgs = {{6, 3}, {6, 0}};
+        for (int[] args : divisionArgs) {
+            assertSameBilling(unfolded, folded, "division", args[0], args[1]);
+        }
+        for (int count : new int[] {0, 1, 10}) {
+            assertSameBilling(unfolded, folded, "loop", count);
+        }
+        for (int value : new int[] {1, 2, 3}) {
+            assertSameBilling(unfolded, folded, "switchAndCall", value);
+        }
+    }
+
+
+    private static BasicBlock block(long cost, int... opcodes) {
+        List<Integer> opcodeList = new ArrayList<>();
+        for (int opcode : opcodes) {
+            opcodeList.add(opcode);
+        }
+        BasicBlock block = new BasicBlock(opcodeList, Collections.emptyList(), Collections.emptyList());
+        block.setEnergyCost(cost);
+        return block;
+    }
+
+    private static void assertCosts(List<BasicBlock> blocks, long... costs) {
+        Assert.assertEquals(costs.length, blocks.size());
+        for (int i = 0; i < costs.length; ++i) {
+            Assert.assertEquals(costs[i], blocks.get(i).getEnergyCost());
+        }
+    }
+
+    private static Class<?> loadMetered(boolean enableChargeFolding) throws Exception {
+        String className = ChargeFoldingTestResource.class.getName();
+        byte[] raw = Utilities.loadRequiredResourceAsBytes(className.replaceAll("\\.", "/") + ".class");
+        byte[] metered = new ClassToolchain.Builder(raw, ClassReader.SKIP_DEBUG)
+                .addNextVisitor(new ClassMetering(null, enableChargeFolding))
+                .addWriter(new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS))
+                .build()
+                .runAndGetBytecode();
+        Map<String, byte[]> classes = new HashMap<>();
+        classes.put(className, metered);
+        byte[] stubBytecode = Utilities.loadRequiredResourceAsBytes(HelperStub.CLASS_NAME + ".class");
+        AvmClassLoader loader = NodeEnvironment.singleton.createInvocationClassLoader(Helpers.mapIncludingHelperBytecode(classes, stubBytecode));
+        return loader.loadClass(className);
+    }
+
+    /**
+     * Calls the method on both classes, asserting that they return the same value and are billed the same.
+     * On return, TestEnergy describes the call to the folded class.
+     *
+     * @return The number of charges made by the call to the unfolded class.
+     */
+    private static int assertSameBilling(Class<?> unfolded, Class<?> folded, String methodName, int... args) throws Exception {
+        Object unfoldedResult = call(unfolded, methodName, args);
+        int unfoldedCost = TestEnergy.totalCost;
+        int unfoldedCharges = TestEnergy.totalCharges;
+        Object foldedResult = call(folded, methodName, args);
+        Assert.assertEquals(unfoldedResult, foldedResult);
+        Assert.assertEquals(unfoldedCost, TestEnergy.totalCost);
+        Assert.assertTrue(TestEnergy.totalCharges <= unfoldedCharges);
+        return unfoldedCharges;
+    }
+
+    private static Object call(Class<?> clazz, String methodName, int... args) throws Exception {
+        TestEnergy.totalCost = 0;
+        TestEnergy.totalCharges = 0;
+        Class<?>[] argTypes = new Class<?>[args.length];
+        Object[] argValues = new Object[args.length];
+        for (int i = 0; i < args.length; ++i) {
+            argTypes[i] = int.class;
+            argValues[i] = args[i];
+        }
+        Method method = clazz.getMethod(methodName, argTypes);
+        return method.invoke(null, argValues);
+    }
+}
@@ -0,0 +1,84 @@
+package org.aion.avm.core.persistence;
+
+import java.math.BigInteger;
+
+import org.aion.avm.core.AvmConfiguration;
+import org.aion.avm.core.AvmImpl;
+import org.aion.avm.core.AvmTransactionUtil;
+import org.aion.avm.core.CommonAvmFactory;
+import org.aion.avm.core.ExecutionType;
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.avm.userlib.abi.ABIStreamingEncoder;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Runs the same calls against an AVM with enableLazyGraphLoading and one without, verifying that the results, billing, and stored
+ * graphs are identical.
+ * The calls are run as MINING so that the data cache is never read and every call loads its graph from the kernel.
+ */
+public class LazyGraphLoadingTest {
+    private static final AionAddress DEPLOYER = TestingState.PREMINED_ADDRESS;
+    private static final String[] CALLS = new String[] {"read", "writeStatic", "writeField", "read", "writeArray", "arraycopy", "fill", "append", "getChars", "read"};
+
+    @Test
+    public void testLazyLoadingMatchesEager() {
+        Object[][] eager = runCalls(false);
+        Object[][] lazy = runCalls(true);
+        for (int i = 0; i < CALLS.length; ++i) {
+            Assert.assertArrayEquals(CALLS[i], (byte[]) eager[i][0], (byte[]) lazy[i][0]);
+            Assert.assertEquals(CALLS[i], eager[i][1], lazy[i][1]);
+            Assert.assertArrayEquals(CALLS[i], (byte[]) eager[i][2], (byte[]) lazy[i][2]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRequiresGraphReuse() {
+        AvmConfiguration config = new AvmConfiguration();
+        config.enableLazyGraphLoading = true;
+        CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+    }
+
+    private static Object[][] runCalls(boolean enableLazyLoading) {
+        TestingBlock block = new TestingBlock(new byte[32], 1, Helpers.randomAddress(), 1L, new byte[0]);
+        TestingState kernel = new TestingState(block);
+        AvmConfiguration config = new AvmConfiguration();
+        config.enableUnmodifiedGraphReuse = true;
+        config.enableLazyGraphLoading = enableLazyLoading;
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        try {
+            byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(UnmodifiedGraphTarget.class);
+            byte[] txData = new CodeAndArguments(jar, new byte[0]).encodeToBytes();
+            TransactionResult createResult = run(avm, kernel, AvmTransactionUtil.create(DEPLOYER, kernel.getNonce(DEPLOYER), BigInteger.ZERO, txData, 5_000_000L, 1L));
+            Assert.assertTrue(createResult.transactionStatus.isSuccess());
+            AionAddress dappAddress = new AionAddress(createResult.copyOfTransactionOutput().orElseThrow());
+
+            // Each record is the output, energy used, and resulting graph of the call.
+            Object[][] records = new Object[CALLS.length][];
+            for (int i = 0; i < CALLS.length; ++i) {
+                byte[] data = new ABIStreamingEncoder().encodeOneString(CALLS[i]).toBytes();
+                TransactionResult result = run(avm, kernel, AvmTransactionUtil.call(DEPLOYER, dappAddress, kernel.getNonce(DEPLOYER), BigInteger.ZERO, data, 2_000_000L, 1L));
+                Assert.assertTrue(CALLS[i], result.transactionStatus.isSuccess());
+                records[i] = new Object[] {result.copyOfTransactionOutput().orElse(null), result.energyUsed, kernel.getObjectGraph(dappAddress)};
+            }
+            return records;
+        } finally {
+            avm.shutdown();
+        }
+    }
+
+    private static TransactionResult run(AvmImpl avm, TestingState kernel, Transaction tx) {
+        TransactionResult result = avm.run(kernel, new Transaction[] {tx}, ExecutionType.MINING, kernel.getBlockNumber() - 1)[0].getResult();
+        kernel.generateBlock();
+        return result;
+    }
+}
@@ -4,6 +4,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Map;
 
+import org.aion.avm.core.AvmThreadStats;
 import org.aion.avm.core.NodeEnvironment;
 import org.aion.avm.core.classloading.AvmClassLoader;
 import org.aion.avm.core.util.Helpers;
@@ -24,6 +25,7 @@ public class LoadedDAppTest {
     private IInstrumentation instrumentation;
     private AvmClassLoader loader;
     private IRuntimeSetup runtimeSetup;
+    private SerializationBufferPool bufferPool;
 
     // Debug mode MUST be enabled for these tests, otherwise the storage layer will transform the
     // user-defined names, which we do not want!
@@ -40,6 +42,7 @@ public class LoadedDAppTest {
         this.instrumentation = new CommonInstrumentation();
         InstrumentationHelpers.attachThread(this.instrumentation);
         this.runtimeSetup = Helpers.getSetupForLoader(this.loader);
+        this.bufferPool = new SerializationBufferPool(new AvmThreadStats());
         InstrumentationHelpers.pushNewStackFrame(this.runtimeSetup, this.loader, 1_000_000L, 1, new InternedClasses());
 
         // Clear statics, since our tests interact with them.
@@ -74,8 +77,8 @@ public class LoadedDAppTest {
         LoadedDAppTarget.s_seven = 5;
         LoadedDAppTarget.s_eight = 5.0d;
 
-        LoadedDApp dapp = new LoadedDApp(this.loader, new Class<?>[] {ReflectionStructureCodecTarget.class, LoadedDAppTarget.class}, EmptyConstantClass.class, ReflectionStructureCodecTarget.class.getName(), this.preserveDebuggability);
-        byte[] result = dapp.saveEntireGraph(1, MAX_GRAPH_SIZE);
+        LoadedDApp dapp = new LoadedDApp(this.loader, new Class<?>[] {ReflectionStructureCodecTarget.class, LoadedDAppTarget.class}, EmptyConstantClass.class, ReflectionStructureCodecTarget.class.getName(), this.preserveDebuggability, true);
+        byte[] result = dapp.saveEntireGraph(this.bufferPool, 1, MAX_GRAPH_SIZE);
         String expectedHex = ""
                 // hashcode
                 + "00000001"
@@ -176,7 +179,7 @@ public class LoadedDAppTest {
         byte[] expected = Helpers.hexStringToBytes(expectedHex);
         
         // Populate the classes.
-        new LoadedDApp(this.loader, new Class<?>[] {ReflectionStructureCodecTarget.class, LoadedDAppTarget.class}, EmptyConstantClass.class, ReflectionStructureCodecTarget.class.getName(), this.preserveDebuggability)
+        new LoadedDApp(this.loader, new Class<?>[] {ReflectionStructureCodecTarget.class, LoadedDAppTarget.class}, EmptyConstantClass.class, ReflectionStructureCodecTarget.class.getName(), this.preserveDebuggability, true)
             .loadEntireGraph(new InternedClasses(), expected);
         
         // Verify that their static are as we expect.
@@ -213,8 +216,8 @@ public class LoadedDAppTest {
         ReflectionStructureCodecTarget.s_eight = 5.0d;
         ReflectionStructureCodecTarget.s_nine = new ReflectionStructureCodecTarget();
         
-        LoadedDApp dapp = new LoadedDApp(this.loader, new Class<?>[] {ReflectionStructureCodecTarget.class}, EmptyConstantClass.class, ReflectionStructureCodecTarget.class.getName(), this.preserveDebuggability);
-        byte[] result = dapp.saveEntireGraph(1, MAX_GRAPH_SIZE);
+        LoadedDApp dapp = new LoadedDApp(this.loader, new Class<?>[] {ReflectionStructureCodecTarget.class}, EmptyConstantClass.class, ReflectionStructureCodecTarget.class.getName(), this.preserveDebuggability, true);
+        byte[] result = dapp.saveEntireGraph(this.bufferPool, 1, MAX_GRAPH_SIZE);
         String expectedHex = ""
                 // hashcode
                 + "00000001"
@@ -312,9 +315,9 @@ public class LoadedDAppTest {
         ((ReflectionStructureCodecTarget)ReflectionStructureCodecTargetSub.s_nine).i_five = 42;
         ((ReflectionStructureCodecTarget)ReflectionStructureCodecTargetSub.s_nine).i_nine = ReflectionStructureCodecTarget.s_nine;
         
-        LoadedDApp dapp = new LoadedDApp(this.loader, new Class<?>[] {ReflectionStructureCodecTarget.class, ReflectionStructureCodecTargetSub.class}, EmptyConstantClass.class, ReflectionStructureCodecTarget.class.getName(), this.preserveDebuggability);
+        LoadedDApp dapp = new LoadedDApp(this.loader, new Class<?>[] {ReflectionStructureCodecTarget.class, ReflectionStructureCodecTargetSub.class}, EmptyConstantClass.class, ReflectionStructureCodecTarget.class.getName(), this.preserveDebuggability, true);
         int hashCode = 1;
-        byte[] result = dapp.saveEntireGraph(hashCode, MAX_GRAPH_SIZE);
+        byte[] result = dapp.saveEntireGraph(this.bufferPool, hashCode, MAX_GRAPH_SIZE);
         
         // We always have a hashcode - both at the beginning of the buffer (next), and in each instance, before fields.
         int hashCodeSize = 4;
@@ -387,9 +390,9 @@ public class LoadedDAppTest {
     public void serializeDeserializeReferenceToJdkConstant() {
         LoadedDAppTarget.s_nine = s.java.math.RoundingMode.avm_HALF_EVEN;
         
-        LoadedDApp dapp = new LoadedDApp(this.loader, new Class<?>[] {LoadedDAppTarget.class}, EmptyConstantClass.class, LoadedDAppTarget.class.getName(), this.preserveDebuggability);
+        LoadedDApp dapp = new LoadedDApp(this.loader, new Class<?>[] {LoadedDAppTarget.class}, EmptyConstantClass.class, LoadedDAppTarget.class.getName(), this.preserveDebuggability, true);
         int hashcode = 1;
-        byte[] result = dapp.saveEntireGraph(hashcode, MAX_GRAPH_SIZE);
+        byte[] result = dapp.saveEntireGraph(this.bufferPool, hashcode, MAX_GRAPH_SIZE);
         String expectedHex = ""
                 // hashcode
                 + "00000001"
@@ -433,8 +436,8 @@ public class LoadedDAppTest {
         s.java.lang.Class<?> originalClassRef = internedClasses.get(s.java.lang.String.class);
         LoadedDAppTarget.s_nine = originalClassRef;
         
-        LoadedDApp dapp = new LoadedDApp(this.loader, new Class<?>[] {LoadedDAppTarget.class}, EmptyConstantClass.class, LoadedDAppTarget.class.getName(), this.preserveDebuggability);
-        byte[] result = dapp.saveEntireGraph(1, MAX_GRAPH_SIZE);
+        LoadedDApp dapp = new LoadedDApp(this.loader, new Class<?>[] {LoadedDAppTarget.class}, EmptyConstantClass.class, LoadedDAppTarget.class.getName(), this.preserveDebuggability, true);
+        byte[] result = dapp.saveEntireGraph(this.bufferPool, 1, MAX_GRAPH_SIZE);
         String expectedHex = ""
                 // hashcode
                 + "00000001"
@@ -476,8 +479,8 @@ public class LoadedDAppTest {
     public void serializeDeserializeReferenceToConstantClass() {
         LoadedDAppTarget.s_nine = s.java.lang.Byte.avm_TYPE;
         
-        LoadedDApp dapp = new LoadedDApp(this.loader, new Class<?>[] {LoadedDAppTarget.class}, EmptyConstantClass.class, LoadedDAppTarget.class.getName(), this.preserveDebuggability);
-        byte[] result = dapp.saveEntireGraph(1, MAX_GRAPH_SIZE);
+        LoadedDApp dapp = new LoadedDApp(this.loader, new Class<?>[] {LoadedDAppTarget.class}, EmptyConstantClass.class, LoadedDAppTarget.class.getName(), this.preserveDebuggability, true);
+        byte[] result = dapp.saveEntireGraph(this.bufferPool, 1, MAX_GRAPH_SIZE);
         String expectedHex = ""
                 // hashcode
                 + "00000001"
@@ -512,6 +515,40 @@ public class LoadedDAppTest {
         Assert.assertTrue(s.java.lang.Byte.avm_TYPE == LoadedDAppTarget.s_nine);
     }
 
+    /**
+     * Loads a graph lazily and verifies that the instances are only connected once they are loaded, and that re-serializing the
+     * partially-loaded graph gives the same bytes.
+     */
+    @Test
+    public void lazyLoadConnectsInstancesOnDemand() {
+        ReflectionStructureCodecTarget.s_nine = new ReflectionStructureCodecTarget();
+        ReflectionStructureCodecTarget.s_nine.i_five = 42;
+        ReflectionStructureCodecTarget.s_nine.i_nine = new ReflectionStructureCodecTarget();
+        ReflectionStructureCodecTarget.s_nine.i_nine.i_five = 43;
+        ReflectionStructureCodecTarget.s_nine.i_nine.i_nine = ReflectionStructureCodecTarget.s_nine;
+        
+        LoadedDApp dapp = new LoadedDApp(this.loader, new Class<?>[] {ReflectionStructureCodecTarget.class}, EmptyConstantClass.class, ReflectionStructureCodecTarget.class.getName(), this.preserveDebuggability, true);
+        byte[] result = dapp.saveEntireGraph(this.bufferPool, 5, MAX_GRAPH_SIZE);
+        
+        clearStaticState();
+        int nextHashCode = dapp.loadEntireGraphLazily(new InternedClasses(), result);
+        Assert.assertEquals(5, nextHashCode);
+        
+        // The root is a stub:  its primitives are known but its references are only connected when loaded.
+        ReflectionStructureCodecTarget root = ReflectionStructureCodecTarget.s_nine;
+        Assert.assertEquals(42, root.i_five);
+        Assert.assertNull(root.i_nine);
+        root.lazyLoad();
+        ReflectionStructureCodecTarget child = root.i_nine;
+        Assert.assertNotNull(child);
+        Assert.assertNull(child.i_nine);
+        
+        // Serializing loads whatever is still a stub, so the graph is unchanged.
+        Assert.assertArrayEquals(result, dapp.saveEntireGraph(this.bufferPool, 5, MAX_GRAPH_SIZE));
+        Assert.assertEquals(43, child.i_five);
+        Assert.assertTrue(root == child.i_nine);
+    }
+
 
     private static void clearStaticState() {
         ReflectionStructureCodecTarget.s_one = false;
@@ -0,0 +1,51 @@
+package org.aion.avm.core.persistence;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import org.aion.avm.core.AvmThreadStats;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class SerializationBufferPoolTest {
+    @Test
+    public void testBufferReused() {
+        AvmThreadStats stats = new AvmThreadStats();
+        SerializationBufferPool pool = new SerializationBufferPool(stats);
+        ByteBuffer buffer = pool.checkout(64);
+        buffer.putInt(5);
+        Assert.assertArrayEquals(new byte[] {0, 0, 0, 5}, pool.copyWrittenBytes(buffer));
+        pool.checkin(buffer);
+        
+        // The same buffer should come back, reset.
+        Assert.assertTrue(buffer == pool.checkout(64));
+        Assert.assertEquals(0, buffer.position());
+        Assert.assertEquals(1, stats.serializationBuffer_allocated);
+        Assert.assertEquals(1, stats.serializationBuffer_reused);
+        Assert.assertEquals(4L, stats.serializationBuffer_bytesCopied);
+    }
+
+    @Test
+    public void testLimitMatchesRequestedSize() {
+        AvmThreadStats stats = new AvmThreadStats();
+        SerializationBufferPool pool = new SerializationBufferPool(stats);
+        pool.checkin(pool.checkout(64));
+        
+        // A smaller request re-uses the large buffer but must still overflow at the requested size.
+        ByteBuffer buffer = pool.checkout(4);
+        buffer.putInt(1);
+        try {
+            buffer.put((byte) 1);
+            Assert.fail();
+        } catch (BufferOverflowException e) {
+            // Expected.
+        }
+        pool.checkin(buffer);
+        
+        // A larger request can't use it so a new one is allocated.
+        Assert.assertEquals(128, pool.checkout(128).limit());
+        Assert.assertEquals(2, stats.serializationBuffer_allocated);
+        Assert.assertEquals(1, stats.serializationBuffer_reused);
+    }
+}
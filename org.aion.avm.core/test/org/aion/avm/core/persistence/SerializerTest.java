@@ -1,5 +1,6 @@
 package org.aion.avm.core.persistence;
 
+import org.aion.avm.core.AvmThreadStats;
 import org.aion.avm.core.util.Helpers;
 import i.IObjectDeserializer;
 import i.IObjectSerializer;
@@ -20,6 +21,7 @@ public class SerializerTest {
 
     private static TargetLeaf TEST_CONSTANT;
     private SortedFieldCache cache;
+    private SerializationBufferPool bufferPool;
 
     @BeforeClass
     public static void setupClass() throws Exception {
@@ -33,6 +35,7 @@ public class SerializerTest {
         Method deserializeSelf = TargetRoot.class.getMethod("deserializeSelf", Class.class, IObjectDeserializer.class);
         Field readIndex = TargetRoot.class.getField("readIndex");
         this.cache = new SortedFieldCache(SerializerTest.class.getClassLoader(), serializeSelf, deserializeSelf, readIndex);
+        this.bufferPool = new SerializationBufferPool(new AvmThreadStats());
     }
 
     @Test
@@ -170,7 +173,7 @@ public class SerializerTest {
         // We want to capture this state as the caller.
         int nextHashCode = 1;
         Class<?>[] sortedRoots = new Class<?>[] {TargetRoot.class, TargetLeaf.class};
-        ReentrantGraph callerState = ReentrantGraph.captureCallerState(resolver, this.cache, classNameMapper, 1000, nextHashCode, sortedRoots, EmptyConstantClass.class);
+        ReentrantGraph callerState = ReentrantGraph.captureCallerState(resolver, this.cache, classNameMapper, this.bufferPool, 1000, nextHashCode, sortedRoots, EmptyConstantClass.class);
         
         // We need to fake up a callee context, which means that shared instances will have a readIndex, so we need to create our new instances.
         TargetRoot.root = null;
@@ -185,7 +188,7 @@ public class SerializerTest {
         newRoot.next = TargetRoot.root;
         TargetRoot.root = newRoot;
         TargetLeaf.D = 5.0;
-        ReentrantGraph calleeState = ReentrantGraph.captureCalleeState(resolver, this.cache, classNameMapper, 1000, nextHashCode, sortedRoots, EmptyConstantClass.class);
+        ReentrantGraph calleeState = ReentrantGraph.captureCalleeState(resolver, this.cache, classNameMapper, this.bufferPool, 1000, nextHashCode, sortedRoots, EmptyConstantClass.class);
         
         TargetRoot.root = null;
         TargetLeaf.D = 0.0;
@@ -220,7 +223,7 @@ public class SerializerTest {
         // We want to capture this state as the caller.
         int nextHashCode = 1;
         Class<?>[] sortedRoots = new Class<?>[] {TargetRoot.class, TargetLeaf.class};
-        ReentrantGraph callerState = ReentrantGraph.captureCallerState(resolver, this.cache, classNameMapper, 1000, nextHashCode, sortedRoots, EmptyConstantClass.class);
+        ReentrantGraph callerState = ReentrantGraph.captureCallerState(resolver, this.cache, classNameMapper, this.bufferPool, 1000, nextHashCode, sortedRoots, EmptyConstantClass.class);
         
         // We need to fake up a callee context, which means that shared instances will have a readIndex, so we need to create our new instances.
         TargetRoot.root = null;
@@ -0,0 +1,182 @@
+package org.aion.avm.core.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.aion.avm.core.AvmConfiguration;
+import org.aion.avm.core.AvmImpl;
+import org.aion.avm.core.AvmTransactionUtil;
+import org.aion.avm.core.CommonAvmFactory;
+import org.aion.avm.core.ExecutionType;
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.types.ImmortalDappModule;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.avm.userlib.abi.ABIStreamingEncoder;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Runs the same calls against an AVM with enableUnmodifiedGraphReuse and one without, verifying that the stored graphs and billing
+ * are identical and that the graph is only re-used when a call didn't write to it.
+ */
+public class UnmodifiedGraphReuseTest {
+    private static final AionAddress DEPLOYER = TestingState.PREMINED_ADDRESS;
+
+    @Test
+    public void testReadOnlyCallsReuseGraph() {
+        // The first call loads the graph from the kernel and the later ones use the hot cache so we cover both paths.
+        String[] calls = new String[] {"read", "read", "read"};
+        boolean[] expectReuse = new boolean[] {true, true, true};
+        compareRuns(calls, expectReuse);
+    }
+
+    @Test
+    public void testWritesAreDetected() {
+        String[] writes = new String[] {"writeStatic", "writeField", "writeArray", "arraycopy", "fill", "append", "getChars"};
+        // Make sure that the graph is in the re-usable state before each write.
+        String[] calls = new String[2 * writes.length + 1];
+        boolean[] expectReuse = new boolean[calls.length];
+        for (int i = 0; i < writes.length; ++i) {
+            calls[2 * i] = "read";
+            expectReuse[2 * i] = true;
+            calls[2 * i + 1] = writes[i];
+            expectReuse[2 * i + 1] = false;
+        }
+        calls[calls.length - 1] = "read";
+        expectReuse[calls.length - 1] = true;
+        compareRuns(calls, expectReuse);
+    }
+
+    /**
+     * Code transformed before the transformation version was recorded has no version in its manifest so it must never re-use its graph.
+     */
+    @Test
+    public void testLegacyCodeIsAlwaysSerialized() throws Exception {
+        TestingBlock block = new TestingBlock(new byte[32], 1, Helpers.randomAddress(), 1L, new byte[0]);
+        TestingState kernel = new TestingState(block);
+        AvmConfiguration config = new AvmConfiguration();
+        config.enableUnmodifiedGraphReuse = true;
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(UnmodifiedGraphTarget.class);
+        byte[] txData = new CodeAndArguments(jar, new byte[0]).encodeToBytes();
+        TransactionResult createResult = run(avm, kernel, AvmTransactionUtil.create(DEPLOYER, kernel.getNonce(DEPLOYER), BigInteger.ZERO, txData, 5_000_000L, 1L));
+        Assert.assertTrue(createResult.transactionStatus.isSuccess());
+        AionAddress dappAddress = new AionAddress(createResult.copyOfTransactionOutput().orElseThrow());
+        avm.shutdown();
+
+        // Re-write the transformed code without the version attribute, as an older AVM stored it.
+        ImmortalDappModule module = ImmortalDappModule.readFromJar(kernel.getTransformedCode(dappAddress));
+        Assert.assertEquals(ImmortalDappModule.CURRENT_TRANSFORMATION_VERSION, module.transformationVersion);
+        byte[] legacyJar = createJarWithoutVersion(module);
+        Assert.assertEquals(0, ImmortalDappModule.readFromJar(legacyJar).transformationVersion);
+        kernel.setTransformedCode(dappAddress, legacyJar);
+
+        // The first call loads the graph from the kernel and the second uses the hot cache:  neither may re-use the graph.
+        avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        try {
+            for (int i = 0; i < 2; ++i) {
+                byte[] data = new ABIStreamingEncoder().encodeOneString("read").toBytes();
+                TransactionResult result = run(avm, kernel, AvmTransactionUtil.call(DEPLOYER, dappAddress, kernel.getNonce(DEPLOYER), BigInteger.ZERO, data, 2_000_000L, 1L));
+                Assert.assertTrue(result.transactionStatus.isSuccess());
+            }
+            Assert.assertEquals(0, avm.getStats().getReusedGraphCount());
+        } finally {
+            avm.shutdown();
+        }
+    }
+
+    private static byte[] createJarWithoutVersion(ImmortalDappModule module) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, module.mainClass);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JarOutputStream stream = new JarOutputStream(bytes, manifest)) {
+            for (Map.Entry<String, byte[]> entry : module.classes.entrySet()) {
+                stream.putNextEntry(new JarEntry(entry.getKey().replace('.', '/') + ".class"));
+                stream.write(entry.getValue());
+                stream.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void compareRuns(String[] calls, boolean[] expectReuse) {
+        List<CallRecord> reused = runCalls(calls, true);
+        List<CallRecord> serialized = runCalls(calls, false);
+        for (int i = 0; i < calls.length; ++i) {
+            CallRecord reuse = reused.get(i);
+            CallRecord serialize = serialized.get(i);
+            // The results, billing, and stored graph must be identical whether or not the graph was re-used.
+            Assert.assertArrayEquals(serialize.output, reuse.output);
+            Assert.assertEquals(serialize.energyUsed, reuse.energyUsed);
+            Assert.assertArrayEquals(serialize.graph, reuse.graph);
+            Assert.assertEquals(calls[i], expectReuse[i], reuse.didReuse);
+            Assert.assertFalse(serialize.didReuse);
+        }
+    }
+
+    private static List<CallRecord> runCalls(String[] calls, boolean enableReuse) {
+        TestingBlock block = new TestingBlock(new byte[32], 1, Helpers.randomAddress(), 1L, new byte[0]);
+        TestingState kernel = new TestingState(block);
+        AvmConfiguration config = new AvmConfiguration();
+        config.enableUnmodifiedGraphReuse = enableReuse;
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        try {
+            byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(UnmodifiedGraphTarget.class);
+            byte[] txData = new CodeAndArguments(jar, new byte[0]).encodeToBytes();
+            TransactionResult createResult = run(avm, kernel, AvmTransactionUtil.create(DEPLOYER, kernel.getNonce(DEPLOYER), BigInteger.ZERO, txData, 5_000_000L, 1L));
+            Assert.assertTrue(createResult.transactionStatus.isSuccess());
+            AionAddress dappAddress = new AionAddress(createResult.copyOfTransactionOutput().orElseThrow());
+
+            List<CallRecord> records = new ArrayList<>();
+            for (String call : calls) {
+                int reusedBefore = avm.getStats().getReusedGraphCount();
+                byte[] data = new ABIStreamingEncoder().encodeOneString(call).toBytes();
+                TransactionResult result = run(avm, kernel, AvmTransactionUtil.call(DEPLOYER, dappAddress, kernel.getNonce(DEPLOYER), BigInteger.ZERO, data, 2_000_000L, 1L));
+                Assert.assertTrue(result.transactionStatus.isSuccess());
+                boolean didReuse = (avm.getStats().getReusedGraphCount() > reusedBefore);
+                records.add(new CallRecord(result.copyOfTransactionOutput().orElse(null), result.energyUsed, kernel.getObjectGraph(dappAddress), didReuse));
+            }
+            return records;
+        } finally {
+            avm.shutdown();
+        }
+    }
+
+    private static TransactionResult run(AvmImpl avm, TestingState kernel, Transaction tx) {
+        TransactionResult result = avm.run(kernel, new Transaction[] {tx}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+        kernel.generateBlock();
+        return result;
+    }
+
+
+    private static class CallRecord {
+        public final byte[] output;
+        public final long energyUsed;
+        public final byte[] graph;
+        public final boolean didReuse;
+
+        public CallRecord(byte[] output, long energyUsed, byte[] graph, boolean didReuse) {
+            this.output = output;
+            this.energyUsed = energyUsed;
+            this.graph = graph;
+            this.didReuse = didReuse;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.aion.avm.core.persistence;
+
+import java.util.Arrays;
+
+import avm.Blockchain;
+import org.aion.avm.userlib.abi.ABIDecoder;
+import org.aion.avm.userlib.abi.ABIEncoder;
+
+
+/**
+ * Used by UnmodifiedGraphReuseTest:  each method either only reads the persisted graph or writes it in one specific way.
+ */
+public class UnmodifiedGraphTarget {
+    private static int counter;
+    private static int[] ints = new int[] {1, 2, 3, 4};
+    private static char[] chars = new char[4];
+    private static byte[] bytes = new byte[4];
+    private static StringBuilder builder = new StringBuilder("start");
+    private static Holder holder = new Holder();
+
+    public static byte[] main() {
+        ABIDecoder decoder = new ABIDecoder(Blockchain.getData());
+        String methodName = decoder.decodeMethodName();
+        if (methodName == null) {
+            return new byte[0];
+        } else {
+            switch (methodName) {
+                case "read":
+                    return ABIEncoder.encodeOneInteger(read());
+                case "writeStatic":
+                    counter += 1;
+                    break;
+                case "writeField":
+                    holder.value += 1;
+                    break;
+                case "writeArray":
+                    ints[0] += 1;
+                    break;
+                case "arraycopy":
+                    System.arraycopy(new int[] {7}, 0, ints, 1, 1);
+                    break;
+                case "fill":
+                    Arrays.fill(bytes, 0, 2, (byte) 5);
+                    break;
+                case "append":
+                    builder.append('x');
+                    break;
+                case "getChars":
+                    "ab".getChars(0, 2, chars, 0);
+                    break;
+            }
+            return null;
+        }
+    }
+
+    private static int read() {
+        // Writing to new objects doesn't modify the graph (even though it changes the next hash code).
+        int[] local = new int[] {counter, holder.value, ints[0], ints[1]};
+        local[0] += chars[0] + bytes[0];
+        StringBuilder temp = new StringBuilder();
+        temp.append(builder).append(local[0]);
+        Holder other = new Holder();
+        other.value = temp.length();
+        return local[0] + local[1] + local[2] + local[3] + other.value;
+    }
+
+    private static class Holder {
+        public int value;
+    }
+}
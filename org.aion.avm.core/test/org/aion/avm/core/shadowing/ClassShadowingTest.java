@@ -313,6 +313,14 @@ public class ClassShadowingTest {
             this.realImplementation.forceNextHashCode(nextHashCode);
         }
         @Override
+        public void markGraphModified() {
+            this.realImplementation.markGraphModified();
+        }
+        @Override
+        public boolean isGraphModified() {
+            return this.realImplementation.isGraphModified();
+        }
+        @Override
         public void bootstrapOnly() {
             this.realImplementation.bootstrapOnly();
         }
@@ -0,0 +1,121 @@
+package org.aion.avm.core.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class BoundedCacheTest {
+    @Test
+    public void testCheckoutRemoves() {
+        BoundedCache<String, byte[]> cache = new BoundedCache<>(1024L, (value) -> value.length);
+        byte[] element1 = new byte[64];
+        Assert.assertEquals(0, cache.checkin("element1", element1));
+        Assert.assertEquals(64L, cache.getRetainedBytes());
+        Assert.assertEquals(element1, cache.checkout("element1"));
+        Assert.assertNull(cache.checkout("element1"));
+        Assert.assertEquals(0L, cache.getRetainedBytes());
+    }
+
+    /**
+     * Fills the cache to its limit and verifies that the least-recently-used entries are the ones evicted.
+     */
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        BoundedCache<String, byte[]> cache = new BoundedCache<>(300L, (value) -> value.length);
+        byte[] element1 = new byte[100];
+        byte[] element2 = new byte[100];
+        byte[] element3 = new byte[100];
+        Assert.assertEquals(0, cache.checkin("element1", element1));
+        Assert.assertEquals(0, cache.checkin("element2", element2));
+        Assert.assertEquals(0, cache.checkin("element3", element3));
+        Assert.assertEquals(3, cache.size());
+
+        // Use element1 so that element2 becomes the oldest.
+        Assert.assertEquals(element1, cache.checkout("element1"));
+        Assert.assertEquals(0, cache.checkin("element1", element1));
+
+        // Adding a 150-byte element should evict both element2 and element3.
+        Assert.assertEquals(2, cache.checkin("element4", new byte[150]));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(250L, cache.getRetainedBytes());
+        Assert.assertNull(cache.checkout("element2"));
+        Assert.assertNull(cache.checkout("element3"));
+        Assert.assertEquals(element1, cache.checkout("element1"));
+    }
+
+    @Test
+    public void testOversizedValueDropped() {
+        BoundedCache<String, byte[]> cache = new BoundedCache<>(100L, (value) -> value.length);
+        Assert.assertEquals(0, cache.checkin("small", new byte[10]));
+        Assert.assertEquals(1, cache.checkin("large", new byte[101]));
+        Assert.assertNull(cache.checkout("large"));
+        Assert.assertNotNull(cache.checkout("small"));
+    }
+
+    @Test
+    public void testRemoveValueIfAndApply() {
+        BoundedCache<String, byte[]> cache = new BoundedCache<>(1024L, (value) -> value.length);
+        cache.checkin("small", new byte[10]);
+        cache.checkin("large", new byte[100]);
+        cache.removeValueIf((value) -> value.length > 50);
+        Assert.assertEquals(10L, cache.getRetainedBytes());
+
+        List<byte[]> seen = new ArrayList<>();
+        cache.apply(seen::add);
+        Assert.assertEquals(1, seen.size());
+        Assert.assertEquals(10, seen.get(0).length);
+    }
+
+    /**
+     * Checks in several values under the same key and verifies that they are checked out most-recent first, up to the per-key limit.
+     */
+    @Test
+    public void testValuesPerKey() {
+        BoundedCache<String, byte[]> cache = new BoundedCache<>(1024L, (value) -> value.length, 2);
+        byte[] element1 = new byte[10];
+        byte[] element2 = new byte[20];
+        Assert.assertEquals(0, cache.checkinIfAbsent("key", element1));
+        Assert.assertEquals(0, cache.checkinIfAbsent("key", element2));
+        // The pool is full so this is dropped.
+        Assert.assertEquals(0, cache.checkinIfAbsent("key", new byte[30]));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(30L, cache.getRetainedBytes());
+
+        Assert.assertEquals(element2, cache.checkout("key"));
+        Assert.assertEquals(element1, cache.checkout("key"));
+        Assert.assertNull(cache.checkout("key"));
+        Assert.assertEquals(0L, cache.getRetainedBytes());
+    }
+
+    /**
+     * Verifies that eviction removes the oldest values of the least-recently-used key, before touching the key being checked in.
+     */
+    @Test
+    public void testEvictFromPools() {
+        BoundedCache<String, byte[]> cache = new BoundedCache<>(300L, (value) -> value.length, 3);
+        byte[] old1 = new byte[100];
+        byte[] old2 = new byte[100];
+        byte[] new1 = new byte[100];
+        Assert.assertEquals(0, cache.checkin("old", old1));
+        Assert.assertEquals(0, cache.checkin("old", old2));
+        Assert.assertEquals(0, cache.checkin("new", new1));
+
+        // This only needs room for 1 value, which is the oldest one under the oldest key.
+        byte[] new2 = new byte[100];
+        Assert.assertEquals(1, cache.checkin("new", new2));
+        Assert.assertEquals(3, cache.size());
+        Assert.assertEquals(old2, cache.checkout("old"));
+        Assert.assertNull(cache.checkout("old"));
+
+        // Once the other keys are gone, the pool being added to is evicted from.
+        byte[] new3 = new byte[200];
+        Assert.assertEquals(1, cache.checkinIfAbsent("new", new3));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(new3, cache.checkout("new"));
+        Assert.assertEquals(new2, cache.checkout("new"));
+        Assert.assertNull(cache.checkout("new"));
+    }
+}
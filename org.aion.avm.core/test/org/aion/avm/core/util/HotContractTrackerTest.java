@@ -0,0 +1,85 @@
+package org.aion.avm.core.util;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.aion.types.AionAddress;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class HotContractTrackerTest {
+    private static final byte[] FINGERPRINT = new byte[32];
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Records executions of 3 DApps and verifies that only the 2 most executed are written, most executed first.
+     */
+    @Test
+    public void testWriteMostExecuted() throws Exception {
+        File file = new File(folder.newFolder(), "hot");
+        HotContractTracker tracker = new HotContractTracker();
+        byte[] code1 = new byte[] {1};
+        byte[] code2 = new byte[] {2, 2};
+        byte[] code3 = new byte[] {3, 3, 3};
+        AionAddress address1 = Helpers.randomAddress();
+        AionAddress address2 = Helpers.randomAddress();
+        AionAddress address3 = Helpers.randomAddress();
+        tracker.recordExecution(address1, code1);
+        tracker.recordExecution(address2, code2);
+        tracker.recordExecution(address2, code2);
+        tracker.recordExecution(address3, code3);
+        tracker.recordExecution(address3, code3);
+        tracker.recordExecution(address3, code3);
+
+        tracker.writeMostExecuted(file, FINGERPRINT, 2);
+        List<byte[]> codes = HotContractTracker.readTransformedCode(file, FINGERPRINT);
+        Assert.assertEquals(2, codes.size());
+        Assert.assertArrayEquals(code3, codes.get(0));
+        Assert.assertArrayEquals(code2, codes.get(1));
+        // The temporary file was moved into place.
+        Assert.assertEquals(1, file.getParentFile().listFiles().length);
+    }
+
+    @Test
+    public void testMissingFileIsEmpty() throws Exception {
+        File file = new File(folder.newFolder(), "hot");
+        Assert.assertTrue(HotContractTracker.readTransformedCode(file, FINGERPRINT).isEmpty());
+        // Writing an empty tracker still produces a valid file.
+        new HotContractTracker().writeMostExecuted(file, FINGERPRINT, 2);
+        Assert.assertTrue(file.isFile());
+        Assert.assertTrue(HotContractTracker.readTransformedCode(file, FINGERPRINT).isEmpty());
+    }
+
+    @Test
+    public void testCorruptFileIsEmpty() throws Exception {
+        File file = new File(folder.newFolder(), "hot");
+        HotContractTracker tracker = new HotContractTracker();
+        tracker.recordExecution(Helpers.randomAddress(), new byte[] {1, 2, 3});
+        tracker.writeMostExecuted(file, FINGERPRINT, 2);
+        Assert.assertEquals(1, HotContractTracker.readTransformedCode(file, FINGERPRINT).size());
+
+        byte[] raw = Files.readAllBytes(file.toPath());
+        raw[raw.length - 1] += 1;
+        Files.write(file.toPath(), raw);
+        Assert.assertTrue(HotContractTracker.readTransformedCode(file, FINGERPRINT).isEmpty());
+    }
+
+    @Test
+    public void testOtherFingerprintIsEmpty() throws Exception {
+        File file = new File(folder.newFolder(), "hot");
+        HotContractTracker tracker = new HotContractTracker();
+        tracker.recordExecution(Helpers.randomAddress(), new byte[] {1, 2, 3});
+        tracker.writeMostExecuted(file, FINGERPRINT, 2);
+
+        byte[] otherFingerprint = new byte[32];
+        otherFingerprint[0] = 1;
+        Assert.assertTrue(HotContractTracker.readTransformedCode(file, otherFingerprint).isEmpty());
+        Assert.assertEquals(1, HotContractTracker.readTransformedCode(file, FINGERPRINT).size());
+    }
+}
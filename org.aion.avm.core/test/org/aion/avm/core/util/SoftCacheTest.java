@@ -2,6 +2,8 @@ package org.aion.avm.core.util;
 
 import java.lang.ref.PhantomReference;
 import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -32,4 +34,32 @@ public class SoftCacheTest {
         }
         Assert.assertNull(cache.checkout(key1));
     }
+
+    /**
+     * Checks in several values under the same key and verifies that they are checked out most-recent first, up to the per-key limit.
+     */
+    @Test
+    public void testValuesPerKey() {
+        SoftCache<String, byte[]> cache = new SoftCache<>(2);
+        byte[] element1 = new byte[10];
+        byte[] element2 = new byte[20];
+        byte[] element3 = new byte[30];
+        cache.checkin("key", element1);
+        cache.checkin("key", element2);
+        // The pool is full so this is dropped.
+        cache.checkinIfAbsent("key", element3);
+
+        List<byte[]> seen = new ArrayList<>();
+        cache.apply(seen::add);
+        Assert.assertEquals(2, seen.size());
+        cache.removeValueIf((value) -> value.length > 15);
+
+        Assert.assertEquals(element1, cache.checkout("key"));
+        Assert.assertNull(cache.checkout("key"));
+        cache.checkinIfAbsent("key", element3);
+        cache.checkinIfAbsent("key", element2);
+        Assert.assertEquals(element2, cache.checkout("key"));
+        Assert.assertEquals(element3, cache.checkout("key"));
+        Assert.assertNull(cache.checkout("key"));
+    }
 }
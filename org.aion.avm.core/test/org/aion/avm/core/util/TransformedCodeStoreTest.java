@@ -0,0 +1,192 @@
+package org.aion.avm.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.aion.avm.core.AvmConfiguration;
+import org.aion.avm.core.AvmCoreStats;
+import org.aion.avm.core.AvmImpl;
+import org.aion.avm.core.AvmThreadStats;
+import org.aion.avm.core.AvmTransactionUtil;
+import org.aion.avm.core.CommonAvmFactory;
+import org.aion.avm.core.ExecutionType;
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.persistence.HotObjectContract;
+import org.aion.avm.core.types.ImmortalDappModule;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.avm.userlib.abi.ABIStreamingEncoder;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class TransformedCodeStoreTest {
+    private static final AionAddress DEPLOYER = TestingState.PREMINED_ADDRESS;
+
+    private static final byte[] FINGERPRINT = new byte[] {1};
+    private static final long TIMESTAMP = 1_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStoreAndLoad() throws Exception {
+        File directory = folder.newFolder();
+        TransformedCodeStore store = new TransformedCodeStore(directory, FINGERPRINT, false, false, false, false);
+        store.startup();
+        byte[] code = new byte[] {1, 2, 3};
+        byte[] transformed = transformedJar(TIMESTAMP);
+        Assert.assertNull(store.load(code, TIMESTAMP));
+        store.store(code, transformed);
+        Assert.assertArrayEquals(transformed, store.load(code, TIMESTAMP));
+        Assert.assertArrayEquals(transformed, new TransformedCodeStore(directory, FINGERPRINT, false, false, false, false).load(code, TIMESTAMP));
+
+        // A different build of the AVM, or any transformation option, is a different key.
+        Assert.assertNull(new TransformedCodeStore(directory, new byte[] {2}, false, false, false, false).load(code, TIMESTAMP));
+        Assert.assertNull(new TransformedCodeStore(directory, FINGERPRINT, true, false, false, false).load(code, TIMESTAMP));
+        Assert.assertNull(new TransformedCodeStore(directory, FINGERPRINT, false, true, false, false).load(code, TIMESTAMP));
+        Assert.assertNull(new TransformedCodeStore(directory, FINGERPRINT, false, false, true, false).load(code, TIMESTAMP));
+        Assert.assertNull(new TransformedCodeStore(directory, FINGERPRINT, false, false, false, true).load(code, TIMESTAMP));
+    }
+
+    /**
+     * The jar embeds the timestamp of the block where it was transformed so loading in a later block must give what that block would write.
+     */
+    @Test
+    public void testLoadUsesRequestingBlockTimestamp() throws Exception {
+        File directory = folder.newFolder();
+        TransformedCodeStore store = new TransformedCodeStore(directory, FINGERPRINT, false, false, false, false);
+        store.startup();
+        byte[] code = new byte[] {1, 2, 3};
+        store.store(code, transformedJar(TIMESTAMP));
+
+        long laterTimestamp = TIMESTAMP + 10_000L;
+        byte[] loaded = store.load(code, laterTimestamp);
+        Assert.assertFalse(Arrays.equals(transformedJar(TIMESTAMP), loaded));
+        Assert.assertArrayEquals(transformedJar(laterTimestamp), loaded);
+    }
+
+    @Test
+    public void testCorruptEntryIsDiscarded() throws Exception {
+        File directory = folder.newFolder();
+        TransformedCodeStore store = new TransformedCodeStore(directory, FINGERPRINT, false, false, false, false);
+        store.startup();
+        byte[] code = new byte[] {1, 2, 3};
+        store.store(code, transformedJar(TIMESTAMP));
+        File[] files = directory.listFiles();
+        Assert.assertEquals(1, files.length);
+        byte[] raw = Files.readAllBytes(files[0].toPath());
+        raw[raw.length - 1] += 1;
+        Files.write(files[0].toPath(), raw);
+
+        Assert.assertNull(store.load(code, TIMESTAMP));
+        Assert.assertEquals(0, directory.listFiles().length);
+    }
+
+    /**
+     * Re-transforms a contract on one AVM instance and then verifies that a second instance (as after a restart) finds it in the store.
+     */
+    @Test
+    public void testStoreSurvivesRestart() throws Exception {
+        File directory = folder.newFolder();
+        TestingBlock block = new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]);
+        TestingState kernel = new TestingState(block);
+        byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(HotObjectContract.class);
+        byte[] txData = new CodeAndArguments(jar, new byte[0]).encodeToBytes();
+
+        AvmConfiguration config = new AvmConfiguration();
+        config.transformedCodeStoreDirectory = directory;
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        Transaction create = AvmTransactionUtil.create(DEPLOYER, kernel.getNonce(DEPLOYER), BigInteger.ZERO, txData, 5_000_000L, 1L);
+        TransactionResult createResult = avm.run(kernel, new Transaction[] {create}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertTrue(createResult.transactionStatus.isSuccess());
+        AionAddress dappAddress = new AionAddress(createResult.copyOfTransactionOutput().orElseThrow());
+        kernel.generateBlock();
+
+        // Remove the transformed code (as though the AVM version changed) so the call must re-transform.
+        kernel.setTransformedCode(dappAddress, null);
+        Assert.assertTrue(callDoubleStaticValue(avm, kernel, dappAddress).transactionStatus.isSuccess());
+        Assert.assertEquals(0, storeHits(avm.getStats()));
+        avm.shutdown();
+
+        // "Restart" and repeat:  the second instance should skip the re-transformation.
+        kernel.generateBlock();
+        kernel.setTransformedCode(dappAddress, null);
+        avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        Assert.assertTrue(callDoubleStaticValue(avm, kernel, dappAddress).transactionStatus.isSuccess());
+        Assert.assertEquals(1, storeHits(avm.getStats()));
+        byte[] loaded = kernel.getTransformedCode(dappAddress);
+        Assert.assertNotNull(loaded);
+        avm.shutdown();
+
+        // What we loaded must be exactly what re-transforming the code in this block (without the store) writes.
+        kernel.setTransformedCode(dappAddress, null);
+        avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), new AvmConfiguration());
+        Assert.assertTrue(callDoubleStaticValue(avm, kernel, dappAddress).transactionStatus.isSuccess());
+        Assert.assertArrayEquals(loaded, kernel.getTransformedCode(dappAddress));
+        avm.shutdown();
+    }
+
+    /**
+     * Energy charge folding changes the transformed code so an AVM with a different folding option must not load what another one stored.
+     */
+    @Test
+    public void testFoldingOptionIsNotShared() throws Exception {
+        File directory = folder.newFolder();
+        TestingBlock block = new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]);
+        TestingState kernel = new TestingState(block);
+        byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(HotObjectContract.class);
+        byte[] txData = new CodeAndArguments(jar, new byte[0]).encodeToBytes();
+
+        AvmConfiguration config = new AvmConfiguration();
+        config.transformedCodeStoreDirectory = directory;
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        Transaction create = AvmTransactionUtil.create(DEPLOYER, kernel.getNonce(DEPLOYER), BigInteger.ZERO, txData, 5_000_000L, 1L);
+        TransactionResult createResult = avm.run(kernel, new Transaction[] {create}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertTrue(createResult.transactionStatus.isSuccess());
+        AionAddress dappAddress = new AionAddress(createResult.copyOfTransactionOutput().orElseThrow());
+        kernel.generateBlock();
+        kernel.setTransformedCode(dappAddress, null);
+        Assert.assertTrue(callDoubleStaticValue(avm, kernel, dappAddress).transactionStatus.isSuccess());
+        avm.shutdown();
+
+        // Restart with folding enabled:  this must re-transform rather than load the unfolded code.
+        kernel.generateBlock();
+        kernel.setTransformedCode(dappAddress, null);
+        config.enableEnergyChargeFolding = true;
+        avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        Assert.assertTrue(callDoubleStaticValue(avm, kernel, dappAddress).transactionStatus.isSuccess());
+        Assert.assertEquals(0, storeHits(avm.getStats()));
+        avm.shutdown();
+    }
+
+    private static byte[] transformedJar(long timestamp) throws IOException {
+        // The store only needs a jar it can read back so the "class" doesn't need to be valid.
+        return ImmortalDappModule.fromImmortalClasses(Map.of("Main", new byte[] {4, 5, 6, 7}), "Main").createJar(timestamp);
+    }
+
+    private static TransactionResult callDoubleStaticValue(AvmImpl avm, TestingState kernel, AionAddress dappAddress) {
+        byte[] data = new ABIStreamingEncoder().encodeOneString("doubleStaticValue").toBytes();
+        Transaction tx = AvmTransactionUtil.call(DEPLOYER, dappAddress, kernel.getNonce(DEPLOYER), BigInteger.ZERO, data, 500_000L, 1L);
+        return avm.run(kernel, new Transaction[] {tx}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+    }
+
+    private static int storeHits(AvmCoreStats stats) {
+        int hits = 0;
+        for (AvmThreadStats stat : stats.threadStats) {
+            hits += stat.cache_transformedCodeStore_hit;
+        }
+        return hits;
+    }
+}
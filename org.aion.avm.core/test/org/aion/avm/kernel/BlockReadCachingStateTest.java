@@ -0,0 +1,98 @@
+package org.aion.avm.kernel;
+
+import java.math.BigInteger;
+
+import org.aion.avm.core.util.Helpers;
+import org.aion.kernel.BlockReadCachingState;
+import org.aion.kernel.TestingState;
+import org.aion.kernel.TransactionalState;
+import org.aion.types.AionAddress;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class BlockReadCachingStateTest {
+    @Test
+    public void testRepeatedReadsHitCache() {
+        CountingReadState kernel = new CountingReadState();
+        AionAddress address = Helpers.randomAddress();
+        byte[] key = Helpers.randomBytes(32);
+        kernel.putStorage(address, key, new byte[1]);
+        BlockReadCachingState cache = new BlockReadCachingState(kernel);
+        
+        // Each transaction reads through its own TransactionalState but only the first read reaches the kernel (absent values included).
+        for (int i = 0; i < 3; ++i) {
+            TransactionalState transaction = new TransactionalState(cache);
+            Assert.assertArrayEquals(new byte[1], transaction.getStorage(address, key));
+            Assert.assertNull(transaction.getStorage(address, new byte[32]));
+            Assert.assertEquals(BigInteger.ZERO, transaction.getBalance(address));
+        }
+        Assert.assertEquals(2, kernel.storageReads);
+        Assert.assertEquals(1, kernel.balanceReads);
+    }
+
+    @Test
+    public void testCommitInvalidates() {
+        CountingReadState kernel = new CountingReadState();
+        AionAddress address = Helpers.randomAddress();
+        byte[] key = Helpers.randomBytes(32);
+        byte[] untouchedKey = Helpers.randomBytes(32);
+        kernel.putStorage(address, key, new byte[1]);
+        kernel.putStorage(address, untouchedKey, new byte[1]);
+        BlockReadCachingState cache = new BlockReadCachingState(kernel);
+        
+        TransactionalState first = new TransactionalState(cache);
+        Assert.assertArrayEquals(new byte[1], first.getStorage(address, key));
+        Assert.assertArrayEquals(new byte[1], first.getStorage(address, untouchedKey));
+        Assert.assertEquals(BigInteger.ZERO, first.getBalance(address));
+        first.putStorage(address, key, new byte[2]);
+        first.adjustBalance(address, BigInteger.TEN);
+        first.commit();
+        
+        // The next transaction sees what was committed, and the key which wasn't written is still cached.
+        TransactionalState second = new TransactionalState(cache);
+        Assert.assertArrayEquals(new byte[2], second.getStorage(address, key));
+        Assert.assertArrayEquals(new byte[1], second.getStorage(address, untouchedKey));
+        Assert.assertEquals(BigInteger.TEN, second.getBalance(address));
+        Assert.assertEquals(3, kernel.storageReads);
+        Assert.assertEquals(2, kernel.balanceReads);
+    }
+
+    @Test
+    public void testDeleteInvalidatesStorage() {
+        TestingState kernel = new TestingState();
+        AionAddress address = Helpers.randomAddress();
+        byte[] key = Helpers.randomBytes(32);
+        kernel.putStorage(address, key, new byte[1]);
+        kernel.putCode(address, new byte[1]);
+        BlockReadCachingState cache = new BlockReadCachingState(kernel);
+        
+        TransactionalState first = new TransactionalState(cache);
+        Assert.assertArrayEquals(new byte[1], first.getStorage(address, key));
+        Assert.assertArrayEquals(new byte[1], first.getCode(address));
+        first.deleteAccount(address);
+        first.commit();
+        
+        TransactionalState second = new TransactionalState(cache);
+        Assert.assertNull(second.getStorage(address, key));
+        Assert.assertNull(second.getCode(address));
+    }
+
+
+    private static class CountingReadState extends TestingState {
+        public int storageReads;
+        public int balanceReads;
+
+        @Override
+        public byte[] getStorage(AionAddress address, byte[] key) {
+            this.storageReads += 1;
+            return super.getStorage(address, key);
+        }
+
+        @Override
+        public BigInteger getBalance(AionAddress address) {
+            this.balanceReads += 1;
+            return super.getBalance(address);
+        }
+    }
+}
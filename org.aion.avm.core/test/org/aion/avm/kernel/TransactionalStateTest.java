@@ -4,6 +4,7 @@ import java.math.BigInteger;
 import java.util.Arrays;
 
 import org.aion.avm.core.IExternalState;
+import org.aion.avm.core.StateWriteSet;
 import org.aion.kernel.TransactionalState;
 import org.aion.types.AionAddress;
 import org.aion.avm.core.util.Helpers;
@@ -212,4 +213,156 @@ public class TransactionalStateTest {
         transactionalState.commit();
         Assert.assertFalse(base.hasStorage(address));
     }
+
+    @Test
+    public void testRepeatedWritesCommitOnce() {
+        CountingState base = new CountingState();
+        AionAddress address = Helpers.randomAddress();
+        byte[] key = Helpers.randomBytes(32);
+        
+        TransactionalState transaction = new TransactionalState(base);
+        for (int i = 0; i < 1_000; ++i) {
+            transaction.putStorage(address, key, new byte[] { (byte) i });
+            transaction.adjustBalance(address, BigInteger.ONE);
+        }
+        transaction.removeStorage(address, Helpers.randomBytes(32));
+        
+        // Only the final value of each key, and the sum of the adjustments, is written back.
+        transaction.commit();
+        Assert.assertEquals(2, base.storageWrites);
+        Assert.assertEquals(1, base.balanceAdjustments);
+        Assert.assertArrayEquals(new byte[] { (byte) 999 }, base.getStorage(address, key));
+        Assert.assertEquals(BigInteger.valueOf(1_000L), base.getBalance(address));
+    }
+
+    @Test
+    public void testNestedCommit() {
+        IExternalState base = new TestingState();
+        AionAddress address = Helpers.randomAddress();
+        byte[] key1 = Helpers.randomBytes(32);
+        byte[] key2 = Helpers.randomBytes(32);
+        base.putStorage(address, key1, new byte[1]);
+        
+        TransactionalState outer = new TransactionalState(base);
+        outer.adjustBalance(address, BigInteger.TEN);
+        TransactionalState inner = outer.newChildExternalState();
+        inner.removeStorage(address, key1);
+        inner.putStorage(address, key2, new byte[2]);
+        inner.adjustBalance(address, BigInteger.ONE.negate());
+        inner.incrementNonce(address);
+        inner.incrementNonce(address);
+        inner.commit();
+        
+        // The outer state sees the inner writes, the base doesn't until the outer commits.
+        Assert.assertNull(outer.getStorage(address, key1));
+        Assert.assertEquals(BigInteger.valueOf(9L), outer.getBalance(address));
+        Assert.assertNotNull(base.getStorage(address, key1));
+        outer.commit();
+        Assert.assertNull(base.getStorage(address, key1));
+        Assert.assertArrayEquals(new byte[2], base.getStorage(address, key2));
+        Assert.assertEquals(BigInteger.valueOf(9L), base.getBalance(address));
+        Assert.assertEquals(BigInteger.TWO, base.getNonce(address));
+    }
+
+    @Test
+    public void testWritesBeforeDeleteAreDiscarded() {
+        IExternalState base = new TestingState();
+        AionAddress address = Helpers.randomAddress();
+        base.createAccount(address);
+        byte[] key = Helpers.randomBytes(32);
+        
+        TransactionalState transaction = new TransactionalState(base);
+        transaction.putStorage(address, key, new byte[1]);
+        transaction.adjustBalance(address, BigInteger.TEN);
+        transaction.deleteAccount(address);
+        transaction.adjustBalance(address, BigInteger.TWO);
+        
+        // The writes before the delete are applied, then deleted, and only the adjustment after it is left.
+        TestingState target = new TestingState();
+        transaction.commitTo(target);
+        Assert.assertNull(target.getStorage(address, key));
+        Assert.assertEquals(BigInteger.TWO, target.getBalance(address));
+    }
+
+    @Test
+    public void testWriteSetSegments() {
+        AionAddress address = Helpers.randomAddress();
+        StateWriteSet writeSet = new StateWriteSet();
+        writeSet.putStorage(address, new byte[1], new byte[1]);
+        writeSet.putStorage(address, new byte[1], new byte[2]);
+        writeSet.deleteAccount(address);
+        writeSet.createAccount(address);
+        writeSet.putObjectGraph(address, new byte[3]);
+        writeSet.deleteAccount(address);
+        
+        Assert.assertEquals(3, writeSet.getAccountWrites().size());
+        StateWriteSet.AccountWrites first = writeSet.getAccountWrites().get(0);
+        Assert.assertFalse(first.isDeleted());
+        Assert.assertEquals(1, first.getStorage().size());
+        StateWriteSet.AccountWrites second = writeSet.getAccountWrites().get(1);
+        Assert.assertTrue(second.isDeleted() && second.isCreated());
+        Assert.assertArrayEquals(new byte[3], second.getObjectGraph());
+        StateWriteSet.AccountWrites third = writeSet.getAccountWrites().get(2);
+        Assert.assertTrue(third.isDeleted() && !third.isCreated());
+        Assert.assertNull(third.getBalanceDelta());
+    }
+
+
+    @Test
+    public void testReadsThroughDeepChain() {
+        IExternalState base = new TestingState();
+        AionAddress written = Helpers.randomAddress();
+        AionAddress untouched = Helpers.randomAddress();
+        byte[] key = Helpers.randomBytes(32);
+        byte[] removedKey = Helpers.randomBytes(32);
+        base.putStorage(written, removedKey, new byte[1]);
+        base.adjustBalance(untouched, BigInteger.TEN);
+        
+        // Write at a few levels of a deep chain, as nested internal calls would.
+        TransactionalState[] chain = new TransactionalState[10];
+        chain[0] = new TransactionalState(base);
+        for (int i = 1; i < chain.length; ++i) {
+            chain[i] = chain[i - 1].newChildExternalState();
+        }
+        chain[2].putStorage(written, key, new byte[2]);
+        chain[5].removeStorage(written, removedKey);
+        chain[7].adjustBalance(written, BigInteger.ONE);
+        
+        TransactionalState deepest = chain[chain.length - 1];
+        Assert.assertArrayEquals(new byte[2], deepest.getStorage(written, key));
+        Assert.assertNull(deepest.getStorage(written, removedKey));
+        Assert.assertNotNull(chain[4].getStorage(written, removedKey));
+        Assert.assertEquals(BigInteger.ONE, deepest.getBalance(written));
+        Assert.assertEquals(BigInteger.ZERO, chain[6].getBalance(written));
+        
+        // Locations no level wrote are read from the base, including changes made to it after the chain was built.
+        Assert.assertEquals(BigInteger.TEN, deepest.getBalance(untouched));
+        base.putStorage(untouched, key, new byte[3]);
+        Assert.assertArrayEquals(new byte[3], deepest.getStorage(untouched, key));
+        Assert.assertTrue(deepest.hasStorage(untouched));
+        Assert.assertFalse(deepest.hasStorage(Helpers.randomAddress()));
+    }
+
+    private static class CountingState extends TestingState {
+        public int storageWrites;
+        public int balanceAdjustments;
+
+        @Override
+        public void putStorage(AionAddress address, byte[] key, byte[] value) {
+            this.storageWrites += 1;
+            super.putStorage(address, key, value);
+        }
+
+        @Override
+        public void removeStorage(AionAddress address, byte[] key) {
+            this.storageWrites += 1;
+            super.removeStorage(address, key);
+        }
+
+        @Override
+        public void adjustBalance(AionAddress address, BigInteger delta) {
+            this.balanceAdjustments += 1;
+            super.adjustBalance(address, delta);
+        }
+    }
 }
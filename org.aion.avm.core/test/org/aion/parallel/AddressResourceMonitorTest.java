@@ -1,8 +1,14 @@
 package org.aion.parallel;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.aion.avm.core.AvmExecutorThread;
 import org.aion.avm.core.ExecutionType;
 import org.aion.avm.core.util.Helpers;
+import org.aion.kernel.TestingState;
+import org.aion.types.AionAddress;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -242,4 +248,62 @@ public class AddressResourceMonitorTest {
         t2.joinNoError();
     }
 
+    class RetryingThread extends TestThread{
+        private final int index;
+        private final TestingState kernel;
+
+        public RetryingThread(AddressResourceMonitor monitor, int index, TestingState kernel){
+            super(monitor);
+            this.index = index;
+            this.kernel = kernel;
+        }
+
+        protected void safeRun(){
+            TransactionTask task = new TransactionTask(this.kernel, null, this.index, Helpers.ZERO_ADDRESS, ExecutionType.ASSUME_MAINCHAIN, 0);
+            boolean isDone = false;
+            while (!isDone) {
+                // Like the executor, an aborted task releases everything (via the commit) and starts over.
+                task.startNewTransaction();
+                boolean isAcquired = monitor.acquire(addr1, task) && monitor.acquire(((0 == (this.index % 2)) ? addr2 : addr3), task);
+                // The kernel records the order of the commits.
+                task.getThisTransactionalKernel().incrementNonce(addressForIndex(this.index));
+                isDone = monitor.commitKernelForTask(task, false) && isAcquired;
+            }
+        }
+    }
+
+    @Test
+    public void testManyThreadsCommitInOrder() throws InterruptedException{
+        AddressResourceMonitor monitor = new AddressResourceMonitor();
+        List<Integer> commitOrder = Collections.synchronizedList(new ArrayList<>());
+        TestingState kernel = new TestingState() {
+            @Override
+            public void incrementNonce(AionAddress address) {
+                commitOrder.add((int) address.toByteArray()[0]);
+                super.incrementNonce(address);
+            }
+        };
+
+        // Start them in reverse order so that almost every acquire and commit needs to wait (or abort a later task).
+        int threadCount = 16;
+        RetryingThread[] threads = new RetryingThread[threadCount];
+        for (int i = threadCount - 1; i >= 0; --i) {
+            threads[i] = new RetryingThread(monitor, i, kernel);
+            threads[i].start();
+        }
+        for (RetryingThread thread : threads) {
+            thread.joinNoError();
+        }
+
+        Assert.assertEquals(threadCount, commitOrder.size());
+        for (int i = 0; i < threadCount; ++i) {
+            Assert.assertEquals(i, commitOrder.get(i).intValue());
+        }
+    }
+
+    private static AionAddress addressForIndex(int index) {
+        byte[] address = new byte[32];
+        address[0] = (byte) index;
+        return new AionAddress(address);
+    }
 }
@@ -1,6 +1,7 @@
 package org.aion.parallel;
 
 import java.math.BigInteger;
+import java.util.concurrent.CountDownLatch;
 
 import avm.Address;
 import org.aion.avm.core.*;
@@ -169,8 +170,25 @@ public class AvmParallelTest {
      */
     @Test
     public void heavyAbortTest(){
+        runHeavyAbort(new AvmConfiguration());
+    }
+
+    /**
+     * The same heavy abort behaviour with the kernel reads cached across the transactions of each batch.
+     */
+    @Test
+    public void heavyAbortWithBlockReadCacheTest(){
+        AvmConfiguration config = new AvmConfiguration();
+        config.enableBlockReadCache = true;
+        AvmCoreStats stats = runHeavyAbort(config);
+        // Reads of accounts which nothing committed since the last read are answered by the cache.
+        Assert.assertTrue(stats.getBlockReadCacheHits() > 0);
+        Assert.assertTrue(stats.getBlockReadCacheMisses() > 0);
+    }
+
+    private AvmCoreStats runHeavyAbort(AvmConfiguration config) {
         TestingState kernel = new TestingState(block);
-        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), new AvmConfiguration());
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
         
         // We will send 2x the value to these accounts, initially, and they will send 1x to the target.
         int iterations = 100;
@@ -202,6 +220,7 @@ public class AvmParallelTest {
         // Check that this had the expected result.
         Assert.assertEquals(BigInteger.valueOf((long)iterations * valueToSend), kernel.getBalance(targetUser));
         avm.shutdown();
+        return avm.getStats();
     }
 
     @Test
@@ -449,9 +468,120 @@ public class AvmParallelTest {
         avm.shutdown();
     }
 
+    @Test
+    public void pipelinedBatchesTest() {
+        byte[] code = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(TestContract.class);
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), new AvmConfiguration());
+
+        // Deploy the same contract, at the same address, into a "mainchain" kernel and one we will use for queries.
+        TestingState importKernel = new TestingState(block);
+        TestingState queryKernel = new TestingState(block);
+        AionAddress contract = null;
+        for (TestingState kernel : new TestingState[] {importKernel, queryKernel}) {
+            Transaction create = AvmTransactionUtil.create(preminedAddress, kernel.getNonce(preminedAddress), BigInteger.ZERO, new CodeAndArguments(code, null).encodeToBytes(), 5_000_000L, 1);
+            TransactionResult result = avm.run(kernel, new Transaction[] {create}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+            contract = new AionAddress(result.copyOfTransactionOutput().orElseThrow());
+            kernel.generateBlock();
+        }
+
+        int length = 8;
+        Transaction[] importBatch = new Transaction[length];
+        Transaction[] queryBatch = new Transaction[2 * length];
+        for (int i = 0; i < length; i++) {
+            importBatch[i] = AvmTransactionUtil.call(preminedAddress, contract, importKernel.getNonce(preminedAddress).add(BigInteger.valueOf(i)), BigInteger.ZERO, encodeNoArgsMethodCall("addValue"), 2_000_000L, 1);
+            queryBatch[2 * i] = AvmTransactionUtil.call(preminedAddress, contract, queryKernel.getNonce(preminedAddress).add(BigInteger.valueOf(2 * i)), BigInteger.ZERO, encodeNoArgsMethodCall("addValue"), 2_000_000L, 1);
+            queryBatch[2 * i + 1] = AvmTransactionUtil.call(preminedAddress, contract, queryKernel.getNonce(preminedAddress).add(BigInteger.valueOf(2 * i + 1)), BigInteger.ZERO, encodeNoArgsMethodCall("getValue"), 2_000_000L, 1);
+        }
+
+        // Both batches are in flight at once, using the same contract, and are consumed in the opposite order.
+        FutureResult[] importResults = avm.run(importKernel, importBatch, ExecutionType.ASSUME_MAINCHAIN, importKernel.getBlockNumber() - 1);
+        FutureResult[] queryResults = avm.run(queryKernel, queryBatch, ExecutionType.ETH_CALL, queryKernel.getBlockNumber() - 1);
+        for (int i = 0; i < length; i++) {
+            Assert.assertTrue(queryResults[2 * i].getResult().transactionStatus.isSuccess());
+            Assert.assertEquals(i + 1, new ABIDecoder(queryResults[2 * i + 1].getResult().copyOfTransactionOutput().orElseThrow()).decodeOneInteger());
+        }
+        for (FutureResult f : importResults) {
+            Assert.assertTrue(f.getResult().transactionStatus.isSuccess());
+        }
+        importKernel.generateBlock();
+
+        Transaction getValue = AvmTransactionUtil.call(preminedAddress, contract, importKernel.getNonce(preminedAddress), BigInteger.ZERO, encodeNoArgsMethodCall("getValue"), 2_000_000L, 1);
+        TransactionResult result = avm.run(importKernel, new Transaction[] {getValue}, ExecutionType.ASSUME_MAINCHAIN, importKernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertEquals(length, new ABIDecoder(result.copyOfTransactionOutput().orElseThrow()).decodeOneInteger());
+
+        avm.shutdown();
+    }
+
+    /**
+     * A SWITCHING_MAINCHAIN batch waits for the ASSUME_MAINCHAIN batch still in flight (since validating and purging the hot cache around
+     * it would let it check in data from the other fork) while an ETH_CALL batch can still overlap it.
+     */
+    @Test
+    public void cacheUpdatingBatchesAreSerializedTest() throws Exception {
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), new AvmConfiguration());
+        BlockingNonceState blockedKernel = new BlockingNonceState(block);
+        TestingState forkKernel = new TestingState(block);
+        TestingState queryKernel = new TestingState(block);
+
+        Transaction blockedTransfer = AvmTransactionUtil.call(preminedAddress, Helpers.randomAddress(), BigInteger.ZERO, BigInteger.ONE, new byte[0], 100_000L, 1L);
+        FutureResult[] blockedResults = avm.run(blockedKernel, new Transaction[] {blockedTransfer}, ExecutionType.ASSUME_MAINCHAIN, blockedKernel.getBlockNumber() - 1);
+        blockedKernel.waitUntilBlocked();
+
+        FutureResult[][] forkResults = new FutureResult[1][];
+        Thread forkThread = new Thread(() -> {
+            Transaction forkTransfer = AvmTransactionUtil.call(preminedAddress, Helpers.randomAddress(), BigInteger.ZERO, BigInteger.ONE, new byte[0], 100_000L, 1L);
+            forkResults[0] = avm.run(forkKernel, new Transaction[] {forkTransfer}, ExecutionType.SWITCHING_MAINCHAIN, forkKernel.getBlockNumber() - 1);
+        });
+        forkThread.start();
+
+        Transaction query = AvmTransactionUtil.call(preminedAddress, Helpers.randomAddress(), BigInteger.ZERO, BigInteger.ONE, new byte[0], 100_000L, 1L);
+        Assert.assertTrue(avm.run(queryKernel, new Transaction[] {query}, ExecutionType.ETH_CALL, queryKernel.getBlockNumber() - 1)[0].getResult().transactionStatus.isSuccess());
+
+        // The switch can't have been sent while the mainchain batch is still running.
+        forkThread.join(200L);
+        Assert.assertTrue(forkThread.isAlive());
+        blockedKernel.unblock();
+        forkThread.join();
+        Assert.assertTrue(blockedResults[0].getResult().transactionStatus.isSuccess());
+        Assert.assertTrue(forkResults[0][0].getResult().transactionStatus.isSuccess());
+        avm.shutdown();
+    }
+
     private static byte[] encodeNoArgsMethodCall(String methodName) {
         return new ABIStreamingEncoder()
                 .encodeOneString(methodName)
                 .toBytes();
     }
+
+
+    /**
+     * A kernel whose first nonce check blocks until the test unblocks it.
+     */
+    private static class BlockingNonceState extends TestingState {
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch unblocked = new CountDownLatch(1);
+
+        public BlockingNonceState(TestingBlock block) {
+            super(block);
+        }
+
+        @Override
+        public boolean accountNonceEquals(AionAddress address, BigInteger nonce) {
+            this.blocked.countDown();
+            try {
+                this.unblocked.await();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            return super.accountNonceEquals(address, nonce);
+        }
+
+        public void waitUntilBlocked() throws InterruptedException {
+            this.blocked.await();
+        }
+
+        public void unblock() {
+            this.unblocked.countDown();
+        }
+    }
 }
@@ -0,0 +1,176 @@
+package org.aion.parallel;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.aion.avm.core.AvmConfiguration;
+import org.aion.avm.core.AvmImpl;
+import org.aion.avm.core.AvmTransactionUtil;
+import org.aion.avm.core.CommonAvmFactory;
+import org.aion.avm.core.ExecutionType;
+import org.aion.avm.core.FutureResult;
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.avm.userlib.abi.ABIStreamingEncoder;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Verifies that ETH_CALL batches run with enableReadOnlyQueries produce the same results as running each of those transactions alone,
+ * without changing the kernel, even when queried from many threads at once.
+ */
+public class ReadOnlyQueryTest {
+    private static final AionAddress PREMINED = TestingState.PREMINED_ADDRESS;
+
+    @Test
+    public void testQueriesMatchEthCalls() {
+        TestingState kernel = new TestingState(new TestingBlock(new byte[32], 1, Helpers.randomAddress(), 1L, new byte[0]));
+        AionAddress contract = deploy(kernel);
+        Transaction[] queries = buildQueries(kernel, contract);
+
+        // The expected results are each transaction run alone, as a normal ETH_CALL, on a copy of the state.
+        TestingState[] copies = new TestingState[queries.length];
+        for (int i = 0; i < copies.length; ++i) {
+            copies[i] = new TestingState(new TestingBlock(new byte[32], 1, Helpers.randomAddress(), 1L, new byte[0]));
+            deploy(copies[i]);
+        }
+        List<Object> expected = new ArrayList<>();
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), new AvmConfiguration());
+        try {
+            for (int i = 0; i < copies.length; ++i) {
+                TransactionResult result = avm.run(copies[i], new Transaction[] {queries[i]}, ExecutionType.ETH_CALL, copies[i].getBlockNumber() - 1)[0].getResult();
+                record(expected, result);
+            }
+        } finally {
+            avm.shutdown();
+        }
+
+        byte[] graphBefore = kernel.getObjectGraph(contract);
+        BigInteger nonceBefore = kernel.getNonce(PREMINED);
+        BigInteger balanceBefore = kernel.getBalance(PREMINED);
+        AvmConfiguration config = new AvmConfiguration();
+        config.enableReadOnlyQueries = true;
+        avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        try {
+            List<Object> actual = new ArrayList<>();
+            for (FutureResult future : avm.run(kernel, queries, ExecutionType.ETH_CALL, kernel.getBlockNumber() - 1)) {
+                record(actual, future.getResult());
+            }
+            Assert.assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); ++i) {
+                if (expected.get(i) instanceof byte[]) {
+                    Assert.assertArrayEquals((byte[]) expected.get(i), (byte[]) actual.get(i));
+                } else {
+                    Assert.assertEquals(expected.get(i), actual.get(i));
+                }
+            }
+            // Only the query which wrote to the graph needed it serialized.
+            Assert.assertEquals(queries.length - 1, avm.getStats().getDiscardedGraphCount());
+        } finally {
+            avm.shutdown();
+        }
+
+        // Nothing was written to the kernel.
+        Assert.assertArrayEquals(graphBefore, kernel.getObjectGraph(contract));
+        Assert.assertEquals(nonceBefore, kernel.getNonce(PREMINED));
+        Assert.assertEquals(balanceBefore, kernel.getBalance(PREMINED));
+    }
+
+    @Test
+    public void testConcurrentQueryThreads() throws Exception {
+        TestingState kernel = new TestingState(new TestingBlock(new byte[32], 1, Helpers.randomAddress(), 1L, new byte[0]));
+        AionAddress contract = deploy(kernel);
+        Transaction[] queries = buildQueries(kernel, contract);
+
+        AvmConfiguration config = new AvmConfiguration();
+        config.enableReadOnlyQueries = true;
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        try {
+            List<Object> expected = new ArrayList<>();
+            for (FutureResult future : avm.run(kernel, queries, ExecutionType.ETH_CALL, kernel.getBlockNumber() - 1)) {
+                record(expected, future.getResult());
+            }
+
+            // Many threads query the same kernel at once and all see the same results.
+            int threadCount = 8;
+            Thread[] threads = new Thread[threadCount];
+            Throwable[] errors = new Throwable[threadCount];
+            for (int i = 0; i < threadCount; ++i) {
+                int index = i;
+                threads[i] = new Thread(() -> {
+                    try {
+                        for (int j = 0; j < 10; ++j) {
+                            List<Object> actual = new ArrayList<>();
+                            for (FutureResult future : avm.run(kernel, queries, ExecutionType.ETH_CALL, kernel.getBlockNumber() - 1)) {
+                                record(actual, future.getResult());
+                            }
+                            Assert.assertEquals(expected.size(), actual.size());
+                            for (int k = 0; k < expected.size(); ++k) {
+                                if (expected.get(k) instanceof byte[]) {
+                                    Assert.assertArrayEquals((byte[]) expected.get(k), (byte[]) actual.get(k));
+                                } else {
+                                    Assert.assertEquals(expected.get(k), actual.get(k));
+                                }
+                            }
+                        }
+                    } catch (Throwable t) {
+                        errors[index] = t;
+                    }
+                });
+                threads[i].start();
+            }
+            for (int i = 0; i < threadCount; ++i) {
+                threads[i].join();
+                if (null != errors[i]) {
+                    throw new AssertionError(errors[i]);
+                }
+            }
+        } finally {
+            avm.shutdown();
+        }
+    }
+
+    private static AionAddress deploy(TestingState kernel) {
+        byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(TestContract.class);
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), new AvmConfiguration());
+        try {
+            Transaction create = AvmTransactionUtil.create(PREMINED, kernel.getNonce(PREMINED), BigInteger.ZERO, new CodeAndArguments(jar, null).encodeToBytes(), 5_000_000L, 1L);
+            TransactionResult result = avm.run(kernel, new Transaction[] {create}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+            Assert.assertTrue(result.transactionStatus.isSuccess());
+            kernel.generateBlock();
+            return new AionAddress(result.copyOfTransactionOutput().orElseThrow());
+        } finally {
+            avm.shutdown();
+        }
+    }
+
+    private static Transaction[] buildQueries(TestingState kernel, AionAddress contract) {
+        // Queries are independent so they all use the current nonce and the getValue calls don't see the addValue.
+        BigInteger nonce = kernel.getNonce(PREMINED);
+        return new Transaction[] {
+                AvmTransactionUtil.call(PREMINED, contract, nonce, BigInteger.ZERO, encodeNoArgsMethodCall("getValue"), 2_000_000L, 1L),
+                AvmTransactionUtil.call(PREMINED, contract, nonce, BigInteger.ZERO, encodeNoArgsMethodCall("addValue"), 2_000_000L, 1L),
+                AvmTransactionUtil.call(PREMINED, contract, nonce, BigInteger.ZERO, encodeNoArgsMethodCall("getValue"), 2_000_000L, 1L),
+                AvmTransactionUtil.call(PREMINED, contract, nonce, BigInteger.valueOf(1_000), encodeNoArgsMethodCall("getCallCount"), 2_000_000L, 1L),
+        };
+    }
+
+    private static void record(List<Object> observed, TransactionResult result) {
+        observed.add(result.transactionStatus.toString());
+        observed.add(result.energyUsed);
+        observed.add(result.copyOfTransactionOutput().orElse(new byte[0]));
+    }
+
+    private static byte[] encodeNoArgsMethodCall(String methodName) {
+        return new ABIStreamingEncoder().encodeOneString(methodName).toBytes();
+    }
+}
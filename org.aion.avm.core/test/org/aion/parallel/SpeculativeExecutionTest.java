@@ -0,0 +1,200 @@
+package org.aion.parallel;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.aion.avm.core.AvmConfiguration;
+import org.aion.avm.core.AvmExecutorThread;
+import org.aion.avm.core.AvmImpl;
+import org.aion.avm.core.AvmTransactionUtil;
+import org.aion.avm.core.CommonAvmFactory;
+import org.aion.avm.core.ExecutionType;
+import org.aion.avm.core.FutureResult;
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.avm.userlib.abi.ABIStreamingEncoder;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class SpeculativeExecutionTest {
+    private static final AionAddress PREMINED = TestingState.PREMINED_ADDRESS;
+    private static final AionAddress MINER = new AionAddress(Helpers.hexStringToBytes("9999999999999999999999999999999999999999999999999999999999999999"));
+    private static final AionAddress[] USERS = new AionAddress[] {
+            new AionAddress(Helpers.hexStringToBytes("1111111111111111111111111111111111111111111111111111111111111111")),
+            new AionAddress(Helpers.hexStringToBytes("2222222222222222222222222222222222222222222222222222222222222222")),
+            new AionAddress(Helpers.hexStringToBytes("3333333333333333333333333333333333333333333333333333333333333333")),
+            new AionAddress(Helpers.hexStringToBytes("4444444444444444444444444444444444444444444444444444444444444444")),
+            new AionAddress(Helpers.hexStringToBytes("5555555555555555555555555555555555555555555555555555555555555555")),
+            new AionAddress(Helpers.hexStringToBytes("6666666666666666666666666666666666666666666666666666666666666666")),
+    };
+
+    /**
+     * Drives the monitor directly, on one thread, to check that only a task which read something written after it started is re-executed.
+     */
+    @Test
+    public void testOnlyConflictingTasksAreReexecuted() throws Exception {
+        TestingState kernel = new TestingState();
+        AddressResourceMonitor monitor = new AddressResourceMonitor(true);
+        ExecutorThread thread = new ExecutorThread(() -> {
+            TransactionTask writer = startTask(monitor, kernel, 0);
+            TransactionTask conflicting = startTask(monitor, kernel, 1);
+            TransactionTask independent = startTask(monitor, kernel, 2);
+
+            // None of these block or abort in speculative mode.
+            Assert.assertTrue(monitor.acquire(USERS[0].toByteArray(), writer));
+            Assert.assertTrue(monitor.acquire(USERS[0].toByteArray(), conflicting));
+
+            writer.getThisTransactionalKernel().adjustBalance(USERS[0], BigInteger.TEN);
+            Assert.assertEquals(BigInteger.ZERO, conflicting.getThisTransactionalKernel().getBalance(USERS[0]));
+            Assert.assertEquals(BigInteger.ZERO, independent.getThisTransactionalKernel().getBalance(USERS[1]));
+
+            Assert.assertTrue(monitor.commitKernelForTask(writer, false));
+            // The conflicting task read the balance before the writer committed so it must be re-executed.
+            Assert.assertFalse(monitor.commitKernelForTask(conflicting, false));
+            conflicting = startTask(monitor, kernel, 1);
+            Assert.assertEquals(BigInteger.TEN, conflicting.getThisTransactionalKernel().getBalance(USERS[0]));
+            Assert.assertTrue(monitor.commitKernelForTask(conflicting, false));
+            // The independent task started before both commits but didn't read anything they wrote.
+            Assert.assertTrue(monitor.commitKernelForTask(independent, false));
+        });
+        thread.start();
+        thread.joinNoError();
+
+        Assert.assertEquals(3, thread.stats.speculative_committed);
+        Assert.assertEquals(1, thread.stats.speculative_conflicts);
+        Assert.assertEquals(BigInteger.TEN, kernel.getBalance(USERS[0]));
+    }
+
+    /**
+     * Runs the same batches, which include dependent transfers and conflicting DApp calls, with and without speculative execution:
+     * the results and final state must be identical.
+     */
+    @Test
+    public void testSpeculativeMatchesLocking() {
+        List<Object> locking = runBatches(false);
+        List<Object> speculative = runBatches(true);
+        Assert.assertEquals(locking.size(), speculative.size());
+        for (int i = 0; i < locking.size(); ++i) {
+            Object expected = locking.get(i);
+            Object actual = speculative.get(i);
+            if (expected instanceof byte[]) {
+                Assert.assertArrayEquals((byte[]) expected, (byte[]) actual);
+            } else {
+                Assert.assertEquals(expected, actual);
+            }
+        }
+    }
+
+    private static List<Object> runBatches(boolean enableSpeculativeExecution) {
+        TestingBlock block = new TestingBlock(new byte[32], 1, MINER, 1L, new byte[0]);
+        TestingState kernel = new TestingState(block);
+        AvmConfiguration config = new AvmConfiguration();
+        config.enableSpeculativeExecution = enableSpeculativeExecution;
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        List<Object> observed = new ArrayList<>();
+        try {
+            byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(TestContract.class);
+            Transaction[] setup = new Transaction[USERS.length - 1];
+            for (int i = 0; i < setup.length; ++i) {
+                setup[i] = AvmTransactionUtil.call(PREMINED, USERS[i], BigInteger.valueOf(i), BigInteger.valueOf(5_000_000), new byte[0], 100_000L, 1L);
+            }
+            runBatch(avm, kernel, setup, observed);
+            Transaction create = AvmTransactionUtil.create(PREMINED, kernel.getNonce(PREMINED), BigInteger.ZERO, new CodeAndArguments(jar, null).encodeToBytes(), 5_000_000L, 1L);
+            TransactionResult createResult = runBatch(avm, kernel, new Transaction[] {create}, observed)[0];
+            AionAddress contract = new AionAddress(createResult.copyOfTransactionOutput().orElseThrow());
+
+            byte[] addValue = encodeNoArgsMethodCall("addValue");
+            byte[] getValue = encodeNoArgsMethodCall("getValue");
+            byte[] doTransfer = encodeNoArgsMethodCall("doTransfer");
+            Transaction[] mixed = new Transaction[] {
+                    AvmTransactionUtil.call(PREMINED, contract, kernel.getNonce(PREMINED), BigInteger.valueOf(1_000_000), addValue, 200_000L, 1L),
+                    AvmTransactionUtil.call(USERS[0], contract, BigInteger.ZERO, BigInteger.ZERO, addValue, 200_000L, 1L),
+                    AvmTransactionUtil.call(USERS[1], contract, BigInteger.ZERO, BigInteger.ZERO, getValue, 200_000L, 1L),
+                    // USERS[4] can only afford its transfer because of this one.
+                    AvmTransactionUtil.call(USERS[2], USERS[4], BigInteger.ZERO, BigInteger.valueOf(1_000_000), new byte[0], 100_000L, 1L),
+                    AvmTransactionUtil.call(USERS[4], USERS[5], BigInteger.ZERO, BigInteger.valueOf(500_000), new byte[0], 100_000L, 1L),
+                    AvmTransactionUtil.call(USERS[3], contract, BigInteger.ZERO, BigInteger.ZERO, doTransfer, 500_000L, 1L),
+                    AvmTransactionUtil.call(USERS[0], contract, BigInteger.ONE, BigInteger.ZERO, addValue, 200_000L, 1L),
+                    AvmTransactionUtil.call(USERS[1], contract, BigInteger.ONE, BigInteger.ZERO, getValue, 200_000L, 1L),
+            };
+            runBatch(avm, kernel, mixed, observed);
+
+            List<AionAddress> accounts = new ArrayList<>(Arrays.asList(USERS));
+            accounts.add(PREMINED);
+            accounts.add(MINER);
+            accounts.add(contract);
+            for (AionAddress account : accounts) {
+                observed.add(kernel.getBalance(account));
+                observed.add(kernel.getNonce(account));
+            }
+            observed.add(kernel.getObjectGraph(contract));
+
+            int transactionCount = setup.length + 1 + mixed.length;
+            Assert.assertEquals(enableSpeculativeExecution ? transactionCount : 0, avm.getStats().getSpeculativeCommitCount());
+        } finally {
+            avm.shutdown();
+        }
+        return observed;
+    }
+
+    private static TransactionResult[] runBatch(AvmImpl avm, TestingState kernel, Transaction[] batch, List<Object> observed) {
+        FutureResult[] futures = avm.run(kernel, batch, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1);
+        TransactionResult[] results = new TransactionResult[futures.length];
+        for (int i = 0; i < futures.length; ++i) {
+            results[i] = futures[i].getResult();
+            observed.add(results[i].transactionStatus.toString());
+            observed.add(results[i].energyUsed);
+            observed.add(results[i].copyOfTransactionOutput().orElse(new byte[0]));
+        }
+        kernel.generateBlock();
+        return results;
+    }
+
+    private static TransactionTask startTask(AddressResourceMonitor monitor, TestingState kernel, int index) {
+        TransactionTask task = new TransactionTask(kernel, null, index, Helpers.ZERO_ADDRESS, ExecutionType.ASSUME_MAINCHAIN, 0, monitor);
+        task.startNewTransaction();
+        monitor.startTask(task);
+        return task;
+    }
+
+    private static byte[] encodeNoArgsMethodCall(String methodName) {
+        return new ABIStreamingEncoder().encodeOneString(methodName).toBytes();
+    }
+
+
+    private static class ExecutorThread extends AvmExecutorThread {
+        private final Runnable body;
+        private Throwable error;
+
+        public ExecutorThread(Runnable body) {
+            super("name", null, null, false);
+            this.body = body;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.body.run();
+            } catch (Throwable t) {
+                this.error = t;
+            }
+        }
+
+        public void joinNoError() throws InterruptedException {
+            this.join();
+            if (null != this.error) {
+                throw new AssertionError(this.error);
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.aion.avm.embed.abi;
+
+import org.aion.avm.tooling.abi.Callable;
+
+public class DAppHashCollisionTarget {
+
+    @Callable()
+    public static int Aa() {
+        return 1;
+    }
+
+    @Callable()
+    public static int BB() {
+        return 2;
+    }
+
+    @Callable()
+    public static int other() {
+        return 3;
+    }
+}
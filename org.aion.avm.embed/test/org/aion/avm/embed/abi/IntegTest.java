@@ -10,6 +10,7 @@ import avm.Address;
 import org.aion.avm.core.util.Helpers;
 import org.aion.avm.embed.AvmRule;
 import org.aion.avm.tooling.ABIUtil;
+import org.aion.avm.tooling.abi.ABIConfig;
 import org.aion.avm.userlib.abi.ABIDecoder;
 import org.aion.types.TransactionResult;
 import org.junit.ClassRule;
@@ -120,9 +121,15 @@ public class IntegTest {
     //One complicated class with multiple types of arguments, multiple types of return values, complicated function body.
     @Test
     public void testComplicatedDApp() {
+        checkComplicatedDApp(avmRule.getDappBytes(TestDAppTarget.class, new byte[0]));
+    }
 
-        byte[] jar = avmRule.getDappBytes(TestDAppTarget.class, new byte[0]);
+    @Test
+    public void testComplicatedDAppWithHashDispatch() {
+        checkComplicatedDApp(avmRule.getDappBytes(TestDAppTarget.class, new byte[0], ABIConfig.LATEST_VERSION));
+    }
 
+    private void checkComplicatedDApp(byte[] jar) {
         Address dapp = installTestDApp(jar);
 
         String ret = callStaticString(dapp, "returnHelloWorld");
@@ -169,9 +176,15 @@ public class IntegTest {
 
     @Test
     public void testFallbackSuccess() {
-        byte[] jar =
-            avmRule.getDappBytes(DAppNoMainWithFallbackTarget.class, new byte[0]);
+        checkFallbackSuccess(avmRule.getDappBytes(DAppNoMainWithFallbackTarget.class, new byte[0]));
+    }
 
+    @Test
+    public void testFallbackSuccessWithHashDispatch() {
+        checkFallbackSuccess(avmRule.getDappBytes(DAppNoMainWithFallbackTarget.class, new byte[0], ABIConfig.LATEST_VERSION));
+    }
+
+    private void checkFallbackSuccess(byte[] jar) {
         Address dapp = installTestDApp(jar);
 
         int oldVal = callStaticInteger(dapp, "getValue");
@@ -187,12 +200,31 @@ public class IntegTest {
 
     @Test
     public void testFallbackFail() {
-        byte[] jar =
-            avmRule.getDappBytes(DAppNoMainNoFallbackTarget.class, new byte[0]);
+        checkFallbackFail(avmRule.getDappBytes(DAppNoMainNoFallbackTarget.class, new byte[0]), "noSuchMethod");
+    }
+
+    @Test
+    public void testFallbackFailWithHashDispatch() {
+        checkFallbackFail(avmRule.getDappBytes(DAppNoMainNoFallbackTarget.class, new byte[0], ABIConfig.LATEST_VERSION), "noSuchMethod");
+    }
+
+    //"Aa", "BB", and "C#" all have the same hashCode so the hash dispatch must still compare the names.
+    @Test
+    public void testHashDispatchCollisions() {
+        byte[] jar = avmRule.getDappBytes(DAppHashCollisionTarget.class, new byte[0], ABIConfig.LATEST_VERSION);
+        Address dapp = installTestDApp(jar);
+
+        assertEquals(1, callStaticInteger(dapp, "Aa"));
+        assertEquals(2, callStaticInteger(dapp, "BB"));
+        assertEquals(3, callStaticInteger(dapp, "other"));
+        checkFallbackFail(jar, "C#");
+    }
+
+    private void checkFallbackFail(byte[] jar, String methodName) {
         Address dapp = installTestDApp(jar);
 
 
-        byte[] argData = ABIUtil.encodeMethodArguments("noSuchMethod");
+        byte[] argData = ABIUtil.encodeMethodArguments(methodName);
         TransactionResult result =
             avmRule.call(
                 avmRule.getPreminedAccount(),
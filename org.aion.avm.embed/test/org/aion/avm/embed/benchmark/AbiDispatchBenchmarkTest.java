@@ -0,0 +1,89 @@
+package org.aion.avm.embed.benchmark;
+
+import avm.Address;
+
+import java.math.BigInteger;
+
+import org.aion.avm.RuntimeMethodFeeSchedule;
+import org.aion.avm.embed.AvmRule;
+import org.aion.avm.embed.AvmRule.ResultWrapper;
+import org.aion.avm.tooling.abi.ABICompiler;
+import org.aion.avm.tooling.abi.ABIConfig;
+import org.aion.avm.userlib.abi.ABIStreamingEncoder;
+import org.aion.types.TransactionResult;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+
+/**
+ * Benchmarking the main() generated by the ABI compiler, for a contract with a large ABI (see LargeAbiContract), by calling callables
+ * at different positions in the ABI and comparing the energy used and the wall time per call.  This benchmark compares:
+ *   1. The default ABI version, where main() compares the method name to each callable's name in turn.
+ *   2. The latest ABI version, where main() switches on the hash of the method name.
+ */
+public class AbiDispatchBenchmarkTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+    private static final int[] METHOD_INDICES = new int[] {0, 15, 31, 47, 63};
+    private static final int CALLS = 200;
+
+    @ClassRule
+    public static final AvmRule RULE = new AvmRule(false);
+    private static final Address FROM = RULE.getPreminedAccount();
+
+    @Test
+    public void testComparisonDispatch() {
+        long[] energies = measureCalls("Comparison", ABICompiler.getDefaultVersionNumber());
+        // Each callable before the one called costs another comparison.
+        for (int i = 1; i < energies.length; ++i) {
+            Assert.assertTrue(energies[i] > energies[i - 1]);
+        }
+    }
+
+    @Test
+    public void testHashDispatch() {
+        long[] energies = measureCalls("Hash", ABIConfig.LATEST_VERSION);
+        // Reaching any callable costs less than one more method name comparison than reaching the first.
+        for (int i = 1; i < energies.length; ++i) {
+            Assert.assertTrue(Math.abs(energies[i] - energies[0]) < RuntimeMethodFeeSchedule.String_avm_equals);
+        }
+    }
+
+    private static long[] measureCalls(String name, int abiVersion) {
+        byte[] payload = RULE.getDappBytes(LargeAbiContract.class, new byte[0], abiVersion);
+        Address target = RULE.deploy(FROM, BigInteger.ZERO, payload).getDappAddress();
+
+        // Warm up the call path so the first callable measured doesn't also pay for that.
+        byte[] warmUpArgs = encodeCall(0);
+        for (int i = 0; i < CALLS; ++i) {
+            Assert.assertTrue(RULE.call(FROM, target, BigInteger.ZERO, warmUpArgs).getTransactionResult().transactionStatus.isSuccess());
+        }
+
+        long[] energies = new long[METHOD_INDICES.length];
+        for (int i = 0; i < METHOD_INDICES.length; ++i) {
+            int index = METHOD_INDICES[i];
+            byte[] args = encodeCall(index);
+            long start = System.nanoTime();
+            for (int call = 0; call < CALLS; ++call) {
+                ResultWrapper result = RULE.call(FROM, target, BigInteger.ZERO, args);
+                TransactionResult transactionResult = result.getTransactionResult();
+                Assert.assertTrue(transactionResult.transactionStatus.isSuccess());
+                Assert.assertEquals(1 + index, ((Integer) result.getDecodedReturnData()).intValue());
+                energies[i] = transactionResult.energyUsed;
+            }
+            report(name, index, energies[i], (System.nanoTime() - start) / CALLS);
+        }
+        return energies;
+    }
+
+    private static byte[] encodeCall(int index) {
+        return new ABIStreamingEncoder().encodeOneString(String.format("method%02d", index)).encodeOneInteger(1).toBytes();
+    }
+
+    private static void report(String name, int index, long energy, long nanosPerCall) {
+        if (REPORT) {
+            System.out.println(name + " dispatch to callable " + index + ": " + energy + " energy, " + (nanosPerCall / 1_000L) + " us per call (average of " + CALLS + ")");
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package org.aion.avm.embed.benchmark;
+
+import org.aion.avm.tooling.abi.Callable;
+
+
+/**
+ * A contract with a large ABI, used to measure what dispatching a call to each of its callables costs.
+ */
+public class LargeAbiContract {
+    @Callable
+    public static int method00(int value) {
+        return value + 0;
+    }
+
+    @Callable
+    public static int method01(int value) {
+        return value + 1;
+    }
+
+    @Callable
+    public static int method02(int value) {
+        return value + 2;
+    }
+
+    @Callable
+    public static int method03(int value) {
+        return value + 3;
+    }
+
+    @Callable
+    public static int method04(int value) {
+        return value + 4;
+    }
+
+    @Callable
+    public static int method05(int value) {
+        return value + 5;
+    }
+
+    @Callable
+    public static int method06(int value) {
+        return value + 6;
+    }
+
+    @Callable
+    public static int method07(int value) {
+        return value + 7;
+    }
+
+    @Callable
+    public static int method08(int value) {
+        return value + 8;
+    }
+
+    @Callable
+    public static int method09(int value) {
+        return value + 9;
+    }
+
+    @Callable
+    public static int method10(int value) {
+        return value + 10;
+    }
+
+    @Callable
+    public static int method11(int value) {
+        return value + 11;
+    }
+
+    @Callable
+    public static int method12(int value) {
+        return value + 12;
+    }
+
+    @Callable
+    public static int method13(int value) {
+        return value + 13;
+    }
+
+    @Callable
+    public static int method14(int value) {
+        return value + 14;
+    }
+
+    @Callable
+    public static int method15(int value) {
+        return value + 15;
+    }
+
+    @Callable
+    public static int method16(int value) {
+        return value + 16;
+    }
+
+    @Callable
+    public static int method17(int value) {
+        return value + 17;
+    }
+
+    @Callable
+    public static int method18(int value) {
+        return value + 18;
+    }
+
+    @Callable
+    public static int method19(int value) {
+        return value + 19;
+    }
+
+    @Callable
+    public static int method20(int value) {
+        return value + 20;
+    }
+
+    @Callable
+    public static int method21(int value) {
+        return value + 21;
+    }
+
+    @Callable
+    public static int method22(int value) {
+        return value + 22;
+    }
+
+    @Callable
+    public static int method23(int value) {
+        return value + 23;
+    }
+
+    @Callable
+    public static int method24(int value) {
+        return value + 24;
+    }
+
+    @Callable
+    public static int method25(int value) {
+        return value + 25;
+    }
+
+    @Callable
+    public static int method26(int value) {
+        return value + 26;
+    }
+
+    @Callable
+    public static int method27(int value) {
+        return value + 27;
+    }
+
+    @Callable
+    public static int method28(int value) {
+        return value + 28;
+    }
+
+    @Callable
+    public static int method29(int value) {
+        return value + 29;
+    }
+
+    @Callable
+    public static int method30(int value) {
+        return value + 30;
+    }
+
+    @Callable
+    public static int method31(int value) {
+        return value + 31;
+    }
+
+    @Callable
+    public static int method32(int value) {
+        return value + 32;
+    }
+
+    @Callable
+    public static int method33(int value) {
+        return value + 33;
+    }
+
+    @Callable
+    public static int method34(int value) {
+        return value + 34;
+    }
+
+    @Callable
+    public static int method35(int value) {
+        return value + 35;
+    }
+
+    @Callable
+    public static int method36(int value) {
+        return value + 36;
+    }
+
+    @Callable
+    public static int method37(int value) {
+        return value + 37;
+    }
+
+    @Callable
+    public static int method38(int value) {
+        return value + 38;
+    }
+
+    @Callable
+    public static int method39(int value) {
+        return value + 39;
+    }
+
+    @Callable
+    public static int method40(int value) {
+        return value + 40;
+    }
+
+    @Callable
+    public static int method41(int value) {
+        return value + 41;
+    }
+
+    @Callable
+    public static int method42(int value) {
+        return value + 42;
+    }
+
+    @Callable
+    public static int method43(int value) {
+        return value + 43;
+    }
+
+    @Callable
+    public static int method44(int value) {
+        return value + 44;
+    }
+
+    @Callable
+    public static int method45(int value) {
+        return value + 45;
+    }
+
+    @Callable
+    public static int method46(int value) {
+        return value + 46;
+    }
+
+    @Callable
+    public static int method47(int value) {
+        return value + 47;
+    }
+
+    @Callable
+    public static int method48(int value) {
+        return value + 48;
+    }
+
+    @Callable
+    public static int method49(int value) {
+        return value + 49;
+    }
+
+    @Callable
+    public static int method50(int value) {
+        return value + 50;
+    }
+
+    @Callable
+    public static int method51(int value) {
+        return value + 51;
+    }
+
+    @Callable
+    public static int method52(int value) {
+        return value + 52;
+    }
+
+    @Callable
+    public static int method53(int value) {
+        return value + 53;
+    }
+
+    @Callable
+    public static int method54(int value) {
+        return value + 54;
+    }
+
+    @Callable
+    public static int method55(int value) {
+        return value + 55;
+    }
+
+    @Callable
+    public static int method56(int value) {
+        return value + 56;
+    }
+
+    @Callable
+    public static int method57(int value) {
+        return value + 57;
+    }
+
+    @Callable
+    public static int method58(int value) {
+        return value + 58;
+    }
+
+    @Callable
+    public static int method59(int value) {
+        return value + 59;
+    }
+
+    @Callable
+    public static int method60(int value) {
+        return value + 60;
+    }
+
+    @Callable
+    public static int method61(int value) {
+        return value + 61;
+    }
+
+    @Callable
+    public static int method62(int value) {
+        return value + 62;
+    }
+
+    @Callable
+    public static int method63(int value) {
+        return value + 63;
+    }
+}
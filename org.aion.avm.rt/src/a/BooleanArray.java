@@ -37,7 +37,7 @@ public class BooleanArray extends Array {
     }
 
     public void set(int idx, boolean val) {
-        lazyLoad();
+        markModified();
         this.underlying[idx] = val;
     }
 
@@ -37,7 +37,7 @@ public class ByteArray extends Array {
     }
 
     public void set(int idx, byte val) {
-        lazyLoad();
+        markModified();
         this.underlying[idx] = val;
     }
 
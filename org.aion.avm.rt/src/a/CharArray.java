@@ -37,7 +37,7 @@ public class CharArray extends Array {
     }
 
     public void set(int idx, char val) {
-        lazyLoad();
+        markModified();
         this.underlying[idx] = val;
     }
 
@@ -37,7 +37,7 @@ public class DoubleArray extends Array {
     }
 
     public void set(int idx, double val) {
-        lazyLoad();
+        markModified();
         this.underlying[idx] = val;
     }
 
@@ -37,7 +37,7 @@ public class FloatArray extends Array {
     }
 
     public void set(int idx, float val) {
-        lazyLoad();
+        markModified();
         this.underlying[idx] = val;
     }
 
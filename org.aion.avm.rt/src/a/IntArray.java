@@ -37,7 +37,7 @@ public class IntArray extends Array {
     }
 
     public void set(int idx, int val) {
-        lazyLoad();
+        markModified();
         this.underlying[idx] = val;
     }
 
@@ -37,7 +37,7 @@ public class LongArray extends Array {
     }
 
     public void set(int idx, long val) {
-        lazyLoad();
+        markModified();
         this.underlying[idx] = val;
     }
 
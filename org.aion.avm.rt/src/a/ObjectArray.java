@@ -44,7 +44,7 @@ public class ObjectArray extends Array implements IObjectArray {
     }
 
     public void set(int idx, Object val) {
-        lazyLoad();
+        markModified();
         this.underlying[idx] = val;
     }
 
@@ -37,7 +37,7 @@ public class ShortArray extends Array {
     }
 
     public void set(int idx, short val) {
-        lazyLoad();
+        markModified();
         this.underlying[idx] = val;
     }
 
@@ -0,0 +1,37 @@
+package i;
+
+
+/**
+ * The holder of the IInstrumentation attached to each thread (IInstrumentation.attachedThreadInstrumentation).
+ * For an InstrumentedThread, the instrumentation is stored directly on the thread object so that the lookup doesn't need to go through
+ * the thread's ThreadLocal map.  Any other thread (tests and tools which run DApp code directly) falls back to the normal ThreadLocal.
+ */
+public final class AttachedThreadInstrumentation extends ThreadLocal<IInstrumentation> {
+    @Override
+    public IInstrumentation get() {
+        Thread thread = Thread.currentThread();
+        return (thread instanceof InstrumentedThread)
+                ? ((InstrumentedThread) thread).attachedInstrumentation
+                : super.get();
+    }
+
+    @Override
+    public void set(IInstrumentation instrumentation) {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof InstrumentedThread) {
+            ((InstrumentedThread) thread).attachedInstrumentation = instrumentation;
+        } else {
+            super.set(instrumentation);
+        }
+    }
+
+    @Override
+    public void remove() {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof InstrumentedThread) {
+            ((InstrumentedThread) thread).attachedInstrumentation = null;
+        } else {
+            super.remove();
+        }
+    }
+}
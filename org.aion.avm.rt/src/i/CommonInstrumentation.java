@@ -7,11 +7,17 @@ import java.util.*;
  * Forces the execution to stop if the abort state is activated
  **/
 public class CommonInstrumentation implements IInstrumentation {
+    // The upper bound (exclusive) of a single block charge (2^30).  This is a constant since chargeEnergy is called for every block.
+    private static final int MAXIMUM_BLOCK_COST = 1 << 30;
+
     // Single-frame states (the currentFrame cannot also be in the callerFrame - this is just an optimization since the currentFrame access
     // is the common case and is in the critical path - may actually be worth fully-inlining these variables, at some point).
     private FrameState currentFrame;
     private final Stack<FrameState> callerFrames;
 
+    // Mirrors (null != currentFrame.forceExitState) so that the Helper can check it without looking up the frame.
+    private boolean isForcingExit;
+
     // State which applies to the entire stack.
     private boolean abortState;
 
@@ -48,6 +54,7 @@ public class CommonInstrumentation implements IInstrumentation {
             this.callerFrames.push(this.currentFrame);
         }
         this.currentFrame = newFrame;
+        this.isForcingExit = false;
     }
 
     public void exitCurrentFrame() {
@@ -57,6 +64,66 @@ public class CommonInstrumentation implements IInstrumentation {
             returningFrame = this.callerFrames.pop();
         }
         this.currentFrame = returningFrame;
+        this.isForcingExit = (null != returningFrame) && (null != returningFrame.forceExitState);
+    }
+
+    /**
+     * Called by the Helper when it attaches to this instrumentation.  From this point until it detaches, the Helper holds the energyLeft
+     * of the current frame and we read and write it through the Helper.
+     *
+     * @param helper The Helper taking over the energyLeft of the current frame.
+     * @return The energyLeft of the current frame.
+     */
+    public long attachEnergyOwner(IRuntimeSetup helper) {
+        RuntimeAssertionError.assertTrue(null == this.currentFrame.energyOwner);
+        this.currentFrame.energyOwner = helper;
+        return this.currentFrame.energyLeft;
+    }
+
+    /**
+     * Called by the Helper when it detaches from this instrumentation, handing the energyLeft back to the current frame.
+     *
+     * @param helper The Helper which was attached.
+     * @param energyLeft The energyLeft the Helper was holding.
+     */
+    public void detachEnergyOwner(IRuntimeSetup helper, long energyLeft) {
+        RuntimeAssertionError.assertTrue(helper == this.currentFrame.energyOwner);
+        this.currentFrame.energyOwner = null;
+        this.currentFrame.energyLeft = energyLeft;
+    }
+
+    /**
+     * Used by the Helper to decide if it can bill a block without calling chargeEnergy():  if the frame is being forced to exit, or the
+     * transaction has been aborted, chargeEnergy() must be called to throw.
+     *
+     * @return True if nothing is forcing the current frame to exit.
+     */
+    public boolean canContinue() {
+        return !this.isForcingExit && !this.abortState;
+    }
+
+    /**
+     * @return True if the current frame has been forced to exit (enterMethod, exitMethod, and enterCatchBlock will throw).
+     */
+    public boolean isForcingExit() {
+        return this.isForcingExit;
+    }
+
+    /**
+     * @return The StackWatcher of the current frame.
+     */
+    public StackWatcher getStackWatcher() {
+        return this.currentFrame.stackWatcher;
+    }
+
+    /**
+     * Forces the current frame to exit, re-throwing the given exception at the entry to every block.
+     *
+     * @param error The exception to re-throw.
+     */
+    public void forceExit(AvmThrowable error) {
+        this.currentFrame.forceExitState = error;
+        this.isForcingExit = true;
     }
 
     @SuppressWarnings("unchecked")
@@ -97,7 +164,7 @@ public class CommonInstrumentation implements IInstrumentation {
                     // -create our fatal exception
                     JvmError error = new JvmError((VirtualMachineError)t);
                     // -store it in forceExitState
-                    this.currentFrame.forceExitState = error;
+                    forceExit(error);
                     // -throw it
                     throw error;
                 }
@@ -154,28 +221,31 @@ public class CommonInstrumentation implements IInstrumentation {
         }
 
         RuntimeAssertionError.assertTrue(cost >= 0);
-        RuntimeAssertionError.assertTrue(cost < Math.pow(2, 30));
+        RuntimeAssertionError.assertTrue(cost < MAXIMUM_BLOCK_COST);
 
         // Bill for the block.
-        this.currentFrame.energyLeft -= cost;
-        if (this.currentFrame.energyLeft < 0) {
+        long energyLeft = energyLeft() - cost;
+        setEnergyLeft(energyLeft);
+        if (energyLeft < 0) {
             // Note that this is a reason to force the exit so set this.
             OutOfEnergyException error = new OutOfEnergyException();
-            this.currentFrame.forceExitState = error;
+            forceExit(error);
             throw error;
         }
 
         // Check if we are in abort state.
         if (abortState){
             EarlyAbortException error = new EarlyAbortException();
-            this.currentFrame.forceExitState = error;
+            forceExit(error);
             throw error;
         }
     }
 
     @Override
     public long energyLeft() {
-        return this.currentFrame.energyLeft;
+        return (null != this.currentFrame.energyOwner)
+                ? this.currentFrame.energyOwner.getEnergyLeft()
+                : this.currentFrame.energyLeft;
     }
 
     @Override
@@ -214,7 +284,7 @@ public class CommonInstrumentation implements IInstrumentation {
         try {
             this.currentFrame.stackWatcher.enterMethod(frameSize);
         } catch (OutOfStackException ex) {
-            this.currentFrame.forceExitState = ex;
+            forceExit(ex);
         }
     }
 
@@ -228,7 +298,7 @@ public class CommonInstrumentation implements IInstrumentation {
         try {
             this.currentFrame.stackWatcher.exitMethod(frameSize);
         } catch (OutOfStackException ex) {
-            this.currentFrame.forceExitState = ex;
+            forceExit(ex);
         }
     }
 
@@ -242,7 +312,7 @@ public class CommonInstrumentation implements IInstrumentation {
         try {
             this.currentFrame.stackWatcher.enterCatchBlock(depth, size);
         } catch (OutOfStackException ex) {
-            this.currentFrame.forceExitState = ex;
+            forceExit(ex);
         }
     }
 
@@ -255,6 +325,16 @@ public class CommonInstrumentation implements IInstrumentation {
         this.currentFrame.nextHashCode = nextHashCode;
     }
 
+    @Override
+    public void markGraphModified() {
+        this.currentFrame.isGraphModified = true;
+    }
+
+    @Override
+    public boolean isGraphModified() {
+        return this.currentFrame.isGraphModified;
+    }
+
     @Override
     public void bootstrapOnly() {
         throw RuntimeAssertionError.unreachable("NOT a bootstrap IInstrumentation");
@@ -267,6 +347,14 @@ public class CommonInstrumentation implements IInstrumentation {
     }
 
     // Private helpers used internally.
+    private void setEnergyLeft(long energyLeft) {
+        if (null != this.currentFrame.energyOwner) {
+            this.currentFrame.energyOwner.setEnergyLeft(energyLeft);
+        } else {
+            this.currentFrame.energyLeft = energyLeft;
+        }
+    }
+
     private s.java.lang.Throwable convertVmGeneratedException(Throwable t) throws Exception {
         // First step is to convert the message and cause into shadow objects, as well.
         String originalMessage = t.getMessage();
@@ -298,6 +386,8 @@ public class CommonInstrumentation implements IInstrumentation {
         private ClassLoader lateLoader;
         private long energyLeft;
         private int nextHashCode;
+        // The Helper attached to this frame, if any.  While attached, it holds the energyLeft (see Helper.chargeEnergy()).
+        private IRuntimeSetup energyOwner;
 
         /**
          * Note that we need to consider instance equality for strings and classes:
@@ -315,5 +405,8 @@ public class CommonInstrumentation implements IInstrumentation {
 
         // Set forceExitState to non-null to re-throw at the entry to every block (forces the contract to exit).
         private AvmThrowable forceExitState;
+
+        // Set once anything in the persisted object graph has been written, within this frame.
+        private boolean isGraphModified;
     }
 }
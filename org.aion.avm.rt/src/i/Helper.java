@@ -9,11 +9,18 @@ package i;
  * Each Helper class can only be attached to the instrumentation of a specific thread at any point.  To maintain the simplicity of this design,
  * each thread also can only expose its instrumentation to a single Helper at any point.  This maintains a sort of symmetry where entering a DApp,
  * either for the first time, or reentrantly, always has the same assumption:  it is not currently attached to anyone.
+ * When the target is a CommonInstrumentation, the calls made on every block and method entry/exit don't go through the IInstrumentation
+ * interface:  the Helper holds the energyLeft of the frame it is attached to, in a static, and only hands it back to the frame when it
+ * detaches.  This means that billing a block is normally just a subtraction and a check on this class.
  */
 public class Helper implements IRuntimeSetup {
     public static final String RUNTIME_HELPER_NAME = "H";
 
     private static IInstrumentation target;
+    // Only non-null when the target is a CommonInstrumentation (other implementations, like those used in tests, always see every call).
+    private static CommonInstrumentation inlineTarget;
+    // The energyLeft of the attached frame, while inlineTarget is non-null.
+    private static long energyLeft;
 
 
     public static <T> s.java.lang.Class<T> wrapAsClass(Class<T> input) {
@@ -40,37 +47,99 @@ public class Helper implements IRuntimeSetup {
     }
 
     public static void chargeEnergy(int cost) throws OutOfEnergyException {
-        target.chargeEnergy(cost);
+        CommonInstrumentation inline = inlineTarget;
+        long left = energyLeft - cost;
+        if ((null != inline) && (left >= 0L) && inline.canContinue()) {
+            energyLeft = left;
+        } else {
+            // Running out of energy, or being forced to exit, is handled by the target (which will bill through setEnergyLeft()).
+            target.chargeEnergy(cost);
+        }
     }
 
     public static int getCurStackSize(){
-        return target.getCurStackSize();
+        CommonInstrumentation inline = inlineTarget;
+        return (null != inline)
+                ? inline.getStackWatcher().getCurStackSize()
+                : target.getCurStackSize();
     }
 
     public static int getCurStackDepth(){
-        return target.getCurStackDepth();
+        CommonInstrumentation inline = inlineTarget;
+        return (null != inline)
+                ? inline.getStackWatcher().getCurStackDepth()
+                : target.getCurStackDepth();
     }
 
     public static void enterMethod(int frameSize) {
-        target.enterMethod(frameSize);
+        CommonInstrumentation inline = inlineTarget;
+        if ((null != inline) && !inline.isForcingExit()) {
+            try {
+                inline.getStackWatcher().enterMethod(frameSize);
+            } catch (OutOfStackException e) {
+                inline.forceExit(e);
+            }
+        } else {
+            target.enterMethod(frameSize);
+        }
     }
 
     public static void exitMethod(int frameSize) {
-        target.exitMethod(frameSize);
+        CommonInstrumentation inline = inlineTarget;
+        if ((null != inline) && !inline.isForcingExit()) {
+            try {
+                inline.getStackWatcher().exitMethod(frameSize);
+            } catch (OutOfStackException e) {
+                inline.forceExit(e);
+            }
+        } else {
+            target.exitMethod(frameSize);
+        }
     }
 
     public static void enterCatchBlock(int depth, int size) {
-        target.enterCatchBlock(depth, size);
+        CommonInstrumentation inline = inlineTarget;
+        if ((null != inline) && !inline.isForcingExit()) {
+            inline.getStackWatcher().enterCatchBlock(depth, size);
+        } else {
+            target.enterCatchBlock(depth, size);
+        }
+    }
+
+    /**
+     * Note:  This is called by instrumented code before every write to a class static.
+     */
+    public static void markGraphModified() {
+        target.markGraphModified();
     }
 
     @Override
     public void attach(IInstrumentation instrumentation) {
         RuntimeAssertionError.assertTrue(null == target);
         target = instrumentation;
+        if (instrumentation instanceof CommonInstrumentation) {
+            inlineTarget = (CommonInstrumentation) instrumentation;
+            energyLeft = inlineTarget.attachEnergyOwner(this);
+        }
     }
     @Override
     public void detach(IInstrumentation instrumentation) {
         RuntimeAssertionError.assertTrue(instrumentation == target);
+        if (null != inlineTarget) {
+            inlineTarget.detachEnergyOwner(this, energyLeft);
+            inlineTarget = null;
+            energyLeft = 0L;
+        }
         target = null;
     }
+    @Override
+    public long getEnergyLeft() {
+        RuntimeAssertionError.assertTrue(null != inlineTarget);
+        return energyLeft;
+    }
+    @Override
+    public void setEnergyLeft(long energyLeft) {
+        RuntimeAssertionError.assertTrue(null != inlineTarget);
+        Helper.energyLeft = energyLeft;
+    }
 }
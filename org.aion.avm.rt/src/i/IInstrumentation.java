@@ -9,7 +9,8 @@ package i;
  */
 public interface IInstrumentation {
     // The instrumentation instance associated with the given thread and also installed into the Helper of the currently-running DApp.
-    public static final ThreadLocal<IInstrumentation> attachedThreadInstrumentation = new ThreadLocal<>();
+    // (this is on the critical path of the shadow JDK so it is declared as the concrete final type, to make get() a direct call)
+    public static final AttachedThreadInstrumentation attachedThreadInstrumentation = new AttachedThreadInstrumentation();
 
     void enterNewFrame(ClassLoader contractLoader, long energyLeft, int nextHashCode, InternedClasses classWrappers);
     void exitCurrentFrame();
@@ -48,6 +49,18 @@ public interface IInstrumentation {
      * @param nextHashCode The hash code to use for the next object allocated.
      */
     void forceNextHashCode(int nextHashCode);
+
+    /**
+     * Records that the persisted object graph of the DApp running in the current frame has been modified:  either a class static was written
+     * or an instance which was part of the graph when it was last loaded or saved was written.
+     * Once this has been called, the graph must be serialized in full when the frame completes.
+     */
+    void markGraphModified();
+
+    /**
+     * @return True if markGraphModified() has been called within the current frame.
+     */
+    boolean isGraphModified();
     
     void bootstrapOnly();
 
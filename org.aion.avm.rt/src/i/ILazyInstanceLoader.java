@@ -0,0 +1,16 @@
+package i;
+
+
+/**
+ * Installed in instances which were created as stubs by the persistence layer, when lazily loading the object graph.
+ * The first lazyLoad() on such an instance asks the loader to deserialize its fields.
+ */
+public interface ILazyInstanceLoader {
+    /**
+     * Deserializes the state of the given stub instance.
+     * 
+     * @param instance The stub instance to populate.
+     * @param readIndex The index of the instance within the serialized graph.
+     */
+    void loadInstance(IObject instance, int readIndex);
+}
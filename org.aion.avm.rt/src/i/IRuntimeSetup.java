@@ -9,4 +9,10 @@ package i;
 public interface IRuntimeSetup {
     public void attach(IInstrumentation instrumentation);
     public void detach(IInstrumentation instrumentation);
+
+    /**
+     * Only valid while attached to a CommonInstrumentation, which reads and writes the energyLeft of its current frame through here.
+     */
+    public long getEnergyLeft();
+    public void setEnergyLeft(long energyLeft);
 }
@@ -0,0 +1,16 @@
+package i;
+
+
+/**
+ * A thread which holds its attached IInstrumentation in a field, instead of in a ThreadLocal.
+ * The shadow JDK looks up the instrumentation of the current thread on every allocation and billed call so threads which run DApp code
+ * (AvmExecutorThread) extend this to make that lookup a type check and a field read (see AttachedThreadInstrumentation).
+ */
+public class InstrumentedThread extends Thread {
+    // Only accessed by AttachedThreadInstrumentation, on this thread.
+    IInstrumentation attachedInstrumentation;
+
+    public InstrumentedThread(String name) {
+        super(name);
+    }
+}
@@ -20,6 +20,13 @@ public class Object extends java.lang.Object implements IObject {
     // The readIndex is only used in cases of reentrant calls (this is the serialization index of the instance in the caller frame when serialized for the reentrant call).
     public final int readIndex;
 
+    // Set when the instance is part of the object graph, as last serialized or deserialized, and cleared on the first write after that.
+    // Note that this is not part of the serialized state (only our subclasses are automatically serialized).
+    private boolean isPersistedAndUnmodified;
+
+    // Set if this instance is a stub which still needs to be populated from the serialized graph (cleared once that happens).
+    private ILazyInstanceLoader lazyLoader;
+
     public Object() {
         this.hashCode = IInstrumentation.attachedThreadInstrumentation.get().getNextHashCodeAndIncrement();
         this.readIndex = NEW_INSTANCE_READ_INDEX;
@@ -103,8 +110,42 @@ public class Object extends java.lang.Object implements IObject {
      * Note that this is final since the protected "deserializeSelf" should be over-ridden.
      */
     public final void lazyLoad() {
-        // This now does nothing - will be removed later if we are certain we don't want the lazy loading.
-        // It was originally how the lazy loading system worked when we had the incremental loading design.
+        if (null != this.lazyLoader) {
+            // We clear the loader before loading since deserialization can call back into us.
+            ILazyInstanceLoader loader = this.lazyLoader;
+            this.lazyLoader = null;
+            loader.loadInstance(this, this.readIndex);
+        }
+    }
+
+    /**
+     * Called by the persistence layer to make this instance a stub, populated by the given loader on the first lazyLoad().
+     * 
+     * @param loader The loader which will populate this instance.
+     */
+    public final void setLazyLoader(ILazyInstanceLoader loader) {
+        this.lazyLoader = loader;
+    }
+
+    /**
+     * Called before any write to the instance:  instrumented PUTFIELD, array element stores, and mutating shadow JCL methods.
+     * If the instance is part of the persisted object graph, this reports that the graph has been modified (only the first write is
+     * reported since the modified graph will be serialized in full, which marks the instance as persisted, again).
+     * Note that this is final for the same reason as "lazyLoad()" and it also calls "lazyLoad()" since a write must be applied to a loaded instance.
+     */
+    public final void markModified() {
+        lazyLoad();
+        if (this.isPersistedAndUnmodified) {
+            this.isPersistedAndUnmodified = false;
+            IInstrumentation.attachedThreadInstrumentation.get().markGraphModified();
+        }
+    }
+
+    /**
+     * Called by the persistence layer when the instance is serialized or deserialized as part of the object graph.
+     */
+    public final void markPersisted() {
+        this.isPersistedAndUnmodified = true;
     }
 
     public void deserializeSelf(java.lang.Class<?> firstRealImplementation, IObjectDeserializer deserializer) {
@@ -93,6 +93,7 @@ public final class String extends Object implements Comparable<String>, CharSequ
     public void avm_getChars(int srcBegin, int srcEnd, CharArray dst, int dstBegin) {
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.String_avm_getChars, java.lang.Math.max(srcEnd - srcBegin, 0)));
         lazyLoad();
+        dst.markModified();
         this.v.getChars(srcBegin, srcEnd, dst.getUnderlying(), dstBegin);
     }
 
@@ -46,6 +46,7 @@ public final class StringBuffer extends Object implements CharSequence, Serializ
     }
 
     public void avm_setLength(int newLength) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuffer_avm_setLength);
         this.v.setLength(newLength);
     }
@@ -59,15 +60,18 @@ public final class StringBuffer extends Object implements CharSequence, Serializ
                              int dstBegin)
     {
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuffer_avm_getChars, java.lang.Math.max(srcEnd - srcBegin, 0)));
+        dst.markModified();
         this.v.getChars(srcBegin, srcEnd, dst.getUnderlying(), dstBegin);
     }
 
     public void avm_setCharAt(int index, char ch) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuffer_avm_setCharAt);
         this.v.setCharAt(index, ch);
     }
 
     public StringBuffer avm_append(IObject obj) {
+        markModified();
         String str = String.internalValueOfObject(obj);
         int lengthForBilling = (null != str)
                 ? str.internalLength()
@@ -78,6 +82,7 @@ public final class StringBuffer extends Object implements CharSequence, Serializ
     }
 
     public StringBuffer avm_append(String str) {
+        markModified();
         int lengthForBilling = (null != str)
                 ? str.internalLength()
                 : 0;
@@ -87,6 +92,7 @@ public final class StringBuffer extends Object implements CharSequence, Serializ
     }
 
     public StringBuffer avm_append(StringBuffer sb) {
+        markModified();
         int lengthForBilling = (null != sb)
                 ? sb.internalLength()
                 : 0;
@@ -99,6 +105,7 @@ public final class StringBuffer extends Object implements CharSequence, Serializ
     }
 
     public StringBuffer avm_append(CharSequence s){
+        markModified();
         int lengthForBilling = (null != s)
                 ? s.avm_length()
                 : 0;
@@ -108,6 +115,7 @@ public final class StringBuffer extends Object implements CharSequence, Serializ
     }
 
     public StringBuffer avm_append(CharSequence s, int start, int end){
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuffer_avm_append_4, java.lang.Math.max(end - start, 0)));
         java.lang.String underlying = (null != s)
                 ? s.avm_toString().getUnderlying()
@@ -117,6 +125,7 @@ public final class StringBuffer extends Object implements CharSequence, Serializ
     }
 
     public StringBuffer avm_append(CharArray str) {
+        markModified();
         int lengthForBilling = (null != str)
                 ? str.length()
                 : 0;
@@ -127,60 +136,70 @@ public final class StringBuffer extends Object implements CharSequence, Serializ
     }
 
     public StringBuffer avm_append(CharArray str, int offset, int len) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuffer_avm_append_6, (java.lang.Math.max(len, 0) + java.lang.Math.max(internalLength() - offset, 0))));
         this.v = this.v.append(str.getUnderlying(), offset, len);
         return this;
     }
 
     public StringBuffer avm_append(boolean b) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuffer_avm_append_7);
         this.v = this.v.append(b);
         return this;
     }
 
     public StringBuffer avm_append(char c) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuffer_avm_append_8);
         this.v = this.v.append(c);
         return this;
     }
 
     public StringBuffer avm_append(int i) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuffer_avm_append_9);
         this.v = this.v.append(i);
         return this;
     }
 
     public StringBuffer avm_append(long lng) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuffer_avm_append_10);
         this.v = this.v.append(lng);
         return this;
     }
 
     public StringBuffer avm_append(float f) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuffer_avm_append_11);
         this.v = this.v.append(f);
         return this;
     }
 
     public StringBuffer avm_append(double d) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuffer_avm_append_12);
         this.v = this.v.append(d);
         return this;
     }
 
     public StringBuffer avm_delete(int start, int end) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuffer_avm_delete, java.lang.Math.max(internalLength() - start, 0)));
         this.v = this.v.delete(start, end);
         return this;
     }
 
     public StringBuffer avm_deleteCharAt(int index) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuffer_avm_deleteCharAt, java.lang.Math.max(internalLength() - index, 0)));
         this.v = this.v.deleteCharAt(index);
         return this;
     }
 
     public StringBuffer avm_replace(int start, int end, String str) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuffer_avm_replace, java.lang.Math.max(internalLength() - start, 0)));
         this.v = this.v.replace(start, end, str.getUnderlying());
         return this;
@@ -204,18 +223,21 @@ public final class StringBuffer extends Object implements CharSequence, Serializ
     public StringBuffer avm_insert(int index, CharArray str, int offset,
                                             int len)
     {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuffer_avm_insert, (java.lang.Math.max(len, 0) + java.lang.Math.max(internalLength() - index, 0))));
         this.v.insert(index, str.getUnderlying(), offset, len);
         return this;
     }
 
     public StringBuffer avm_insert(int offset, IObject obj) {
+        markModified();
         // delegating the call to avm_insert
         avm_insert(offset, String.internalValueOfObject(obj));
         return this;
     }
 
     public StringBuffer avm_insert(int offset, String str) {
+        markModified();
         int lengthForBilling = (null != str)
                 ? str.internalLength()
                 : 0;
@@ -228,6 +250,7 @@ public final class StringBuffer extends Object implements CharSequence, Serializ
     }
 
     public StringBuffer avm_insert(int offset, CharArray str) {
+        markModified();
         int lengthForBilling = (null != str)
                 ? str.length()
                 : 0;
@@ -238,6 +261,7 @@ public final class StringBuffer extends Object implements CharSequence, Serializ
     }
 
     public StringBuffer avm_insert(int dstOffset, CharSequence s){
+        markModified();
         int lengthForBilling = (null != s)
                 ? s.avm_length()
                 : 0;
@@ -250,6 +274,7 @@ public final class StringBuffer extends Object implements CharSequence, Serializ
     }
 
     public StringBuffer avm_insert(int dstOffset, CharSequence s, int start, int end) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuffer_avm_insert_5, (java.lang.Math.max(end - start, 0) + java.lang.Math.max(internalLength() - dstOffset, 0))));
         java.lang.String underlying = (null != s)
                 ? s.avm_toString().getUnderlying()
@@ -259,36 +284,42 @@ public final class StringBuffer extends Object implements CharSequence, Serializ
     }
 
     public StringBuffer avm_insert(int offset, boolean b) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuffer_avm_insert_6);
         this.v.insert(offset, b);
         return this;
     }
 
     public StringBuffer avm_insert(int offset, char c) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuffer_avm_insert_7);
         this.v.insert(offset, c);
         return this;
     }
 
     public StringBuffer avm_insert(int offset, int i) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuffer_avm_insert_8);
         this.v.insert(offset, i);
         return this;
     }
 
     public StringBuffer avm_insert(int offset, long l) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuffer_avm_insert_9);
         this.v.insert(offset, l);
         return this;
     }
 
     public StringBuffer avm_insert(int offset, float f) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuffer_avm_insert_10);
         this.v.insert(offset, f);
         return this;
     }
 
     public StringBuffer avm_insert(int offset, double d) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuffer_avm_insert_11);
         this.v.insert(offset, d);
         return this;
@@ -315,6 +346,7 @@ public final class StringBuffer extends Object implements CharSequence, Serializ
     }
 
     public StringBuffer avm_reverse() {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuffer_avm_reverse, internalLength()));
         this.v.reverse();
         return this;
@@ -45,6 +45,7 @@ public final class StringBuilder extends Object implements CharSequence, Seriali
     }
 
     public StringBuilder avm_append(IObject obj) {
+        markModified();
         String str = String.internalValueOfObject(obj);
         // Note that we want to convert this to a string, at our level, so we can call avm_toString() - the lower-level will call toString().
         int lengthForBilling = (null != str)
@@ -56,6 +57,7 @@ public final class StringBuilder extends Object implements CharSequence, Seriali
     }
 
     public StringBuilder avm_append(String str) {
+        markModified();
         int lengthForBilling = (null != str)
                 ? str.internalLength()
                 : 0;
@@ -65,6 +67,7 @@ public final class StringBuilder extends Object implements CharSequence, Seriali
     }
 
     public StringBuilder avm_append(StringBuffer sb) {
+        markModified();
         int lengthForBilling = (null != sb)
                 ? sb.internalLength()
                 : 0;
@@ -77,6 +80,7 @@ public final class StringBuilder extends Object implements CharSequence, Seriali
     }
 
     public StringBuilder avm_append(CharArray str) {
+        markModified();
         int lengthForBilling = (null != str)
                 ? str.length()
                 : 0;
@@ -90,6 +94,7 @@ public final class StringBuilder extends Object implements CharSequence, Seriali
     }
 
     public StringBuilder avm_append(CharArray str, int offset, int len) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuilder_avm_append_4, (java.lang.Math.max(len, 0) + java.lang.Math.max(internalLength() - offset, 0))));
         char[] underlying = (null != str)
                 ? str.getUnderlying()
@@ -100,6 +105,7 @@ public final class StringBuilder extends Object implements CharSequence, Seriali
     }
 
     public StringBuilder avm_append(CharSequence s){
+        markModified();
         int lengthForBilling = (null != s)
                 ? s.avm_length()
                 : 0;
@@ -109,6 +115,7 @@ public final class StringBuilder extends Object implements CharSequence, Seriali
     }
 
     public StringBuilder avm_append(CharSequence s, int start, int end){
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuilder_avm_append_6, java.lang.Math.max(end - start, 0)));
         java.lang.String asString = (null != s)
                 ? s.avm_toString().getUnderlying()
@@ -118,54 +125,63 @@ public final class StringBuilder extends Object implements CharSequence, Seriali
     }
 
     public StringBuilder avm_append(boolean b) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuilder_avm_append_7);
         this.v.append(b);
         return this;
     }
 
     public StringBuilder avm_append(char c) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuilder_avm_append_8);
         this.v.append(c);
         return this;
     }
 
     public StringBuilder avm_append(int i) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuilder_avm_append_9);
         this.v.append(i);
         return this;
     }
 
     public StringBuilder avm_append(long lng) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuilder_avm_append_10);
         this.v.append(lng);
         return this;
     }
 
     public StringBuilder avm_append(float f) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuilder_avm_append_11);
         this.v.append(f);
         return this;
     }
 
     public StringBuilder avm_append(double d) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuilder_avm_append_12);
         this.v.append(d);
         return this;
     }
 
     public StringBuilder avm_delete(int start, int end) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuilder_avm_delete, java.lang.Math.max(internalLength() - start, 0)));
         this.v.delete(start, end);
         return this;
     }
 
     public StringBuilder avm_deleteCharAt(int index) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuilder_avm_deleteCharAt, java.lang.Math.max(internalLength() - index, 0)));
         this.v.deleteCharAt(index);
         return this;
     }
 
     public StringBuilder avm_replace(int start, int end, String str) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuilder_avm_replace, java.lang.Math.max(internalLength() - start, 0)));
         this.v = this.v.replace(start, end, str.getUnderlying());
         return this;
@@ -174,18 +190,21 @@ public final class StringBuilder extends Object implements CharSequence, Seriali
     public StringBuilder avm_insert(int index, CharArray str, int offset,
                                                 int len)
     {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuilder_avm_insert, (java.lang.Math.max(len, 0) + java.lang.Math.max(internalLength() - index, 0))));
         this.v.insert(index, str.getUnderlying(), offset, len);
         return this;
     }
 
     public StringBuilder avm_insert(int offset, IObject obj) {
+        markModified();
         //delegating the call to avm_insert
         avm_insert(offset, String.internalValueOfObject(obj));
         return this;
     }
 
     public StringBuilder avm_insert(int offset, String str) {
+        markModified();
         int lengthForBilling = (null != str)
                 ? str.internalLength()
                 : 0;
@@ -198,6 +217,7 @@ public final class StringBuilder extends Object implements CharSequence, Seriali
     }
 
     public StringBuilder avm_insert(int offset, CharArray str) {
+        markModified();
         int lengthForBilling = (null != str)
                 ? str.length()
                 : 0;
@@ -208,6 +228,7 @@ public final class StringBuilder extends Object implements CharSequence, Seriali
     }
 
     public StringBuilder avm_insert(int dstOffset, CharSequence s) {
+        markModified();
         int lengthForBilling = (null != s)
                 ? s.avm_length()
                 : 0;
@@ -220,6 +241,7 @@ public final class StringBuilder extends Object implements CharSequence, Seriali
     }
 
     public StringBuilder avm_insert(int dstOffset, CharSequence s, int start, int end) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuilder_avm_insert_5, (java.lang.Math.max(end - start, 0) + java.lang.Math.max(internalLength() - dstOffset, 0))));
         java.lang.String underlying = (null != s)
                 ? s.avm_toString().getUnderlying()
@@ -229,36 +251,42 @@ public final class StringBuilder extends Object implements CharSequence, Seriali
     }
 
     public StringBuilder avm_insert(int offset, boolean b) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuilder_avm_insert_6);
         this.v.insert(offset, b);
         return this;
     }
 
     public StringBuilder avm_insert(int offset, char c) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuilder_avm_insert_7);
         this.v.insert(offset, c);
         return this;
     }
 
     public StringBuilder avm_insert(int offset, int i) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuilder_avm_insert_8);
         this.v.insert(offset, i);
         return this;
     }
 
     public StringBuilder avm_insert(int offset, long l) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuilder_avm_insert_9);
         this.v.insert(offset, l);
         return this;
     }
 
     public StringBuilder avm_insert(int offset, float f) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuilder_avm_insert_10);
         this.v.insert(offset, f);
         return this;
     }
 
     public StringBuilder avm_insert(int offset, double d) {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.StringBuilder_avm_insert_11);
         this.v.insert(offset, d);
         return this;
@@ -285,6 +313,7 @@ public final class StringBuilder extends Object implements CharSequence, Seriali
     }
 
     public StringBuilder avm_reverse() {
+        markModified();
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.StringBuilder_avm_reverse, internalLength()));
         this.v.reverse();
         return this;
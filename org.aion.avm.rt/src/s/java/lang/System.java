@@ -28,6 +28,7 @@ public final class System extends Object{
         }else{
             java.lang.Object asrc = ((Array) src).getUnderlyingAsObject();
             java.lang.Object adst = ((Array) dest).getUnderlyingAsObject();
+            ((Array) dest).markModified();
             java.lang.System.arraycopy(asrc, srcPos, adst, destPos, length);
             ((Array) dest).setUnderlyingAsObject(adst);
         }
@@ -70,7 +70,7 @@ public class Throwable extends Object implements Serializable {
 
     public Throwable avm_initCause(Throwable cause) {
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.Throwable_Hierarchy_Base_Fee);
-        lazyLoad();
+        markModified();
         this.cause = cause;
         return this;
     }
@@ -45,6 +45,7 @@ public class Arrays extends Object {
 
     public static void avm_fill(ByteArray a, int fromIndex, int toIndex, byte val) {
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiplyLinearValueByMethodFeeLevel2AndAddBase(RuntimeMethodFeeSchedule.Arrays_avm_fill, Math.max(toIndex - fromIndex, 0)));
+        a.markModified();
         java.util.Arrays.fill(a.getUnderlying(), fromIndex, toIndex, val);
     }
 }
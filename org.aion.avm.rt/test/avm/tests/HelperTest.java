@@ -0,0 +1,125 @@
+package avm.tests;
+
+import i.CommonInstrumentation;
+import i.EarlyAbortException;
+import i.Helper;
+import i.IRuntimeSetup;
+import i.InstrumentationHelpers;
+import i.OutOfEnergyException;
+import i.OutOfStackException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests that the energy held by the Helper, while attached to a CommonInstrumentation, is kept consistent with the frame it bills.
+ */
+public class HelperTest {
+    private CommonInstrumentation instrumentation;
+    private IRuntimeSetup helper;
+
+    @Before
+    public void setup() {
+        this.instrumentation = new CommonInstrumentation();
+        this.helper = new Helper();
+        InstrumentationHelpers.attachThread(this.instrumentation);
+        InstrumentationHelpers.pushNewStackFrame(this.helper, HelperTest.class.getClassLoader(), 1_000L, 1, null);
+    }
+
+    @After
+    public void tearDown() {
+        InstrumentationHelpers.popExistingStackFrame(this.helper);
+        InstrumentationHelpers.detachThread(this.instrumentation);
+    }
+
+    @Test
+    public void testChargeSyncedOnDetach() {
+        Helper.chargeEnergy(100);
+        Assert.assertEquals(900L, this.instrumentation.energyLeft());
+
+        // Once detached, the frame itself must have the energy the Helper was holding.
+        InstrumentationHelpers.temporarilyExitFrame(this.helper);
+        Assert.assertEquals(900L, this.instrumentation.energyLeft());
+        InstrumentationHelpers.returnToExecutingFrame(this.helper);
+
+        Helper.chargeEnergy(900);
+        Assert.assertEquals(0L, this.instrumentation.energyLeft());
+    }
+
+    @Test
+    public void testReentrantFrame() {
+        Helper.chargeEnergy(100);
+
+        // Enter the same DApp, reentrantly, with its own energy.
+        InstrumentationHelpers.temporarilyExitFrame(this.helper);
+        InstrumentationHelpers.pushNewStackFrame(this.helper, HelperTest.class.getClassLoader(), 500L, 1, null);
+        Helper.chargeEnergy(50);
+        Assert.assertEquals(450L, this.instrumentation.energyLeft());
+        InstrumentationHelpers.popExistingStackFrame(this.helper);
+        InstrumentationHelpers.returnToExecutingFrame(this.helper);
+
+        Assert.assertEquals(900L, this.instrumentation.energyLeft());
+    }
+
+    @Test
+    public void testOutOfEnergy() {
+        Helper.chargeEnergy(1_000);
+        OutOfEnergyException error = null;
+        try {
+            Helper.chargeEnergy(1);
+            Assert.fail();
+        } catch (OutOfEnergyException e) {
+            error = e;
+        }
+        Assert.assertEquals(-1L, this.instrumentation.energyLeft());
+
+        // The frame is now forced to exit so even a free block re-throws.
+        try {
+            Helper.chargeEnergy(0);
+            Assert.fail();
+        } catch (OutOfEnergyException e) {
+            Assert.assertSame(error, e);
+        }
+        try {
+            Helper.enterMethod(1);
+            Assert.fail();
+        } catch (OutOfEnergyException e) {
+            Assert.assertSame(error, e);
+        }
+    }
+
+    @Test
+    public void testAbort() {
+        Helper.chargeEnergy(1);
+        this.instrumentation.setAbortState();
+        try {
+            Helper.chargeEnergy(1);
+            Assert.fail();
+        } catch (EarlyAbortException e) {
+            // Expected.
+        }
+        // The block is still billed, as before.
+        Assert.assertEquals(998L, this.instrumentation.energyLeft());
+        this.instrumentation.clearAbortState();
+    }
+
+    @Test
+    public void testOutOfStack() {
+        // The stack overflow is only recorded when entering the method, and thrown at the next block.
+        int depth = 0;
+        while (!this.instrumentation.isForcingExit()) {
+            Helper.enterMethod(1);
+            depth += 1;
+        }
+        Assert.assertEquals(514, depth);
+        try {
+            Helper.chargeEnergy(1);
+            Assert.fail();
+        } catch (OutOfStackException e) {
+            // Expected.
+        }
+        Assert.assertEquals(1_000L, this.instrumentation.energyLeft());
+    }
+}
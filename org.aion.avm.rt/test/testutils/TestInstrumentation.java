@@ -86,6 +86,14 @@ public class TestInstrumentation implements IInstrumentation {
         throw RuntimeAssertionError.unreachable("Not expected in this test");
     }
     @Override
+    public void markGraphModified() {
+        // Nothing is persisted in these tests so there is nothing to track.
+    }
+    @Override
+    public boolean isGraphModified() {
+        throw RuntimeAssertionError.unreachable("Not expected in this test");
+    }
+    @Override
     public void bootstrapOnly() {
         // These tests aren't using the NodeEnvironment to bootstrap the JCL so we need to handle that case.
     }
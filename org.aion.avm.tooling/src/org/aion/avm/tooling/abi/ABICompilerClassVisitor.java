@@ -4,7 +4,9 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import avm.Address;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
@@ -18,6 +20,9 @@ import org.objectweb.asm.tree.MethodNode;
 import static org.objectweb.asm.Opcodes.*;
 
 public class ABICompilerClassVisitor extends ClassVisitor {
+    // With at least this many callables, main() switches on the hash of the method name instead of comparing it to each name in turn.
+    private static final int MINIMUM_CALLABLES_FOR_HASH_DISPATCH = 2;
+
     private boolean hasMainMethod = false;
     private boolean hasClinit = false;
     private String className;
@@ -200,17 +205,68 @@ public class ABICompilerClassVisitor extends ClassVisitor {
 
         methodVisitor.visitLabel(methodNameNotNullLabel);
 
-        Label latestLabel = new Label();
+        Label fallbackLabel = new Label();
+        List<ABICompilerMethodVisitor> callables = this.getCallableMethodVisitors();
+        if (ABIConfig.getInstance().isHashDispatchEnabled(compileVersion) && (callables.size() >= MINIMUM_CALLABLES_FOR_HASH_DISPATCH)) {
+            // switch (methodName.hashCode()), where each case compares the name to the callables with that hash (usually just one)
+            Map<Integer, List<ABICompilerMethodVisitor>> callablesByHash = new TreeMap<>();
+            for (ABICompilerMethodVisitor callableMethod : callables) {
+                callablesByHash.computeIfAbsent(callableMethod.getMethodName().hashCode(), (hash) -> new ArrayList<>()).add(callableMethod);
+            }
+            int[] hashes = new int[callablesByHash.size()];
+            Label[] caseLabels = new Label[callablesByHash.size()];
+            int caseIndex = 0;
+            for (int hash : callablesByHash.keySet()) {
+                hashes[caseIndex] = hash;
+                caseLabels[caseIndex] = new Label();
+                caseIndex += 1;
+            }
+            methodVisitor.visitVarInsn(ALOAD, 1);
+            methodVisitor.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "hashCode", "()I", false);
+            methodVisitor.visitLookupSwitchInsn(fallbackLabel, hashes, caseLabels);
+            caseIndex = 0;
+            for (List<ABICompilerMethodVisitor> sameHashCallables : callablesByHash.values()) {
+                methodVisitor.visitLabel(caseLabels[caseIndex]);
+                addCallableComparisons(methodVisitor, sameHashCallables, fallbackLabel);
+                caseIndex += 1;
+            }
+        } else {
+            addCallableComparisons(methodVisitor, callables, fallbackLabel);
+        }
+
+        // this fallbackLabel is the catch-all else, we call the fallback() if it exists,
+        // else we revert the transaction
+        methodVisitor.visitLabel(fallbackLabel);
+        methodVisitor.visitFrame(Opcodes.F_APPEND, 3, new Object[]{"[B", "java/lang/String", "[Ljava/lang/Object;"}, 0, null);
+        if (hasFallback()) {
+            methodVisitor.visitMethodInsn(
+                    INVOKESTATIC, className, fallbackMethodName, "()V", false);
+            methodVisitor.visitInsn(ICONST_0);
+            methodVisitor.visitIntInsn(NEWARRAY, T_BYTE);
+            methodVisitor.visitInsn(ARETURN);
+        } else {
+            methodVisitor.visitMethodInsn(INVOKESTATIC, "avm/Blockchain", "revert", "()V", false);
+            methodVisitor.visitInsn(ACONST_NULL);
+            methodVisitor.visitInsn(ARETURN);
+        }
+
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+    }
 
-        for (ABICompilerMethodVisitor callableMethod : this.getCallableMethodVisitors()) {
+    // Compares methodName (local 1) to the name of each of the given callables, in turn, and invokes the one it equals.
+    // If it equals none of them, this jumps to the noMatchLabel.
+    private void addCallableComparisons(MethodVisitor methodVisitor, List<ABICompilerMethodVisitor> callables, Label noMatchLabel) {
+        for (int c = 0; c < callables.size(); ++c) {
+            ABICompilerMethodVisitor callableMethod = callables.get(c);
 
-            // latestLabel is the goto label of the preceding if condition
-            methodVisitor.visitLabel(latestLabel);
             methodVisitor.visitVarInsn(ALOAD, 1);
             methodVisitor.visitLdcInsn(callableMethod.getMethodName());
             methodVisitor.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z", false);
-            latestLabel = new Label();
-            methodVisitor.visitJumpInsn(IFEQ, latestLabel);
+            Label nextLabel = (c == callables.size() - 1)
+                ? noMatchLabel
+                : new Label();
+            methodVisitor.visitJumpInsn(IFEQ, nextLabel);
 
             // load the various arguments as indicated by the function signature
             Type[] argTypes = Type.getArgumentTypes(callableMethod.getDescriptor());
@@ -299,26 +355,11 @@ public class ABICompilerClassVisitor extends ClassVisitor {
                 methodVisitor.visitIntInsn(NEWARRAY, T_BYTE);
             }
             methodVisitor.visitInsn(ARETURN);
-        }
 
-        // this latestLabel is the catch-all else, we call the fallback() if it exists,
-        // else we revert the transaction
-        methodVisitor.visitLabel(latestLabel);
-        methodVisitor.visitFrame(Opcodes.F_APPEND, 3, new Object[]{"[B", "java/lang/String", "[Ljava/lang/Object;"}, 0, null);
-        if (hasFallback()) {
-            methodVisitor.visitMethodInsn(
-                    INVOKESTATIC, className, fallbackMethodName, "()V", false);
-            methodVisitor.visitInsn(ICONST_0);
-            methodVisitor.visitIntInsn(NEWARRAY, T_BYTE);
-            methodVisitor.visitInsn(ARETURN);
-        } else {
-            methodVisitor.visitMethodInsn(INVOKESTATIC, "avm/Blockchain", "revert", "()V", false);
-            methodVisitor.visitInsn(ACONST_NULL);
-            methodVisitor.visitInsn(ARETURN);
+            if (nextLabel != noMatchLabel) {
+                methodVisitor.visitLabel(nextLabel);
+            }
         }
-
-        methodVisitor.visitMaxs(0, 0);
-        methodVisitor.visitEnd();
     }
 
     // This helper method assumes that the decoder is the top element on the stack.
@@ -3,7 +3,7 @@ package org.aion.avm.tooling.abi;
 public class ABIConfig {
 
     private static ABIConfig instance = null;
-    public static final int LATEST_VERSION = 1;
+    public static final int LATEST_VERSION = 2;
 
     private ABIConfig() {}
 
@@ -17,4 +17,8 @@ public class ABIConfig {
     public boolean isBigIntegerEnabled(int compiledVersion) {
         return compiledVersion >= 1;
     }
+
+    public boolean isHashDispatchEnabled(int compiledVersion) {
+        return compiledVersion >= 2;
+    }
 }
\ No newline at end of file